@@ -58,7 +58,8 @@ class SimpleStyleTestCase(activity: Activity) : MaplyTestCase(activity, "Simple
     
     private fun cleanup() {
         componentObjects?.let {
-            controller?.removeObjects(it, threadCurrent)
+            // Lets the style manager release the marker textures nothing uses anymore
+            styleManager?.removeFeatures(it, threadCurrent)
             componentObjects = null
         }
         styleManager?.shutdown()
@@ -20,7 +20,9 @@
 package com.mousebirdconsulting.autotester.TestCases;
 
 import android.app.Activity;
+import android.util.Log;
 
+import com.mousebird.maply.BaseController;
 import com.mousebirdconsulting.autotester.Framework.MaplyTestCase;
 
 /**
@@ -35,4 +37,22 @@ public class StartupShutdownTestCase extends MaplyTestCase
         setDelay(4);
         this.implementation = TestExecutionImplementation.Both;
     }
+
+    private int numShutdowns = 0;
+    private double totalShutdownTime = 0.0;
+
+    // Time the teardown so we can see how long rotation and the like will block
+    @Override
+    public void shutdown() {
+        final BaseController control = controller;
+        final long t0 = System.nanoTime();
+        super.shutdown();
+        final double elapsed = (System.nanoTime() - t0) / 1.0e9;
+
+        numShutdowns++;
+        totalShutdownTime += elapsed;
+        Log.i("Maply", String.format("Shutdown %d took %.3fs (threads %.3fs), average %.3fs",
+                numShutdowns, elapsed, (control != null) ? control.getLastShutdownTime() : 0.0,
+                totalShutdownTime / numShutdowns));
+    }
 }
@@ -19,6 +19,7 @@ package com.mousebirdconsulting.autotester.TestCases
 
 import android.app.Activity
 import android.graphics.Color
+import android.util.Log
 import com.mousebird.maply.*
 import com.mousebirdconsulting.autotester.Framework.MaplyTestCase
 
@@ -27,13 +28,13 @@ class VectorHoleTestCase(activity: Activity) :
     
     override fun setUpWithMap(mapVC: MapController?): Boolean {
         baseCase.setUpWithMap(mapVC)
-        objs = listOfNotNull(buildVector(mapVC!!), addAreal(mapVC))
+        objs = listOfNotNull(buildVector(mapVC!!), addAreal(mapVC), addClippedAreal(mapVC))
         return true
     }
 
     override fun setUpWithGlobe(globeVC: GlobeController?): Boolean {
         baseCase.setUpWithGlobe(globeVC)
-        objs = listOfNotNull(buildVector(globeVC!!), addAreal(globeVC))
+        objs = listOfNotNull(buildVector(globeVC!!), addAreal(globeVC), addClippedAreal(globeVC))
         return true
     }
     
@@ -81,6 +82,36 @@ class VectorHoleTestCase(activity: Activity) :
         return baseVC.addVector(vecObj, vectorInfo, ThreadMode.ThreadAny)
     }
     
+    // A polygon with a hole, clipped to a box around the hole.  The hole should stay open.
+    private fun addClippedAreal(baseVC: BaseController): ComponentObject? {
+        val outer = arrayOf(
+            Point2d.FromDegrees(30.0, 20.0),
+            Point2d.FromDegrees(40.0, 20.0),
+            Point2d.FromDegrees(40.0, 30.0),
+            Point2d.FromDegrees(30.0, 30.0))
+        val innerLoops = arrayOf(arrayOf(
+            Point2d.FromDegrees(33.0, 23.0),
+            Point2d.FromDegrees(33.0, 27.0),
+            Point2d.FromDegrees(37.0, 27.0),
+            Point2d.FromDegrees(37.0, 23.0)))
+        val vecObj = VectorObject().apply {
+            addAreal(outer, innerLoops)
+        }
+        val mbr = Mbr(Point2d.FromDegrees(31.0, 21.0), Point2d.FromDegrees(39.0, 29.0))
+        val tessVecObj = vecObj.clipToMbr(mbr)?.tesselate() ?: return null
+        
+        if (tessVecObj.pointInside(Point2d.FromDegrees(35.0, 25.0)) ||
+            !tessVecObj.pointInside(Point2d.FromDegrees(32.0, 25.0))) {
+            Log.e(javaClass.simpleName, "Clipping filled in the hole")
+        }
+        
+        val vectorInfo = VectorInfo().apply {
+            setColor(Color.GREEN)
+            setFilled(true)
+        }
+        return baseVC.addVector(tessVecObj, vectorInfo, ThreadMode.ThreadAny)
+    }
+    
     private val baseCase = CartoLightTestCase(activity)
     private var objs: Collection<ComponentObject>? = emptyList()
     
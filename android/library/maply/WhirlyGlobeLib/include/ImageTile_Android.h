@@ -43,6 +43,11 @@ public:
     /// Scoop the contents out of a Bitmap
     void setBitmap(JNIEnv *env,jobject bitmapObj);
 
+    /// Map in texels already in the layout the texture wants, starting at the given offset in a file.
+    /// 4 bytes per pixel is RGBA, 2 is whatever 16 bit format the loader uses.
+    /// The file stays mapped until the texture is done with the data.
+    bool setMappedFile(const std::string &path,long offset,int width,int height,int bytesPerPixel);
+
     /// Construct and return a texture suitable for the renderer
     virtual Texture *buildTexture();
 
@@ -46,6 +46,9 @@ public:
     /// Local platform implementation for generating a repeating line texture
     virtual SimpleIdentity makeLineTexture(PlatformThreadInfo *inst,const std::vector<double> &dashComponents) override;
 
+    /// Textures are shared on the Java side, so this just drops a reference
+    virtual void releaseTexture(PlatformThreadInfo *inst,SimpleIdentity texID,ChangeSet &changes) override;
+
     /// Create a local platform LabelInfo (since fonts are local)
     virtual LabelInfoRef makeLabelInfo(PlatformThreadInfo *inst,const std::vector<std::string> &fontName,float fontSize) override;
 
@@ -73,6 +76,7 @@ public:
     jmethodID calculateTextWidthMethod = nullptr;
     jmethodID makeCircleTextureMethod = nullptr;
     jmethodID makeLineTextureMethod = nullptr;
+    jmethodID releaseTextureMethod = nullptr;
 
     // Map fontName/size to Java-side labelInfo objects
     std::map<std::pair<std::string, float>, LabelInfoAndroidRef> labelInfos;
@@ -20,6 +20,10 @@
 
 #import "ImageTile_Android.h"
 #import <android/bitmap.h>
+#import <sys/mman.h>
+#import <sys/stat.h>
+#import <fcntl.h>
+#import <unistd.h>
 
 namespace WhirlyKit
 {
@@ -53,9 +57,9 @@ void ImageTile_Android::setBitmap(JNIEnv *env,jobject bitmapObj)
     {
         return;
     }
-    if (info.format != ANDROID_BITMAP_FORMAT_RGBA_8888)
+    if (info.format != ANDROID_BITMAP_FORMAT_RGBA_8888 && info.format != ANDROID_BITMAP_FORMAT_RGB_565)
     {
-        __android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Only dealing with 8888 bitmaps in QuadImageTileLayer");
+        __android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Only dealing with 8888 and 565 bitmaps in QuadImageTileLayer");
         return;
     }
     // Copy the raw data over to the texture
@@ -65,21 +69,72 @@ void ImageTile_Android::setBitmap(JNIEnv *env,jobject bitmapObj)
         return;
     }
 
+    const int bytesPerPixel = (info.format == ANDROID_BITMAP_FORMAT_RGB_565) ? 2 : 4;
     if (info.height > 0 && info.width > 0)
     {
-        //uint32_t* src = (uint32_t*) bitmapPixels;
-        rawData = std::make_shared<MutableRawData>(bitmapPixels,info.height*info.width*4);
+        const unsigned int rowBytes = info.width * bytesPerPixel;
+        if (info.stride == rowBytes)
+        {
+            //uint32_t* src = (uint32_t*) bitmapPixels;
+            rawData = std::make_shared<MutableRawData>(bitmapPixels,info.height*rowBytes);
+        }
+        else
+        {
+            // Drop the row padding as we copy
+            auto *texels = new unsigned char[info.height*rowBytes];
+            for (unsigned int y = 0; y < info.height; y++)
+            {
+                memcpy(texels + y * rowBytes,(const unsigned char *)bitmapPixels + y * info.stride,rowBytes);
+            }
+            rawData = std::make_shared<RawDataWrapper>(texels,info.height*rowBytes,true);
+        }
     }
 
+    // 565 goes up as is, which only works if the loader's texture format is 565 too
     type = MaplyImgTypeRawImage;
     borderSize = 0;
     width = info.width; targetWidth = width;
     height = info.height; targetHeight = height;
-    components = 4;
+    components = bytesPerPixel;
 
     AndroidBitmap_unlockPixels(env, bitmapObj);
 }
 
+bool ImageTile_Android::setMappedFile(const std::string &path,long offset,int inWidth,int inHeight,int bytesPerPixel)
+{
+    if (inWidth <= 0 || inHeight <= 0 || bytesPerPixel <= 0 || offset < 0)
+        return false;
+
+    const int fd = open(path.c_str(),O_RDONLY);
+    if (fd < 0)
+        return false;
+    struct stat fileStat;
+    const size_t dataLen = (size_t)inWidth*inHeight*bytesPerPixel;
+    if (fstat(fd,&fileStat) != 0 || (size_t)fileStat.st_size < offset + dataLen)
+    {
+        close(fd);
+        return false;
+    }
+    const size_t mapLen = offset + dataLen;
+    void *mapped = mmap(nullptr,mapLen,PROT_READ,MAP_PRIVATE,fd,0);
+    // The mapping holds its own reference to the file
+    close(fd);
+    if (mapped == MAP_FAILED)
+        return false;
+
+    // The texture reads straight out of the page cache, and the mapping goes away with the data
+    rawData = std::make_shared<RawDataWrapper>((const unsigned char *)mapped + offset,dataLen,
+                                               [mapped,mapLen](const void *) { munmap(mapped,mapLen); });
+
+    type = MaplyImgTypeRawImage;
+    borderSize = 0;
+    width = inWidth; targetWidth = width;
+    height = inHeight; targetHeight = height;
+    components = bytesPerPixel;
+
+    return true;
+}
+
 Texture *ImageTile_Android::buildTexture()
 {
     if (tex)
@@ -44,6 +44,7 @@ void MapboxVectorStyleSetImpl_Android::setupMethods(JNIEnv *env)
         calculateTextWidthMethod = env->GetMethodID(thisClass,"calculateTextWidth","(Ljava/lang/String;Lcom/mousebird/maply/LabelInfo;)D");
         makeCircleTextureMethod  = env->GetMethodID(thisClass,"makeCircleTexture", "(DIIFLcom/mousebird/maply/Point2d;)J");
         makeLineTextureMethod    = env->GetMethodID(thisClass,"makeLineTexture",   "([D)J");
+        releaseTextureMethod     = env->GetMethodID(thisClass,"releaseTexture",    "(J)V");
     }
 }
 
@@ -134,6 +135,26 @@ SimpleIdentity MapboxVectorStyleSetImpl_Android::makeLineTexture(PlatformThreadI
     return EmptyIdentity;
 }
 
+void MapboxVectorStyleSetImpl_Android::releaseTexture(PlatformThreadInfo *inInst,SimpleIdentity texID,ChangeSet &changes)
+{
+    if (texID == EmptyIdentity)
+    {
+        return;
+    }
+    auto inst = (PlatformInfo_Android *)inInst;
+    auto env = inst->env;
+    try
+    {
+        setupMethods(env);
+        if (auto obj = env->NewLocalRef(thisObj))
+        {
+            env->CallVoidMethod(obj, releaseTextureMethod, (jlong)texID);
+            env->DeleteLocalRef(obj);
+        }
+    }
+    MAPLY_STD_JNI_CATCH()
+}
+
 LabelInfoRef MapboxVectorStyleSetImpl_Android::makeLabelInfo(PlatformThreadInfo *inInst,const std::vector<std::string> &fontNames,float fontSize)
 {
     auto inst = (PlatformInfo_Android *)inInst;
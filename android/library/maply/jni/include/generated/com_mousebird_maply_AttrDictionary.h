@@ -95,6 +95,14 @@ JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_AttrDictionary_getArray
 JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_AttrDictionary_getKeys
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_mousebird_maply_AttrDictionary
+ * Method:    snapshotNative
+ * Signature: ([Ljava/lang/String;)[Ljava/lang/Object;
+ */
+JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_AttrDictionary_snapshotNative
+  (JNIEnv *, jobject, jobjectArray);
+
 /*
  * Class:     com_mousebird_maply_AttrDictionary
  * Method:    setString
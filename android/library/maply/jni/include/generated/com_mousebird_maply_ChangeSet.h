@@ -47,6 +47,30 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_merge
 JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_process
   (JNIEnv *, jobject, jobject, jobject);
 
+/*
+ * Class:     com_mousebird_maply_ChangeSet
+ * Method:    count
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_mousebird_maply_ChangeSet_count
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_mousebird_maply_ChangeSet
+ * Method:    estimateBytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_mousebird_maply_ChangeSet_estimateBytes
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_mousebird_maply_ChangeSet
+ * Method:    processLimited
+ * Signature: (Lcom/mousebird/maply/RenderController;Lcom/mousebird/maply/Scene;IJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_mousebird_maply_ChangeSet_processLimited
+  (JNIEnv *, jobject, jobject, jobject, jint, jlong);
+
 /*
  * Class:     com_mousebird_maply_ChangeSet
  * Method:    nativeInit
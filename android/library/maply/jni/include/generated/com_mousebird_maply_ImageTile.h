@@ -15,6 +15,14 @@ extern "C" {
 JNIEXPORT void JNICALL Java_com_mousebird_maply_ImageTile_setBitmap
   (JNIEnv *, jobject, jobject);
 
+/*
+ * Class:     com_mousebird_maply_ImageTile
+ * Method:    setMappedFile
+ * Signature: (Ljava/lang/String;JIII)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_ImageTile_setMappedFile
+  (JNIEnv *, jobject, jstring, jlong, jint, jint, jint);
+
 /*
  * Class:     com_mousebird_maply_ImageTile
  * Method:    setBorderSize
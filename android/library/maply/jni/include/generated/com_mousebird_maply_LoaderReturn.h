@@ -89,10 +89,10 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_LoaderReturn_deleteComponentObje
 
 /*
  * Class:     com_mousebird_maply_LoaderReturn
- * Method:    isCanceled
+ * Method:    isCanceledNative
  * Signature: ()Z
  */
-JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_LoaderReturn_isCanceled
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_LoaderReturn_isCanceledNative
         (JNIEnv *, jobject);
 
 /*
@@ -117,6 +117,14 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorStyleSet_initialise
 JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorStyleSet_dispose
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_mousebird_maply_MapboxVectorStyleSet
+ * Method:    cleanupLayersNative
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorStyleSet_cleanupLayersNative
+  (JNIEnv *, jobject);
+
 /*
  * Class:     com_mousebird_maply_MapboxVectorStyleSet
  * Method:    nativeInit
@@ -24,6 +24,46 @@ extern "C" {
 JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_parseData
   (JNIEnv *, jobject, jbyteArray, jobject, jobject);
 
+/*
+ * Class:     com_mousebird_maply_MapboxVectorTileParser
+ * Method:    restyleDataNative
+ * Signature: (Lcom/mousebird/maply/VectorTileData;Lcom/mousebird/maply/VectorTileData;Lcom/mousebird/maply/Point2d;Lcom/mousebird/maply/Point2d;Lcom/mousebird/maply/LoaderReturn;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_restyleDataNative
+  (JNIEnv *, jobject, jobject, jobject, jobject, jobject, jobject);
+
+/*
+ * Class:     com_mousebird_maply_MapboxVectorTileParser
+ * Method:    setKeepVectors
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_setKeepVectors
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     com_mousebird_maply_MapboxVectorTileParser
+ * Method:    setFeaturesOnly
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_setFeaturesOnly
+  (JNIEnv *, jobject, jboolean);
+
+/*
+ * Class:     com_mousebird_maply_MapboxVectorTileParser
+ * Method:    getSkipStatsNative
+ * Signature: ([J)V
+ */
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_getSkipStatsNative
+  (JNIEnv *, jobject, jlongArray);
+
+/*
+ * Class:     com_mousebird_maply_MapboxVectorTileParser
+ * Method:    resetSkipStats
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_resetSkipStats
+  (JNIEnv *, jobject);
+
 /*
  * Class:     com_mousebird_maply_MapboxVectorTileParser
  * Method:    setLocalCoords
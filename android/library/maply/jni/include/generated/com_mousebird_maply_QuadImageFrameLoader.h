@@ -15,6 +15,14 @@ extern "C" {
 JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_QuadImageFrameLoader_setLoadFrameModeNative
   (JNIEnv *, jobject, jint);
 
+/*
+ * Class:     com_mousebird_maply_QuadImageFrameLoader
+ * Method:    setPrefetchNative
+ * Signature: (IIZ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_QuadImageFrameLoader_setPrefetchNative
+  (JNIEnv *, jobject, jint, jint, jboolean);
+
 /*
  * Class:     com_mousebird_maply_QuadImageFrameLoader
  * Method:    updatePriorities
@@ -79,6 +79,22 @@ JNIEXPORT jobject JNICALL Java_com_mousebird_maply_VectorTileData_getChangeSet
 JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_VectorTileData_getVectors
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_mousebird_maply_VectorTileData
+ * Method:    getVectorCount
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_mousebird_maply_VectorTileData_getVectorCount
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     com_mousebird_maply_VectorTileData
+ * Method:    keepVectorsOnly
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_mousebird_maply_VectorTileData_keepVectorsOnly
+  (JNIEnv *, jobject);
+
 /*
  * Class:     com_mousebird_maply_VectorTileData
  * Method:    nativeInit
@@ -94,6 +94,26 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorStyleSet_dispose
     MAPLY_STD_JNI_CATCH()
 }
 
+extern "C"
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorStyleSet_cleanupLayersNative
+(JNIEnv *env, jobject obj)
+{
+    try
+    {
+        if (const auto styleSetRef = MapboxVectorStyleSetClassInfo::get(env,obj))
+        {
+            PlatformInfo_Android threadInst(env);
+            ChangeSet changes;
+            (*styleSetRef)->cleanupLayers(&threadInst,changes);
+            if (!changes.empty() && (*styleSetRef)->scene)
+            {
+                (*styleSetRef)->scene->addChangeRequests(changes);
+            }
+        }
+    }
+    MAPLY_STD_JNI_CATCH()
+}
+
 extern "C"
 JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_MapboxVectorStyleSet_hasBackgroundStyle
         (JNIEnv *env, jobject obj)
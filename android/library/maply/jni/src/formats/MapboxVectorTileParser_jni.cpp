@@ -105,8 +105,120 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_setLocalC
     }
 }
 
+extern "C"
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_getSkipStatsNative
+    (JNIEnv *env, jobject obj, jlongArray statsArr)
+{
+    try {
+        MapboxVectorTileParser *inst = MapboxVectorTileParserClassInfo::getClassInfo()->getObject(env, obj);
+        if (!inst || !statsArr || env->GetArrayLength(statsArr) < 4)
+            return;
+        const auto stats = inst->getSkipStats();
+        const jlong vals[4] = { (jlong)stats.tiles, (jlong)stats.layers, (jlong)stats.bytes, (jlong)stats.features };
+        env->SetLongArrayRegion(statsArr, 0, 4, vals);
+    }
+    catch (...) {
+        __android_log_print(ANDROID_LOG_VERBOSE, "Maply",
+                            "Crash in MapboxVectorTileParser::getSkipStatsNative()");
+    }
+}
+
+extern "C"
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_resetSkipStats
+    (JNIEnv *env, jobject obj)
+{
+    try {
+        MapboxVectorTileParser *inst = MapboxVectorTileParserClassInfo::getClassInfo()->getObject(env, obj);
+        if (!inst)
+            return;
+        inst->resetSkipStats();
+    }
+    catch (...) {
+        __android_log_print(ANDROID_LOG_VERBOSE, "Maply",
+                            "Crash in MapboxVectorTileParser::resetSkipStats()");
+    }
+}
+
+extern "C"
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_setKeepVectors
+    (JNIEnv *env, jobject obj, jboolean keepVectors)
+{
+    try {
+        MapboxVectorTileParser *inst = MapboxVectorTileParserClassInfo::getClassInfo()->getObject(env, obj);
+        if (!inst)
+            return;
+        // Keep everything, including layers the current style doesn't use
+        inst->setKeepVectors(keepVectors);
+        inst->setParseAll(keepVectors);
+    }
+    catch (...) {
+        __android_log_print(ANDROID_LOG_VERBOSE, "Maply",
+                            "Crash in MapboxVectorTileParser::setKeepVectors()");
+    }
+}
+
+extern "C"
+JNIEXPORT void JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_setFeaturesOnly
+    (JNIEnv *env, jobject obj, jboolean featuresOnly)
+{
+    try {
+        MapboxVectorTileParser *inst = MapboxVectorTileParserClassInfo::getClassInfo()->getObject(env, obj);
+        if (!inst)
+            return;
+        // Keep all the features, but leave building anything to restyle
+        inst->setKeepVectors(featuresOnly);
+        inst->setParseAll(featuresOnly);
+        inst->setStyleFeatures(!featuresOnly);
+    }
+    catch (...) {
+        __android_log_print(ANDROID_LOG_VERBOSE, "Maply",
+                            "Crash in MapboxVectorTileParser::setFeaturesOnly()");
+    }
+}
+
 static bool noCancel(PlatformThreadInfo*) { return false; }
 
+extern "C"
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_restyleDataNative
+    (JNIEnv *env, jobject obj, jobject featuresObj, jobject vecTileDataObj,
+     jobject clipLLObj, jobject clipURObj, jobject loadRetObj)
+{
+    try
+    {
+        const auto inst = MapboxVectorTileParserClassInfo::get(env,obj);
+        const auto featuresPtr = VectorTileDataClassInfo::get(env,featuresObj);
+        const auto tileDataPtr = VectorTileDataClassInfo::get(env,vecTileDataObj);
+        const auto features = featuresPtr ? *featuresPtr : nullptr;
+        const auto tileData = tileDataPtr ? *tileDataPtr : nullptr;
+        if (!inst || !features || !tileData)
+        {
+            return false;
+        }
+
+        const auto loadRetPtr = LoaderReturnClassInfo::get(env,loadRetObj);
+        const auto loadRet = (loadRetPtr && *loadRetPtr) ? loadRetPtr->get() : nullptr;
+
+        using CancelFunction = MapboxVectorTileParser::CancelFunction;
+        const CancelFunction loadRetCancel = [=](auto){return loadRet->cancel;};
+        const auto cancelFn = loadRet ? loadRetCancel : noCancel;
+
+        // Clip to the tile if the features came from an ancestor
+        const Point2d *clipLL = clipLLObj ? Point2dClassInfo::getClassInfo()->getObject(env,clipLLObj) : nullptr;
+        const Point2d *clipUR = clipURObj ? Point2dClassInfo::getClassInfo()->getObject(env,clipURObj) : nullptr;
+        const MbrD clipBounds = (clipLL && clipUR) ? MbrD(*clipLL,*clipUR) : MbrD();
+
+        PlatformInfo_Android platformInfo(env);
+        return inst->restyle(&platformInfo,features->vecObjs,tileData.get(),cancelFn,
+                             (clipLL && clipUR) ? &clipBounds : nullptr);
+    }
+    catch (...)
+    {
+        __android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Crash in MapboxVectorTileParser::restyleDataNative()");
+    }
+
+    return false;
+}
+
 extern "C"
 JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_MapboxVectorTileParser_parseData
     (JNIEnv *env, jobject obj, jbyteArray data, jobject vecTileDataObj, jobject loadRetObj)
@@ -294,6 +294,36 @@ JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_VectorTileData_getVector
     return nullptr;
 }
 
+extern "C"
+JNIEXPORT jint JNICALL Java_com_mousebird_maply_VectorTileData_getVectorCount(JNIEnv *env, jobject obj)
+{
+    try
+    {
+        if (const auto tileData = VectorTileDataClassInfo::get(env,obj))
+        {
+            return (jint)(*tileData)->vecObjs.size();
+        }
+    }
+    MAPLY_STD_JNI_CATCH()
+    return 0;
+}
+
+extern "C"
+JNIEXPORT void JNICALL Java_com_mousebird_maply_VectorTileData_keepVectorsOnly(JNIEnv *env, jobject obj)
+{
+    try
+    {
+        if (const auto tileData = VectorTileDataClassInfo::get(env,obj))
+        {
+            // Hang on to the parsed vectors, let go of everything built from them
+            auto vecObjs = std::move((*tileData)->vecObjs);
+            (*tileData)->clear();
+            (*tileData)->vecObjs = std::move(vecObjs);
+        }
+    }
+    MAPLY_STD_JNI_CATCH()
+}
+
 extern "C"
 JNIEXPORT jobject JNICALL Java_com_mousebird_maply_VectorTileData_getChangeSet(JNIEnv *env, jobject obj)
 {
@@ -92,6 +92,26 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_ImageTile_setBitmap
 	}
 }
 
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_ImageTile_setMappedFile
+  (JNIEnv *env, jobject obj, jstring pathStr, jlong offset, jint width, jint height, jint bytesPerPixel)
+{
+	try
+	{
+		ImageTile_AndroidRef *imageTile = ImageTileClassInfo::getClassInfo()->getObject(env,obj);
+		const JavaString path(env,pathStr);
+		if (!imageTile || !path)
+		    return false;
+
+		return (*imageTile)->setMappedFile(std::string(path),(long)offset,width,height,bytesPerPixel);
+	}
+	catch (...)
+	{
+		__android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Crash in ImageTile::setMappedFile()");
+	}
+
+	return false;
+}
+
 JNIEXPORT void JNICALL Java_com_mousebird_maply_ImageTile_setBorderSize
   (JNIEnv *env, jobject obj, jint borderSize)
 {
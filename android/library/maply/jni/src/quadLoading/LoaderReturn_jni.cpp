@@ -278,7 +278,7 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_LoaderReturn_deleteComponentObje
 }
 
 extern "C"
-JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_LoaderReturn_isCanceled(JNIEnv *env, jobject obj)
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_LoaderReturn_isCanceledNative(JNIEnv *env, jobject obj)
 {
 	try
 	{
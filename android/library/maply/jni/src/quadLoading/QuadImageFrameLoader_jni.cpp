@@ -44,6 +44,24 @@ JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_QuadImageFrameLoader_setLoad
     return false;
 }
 
+extern "C"
+JNIEXPORT jboolean JNICALL Java_com_mousebird_maply_QuadImageFrameLoader_setPrefetchNative
+  (JNIEnv *env, jobject obj, jint numFrames, jint direction, jboolean wrap)
+{
+    try
+    {
+        if (const auto loader = QuadImageFrameLoaderClassInfo::get(env,obj))
+        {
+            const int oldFrames = (*loader)->getPrefetchFrames();
+            (*loader)->setPrefetch(numFrames, direction, wrap);
+            // The window moves with the current frame, so any active window may have changed
+            return oldFrames > 0 || numFrames > 0;
+        }
+    }
+    MAPLY_STD_JNI_CATCH()
+    return false;
+}
+
 extern "C"
 JNIEXPORT void JNICALL Java_com_mousebird_maply_QuadImageFrameLoader_addFocus
   (JNIEnv *env, jobject obj)
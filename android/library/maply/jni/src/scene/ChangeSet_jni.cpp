@@ -105,6 +105,52 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_merge
 	}
 }
 
+// Rough estimate of the bytes a single change will upload to the GPU
+static long EstimateChangeBytes(ChangeRequest *change)
+{
+    if (auto texReq = dynamic_cast<AddTextureReq *>(change))
+    {
+        if (auto tex = dynamic_cast<Texture *>(texReq->getTex()))
+        {
+            if (tex->texData)
+                return tex->texData->getLen();
+            return (long)tex->getWidth() * tex->getHeight() * 4;
+        }
+    }
+    return 0;
+}
+
+// Set up the first numChanges changes and hand them to the scene, leaving the rest in place
+static void ProcessChanges(ChangeSetRef *changes,SceneRendererGLES_Android *sceneRender,Scene *scene,unsigned int numChanges)
+{
+    bool requiresFlush = false;
+    // Set up anything that needs to be set up
+    ChangeSet changesToAdd;
+    for (unsigned int ii = 0;ii<numChanges;ii++)
+    {
+        ChangeRequest *change = (*changes)->at(ii);
+        if (change)
+        {
+            requiresFlush |= change->needsFlush();
+            change->setupForRenderer(sceneRender->getRenderSetupInfo(),scene);
+            changesToAdd.push_back(change);
+        } else
+            // A NULL change request is just a flush request
+            requiresFlush = true;
+    }
+
+    // If anything needed a flush after that, let's do it
+    if (requiresFlush)
+    {
+        glFlush();
+    }
+
+//    __android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Processed %d changes",changesToAdd.size());
+
+    scene->addChangeRequests(changesToAdd);
+    (*changes)->erase((*changes)->begin(),(*changes)->begin()+numChanges);
+}
+
 JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_process
   (JNIEnv *env, jobject obj, jobject renderControlObj, jobject sceneObj)
 {
@@ -116,32 +162,7 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_process
 		if (!changes || !sceneRender || !scene)
 			return;
 
-	    bool requiresFlush = false;
-	    // Set up anything that needs to be set up
-	    ChangeSet changesToAdd;
-	    for (unsigned int ii = 0;ii<(*changes)->size();ii++)
-	    {
-	        ChangeRequest *change = (*changes)->at(ii);
-	        if (change)
-	        {
-	            requiresFlush |= change->needsFlush();
-	            change->setupForRenderer(sceneRender->getRenderSetupInfo(),scene);
-	            changesToAdd.push_back(change);
-	        } else
-	            // A NULL change request is just a flush request
-	            requiresFlush = true;
-	    }
-
-	    // If anything needed a flush after that, let's do it
-	    if (requiresFlush)
-	    {
-	        glFlush();
-	    }
-
-//	    __android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Processed %d changes",changesToAdd.size());
-
-	    scene->addChangeRequests(changesToAdd);
-		(*changes)->clear();
+		ProcessChanges(changes,sceneRender,scene,(*changes)->size());
 	}
 	catch (...)
 	{
@@ -149,6 +170,83 @@ JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_process
 	}
 }
 
+JNIEXPORT jint JNICALL Java_com_mousebird_maply_ChangeSet_processLimited
+  (JNIEnv *env, jobject obj, jobject renderControlObj, jobject sceneObj, jint maxChanges, jlong maxBytes)
+{
+	try
+	{
+		ChangeSetRef *changes = ChangeSetClassInfo::getClassInfo()->getObject(env,obj);
+		SceneRendererGLES_Android *sceneRender = SceneRendererInfo::getClassInfo()->getObject(env,renderControlObj);
+		Scene *scene = SceneClassInfo::getClassInfo()->getObject(env,sceneObj);
+		if (!changes || !sceneRender || !scene)
+			return 0;
+
+		// Always take at least one change so we make progress, then stop at whichever limit hits first
+		const unsigned int total = (*changes)->size();
+		unsigned int numChanges = 0;
+		long bytes = 0;
+		while (numChanges < total)
+		{
+			if (maxChanges > 0 && numChanges >= maxChanges)
+				break;
+			const long changeBytes = EstimateChangeBytes((*changes)->at(numChanges));
+			if (maxBytes > 0 && numChanges > 0 && bytes + changeBytes > maxBytes)
+				break;
+			bytes += changeBytes;
+			numChanges++;
+		}
+
+		ProcessChanges(changes,sceneRender,scene,numChanges);
+
+		return numChanges;
+	}
+	catch (...)
+	{
+		__android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Crash in ChangeSet::processLimited()");
+	}
+
+	return 0;
+}
+
+JNIEXPORT jint JNICALL Java_com_mousebird_maply_ChangeSet_count
+  (JNIEnv *env, jobject obj)
+{
+	try
+	{
+		ChangeSetRef *changes = ChangeSetClassInfo::getClassInfo()->getObject(env,obj);
+		if (!changes)
+			return 0;
+		return (*changes)->size();
+	}
+	catch (...)
+	{
+		__android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Crash in ChangeSet::count()");
+	}
+
+	return 0;
+}
+
+JNIEXPORT jlong JNICALL Java_com_mousebird_maply_ChangeSet_estimateBytes
+  (JNIEnv *env, jobject obj)
+{
+	try
+	{
+		ChangeSetRef *changes = ChangeSetClassInfo::getClassInfo()->getObject(env,obj);
+		if (!changes)
+			return 0;
+		long bytes = 0;
+		for (auto change : **changes)
+			bytes += EstimateChangeBytes(change);
+		return bytes;
+	}
+	catch (...)
+	{
+		__android_log_print(ANDROID_LOG_VERBOSE, "Maply", "Crash in ChangeSet::estimateBytes()");
+	}
+
+	return 0;
+}
+
 JNIEXPORT void JNICALL Java_com_mousebird_maply_ChangeSet_addTexture
   (JNIEnv *env, jobject obj, jobject texObj, jobject sceneObj, jint filterType)
 {
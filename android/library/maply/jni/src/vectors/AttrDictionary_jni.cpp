@@ -307,6 +307,112 @@ JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_AttrDictionary_getKeys(J
 	return nullptr;
 }
 
+extern "C"
+JNIEXPORT jobjectArray JNICALL Java_com_mousebird_maply_AttrDictionary_snapshotNative(JNIEnv *env, jobject obj, jobjectArray attrNamesObj)
+{
+	try
+	{
+		AttrDictClassInfo *classInfo = AttrDictClassInfo::getClassInfo();
+		MutableDictionary_AndroidRef *dict = classInfo->getObject(env,obj);
+		if (!dict)
+			return nullptr;
+
+		// Either the keys we were asked for or all of them
+		std::vector<std::string> keys;
+		jobjectArray keysObj = attrNamesObj;
+		if (attrNamesObj)
+		{
+			const jsize count = env->GetArrayLength(attrNamesObj);
+			keys.reserve(count);
+			for (jsize ii=0;ii<count;ii++)
+			{
+				auto keyObj = (jstring)env->GetObjectArrayElement(attrNamesObj,ii);
+				{
+					JavaString key(env,keyObj);
+					keys.emplace_back(key ? key.getCString() : "");
+				}
+				env->DeleteLocalRef(keyObj);
+			}
+		}
+		else
+		{
+			keys = (*dict)->getKeys();
+			keysObj = keys.empty() ? nullptr : BuildStringArray(env,keys);
+			if (!keysObj)
+				return nullptr;
+		}
+
+		// Everything is copied in here, so the Java side doesn't have to come back
+		const jsize count = (jsize)keys.size();
+		std::vector<jbyte> types(count,DictTypeNone);
+		std::vector<jlong> longs(count,0);
+		std::vector<jdouble> doubles(count,0.0);
+		jobjectArray stringsObj = env->NewObjectArray(count,env->FindClass("java/lang/String"),nullptr);
+		for (jsize ii=0;ii<count;ii++)
+		{
+			const std::string &key = keys[ii];
+			switch ((*dict)->getType(key))
+			{
+				case DictTypeString:
+				{
+					types[ii] = DictTypeString;
+					const std::string str = (*dict)->getString(key);
+					if (!str.empty())
+					{
+						jstring strObj = env->NewStringUTF(str.c_str());
+						env->SetObjectArrayElement(stringsObj,ii,strObj);
+						env->DeleteLocalRef(strObj);
+					}
+					break;
+				}
+				case DictTypeInt:
+					types[ii] = DictTypeInt;
+					longs[ii] = (*dict)->getInt(key,0);
+					doubles[ii] = (double)longs[ii];
+					break;
+				case DictTypeInt64:
+				case DictTypeIdentity:
+					// There's no separate Int64 type on the Java side
+					types[ii] = DictTypeIdentity;
+					longs[ii] = (jlong)(*dict)->getIdentity(key);
+					doubles[ii] = (*dict)->getDouble(key,0.0);
+					break;
+				case DictTypeDouble:
+					types[ii] = DictTypeDouble;
+					doubles[ii] = (*dict)->getDouble(key,0.0);
+					longs[ii] = (jlong)doubles[ii];
+					break;
+				case DictTypeObject:
+				case DictTypeDictionary:
+				case DictTypeArray:
+					types[ii] = (jbyte)(*dict)->getType(key);
+					break;
+				case DictTypeNone:
+					break;
+			}
+		}
+
+		jbyteArray typesObj = env->NewByteArray(count);
+		env->SetByteArrayRegion(typesObj,0,count,types.data());
+		jlongArray longsObj = env->NewLongArray(count);
+		env->SetLongArrayRegion(longsObj,0,count,longs.data());
+		jdoubleArray doublesObj = env->NewDoubleArray(count);
+		env->SetDoubleArrayRegion(doublesObj,0,count,doubles.data());
+
+		const jobject arrays[] = { keysObj, typesObj, longsObj, doublesObj, stringsObj };
+		jobjectArray retArray = env->NewObjectArray(5,env->FindClass("java/lang/Object"),nullptr);
+		for (int ii=0;ii<5;ii++)
+		{
+			env->SetObjectArrayElement(retArray,ii,arrays[ii]);
+			if (arrays[ii] != attrNamesObj)
+				env->DeleteLocalRef(arrays[ii]);
+		}
+		return retArray;
+	}
+	MAPLY_STD_JNI_CATCH()
+	return nullptr;
+}
+
 extern "C"
 JNIEXPORT void JNICALL Java_com_mousebird_maply_AttrDictionary_setString(JNIEnv *env, jobject obj, jstring attrNameObj, jstring strValObj)
 {
@@ -0,0 +1,176 @@
+package com.mousebird.maply;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import kotlin.Unit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Time to first tile for a MapboxKindaMap style bootstrap against a local mock server
+ * with injected latency.
+ * <br>
+ * The style sheet lists some sources and sprites, which are fetched once it arrives,
+ * then the first tile is fetched.  One request at a time approximates fetching each
+ * piece after the last.  The cached case runs against a directory filled in beforehand,
+ * with everything still fresh.
+ * <pre>
+ *   ./gradlew jmh -PjmhArgs="BootstrapFetcherBenchmark -p latency=50 -p numSources=3"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BootstrapFetcherBenchmark {
+
+    @Param({"50"})
+    public int latency;
+
+    @Param({"3"})
+    public int numSources;
+
+    @Param({"1", "4"})
+    public int concurrent;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private File baseDir;
+    private File warmDir;
+
+    // A fresh directory for each cold start
+    private File coldDir;
+    private int numColdDirs = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        final StringBuilder style = new StringBuilder();
+        for (int ii = 0; ii < numSources; ii++) {
+            style.append("/source").append(ii).append(".json,");
+        }
+        style.append("/sprite@2x.json,/sprite@2x.png");
+        final char[] sprite = new char[100000];
+        Arrays.fill(sprite, 'x');
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                final String path = (request.getPath() != null) ? request.getPath() : "";
+                final MockResponse response = new MockResponse().setHeadersDelay(latency, TimeUnit.MILLISECONDS);
+                if (!path.startsWith("/tiles")) {
+                    response.addHeader("Cache-Control", "max-age=3600");
+                }
+                if (path.equals("/style.json")) {
+                    return response.setBody(style.toString());
+                } else if (path.startsWith("/source")) {
+                    return response.setBody("/tiles/0/0/0.pbf");
+                } else if (path.startsWith("/sprite")) {
+                    return response.setBody(new String(sprite));
+                } else if (path.startsWith("/tiles")) {
+                    return response.setBody("tile");
+                }
+                return response.setResponseCode(404);
+            }
+        });
+        server.start();
+        client = new OkHttpClient();
+
+        baseDir = Files.createTempDirectory("bootstrap-bench").toFile();
+        warmDir = new File(baseDir, "warm");
+        timeToFirstTile(warmDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void makeColdDir() {
+        coldDir = new File(baseDir, "cold" + numColdDirs++);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+        client.dispatcher().executorService().shutdown();
+        MapboxStyleSnapshotBenchmark.deleteAll(baseDir);
+    }
+
+    @Benchmark
+    public void cold() throws Exception {
+        timeToFirstTile(coldDir);
+    }
+
+    @Benchmark
+    public void cached() throws Exception {
+        timeToFirstTile(warmDir);
+    }
+
+    private void timeToFirstTile(File cacheDir) throws Exception {
+        final BootstrapFetcher fetcher = new BootstrapFetcher(client, cacheDir, concurrent);
+        final CountDownLatch idle = new CountDownLatch(1);
+        final AtomicReference<String> tileURL = new AtomicReference<>();
+        final List<String> errors = new ArrayList<>();
+        fetcher.setOnError((desc, ex) -> {
+            synchronized (errors) {
+                errors.add(desc + ": " + ex);
+            }
+            return Unit.INSTANCE;
+        });
+        fetcher.setOnIdle(() -> {
+            idle.countDown();
+            return Unit.INSTANCE;
+        });
+        fetcher.fetch(request("/style.json"), "style sheet", data -> {
+            for (String path : new String(data).split(",")) {
+                fetcher.fetch(request(path), path, body -> {
+                    if (path.startsWith("/source")) {
+                        tileURL.compareAndSet(null, new String(body));
+                    }
+                    return Unit.INSTANCE;
+                });
+            }
+            return Unit.INSTANCE;
+        });
+        if (!idle.await(60, TimeUnit.SECONDS) || !errors.isEmpty() || tileURL.get() == null) {
+            throw new IllegalStateException("Bootstrap failed: " + errors);
+        }
+
+        // Tiles aren't bootstrap files, so they always go to the network
+        try (Response response = client.newCall(request(tileURL.get())).execute()) {
+            if (response.body() != null) {
+                response.body().bytes();
+            }
+        }
+    }
+
+    private Request request(String path) {
+        return new Request.Builder().url(server.url(path)).build();
+    }
+}
@@ -0,0 +1,271 @@
+package com.mousebird.maply;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import kotlin.Unit;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Time getting MapboxKindaMap's style state together from a local mock server,
+ * from the bootstrap fetcher's cache and from a style snapshot.
+ * <br>
+ * The cold start runs a BootstrapFetcher on an empty directory: the style sheet, then
+ * the TileJSON for each source and the sprites at the same time, as MapboxKindaMap does.
+ * It then writes a snapshot of what it fetched.  The cache start runs a new fetcher on the
+ * same directory, with everything still fresh.  The snapshot start reads the snapshot back,
+ * checks its inputs against the cache and decodes the sprite sheet from there, as
+ * MapboxKindaMap.startFromSnapshot does.
+ * The other two decode the sprite sheet as it comes in, with ImageIO standing in for
+ * BitmapFactory.
+ * <br>
+ * This is only the Java side of MapboxKindaMap.start().  The style set and TileJSON
+ * parsing happen in native code, which doesn't run here, so these aren't startup times.
+ * The style set is built in every case, so the snapshot saves less than this shows.
+ * On a device, compare MapboxKindaMap.setupTimeMillis with useStyleSnapshot on and off.
+ * <pre>
+ *   ./gradlew jmh -PjmhArgs="MapboxStyleSnapshotBenchmark -p latency=50 -p numSources=8"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapboxStyleSnapshotBenchmark {
+
+    @Param({"50"})
+    public int latency;
+
+    @Param({"8"})
+    public int numSources;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private File baseDir;
+    private final List<String> urls = new ArrayList<>();
+    private String styleURL;
+
+    // Filled in by the cold start the trial begins with
+    private File warmDir;
+    private File warmSnapshot;
+    private BootstrapFetcher warmFetcher;
+
+    // A fresh directory for each cold start
+    private File coldDir;
+    private int numColdDirs = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        final char[] filler = new char[200000];
+        Arrays.fill(filler, ' ');
+        final String styleJSON = "{\"version\":8,\"layers\":[" + new String(filler) + "]}";
+        final String tileJSON = "{\"minzoom\":0,\"maxzoom\":14,\"tiles\":[\"http://localhost/{z}/{x}/{y}.pbf\"]}";
+        final String spriteJSON = "{\"icon\":{\"x\":0,\"y\":0,\"width\":16,\"height\":16}}" + new String(filler, 0, 20000);
+        final byte[] spritePNG = spriteSheet(1024, 1024);
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                final String path = request.getPath();
+                final MockResponse response = new MockResponse().setHeadersDelay(latency, TimeUnit.MILLISECONDS)
+                        .addHeader("Cache-Control", "max-age=3600");
+                if (path.startsWith("/style")) {
+                    return response.setBody(styleJSON);
+                } else if (path.startsWith("/source")) {
+                    return response.setBody(tileJSON);
+                } else if (path.endsWith(".json")) {
+                    return response.setBody(spriteJSON);
+                } else if (path.endsWith(".png")) {
+                    return response.setBody(new okio.Buffer().write(spritePNG));
+                }
+                return response.setResponseCode(404);
+            }
+        });
+        server.start();
+        client = new OkHttpClient();
+
+        baseDir = Files.createTempDirectory("snapshot-bench").toFile();
+        urls.clear();
+        for (int ii = 0; ii < numSources; ii++) {
+            urls.add(server.url("/source" + ii + ".json").toString());
+        }
+        urls.add(server.url("/sprite@2x.json").toString());
+        urls.add(server.url("/sprite@2x.png").toString());
+        styleURL = server.url("/style.json").toString();
+
+        warmDir = new File(baseDir, "warm");
+        warmSnapshot = new File(warmDir, "style.snapshot");
+        warmFetcher = new BootstrapFetcher(client, new File(warmDir, "http"));
+        writeSnapshot(warmFetcher, runGraph(warmFetcher, styleURL, urls), styleURL, urls, warmSnapshot);
+    }
+
+    @Setup(Level.Invocation)
+    public void makeColdDir() {
+        coldDir = new File(baseDir, "cold" + numColdDirs++);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+        client.dispatcher().executorService().shutdown();
+        deleteAll(baseDir);
+    }
+
+    // Everything from the network, then a snapshot written for next time
+    @Benchmark
+    public void cold() throws Exception {
+        final BootstrapFetcher fetcher = new BootstrapFetcher(client, new File(coldDir, "http"));
+        writeSnapshot(fetcher, runGraph(fetcher, styleURL, urls), styleURL, urls, new File(coldDir, "style.snapshot"));
+    }
+
+    // Everything from the fetcher's cache
+    @Benchmark
+    public void cache() throws Exception {
+        final BootstrapFetcher fetcher = new BootstrapFetcher(client, new File(warmDir, "http"));
+        runGraph(fetcher, styleURL, urls);
+        if (fetcher.getNetworkFetches() != 0) {
+            throw new IllegalStateException("Cache start went to the network");
+        }
+    }
+
+    // What MapboxKindaMap.startFromSnapshot does
+    @Benchmark
+    public Object snapshot() throws IOException {
+        final MapboxStyleSnapshot snapshot = MapboxStyleSnapshot.read(warmSnapshot, styleURL);
+        final Map<String,byte[]> bodies = (snapshot != null) ?
+                snapshot.readInputs(url -> warmFetcher.cachedBody(HttpUrl.get(url))) : null;
+        if (bodies == null) {
+            throw new IllegalStateException("Snapshot didn't validate");
+        }
+        final BufferedImage sheet = ImageIO.read(new ByteArrayInputStream(bodies.get(snapshot.getSpriteSheetURL())));
+        if (sheet == null) {
+            throw new IllegalStateException("Invalid sprite image");
+        }
+        return sheet;
+    }
+
+    // Style sheet, then everything else at once, as MapboxKindaMap does, returning the digests of what came in
+    static Map<String,byte[]> runGraph(final BootstrapFetcher fetcher, String styleURL, final List<String> urls) throws InterruptedException {
+        final Map<String,byte[]> digests = Collections.synchronizedMap(new LinkedHashMap<String,byte[]>());
+        final CountDownLatch idle = new CountDownLatch(1);
+        fetcher.setOnIdle(() -> {
+            idle.countDown();
+            return Unit.INSTANCE;
+        });
+        fetcher.setOnError((desc, ex) -> {
+            throw new IllegalStateException(desc, ex);
+        });
+        fetcher.fetch(new Request.Builder().url(styleURL).build(), "style sheet", styleData -> {
+            digests.put(styleURL, MapboxStyleSnapshot.digest(styleData));
+            for (String url : urls) {
+                fetcher.fetch(new Request.Builder().url(url).build(), url, data -> {
+                    digests.put(url, MapboxStyleSnapshot.digest(data));
+                    if (url.endsWith(".png")) {
+                        decodeImage(data);
+                    }
+                    return Unit.INSTANCE;
+                });
+            }
+            return Unit.INSTANCE;
+        });
+        if (!idle.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Fetches didn't finish");
+        }
+        return digests;
+    }
+
+    // Snapshot what was fetched, as MapboxKindaMap does once everything's in
+    static void writeSnapshot(BootstrapFetcher fetcher, Map<String,byte[]> inputs,
+                              String styleURL, List<String> urls, File snapFile) throws IOException {
+        final List<MapboxStyleSnapshot.Source> sources = new ArrayList<>();
+        for (int ii = 0; ii < urls.size() - 2; ii++) {
+            sources.add(new MapboxStyleSnapshot.Source("source" + ii, null, new MapboxStyleSnapshot.TileSpec[] {
+                    new MapboxStyleSnapshot.TileSpec(0, 14, new String[] { "http://localhost/{z}/{x}/{y}.pbf" })
+            }));
+        }
+        final String spriteJSONURL = urls.get(urls.size() - 2);
+        final byte[] styleJSON = fetcher.cachedBody(HttpUrl.get(styleURL));
+        final byte[] spriteJSON = fetcher.cachedBody(HttpUrl.get(spriteJSONURL));
+        final MapboxStyleSnapshot snapshot = new MapboxStyleSnapshot(styleURL,
+                (styleJSON != null) ? new String(styleJSON, "UTF-8") : null,
+                (spriteJSON != null) ? new String(spriteJSON, "UTF-8") : null,
+                urls.get(urls.size() - 1), sources, inputs);
+        // MapboxKindaMap only keeps one that can be used
+        if (snapshot.readInputs(url -> fetcher.cachedBody(HttpUrl.get(url))) == null) {
+            throw new IllegalStateException("Fetched files weren't cached");
+        }
+        snapshot.write(snapFile);
+    }
+
+    // Noise, so it doesn't compress to nothing
+    static byte[] spriteSheet(int width, int height) throws IOException {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Random random = new Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (random.nextInt() & 0x0f0f0f) | 0xff000000);
+            }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    static void decodeImage(byte[] data) {
+        try {
+            if (ImageIO.read(new ByteArrayInputStream(data)) == null) {
+                throw new IllegalStateException("Invalid sprite image");
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Invalid sprite image", ex);
+        }
+    }
+
+    static void deleteAll(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
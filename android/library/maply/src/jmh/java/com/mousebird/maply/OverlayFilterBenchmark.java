@@ -0,0 +1,97 @@
+package com.mousebird.maply;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the ID set used to filter overlays out of a tile's objects with the nested loop it replaced.
+ * <br>
+ * Objects are stood in for by their IDs, which is all the filter looks at.
+ * <pre>
+ *   ./gradlew jmh -PjmhArgs="OverlayFilterBenchmark -p numObjs=5000 -p numOvls=1000"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OverlayFilterBenchmark {
+
+    @Param({"5000"})
+    public int numObjs;
+
+    @Param({"1000"})
+    public int numOvls;
+
+    private long[] regIDs;
+    private long[] ovlIDs;
+    private final LongHashSet scratch = new LongHashSet();
+
+    @Setup
+    public void setUp() {
+        // Object IDs come out of a counter, overlays are a scattered subset
+        final Random rand = new Random(42);
+        regIDs = new long[numObjs];
+        for (int ii = 0; ii < numObjs; ii++) {
+            regIDs[ii] = 100000 + ii;
+        }
+        ovlIDs = new long[numOvls];
+        for (int ii = 0; ii < numOvls; ii++) {
+            ovlIDs[ii] = regIDs[rand.nextInt(numObjs)];
+        }
+
+        final int nestedCount = nested(), setCount = set();
+        if (nestedCount != setCount) {
+            throw new IllegalStateException("Filters disagree: " + nestedCount + " vs " + setCount);
+        }
+    }
+
+    // What MapboxVectorInterpreter used to do
+    @Benchmark
+    public int nested() {
+        final ArrayList<Long> minusOvls = new ArrayList<>();
+        for (long regID : regIDs) {
+            boolean found = false;
+            for (long ovlID : ovlIDs) {
+                if (ovlID == regID) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found)
+                minusOvls.add(regID);
+        }
+        return minusOvls.size();
+    }
+
+    @Benchmark
+    public int set() {
+        scratch.clear();
+        scratch.ensureCapacity(ovlIDs.length);
+        for (long ovlID : ovlIDs) {
+            scratch.add(ovlID);
+        }
+        final ArrayList<Long> minusOvls = new ArrayList<>(regIDs.length);
+        for (long regID : regIDs) {
+            if (!scratch.contains(regID))
+                minusOvls.add(regID);
+        }
+        scratch.clear();
+        return minusOvls.size();
+    }
+}
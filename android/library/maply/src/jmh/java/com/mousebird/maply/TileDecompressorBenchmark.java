@@ -0,0 +1,94 @@
+package com.mousebird.maply;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compare the pooled decompressor with the per-tile stream approach it replaced.
+ * <br>
+ * Set tileDir to a directory of tile files (e.g. tile_data blobs pulled out of an MBTiles
+ * file with sqlite3) to measure real payloads.  Otherwise it uses generated data.
+ * <pre>
+ *   ./gradlew jmh -PjmhArgs="TileDecompressorBenchmark -p tileDir=/path/to/tiles"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TileDecompressorBenchmark {
+
+    @Param({""})
+    public String tileDir;
+
+    private final List<byte[]> tiles = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        tiles.clear();
+        final File[] files = tileDir.isEmpty() ? null : new File(tileDir).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                final byte[] data = Files.readAllBytes(file.toPath());
+                if (TileDecompressor.isGzip(data)) {
+                    tiles.add(data);
+                } else {
+                    tiles.add(TileDecompressorTest.gzip(data));
+                }
+            }
+        }
+        if (tiles.isEmpty()) {
+            for (int ii = 0; ii < 200; ii++) {
+                tiles.add(TileDecompressorTest.gzip(TileDecompressorTest.samplePayload(20000 + ii * 1500, ii)));
+            }
+        }
+    }
+
+    @Benchmark
+    public long pooled() {
+        long total = 0;
+        for (byte[] tile : tiles) {
+            total += TileDecompressor.decompress(tile, null).length;
+        }
+        return total;
+    }
+
+    // What MapboxVectorInterpreter used to do for each tile
+    @Benchmark
+    public long streams() throws IOException {
+        long total = 0;
+        for (byte[] tile : tiles) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(tile))) {
+                final ByteArrayOutputStream bout = new ByteArrayOutputStream(tile.length * 2);
+                final byte[] buffer = new byte[1024];
+                for (int count; (count = in.read(buffer)) > 0; ) {
+                    bout.write(buffer, 0, count);
+                }
+                total += bout.toByteArray().length;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,362 @@
+package com.mousebird.maply.sld.sldoperators;
+
+import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldstyleset.SLDParseHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compare compiled SLD filter programs with walking the filter tree the way the operators do.
+ * <br>
+ * AttrDictionary needs the native library, so features are plain maps here and the tree walk
+ * is a copy of the operators' logic over those maps.  Both sides build from the same rules.
+ * Map lookups are much cheaper than going through JNI, so this understates the gain from
+ * looking each attribute up once per feature.
+ * <pre>
+ *   ./gradlew jmh -PjmhArgs="SLDFilterBenchmark -p numFeatures=20000 -p numRules=60"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SLDFilterBenchmark {
+
+    @Param({"20000"})
+    public int numFeatures;
+
+    @Param({"60"})
+    public int numRules;
+
+    private List<Map<String,Object>> features;
+    private List<Node> rules;
+    private SLDFilterProgram[] programs;
+    private MapContext context;
+
+    @Setup
+    public void setUp() {
+        final Random rand = new Random(42);
+        features = makeFeatures(rand, numFeatures);
+        rules = makeRules(rand, numRules);
+
+        final SLDFilterCompiler compiler = new SLDFilterCompiler();
+        programs = new SLDFilterProgram[rules.size()];
+        for (int ii = 0; ii < rules.size(); ii++) {
+            programs[ii] = compiler.compile(Arrays.<SLDOperator>asList(rules.get(ii)));
+        }
+        context = new MapContext(compiler);
+
+        final int interpCount = interpreted(), compiledCount = compiled();
+        if (interpCount != compiledCount) {
+            throw new IllegalStateException("Filters disagree: " + interpCount + " vs " + compiledCount);
+        }
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int count = 0;
+        for (Map<String,Object> attrs : features) {
+            for (Node rule : rules) {
+                if (rule.interpret(attrs))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int count = 0;
+        for (Map<String,Object> attrs : features) {
+            context.reset(attrs);
+            for (SLDFilterProgram program : programs) {
+                if (program.evaluate(context))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    private static final String[] Classes = {"motorway", "trunk", "primary", "secondary", "tertiary", "residential", "service", "track"};
+    private static final String[] Surfaces = {"paved", "asphalt", "gravel", "dirt", "concrete"};
+    private static final String[] Names = {"Main Street", "Market Street", "High Road", "Mill Lane", "Park Avenue", "Station Road"};
+
+    // Roughly what a road layer looks like, with the usual mix of numbers and numbers as strings
+    private static List<Map<String,Object>> makeFeatures(Random rand, int count) {
+        final List<Map<String,Object>> features = new ArrayList<>(count);
+        for (int ii = 0; ii < count; ii++) {
+            final Map<String,Object> attrs = new HashMap<>();
+            attrs.put("class", Classes[rand.nextInt(Classes.length)]);
+            attrs.put("lanes", rand.nextInt(6) + 1);
+            attrs.put("admin_level", Integer.toString(rand.nextInt(8) + 2));
+            attrs.put("width", rand.nextDouble() * 30.0);
+            if (rand.nextBoolean())
+                attrs.put("surface", Surfaces[rand.nextInt(Surfaces.length)]);
+            if (rand.nextInt(3) > 0)
+                attrs.put("name", Names[rand.nextInt(Names.length)]);
+            features.add(attrs);
+        }
+        return features;
+    }
+
+    private static List<Node> makeRules(Random rand, int count) {
+        final List<Node> rules = new ArrayList<>(count);
+        for (int ii = 0; ii < count; ii++) {
+            final String roadClass = Classes[ii % Classes.length];
+            switch (ii % 4) {
+                case 0:
+                    rules.add(new And(new Compare("class", SLDFilterCompiler.EqualTo, roadClass),
+                            new Compare("lanes", SLDFilterCompiler.GreaterThanOrEqualTo, Integer.toString(rand.nextInt(4) + 1))));
+                    break;
+                case 1:
+                    rules.add(new And(new Compare("class", SLDFilterCompiler.EqualTo, roadClass),
+                            new Or(new Compare("surface", SLDFilterCompiler.EqualTo, Surfaces[rand.nextInt(Surfaces.length)]),
+                                    new IsNull("surface"))));
+                    break;
+                case 2:
+                    rules.add(new And(new Compare("class", SLDFilterCompiler.NotEqualTo, roadClass),
+                            new Between("width", Integer.toString(rand.nextInt(10)), Integer.toString(rand.nextInt(10) + 10)),
+                            new Compare("admin_level", SLDFilterCompiler.LessThanOrEqualTo, Integer.toString(rand.nextInt(8) + 2))));
+                    break;
+                case 3:
+                    rules.add(new Or(new Like("name", ".*Street"),
+                            new Not(new Compare("class", SLDFilterCompiler.EqualTo, roadClass))));
+                    break;
+            }
+        }
+        return rules;
+    }
+
+    // Looks up attributes in a map rather than an AttrDictionary
+    private static class MapContext extends SLDFilterContext {
+        private Map<String,Object> attrs;
+
+        MapContext(SLDFilterCompiler compiler) {
+            super(compiler.getSlotNames());
+        }
+
+        void reset(Map<String,Object> attrs) {
+            this.attrs = attrs;
+            nextFeature();
+        }
+
+        @Override
+        protected Object lookup(String name) {
+            return attrs.get(name);
+        }
+    }
+
+    // Filter nodes that can both compile themselves and do what the operators used to do
+    private static abstract class Node extends SLDOperator {
+        abstract boolean interpret(Map<String,Object> attrs);
+
+        @Override
+        public boolean evaluateWithAttrs(AttrDictionary attrs) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class And extends Node {
+        final List<SLDOperator> nodes;
+
+        And(Node... nodes) {
+            this.nodes = Arrays.<SLDOperator>asList(nodes);
+        }
+
+        boolean interpret(Map<String,Object> attrs) {
+            boolean result = true;
+            for (SLDOperator node : nodes)
+                result = result && ((Node)node).interpret(attrs);
+            return result;
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitLogical(true, nodes);
+        }
+    }
+
+    private static class Or extends And {
+        Or(Node... nodes) {
+            super(nodes);
+        }
+
+        boolean interpret(Map<String,Object> attrs) {
+            boolean result = false;
+            for (SLDOperator node : nodes)
+                result = result || ((Node)node).interpret(attrs);
+            return result;
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitLogical(false, nodes);
+        }
+    }
+
+    private static class Not extends Node {
+        final Node node;
+
+        Not(Node node) {
+            this.node = node;
+        }
+
+        boolean interpret(Map<String,Object> attrs) {
+            return !node.interpret(attrs);
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitNot(node);
+        }
+    }
+
+    private static class Compare extends Node {
+        final String name;
+        final int type;
+        final String literal;
+
+        Compare(String name, int type, String literal) {
+            this.name = name;
+            this.type = type;
+            this.literal = literal;
+        }
+
+        // Same as SLDBinaryComparisonOperator with a property on the left and a literal on the right
+        boolean interpret(Map<String,Object> attrs) {
+            Object leftResult = attrs.get(name);
+            Object rightResult = literal;
+            if ((leftResult instanceof Number) || (rightResult instanceof Number)) {
+                Number leftNumber, rightNumber;
+                if (leftResult instanceof Number)
+                    leftNumber = (Number)leftResult;
+                else if ((leftResult instanceof String) && SLDParseHelper.isStringNumeric((String)leftResult))
+                    leftNumber = Double.valueOf((String)leftResult);
+                else
+                    return false;
+                if (rightResult instanceof Number)
+                    rightNumber = (Number)rightResult;
+                else if ((rightResult instanceof String) && SLDParseHelper.isStringNumeric((String)rightResult))
+                    rightNumber = Double.valueOf((String)rightResult);
+                else
+                    return false;
+                double leftDouble = leftNumber.doubleValue();
+                double rightDouble = rightNumber.doubleValue();
+                switch (type) {
+                    case SLDFilterCompiler.EqualTo: return leftDouble == rightDouble;
+                    case SLDFilterCompiler.NotEqualTo: return leftDouble != rightDouble;
+                    case SLDFilterCompiler.LessThan: return leftDouble < rightDouble;
+                    case SLDFilterCompiler.GreaterThan: return leftDouble > rightDouble;
+                    case SLDFilterCompiler.LessThanOrEqualTo: return leftDouble <= rightDouble;
+                    case SLDFilterCompiler.GreaterThanOrEqualTo: return leftDouble >= rightDouble;
+                }
+                return false;
+            } else if ((leftResult instanceof String) && (rightResult instanceof String)) {
+                return test(((String)leftResult).compareTo((String)rightResult));
+            }
+            return false;
+        }
+
+        boolean test(int order) {
+            switch (type) {
+                case SLDFilterCompiler.EqualTo: return order == 0;
+                case SLDFilterCompiler.NotEqualTo: return order != 0;
+                case SLDFilterCompiler.LessThan: return order < 0;
+                case SLDFilterCompiler.GreaterThan: return order > 0;
+                case SLDFilterCompiler.LessThanOrEqualTo: return order <= 0;
+                case SLDFilterCompiler.GreaterThanOrEqualTo: return order >= 0;
+            }
+            return false;
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitCompare(type, true, compiler.propertyOperand(name), compiler.literalOperand(literal));
+        }
+    }
+
+    private static class IsNull extends Node {
+        final String name;
+
+        IsNull(String name) {
+            this.name = name;
+        }
+
+        boolean interpret(Map<String,Object> attrs) {
+            return attrs.get(name) == null;
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitIsNull(compiler.propertyOperand(name));
+        }
+    }
+
+    private static class Like extends Node {
+        final String name;
+        final Pattern pattern;
+
+        Like(String name, String regex) {
+            this.name = name;
+            this.pattern = Pattern.compile(regex);
+        }
+
+        boolean interpret(Map<String,Object> attrs) {
+            Object value = attrs.get(name);
+            return (value instanceof String) && pattern.matcher((String)value).matches();
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitLike(compiler.propertyOperand(name), pattern);
+        }
+    }
+
+    private static class Between extends Node {
+        final String name, lower, upper;
+
+        Between(String name, String lower, String upper) {
+            this.name = name;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        // Same as SLDIsBetweenOperator with literal boundaries
+        boolean interpret(Map<String,Object> attrs) {
+            Object value = attrs.get(name);
+            if (!(value instanceof Number))
+                return false;
+            if (!SLDParseHelper.isStringNumeric(lower) || !SLDParseHelper.isStringNumeric(upper))
+                return false;
+            double number = ((Number)value).doubleValue();
+            return Double.valueOf(lower) <= number && number <= Double.valueOf(upper);
+        }
+
+        @Override
+        public void compile(SLDFilterCompiler compiler) {
+            compiler.emitBetween(compiler.propertyOperand(name),
+                    compiler.literalOperand(lower), compiler.literalOperand(upper));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.mousebird.maply.sld.sldstyleset;
+
+import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterContext;
+import com.mousebird.maply.sld.sldoperators.SLDFilterProgram;
+import com.mousebird.maply.sld.sldoperators.SLDOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare running every rule in every named layer against each feature with looking the
+ * candidate rules up by layer and tile level first.
+ * <br>
+ * Made up to look like a large multi-layer SLD document: lots of named layers, each with rules
+ * split up by scale denominators.  Filters are compiled on all sides and run before the exact
+ * scale check, which stands in for the visibility the renderer applies later.  So the counts
+ * have to agree and the difference is the filters skipped and the result list being reused.
+ * <pre>
+ *   ./gradlew jmh -PjmhArgs="SLDRuleIndexBenchmark -p numFeatures=20000 -p numLayers=40 -p rulesPerLayer=30"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SLDRuleIndexBenchmark {
+
+    @Param({"20000"})
+    public int numFeatures;
+
+    @Param({"40"})
+    public int numLayers;
+
+    @Param({"30"})
+    public int rulesPerLayer;
+
+    private static final String[] Classes = {"motorway", "primary", "secondary", "tertiary", "residential", "track", "path"};
+
+    // A rule with its layer, scale range and compiled filter
+    private static class Rule {
+        String layerName;
+        Double minScale, maxScale;
+        SLDFilterProgram program;
+    }
+
+    private static class Feature {
+        String layerName;
+        int level;
+        Map<String,Object> attrs;
+    }
+
+    // Looks up attributes in a map rather than an AttrDictionary
+    private static class MapContext extends SLDFilterContext {
+        Map<String,Object> attrs;
+
+        MapContext(SLDFilterCompiler compiler) {
+            super(compiler.getSlotNames());
+        }
+
+        void reset(Map<String,Object> attrs) {
+            this.attrs = attrs;
+            nextFeature();
+        }
+
+        @Override
+        protected Object lookup(String name) {
+            return attrs.get(name);
+        }
+    }
+
+    private List<Feature> features;
+    private HashMap<String, List<Rule>> rulesByLayer;
+    private SLDRuleIndex<Rule> index;
+    private MapContext context;
+
+    @Setup
+    public void setUp() {
+        final Random rand = new Random(42);
+        final SLDFilterCompiler compiler = new SLDFilterCompiler();
+        final List<Rule> rules = makeRules(rand, compiler, numLayers, rulesPerLayer);
+        features = makeFeatures(rand, numFeatures, numLayers);
+        context = new MapContext(compiler);
+
+        // Grouped by layer, the way the style set holds them
+        rulesByLayer = new HashMap<String, List<Rule>>();
+        index = new SLDRuleIndex<Rule>();
+        for (Rule rule : rules) {
+            List<Rule> layerRules = rulesByLayer.get(rule.layerName);
+            if (layerRules == null) {
+                layerRules = new ArrayList<Rule>();
+                rulesByLayer.put(rule.layerName, layerRules);
+            }
+            layerRules.add(rule);
+            index.add(rule.layerName, rule, rule.minScale, rule.maxScale);
+        }
+        index.build(SLDRuleIndex.MaxLevel);
+
+        final int allCount = allRules(), layerCount = indexedByLayer(), indexedCount = indexedWithScale();
+        if (allCount != layerCount || allCount != indexedCount)
+            throw new IllegalStateException("Style counts differ: " + allCount + " vs " + layerCount + " vs " + indexedCount);
+    }
+
+    // The old way: walk every layer and rule, with a new list for each feature
+    @Benchmark
+    public int allRules() {
+        int count = 0;
+        for (Feature feature : features) {
+            List<Rule> styles = new ArrayList<Rule>();
+            context.reset(feature.attrs);
+            double scale = SLDRuleIndex.scaleForLevel(feature.level);
+            for (Map.Entry<String, List<Rule>> entry : rulesByLayer.entrySet()) {
+                if (!entry.getKey().equals(feature.layerName))
+                    continue;
+                for (Rule rule : entry.getValue()) {
+                    if (rule.program.evaluate(context) && appliesAtScale(rule, scale))
+                        styles.add(rule);
+                }
+            }
+            count += styles.size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int indexedByLayer() {
+        return runIndexed(false);
+    }
+
+    @Benchmark
+    public int indexedWithScale() {
+        return runIndexed(true);
+    }
+
+    private int runIndexed(boolean useScale) {
+        int count = 0;
+        final ArrayList<Rule> styles = new ArrayList<Rule>();
+        for (Feature feature : features) {
+            List<Rule> candidates = index.rules(feature.layerName, useScale ? feature.level : -1);
+            if (candidates.isEmpty())
+                continue;
+            context.reset(feature.attrs);
+            double scale = SLDRuleIndex.scaleForLevel(feature.level);
+            for (int ii = 0; ii < candidates.size(); ii++) {
+                // Checks the index never drops a rule that would have shown up
+                Rule rule = candidates.get(ii);
+                if (rule.program.evaluate(context) && appliesAtScale(rule, scale))
+                    styles.add(rule);
+            }
+            count += styles.size();
+            styles.clear();
+        }
+        return count;
+    }
+
+    private static boolean appliesAtScale(Rule rule, double scale) {
+        if (rule.minScale != null && scale < rule.minScale)
+            return false;
+        if (rule.maxScale != null && scale >= rule.maxScale)
+            return false;
+        return true;
+    }
+
+    private static List<Rule> makeRules(Random rand, SLDFilterCompiler compiler, int numLayers, int rulesPerLayer) {
+        List<Rule> rules = new ArrayList<Rule>();
+        for (int layer = 0; layer < numLayers; layer++) {
+            for (int ii = 0; ii < rulesPerLayer; ii++) {
+                Rule rule = new Rule();
+                rule.layerName = "layer" + layer;
+                // Most rules cover a few levels, some have no limits at all
+                if (rand.nextInt(5) != 0) {
+                    int minLevel = rand.nextInt(18);
+                    int maxLevel = minLevel + 1 + rand.nextInt(4);
+                    rule.maxScale = SLDRuleIndex.scaleForLevel(minLevel);
+                    rule.minScale = SLDRuleIndex.scaleForLevel(maxLevel);
+                }
+                final String className = Classes[rand.nextInt(Classes.length)];
+                final String lanes = Integer.toString(1 + rand.nextInt(4));
+                rule.program = compiler.compile(Collections.<SLDOperator>singletonList(new SLDOperator() {
+                    @Override
+                    public boolean evaluateWithAttrs(AttrDictionary attrs) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public void compile(SLDFilterCompiler compiler) {
+                        final SLDOperator isClass = compare("class", SLDFilterCompiler.EqualTo, className);
+                        final SLDOperator wide = compare("lanes", SLDFilterCompiler.GreaterThanOrEqualTo, lanes);
+                        List<SLDOperator> both = new ArrayList<SLDOperator>();
+                        both.add(isClass);
+                        both.add(wide);
+                        compiler.emitLogical(true, both);
+                    }
+                }));
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    private static SLDOperator compare(final String name, final int type, final String literal) {
+        return new SLDOperator() {
+            @Override
+            public boolean evaluateWithAttrs(AttrDictionary attrs) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void compile(SLDFilterCompiler compiler) {
+                compiler.emitCompare(type, true, compiler.propertyOperand(name), compiler.literalOperand(literal));
+            }
+        };
+    }
+
+    private static List<Feature> makeFeatures(Random rand, int numFeatures, int numLayers) {
+        List<Feature> features = new ArrayList<Feature>(numFeatures);
+        for (int ii = 0; ii < numFeatures; ii++) {
+            Feature feature = new Feature();
+            feature.layerName = "layer" + rand.nextInt(numLayers);
+            feature.level = rand.nextInt(20);
+            feature.attrs = new HashMap<String,Object>();
+            feature.attrs.put("class", Classes[rand.nextInt(Classes.length)]);
+            feature.attrs.put("lanes", 1 + rand.nextInt(6));
+            features.add(feature);
+        }
+        return features;
+    }
+}
@@ -128,6 +128,31 @@ public class AttrDictionary
 	 */
 	public native @Nullable String[] getKeys();
 
+	/**
+	 * Copy all the keys and their values out in one go.
+	 * Use this rather than a series of getters if you're looking at more than one or two.
+	 */
+	public @NotNull AttrSnapshot snapshot() {
+		return snapshot(null);
+	}
+
+	/**
+	 * Copy out the values for just the given keys, in that order.
+	 * Keys that aren't in the dictionary show up with type DictTypeNone.
+	 * @param attrNames Keys to copy, or null for all of them.
+	 */
+	public @NotNull AttrSnapshot snapshot(@Nullable String[] attrNames) {
+		final Object[] arrays = snapshotNative(attrNames);
+		if (arrays == null) {
+			return new AttrSnapshot(new String[0], new byte[0], new long[0], new double[0], new String[0]);
+		}
+		return new AttrSnapshot((String[])arrays[0], (byte[])arrays[1], (long[])arrays[2],
+		                        (double[])arrays[3], (String[])arrays[4]);
+	}
+
+	// Keys, types, integer values, double values and strings
+	private native Object[] snapshotNative(String[] attrNames);
+
 	/**
 	 * Set a string value.
 	 * @param attrName Name of the attribute to set.
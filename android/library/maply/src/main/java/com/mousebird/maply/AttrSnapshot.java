@@ -0,0 +1,242 @@
+/*  AttrSnapshot.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.mousebird.maply;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * A copy of the simple values in an AttrDictionary, made with one native call.
+ * <br>
+ * Every lookup on an AttrDictionary goes through JNI.  If you're going to look at more than
+ * a couple of attributes, take a snapshot with AttrDictionary.snapshot() and read from that.
+ * The getters return the same things the dictionary's do.
+ * <br>
+ * Strings and numbers are copied.  Nested dictionaries and arrays only have their type
+ * recorded, go back to the dictionary for those.  Changes to the dictionary after the
+ * snapshot is taken don't show up here.
+ */
+public class AttrSnapshot {
+
+    private static final AttrDictionaryEntry.Type[] Types = AttrDictionaryEntry.Type.values();
+
+    // Past this many keys we build a map for looking them up by name
+    private static final int MaxLinearKeys = 8;
+
+    private final String[] keys;
+    private final byte[] types;
+    private final long[] longs;
+    private final double[] doubles;
+    private final String[] strings;
+
+    private HashMap<String, Integer> indexByKey;
+
+    /**
+     * Construct from the arrays filled in on the native side.
+     * Entries are in the same order as the keys.  A key that wasn't in the dictionary has
+     * type DictTypeNone.  Integer values are in longs and doubles, doubles in both as well.
+     */
+    AttrSnapshot(String[] keys, byte[] types, long[] longs, double[] doubles, String[] strings) {
+        this.keys = keys;
+        this.types = types;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.strings = strings;
+    }
+
+    /**
+     * Number of entries, including any requested keys that weren't there.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Key at the given position.  If you asked for particular keys, they're in that order.
+     */
+    public @NotNull String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Position of the given key or -1 if it's not in the snapshot.
+     */
+    public int indexOf(@NotNull String attrName) {
+        if (keys.length <= MaxLinearKeys) {
+            for (int ii = 0; ii < keys.length; ii++) {
+                if (keys[ii].equals(attrName)) {
+                    return ii;
+                }
+            }
+            return -1;
+        }
+        if (indexByKey == null) {
+            HashMap<String, Integer> index = new HashMap<>(keys.length * 2);
+            for (int ii = keys.length - 1; ii >= 0; ii--) {
+                index.put(keys[ii], ii);
+            }
+            indexByKey = index;
+        }
+        final Integer idx = indexByKey.get(attrName);
+        return (idx != null) ? idx : -1;
+    }
+
+    /**
+     * Return all the keys that were in the dictionary.
+     */
+    public @NotNull String[] getKeys() {
+        int count = 0;
+        for (byte type : types) {
+            if (type != 0) {
+                count++;
+            }
+        }
+        if (count == keys.length) {
+            return keys.clone();
+        }
+        final String[] present = new String[count];
+        for (int ii = 0, jj = 0; ii < keys.length; ii++) {
+            if (types[ii] != 0) {
+                present[jj++] = keys[ii];
+            }
+        }
+        return present;
+    }
+
+    /**
+     * True if there's a field with the given name.
+     */
+    public boolean hasField(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return idx >= 0 && types[idx] != 0;
+    }
+
+    /**
+     * Type of the entry at the given position.
+     */
+    public @NotNull AttrDictionaryEntry.Type getType(int index) {
+        return Types[types[index]];
+    }
+
+    /**
+     * Type of the given entry, DictTypeNone if it's not there.
+     */
+    public @NotNull AttrDictionaryEntry.Type getType(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return (idx >= 0) ? Types[types[idx]] : AttrDictionaryEntry.Type.DictTypeNone;
+    }
+
+    /**
+     * Value at the given position as a string, an Integer or a Double.
+     * Null for anything else, as with AttrDictionary.get().
+     */
+    public @Nullable Object get(int index) {
+        switch (getType(index)) {
+            case DictTypeString:
+                return strings[index];
+            case DictTypeInt:
+                return (int)longs[index];
+            case DictTypeDouble:
+                return doubles[index];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Fetch an Object corresponding to the given attribute name.
+     * @return Returns a String, Integer or Double, or null if there was none.
+     */
+    public @Nullable Object get(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return (idx >= 0) ? get(idx) : null;
+    }
+
+    /**
+     * Value at the given position as a string.  Numbers are converted.
+     * @return Returns null if there's no value or it's empty.
+     */
+    public @Nullable String getString(int index) {
+        switch (getType(index)) {
+            case DictTypeString:
+                return strings[index];
+            case DictTypeInt:
+            case DictTypeIdentity:
+                return Long.toString(longs[index]);
+            case DictTypeDouble:
+                // Same formatting as the native side uses
+                return String.format(Locale.US, "%f", doubles[index]);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return a string corresponding to the given attribute name.
+     * @return Returns a string for the attribute or null if there was none.
+     */
+    public @Nullable String getString(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return (idx >= 0) ? getString(idx) : null;
+    }
+
+    /**
+     * Return an Integer corresponding to the given attribute name.
+     * @return Returns an Integer for the attribute or null if there was none.  Values that
+     *         aren't numbers come back as zero, as with the dictionary.
+     */
+    public @Nullable Integer getInt(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return (idx >= 0 && types[idx] != 0) ? (int)longs[idx] : null;
+    }
+
+    /**
+     * Fetch a double corresponding to the given attribute name.
+     * @return Returns a Double for the attribute or null if there was none.  Values that
+     *         aren't numbers come back as zero, as with the dictionary.
+     */
+    public @Nullable Double getDouble(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return (idx >= 0 && types[idx] != 0) ? doubles[idx] : null;
+    }
+
+    /**
+     * Fetch an identity corresponding to the given name.
+     */
+    public @Nullable Long getIdentity(@NotNull String attrName) {
+        final int idx = indexOf(attrName);
+        return (idx >= 0 && types[idx] != 0) ? longs[idx] : null;
+    }
+
+    /**
+     * Numeric value at the given position, or the default if it's missing or not a number.
+     */
+    public double getDouble(int index, double defVal) {
+        switch (getType(index)) {
+            case DictTypeInt:
+            case DictTypeIdentity:
+            case DictTypeDouble:
+                return doubles[index];
+            default:
+                return defVal;
+        }
+    }
+}
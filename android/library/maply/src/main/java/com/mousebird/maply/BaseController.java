@@ -47,8 +47,10 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.microedition.khronos.egl.EGL10;
 import javax.microedition.khronos.egl.EGLContext;
@@ -308,6 +310,11 @@ public abstract class BaseController implements RenderController.TaskManager, Re
 		 * Super special option.  You probably don't need that.
 		 */
 		public String loadLibraryName = null;
+		/**
+		 * How long, in milliseconds, shutdown will wait for the layer threads,
+		 * worker threads and tile fetchers to stop.
+		 */
+		public long shutdownTimeout = LayerThread.DefaultShutdownTimeout;
 	}
 
 	// Set if we're using a TextureView rather than a SurfaceView
@@ -393,6 +400,7 @@ public abstract class BaseController implements RenderController.TaskManager, Re
 			numWorkingThreads = settings.numWorkingThreads;
 			width = settings.width;
 			height = settings.height;
+			shutdownTimeout = settings.shutdownTimeout;
 		}
 
 		renderControl = new RenderController();
@@ -699,18 +707,37 @@ public abstract class BaseController implements RenderController.TaskManager, Re
 				layerThreadsToRemove.addAll(workerThreads);
 				workerThreads.clear();
 			}
+			// Shut down the layer threads and tile fetchers all at once, so their waits overlap
+			final long t0 = System.nanoTime();
+			final long deadline = t0 + shutdownTimeout * 1000000L;
+			final ArrayList<RemoteTileFetcher> tileFetchersToRemove = new ArrayList<>(tileFetchers);
+			tileFetchers.clear();
+			final CountDownLatch shutdownLatch = new CountDownLatch(layerThreadsToRemove.size() + tileFetchersToRemove.size());
+			for (RemoteTileFetcher tileFetcher : tileFetchersToRemove) {
+				shutdownInParallel(tileFetcher::shutdown, shutdownLatch);
+			}
 			for (LayerThread layerThread : layerThreadsToRemove) {
-				layerThread.shutdown();
+				shutdownInParallel(() -> layerThread.shutdown(deadline), shutdownLatch);
+			}
+			boolean threadsStopped = false;
+			try {
+				// Give the individual waits a little slack past the shared deadline
+				threadsStopped = shutdownLatch.await(Math.max(0, deadline - System.nanoTime()) + 250L * 1000000L, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException ex) {
+				// Stop waiting, but let the caller see it was interrupted
+				Thread.currentThread().interrupt();
+			}
+			lastShutdownTime = (System.nanoTime() - t0) / 1.0e9;
+			lastShutdownComplete = threadsStopped;
+			if (!threadsStopped) {
+				// Anything still running may be using the scene and renderer, so tearing those
+				// down would pull the memory out from under it.  Leak them instead.
+				Log.w("Maply", String.format("Gave up waiting for %d layer threads and fetchers to shut down " +
+						"after %.3fs, skipping native teardown", shutdownLatch.getCount(), lastShutdownTime));
 			}
 
 //			Log.d("Maply", "BaseController: LayerThreads shutdown");
 
-			// Shut down the tile fetchers
-			for (RemoteTileFetcher tileFetcher : tileFetchers) {
-				tileFetcher.shutdown();
-			}
-			tileFetchers.clear();
-
 			if (renderWrapper != null) {
 				renderWrapper.stopRendering();
 			}
@@ -720,42 +747,46 @@ public abstract class BaseController implements RenderController.TaskManager, Re
 				metroThread = null;
 			}
 
-			if (scene != null) {
-				scene.teardownGL();
-				scene = null;
-			}
+			if (threadsStopped) {
+				if (scene != null) {
+					scene.teardownGL();
+				}
 
-			if (coordAdapter != null) {
-				coordAdapter.shutdown();
-			}
-			if (renderControl != null) {
-				renderControl.shutdown();
-			}
+				if (coordAdapter != null) {
+					coordAdapter.shutdown();
+				}
+				if (renderControl != null) {
+					renderControl.shutdown();
+				}
 
-			// Shut down the contexts
-			final EGL10 egl = (EGL10) EGLContext.getEGL();
-			synchronized (glContexts) {
-				for (ContextInfo context : glContexts) {
-					egl.eglDestroySurface(renderControl.display, context.eglDrawSurface);
-					egl.eglDestroyContext(renderControl.display, context.eglContext);
+				// Shut down the contexts
+				final EGL10 egl = (EGL10) EGLContext.getEGL();
+				synchronized (glContexts) {
+					for (ContextInfo context : glContexts) {
+						egl.eglDestroySurface(renderControl.display, context.eglDrawSurface);
+						egl.eglDestroyContext(renderControl.display, context.eglContext);
+					}
+					glContexts.clear();
 				}
-				glContexts.clear();
-			}
 
-			// And the main one
-			if (renderWrapper != null && renderWrapper.maplyRender != null && glContext != null) {
-				egl.eglDestroySurface(renderControl.display, glContext.eglDrawSurface);
-				egl.eglDestroyContext(renderControl.display, glContext.eglContext);
-				glContext = null;
-			}
+				// And the main one
+				if (renderWrapper != null && renderWrapper.maplyRender != null && glContext != null) {
+					egl.eglDestroySurface(renderControl.display, glContext.eglDrawSurface);
+					egl.eglDestroyContext(renderControl.display, glContext.eglContext);
+					glContext = null;
+				}
 
-			// Clean up OpenGL ES resources
-			setEGLContext(null);
+				// Clean up OpenGL ES resources
+				setEGLContext(null);
 
-			if (renderWrapper != null) {
-				renderWrapper.shutdown();
-				renderWrapper = null;
+				if (renderWrapper != null) {
+					renderWrapper.shutdown();
+				}
+			} else {
+				setEGLContext(null);
 			}
+			scene = null;
+			renderWrapper = null;
 
 			if (httpClient != null)
 			{
@@ -778,6 +809,65 @@ public abstract class BaseController implements RenderController.TaskManager, Re
 		}
 	}
 
+	private long shutdownTimeout = LayerThread.DefaultShutdownTimeout;
+
+	/**
+	 * Set how long, in milliseconds, shutdown will wait for the layer threads,
+	 * worker threads and tile fetchers to stop.
+	 * <p>
+	 * If they haven't all stopped by then, the scene and renderer are left alone rather
+	 * than torn down underneath them.
+	 */
+	public void setShutdownTimeout(long timeout)
+	{
+		shutdownTimeout = timeout;
+	}
+
+	/**
+	 * How long, in milliseconds, shutdown will wait for the threads to stop.
+	 */
+	public long getShutdownTimeout()
+	{
+		return shutdownTimeout;
+	}
+
+	private double lastShutdownTime = 0.0;
+	private boolean lastShutdownComplete = true;
+
+	/**
+	 * False if the last shutdown gave up waiting for threads to stop and skipped
+	 * tearing down the scene and renderer.
+	 */
+	public boolean getLastShutdownComplete()
+	{
+		return lastShutdownComplete;
+	}
+
+	/**
+	 * How long, in seconds, the last shutdown spent waiting for the layer threads,
+	 * worker threads and tile fetchers to stop.
+	 */
+	public double getLastShutdownTime()
+	{
+		return lastShutdownTime;
+	}
+
+	// Run one piece of the shutdown on its own thread, counting down the latch when it's done
+	private static void shutdownInParallel(Runnable run, CountDownLatch latch)
+	{
+		final Thread thread = new Thread(() -> {
+			try {
+				run.run();
+			} catch (Exception ex) {
+				Log.w("Maply", "Error during shutdown", ex);
+			} finally {
+				latch.countDown();
+			}
+		}, "Maply Shutdown");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
 	// Set null after startup
 	private @Nullable ArrayList<Runnable> surfaceTasks = new ArrayList<>();
 	
@@ -0,0 +1,227 @@
+/*
+ *  BitmapPool.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pool of bitmaps, keyed by size and format, for decoding tiles into.
+ * <br>
+ * Tile images are nearly always the same size, so rather than allocating a
+ * new bitmap for every tile we hand back an old one for BitmapFactory to
+ * decode into via inBitmap.  Bitmaps are returned once their pixels have been
+ * copied elsewhere, e.g. into an ImageTile.
+ * <br>
+ * The pool holds at most maxBytes worth of bitmaps, dropping the least
+ * recently used size first.
+ */
+public class BitmapPool
+{
+    /**
+     * Stats on how the pool is being used.
+     */
+    public static class Stats
+    {
+        // Requests satisfied from the pool
+        public int hits;
+
+        // Requests with nothing to hand out
+        public int misses;
+
+        // Bitmaps handed back to us
+        public int returned;
+
+        // Bitmaps we let go of because we were full
+        public int evicted;
+
+        // Bytes currently held
+        public long bytes;
+
+        // Print out the stats
+        public void dump(String name)
+        {
+            Log.v("Maply", String.format("---BitmapPool %s Stats---",name));
+            Log.v("Maply", String.format("   Hits = %d",hits));
+            Log.v("Maply", String.format("   Misses = %d",misses));
+            Log.v("Maply", String.format("   Returned = %d",returned));
+            Log.v("Maply", String.format("   Evicted = %d",evicted));
+            Log.v("Maply", String.format("   Held = %dk",bytes / 1024));
+        }
+    }
+
+    private static class Key
+    {
+        final int width, height;
+        final Bitmap.Config config;
+
+        Key(int width, int height, Bitmap.Config config)
+        {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)o;
+            return width == other.width && height == other.height && config == other.config;
+        }
+
+        @Override public int hashCode()
+        {
+            return (width * 31 + height) * 31 + ((config != null) ? config.hashCode() : 0);
+        }
+    }
+
+    private static BitmapPool shared;
+
+    /**
+     * The pool used by the image loaders unless they're given another one.
+     * Sized for a few dozen 256x256 tiles.
+     */
+    public static synchronized BitmapPool getShared()
+    {
+        if (shared == null) {
+            shared = new BitmapPool(8 * 1024 * 1024);
+        }
+        return shared;
+    }
+
+    // Access ordered, so the first entry is the least recently used size
+    private final LinkedHashMap<Key,ArrayDeque<Bitmap>> bitmaps = new LinkedHashMap<>(8, 0.75f, true);
+    private final Stats stats = new Stats();
+    private long maxBytes;
+
+    /**
+     * Construct with the most bytes worth of bitmaps to hold on to.
+     */
+    public BitmapPool(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Change the most bytes worth of bitmaps held, letting some go if need be.
+     */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    public synchronized long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * Take a bitmap of the given size and format out of the pool.
+     *
+     * @return A mutable bitmap with undefined contents, or null if we don't have one.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config)
+    {
+        final ArrayDeque<Bitmap> queue = bitmaps.get(new Key(width, height, config));
+        while (queue != null && !queue.isEmpty()) {
+            final Bitmap bitmap = queue.pop();
+            stats.bytes -= bitmap.getAllocationByteCount();
+            if (!bitmap.isRecycled()) {
+                stats.hits++;
+                return bitmap;
+            }
+        }
+        stats.misses++;
+        return null;
+    }
+
+    /**
+     * Hand a bitmap back to the pool.
+     * The caller must not touch it afterwards.
+     */
+    public synchronized void release(Bitmap bitmap)
+    {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        final long size = bitmap.getAllocationByteCount();
+        if (size > maxBytes) {
+            return;
+        }
+        final Key key = new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> queue = bitmaps.get(key);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            bitmaps.put(key, queue);
+        }
+        queue.push(bitmap);
+        stats.returned++;
+        stats.bytes += size;
+        trim();
+    }
+
+    /**
+     * Let go of everything in the pool.
+     */
+    public synchronized void clear()
+    {
+        bitmaps.clear();
+        stats.bytes = 0;
+    }
+
+    /**
+     * Return a copy of the current stats.
+     */
+    public synchronized Stats getStats()
+    {
+        final Stats ret = new Stats();
+        ret.hits = stats.hits;
+        ret.misses = stats.misses;
+        ret.returned = stats.returned;
+        ret.evicted = stats.evicted;
+        ret.bytes = stats.bytes;
+        return ret;
+    }
+
+    // Drop bitmaps from the least recently used sizes until we fit
+    private void trim()
+    {
+        final Iterator<Map.Entry<Key,ArrayDeque<Bitmap>>> it = bitmaps.entrySet().iterator();
+        while (stats.bytes > maxBytes && it.hasNext()) {
+            final ArrayDeque<Bitmap> queue = it.next().getValue();
+            while (stats.bytes > maxBytes && !queue.isEmpty()) {
+                final Bitmap bitmap = queue.removeLast();
+                stats.bytes -= bitmap.getAllocationByteCount();
+                stats.evicted++;
+            }
+            if (queue.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+}
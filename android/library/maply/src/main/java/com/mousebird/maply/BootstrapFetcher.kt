@@ -0,0 +1,296 @@
+/*  BootstrapFetcher.kt
+ *  WhirlyGlobe-MaplyComponent
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.mousebird.maply
+
+import okhttp3.*
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Fetches the files a map needs before it can start loading tiles,
+ * such as the style sheet, the TileJSON for its sources and the sprites.
+ *
+ * These form a small dependency graph: what to fetch next is only known once
+ * an earlier file arrives.  Fetch the children from the parent's callback and
+ * they all run at once, up to [maxConcurrent] at a time.  [onIdle] is called
+ * once nothing is left, which, since children are added before their parent
+ * finishes, means the whole graph is done.
+ *
+ * With a cache directory, requests go through an OkHttp disk cache there,
+ * shared by every fetcher using it.  Fresh copies are used as they are and
+ * stale ones revalidated, by the server's rules.  If the server can't be
+ * reached, or fails, whatever copy the cache has is used instead, however
+ * stale, so a map that's been loaded once can start offline.
+ * Local files can go through [fetchFile] to be counted along with the rest.
+ */
+class BootstrapFetcher @JvmOverloads constructor(
+        baseClient: OkHttpClient,
+        cacheDir: File?,
+        maxConcurrent: Int = 4,
+        cacheSize: Long = DefaultCacheSize) {
+
+    companion object {
+        const val DefaultCacheSize = 32L * 1024 * 1024
+
+        // OkHttp doesn't allow more than one cache on a directory
+        private val caches = HashMap<String, Cache>()
+
+        /**
+         * The HTTP cache used for the given directory.
+         */
+        @JvmStatic
+        fun sharedCache(dir: File, maxSize: Long = DefaultCacheSize): Cache = synchronized(caches) {
+            caches.getOrPut(dir.absolutePath) { Cache(dir, maxSize) }
+        }
+    }
+
+    /**
+     * The HTTP cache, if there is one.
+     */
+    val cache: Cache? = cacheDir?.let { sharedCache(it, cacheSize) }
+
+    /**
+     * Called with a description of anything that goes wrong.
+     */
+    var onError: (String, Exception?) -> Unit = { _, _ -> }
+
+    /**
+     * Called on a fetch thread when the last outstanding fetch is done.
+     */
+    var onIdle: () -> Unit = { }
+
+    /**
+     * Number of fetches started and not yet done.
+     */
+    val pendingCount: Int get() = pending.get()
+
+    /**
+     * Number of responses that came from the cache or local files.
+     */
+    val cacheHits: Int get() = hits.get()
+
+    /**
+     * Number of responses that had to go to the network.
+     */
+    val networkFetches: Int get() = fetches.get()
+
+    // Same connection pool and threads as the base, but our own limit on requests
+    private val dispatcher = Dispatcher(baseClient.dispatcher.executorService).apply {
+        this.maxRequests = maxConcurrent.coerceAtLeast(1)
+        this.maxRequestsPerHost = maxConcurrent.coerceAtLeast(1)
+    }
+
+    private val client: OkHttpClient = baseClient.newBuilder().dispatcher(dispatcher).cache(cache).build()
+
+    private val pending = AtomicInteger(0)
+    private val hits = AtomicInteger(0)
+    private val fetches = AtomicInteger(0)
+    private val calls = HashSet<Call>()
+    @Volatile private var cancelled = false
+
+    /**
+     * Fetch the given request, passing the body to [onData] on a fetch thread.
+     * Anything thrown from [onData], a failure or an empty response is passed to [onError].
+     * @param what Describes the request in error messages.
+     */
+    fun fetch(request: Request, what: String, onData: (ByteArray) -> Unit) {
+        if (cancelled) {
+            return
+        }
+        pending.incrementAndGet()
+
+        if (cache == null) {
+            enqueue(request, what, onData, null)
+            return
+        }
+        enqueue(request, what, onData) { desc, ex ->
+            // Couldn't get to the server, so settle for any copy we have, however old
+            val offline = request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build()
+            enqueue(offline, what, onData) { _, _ ->
+                fail(desc, ex)
+                done()
+            }
+        }
+    }
+
+    /**
+     * Read a local file on a fetch thread, passing the contents to [onData].
+     * OkHttp doesn't do `file:` URLs, but this way they count toward [onIdle].
+     */
+    fun fetchFile(file: File, what: String, onData: (ByteArray) -> Unit) {
+        if (cancelled) {
+            return
+        }
+        pending.incrementAndGet()
+        read(file, what, onData)
+    }
+
+    /**
+     * Run some other work on a fetch thread, counted toward [onIdle] like a fetch.
+     * Fetches started from [task] are added before it finishes, as with [onData].
+     * Anything thrown is passed to [onError].
+     * @param what Describes the work in error messages.
+     */
+    fun execute(what: String, task: () -> Unit) {
+        if (cancelled) {
+            return
+        }
+        pending.incrementAndGet()
+        try {
+            dispatcher.executorService.execute {
+                try {
+                    task()
+                } catch (ex: Exception) {
+                    fail("Failed to $what", ex)
+                }
+                done()
+            }
+        } catch (ex: Exception) {
+            fail("Failed to $what", ex)
+            done()
+        }
+    }
+
+    /**
+     * The body of the cached response for the given URL, if it's still fresh by
+     * the server's rules.  This doesn't go to the network, but does block.
+     */
+    fun cachedBody(url: HttpUrl): ByteArray? {
+        if (cache == null) {
+            return null
+        }
+        val request = Request.Builder().url(url)
+                .cacheControl(CacheControl.Builder().onlyIfCached().build()).build()
+        return try {
+            client.newCall(request).execute().use { response ->
+                if (response.isSuccessful) response.body?.bytes() else null
+            }
+        } catch (ex: IOException) {
+            null
+        }
+    }
+
+    /**
+     * Cancel everything outstanding and don't start anything else.
+     * [onError] and [onIdle] aren't called after this.
+     */
+    fun cancel() {
+        cancelled = true
+        synchronized(calls) {
+            calls.toList().also { calls.clear() }
+        }.forEach { it.cancel() }
+    }
+
+    // Read a file on a fetch thread
+    private fun read(file: File, what: String, onData: (ByteArray) -> Unit) {
+        try {
+            dispatcher.executorService.execute {
+                try {
+                    val data = file.readBytes()
+                    hits.incrementAndGet()
+                    deliver(data, what, onData)
+                } catch (ex: Exception) {
+                    fail("Failed to read $what", ex)
+                }
+                done()
+            }
+        } catch (ex: Exception) {
+            fail("Failed to read $what", ex)
+            done()
+        }
+    }
+
+    // If the request can't get a response, or gets a server error, [onUnavailable] is
+    // called with what went wrong instead of [onError], and takes over our place in the
+    // pending count.  That's also how OkHttp reports a cache-only request that missed.
+    private fun enqueue(request: Request, what: String, onData: (ByteArray) -> Unit,
+                        onUnavailable: ((String, Exception?) -> Unit)?) {
+        if (cancelled) {
+            done()
+            return
+        }
+        val call = client.newCall(request)
+        synchronized(calls) {
+            calls.add(call)
+        }
+        call.enqueue(object : Callback {
+            override fun onFailure(call: Call, e: IOException) {
+                synchronized(calls) { calls.remove(call) }
+                unavailable("Error fetching $what", e)
+            }
+
+            override fun onResponse(call: Call, response: Response) {
+                synchronized(calls) { calls.remove(call) }
+                var error: String? = null
+                try {
+                    response.use {
+                        if (response.code >= 500 && onUnavailable != null) {
+                            error = "Request for $what failed: ${response.code} ${response.message}"
+                        } else if (!response.isSuccessful) {
+                            fail("Request for $what failed: ${response.code} ${response.message}", null)
+                        } else {
+                            val data = response.body?.bytes()
+                            if (response.networkResponse != null) {
+                                fetches.incrementAndGet()
+                            } else {
+                                hits.incrementAndGet()
+                            }
+                            deliver(data, what, onData)
+                        }
+                    }
+                } catch (ex: Exception) {
+                    fail("Error reading $what", ex)
+                }
+                error?.let { unavailable(it, null) } ?: done()
+            }
+
+            private fun unavailable(desc: String, ex: Exception?) {
+                if (onUnavailable != null && !cancelled) {
+                    onUnavailable(desc, ex)
+                } else {
+                    fail(desc, ex)
+                    done()
+                }
+            }
+        })
+    }
+
+    private fun deliver(data: ByteArray?, what: String, onData: (ByteArray) -> Unit) {
+        if (data == null || data.isEmpty()) {
+            fail("Empty response for $what", null)
+            return
+        }
+        try {
+            onData(data)
+        } catch (ex: Exception) {
+            fail("Failed to process $what", ex)
+        }
+    }
+
+    private fun fail(desc: String, ex: Exception?) {
+        if (!cancelled) {
+            onError(desc, ex)
+        }
+    }
+
+    private fun done() {
+        if (pending.decrementAndGet() == 0 && !cancelled) {
+            onIdle()
+        }
+    }
+}
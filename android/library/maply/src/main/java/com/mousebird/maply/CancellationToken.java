@@ -0,0 +1,48 @@
+/*
+ *  CancellationToken.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+/**
+ * A Java side cancellation flag for a single tile load.
+ * <br>
+ * Each TileFetchRequest carries one of these.  It's set when the loader cancels
+ * the fetch and passed along to the LoaderReturn, so the interpreters can stop
+ * decoding a tile that's no longer wanted without a trip through JNI.
+ */
+public class CancellationToken
+{
+    private volatile boolean canceled = false;
+
+    /**
+     * Mark the work as canceled.  There's no going back.
+     */
+    public void cancel()
+    {
+        canceled = true;
+    }
+
+    /**
+     * True if the work has been canceled.  This is cheap, check it often.
+     */
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+}
@@ -50,6 +50,17 @@ public class ChangeSet
 	// Create whatever objects want to be created.
 	// We're assuming a valid EGL context is in place
 	public native void process(RenderController renderControl,Scene scene);
+
+	// Process changes from the front of the set until either limit is reached, leaving
+	// the rest in place for a later call.  At least one change is always processed.
+	// Limits of zero or less are ignored.  Returns the number of changes processed.
+	public native int processLimited(RenderController renderControl,Scene scene,int maxChanges,long maxBytes);
+
+	// Number of change requests in the set
+	public native int count();
+
+	// Rough estimate of the bytes the changes in this set will upload (textures, mostly)
+	public native long estimateBytes();
 	
 	static
 	{
@@ -0,0 +1,237 @@
+/*  CoroutineTileFetcher.kt
+ *  WhirlyGlobe-MaplyComponent
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.mousebird.maply
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.firstOrNull
+import java.util.*
+
+/**
+ * Coroutine based tile fetcher, meant for subclassing.
+ *
+ * Like the SimpleTileFetcher, but [dataForTile] is a suspend function and up to
+ * [maxConcurrentFetches] of them run at once.  That suits sources that already
+ * suspend, such as Room, Ktor or some IPC, which would otherwise be serialized
+ * on a single fetcher thread.
+ *
+ * Requests are started in priority order.  Cancelling a request with
+ * [cancelTileFetches] cancels its coroutine, and [shutdown] cancels the lot.
+ */
+abstract class CoroutineTileFetcher @JvmOverloads constructor(
+        private val name: String,
+        maxConcurrentFetches: Int = 4,
+        dispatcher: CoroutineDispatcher = Dispatchers.Default) : TileFetcher {
+
+    var minZoom = -1
+    var maxZoom = -1
+
+    /**
+     * The maximum number of [dataForTile] calls running at once.
+     * Raising it starts more pending requests right away.
+     */
+    var maxConcurrentFetches: Int = maxConcurrentFetches.coerceAtLeast(1)
+        set(value) {
+            field = value.coerceAtLeast(1)
+            startPending()
+        }
+
+    /**
+     * If set, null data is passed along as a success rather than a failure.
+     * This is helpful when you have sparse data sets.
+     */
+    var neverFail = false
+
+    /**
+     * We don't need to describe a remote URL, so the fetch info is just the tile ID.
+     */
+    class CoroutineTileInfo(inMinZoom: Int, inMaxZoom: Int) : TileInfoNew(inMinZoom, inMaxZoom) {
+        override fun fetchInfoForTile(tileID: TileID, flipY: Boolean): Any = CoroutineTileFetchInfo(tileID)
+    }
+
+    /**
+     * Fetch info handed back to us in the fetch requests.
+     */
+    class CoroutineTileFetchInfo(val tileID: TileID)
+
+    /**
+     * The tile info is used by the quad paging logic to figure out
+     * min/max zoom level and such.
+     */
+    val tileInfo: CoroutineTileInfo by lazy { CoroutineTileInfo(minZoom, maxZoom) }
+
+    /**
+     * Fill this in in your subclass.
+     *
+     * Runs on the fetcher's dispatcher and may suspend.  The coroutine is cancelled
+     * if the tile is no longer wanted, so long operations should be cancellable.
+     *
+     * @return The data for the tile, or null if there isn't any.
+     */
+    abstract suspend fun dataForTile(fetchInfo: Any, tileID: TileID): ByteArray?
+
+    override fun getFetcherName(): String = name
+
+    override fun startTileFetches(requests: Array<TileFetchRequest>) {
+        synchronized(lock) {
+            if (!valid) {
+                return
+            }
+            for (request in requests) {
+                val tileID = (request.fetchInfo as? CoroutineTileFetchInfo)?.tileID ?: continue
+                val entry = Entry(request, tileID, request.priority, request.importance, nextSeq++)
+                entries[request] = entry
+                pending.add(entry)
+            }
+        }
+        startPending()
+    }
+
+    override fun updateTileFetch(fetchID: Any?, priority: Int, importance: Float): Any? {
+        synchronized(lock) {
+            val entry = entries[fetchID] ?: return null
+            // Only waiting requests can be reordered
+            if (pending.remove(entry)) {
+                entry.priority = priority
+                entry.importance = importance
+                pending.add(entry)
+            }
+        }
+        return fetchID
+    }
+
+    override fun cancelTileFetches(fetchIDs: Array<out Any>?) {
+        fetchIDs ?: return
+        val toCancel = ArrayList<Job>()
+        synchronized(lock) {
+            for (fetchID in fetchIDs) {
+                val entry = entries.remove(fetchID) ?: continue
+                pending.remove(entry)
+                // If it's on its way to starting, start() sees this instead
+                entry.canceled = true
+                entry.job?.let { toCancel.add(it) }
+            }
+        }
+        toCancel.forEach { it.cancel() }
+    }
+
+    override fun shutdown() {
+        synchronized(lock) {
+            valid = false
+            pending.clear()
+            entries.clear()
+        }
+        scope.cancel()
+    }
+
+    /**
+     * Number of requests waiting to start.
+     */
+    val numPending: Int get() = synchronized(lock) { pending.size }
+
+    /**
+     * Number of [dataForTile] calls in progress.
+     */
+    val numActive: Int get() = synchronized(lock) { active }
+
+    // Start as many waiting requests as the concurrency limit allows
+    private fun startPending() {
+        val toStart = ArrayList<Entry>()
+        synchronized(lock) {
+            while (valid && active < maxConcurrentFetches && pending.isNotEmpty()) {
+                val entry = pending.pollFirst() ?: break
+                active++
+                toStart.add(entry)
+            }
+        }
+        toStart.forEach { start(it) }
+    }
+
+    private fun start(entry: Entry) {
+        val job = scope.launch(start = CoroutineStart.LAZY) {
+            try {
+                val data = dataForTile(entry.request.fetchInfo, entry.tileID)
+                ensureActive()
+                if (data != null || neverFail) {
+                    entry.request.success(data)
+                } else {
+                    entry.request.failure("No data for tile ${entry.tileID}")
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                entry.request.failure(e.message ?: e.toString())
+            }
+        }
+        job.invokeOnCompletion {
+            synchronized(lock) {
+                active--
+                if (entries[entry.request] === entry) {
+                    entries.remove(entry.request)
+                }
+            }
+            startPending()
+        }
+        // A cancel may have come in since it left the pending queue
+        val canceled = synchronized(lock) {
+            entry.job = job
+            entry.canceled
+        }
+        if (canceled) {
+            job.cancel()
+        } else {
+            job.start()
+        }
+    }
+
+    private class Entry(
+            val request: TileFetchRequest,
+            val tileID: TileID,
+            var priority: Int,
+            var importance: Float,
+            val seq: Long) {
+        var job: Job? = null
+        var canceled = false
+    }
+
+    // Lower priority value first, then higher importance, then first come first served
+    private val pending = TreeSet<Entry>(
+            compareBy<Entry> { it.priority }.thenByDescending { it.importance }.thenBy { it.seq })
+    private val entries = HashMap<Any, Entry>()
+    private val lock = Any()
+    private var active = 0
+    private var nextSeq = 0L
+    private var valid = true
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+
+    companion object {
+        /**
+         * Build a fetcher from a function returning a [Flow] per tile.
+         * The first value emitted is used as the tile data.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromFlow(name: String,
+                     maxConcurrentFetches: Int = 4,
+                     dispatcher: CoroutineDispatcher = Dispatchers.Default,
+                     source: (TileID) -> Flow<ByteArray?>): CoroutineTileFetcher =
+                object : CoroutineTileFetcher(name, maxConcurrentFetches, dispatcher) {
+                    override suspend fun dataForTile(fetchInfo: Any, tileID: TileID): ByteArray? =
+                            source(tileID).firstOrNull()
+                }
+    }
+}
@@ -40,6 +40,29 @@ public class ImageLoaderInterpreter implements LoaderInterpreter
     // This happens for data loading
     public boolean usePremultiply = false;
 
+    /**
+     * If set, JPEG tiles are decoded as RGB_565 rather than ARGB_8888 and the
+     * texels go to the texture as they are.
+     * JPEGs have no alpha, so this halves the memory touched per tile at the
+     * cost of some color depth.
+     * <br>
+     * This only applies when the loader's image format is MaplyImageUShort565,
+     * otherwise tiles are decoded to ARGB_8888 as usual.
+     */
+    public boolean decodeJpegAs565 = false;
+
+    /**
+     * Bitmaps are decoded into bitmaps from this pool and handed back once
+     * the image tile has the pixels.  Set to null to allocate every time.
+     */
+    public BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /**
+     * Decoded texels are looked up here before decoding and saved afterwards.
+     * If not set, we'll use the one from the loader's RemoteTileFetcher, if any.
+     */
+    public TexelCache texelCache = null;
+
     public ImageLoaderInterpreter()
     {
         // See if the premultiplied option is available
@@ -67,22 +90,99 @@ public class ImageLoaderInterpreter implements LoaderInterpreter
     {
         ImageLoaderReturn loadReturn = (ImageLoaderReturn)inLoadReturn;
 
-        BitmapFactory.Options options = new BitmapFactory.Options();
-// 		                options.inScaled = false;
-        if (hasPremultiplyOption && usePremultiply)
-            options.inPremultiplied = false;
+        final BitmapPool pool = bitmapPool;
+
+        TexelCache cache = texelCache;
+        if (cache == null && loader != null && loader.tileFetcher instanceof RemoteTileFetcher)
+            cache = ((RemoteTileFetcher)loader.tileFetcher).getTexelCache();
+        final TexelCache.Format texelFormat = (cache != null) ?
+                TexelCache.formatFor((loader instanceof QuadImageLoaderBase) ?
+                        ((QuadImageLoaderBase)loader).getImageFormat() : null) : null;
+
+        // 565 texels are uploaded as is, so the texture has to be 565 as well
+        final boolean use565 = decodeJpegAs565 && loader instanceof QuadImageLoaderBase &&
+                ((QuadImageLoaderBase)loader).getImageFormat() == RenderController.ImageFormat.MaplyImageUShort565;
 
         byte[][] images = loadReturn.getTileData();
+
+        // Reuse the bitmap from an identical tile if we've seen one
+        final TileContentCache contentCache = (loader != null) ? loader.getContentCache() : null;
+        final TileContentCache.Key contentKey = (contentCache != null && images.length == 1) ?
+                loadReturn.getContentKey() : null;
+        if (contentKey != null) {
+            final Object cached = contentCache.get(contentKey);
+            if (cached instanceof Bitmap && !((Bitmap)cached).isRecycled()) {
+                loadReturn.addBitmap((Bitmap)cached);
+                return;
+            }
+        }
+
         for (byte[] image : images) {
             if (loadReturn.isCanceled()) {
                 return;
             }
-            Bitmap bm = BitmapFactory.decodeByteArray(image,0, image.length,options);
-            if (bm != null)
+
+            // Tiles decoded differently get their own entries
+            final boolean decode565 = use565 && isJpeg(image);
+            final int decodeOptions = ((hasPremultiplyOption && usePremultiply) ? TexelCache.DecodeUnpremultiplied : 0) |
+                    (decode565 ? TexelCache.Decode565 : 0);
+
+            if (texelFormat != null) {
+                ImageTile tile = cache.get(image, texelFormat, decodeOptions);
+                if (tile != null) {
+                    loadReturn.addImageTile(tile);
+                    continue;
+                }
+            }
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+// 		                options.inScaled = false;
+            if (hasPremultiplyOption && usePremultiply)
+                options.inPremultiplied = false;
+            if (decode565)
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+            Bitmap bm = (pool != null) ? decodeWithPool(image, options, pool) :
+                    BitmapFactory.decodeByteArray(image,0, image.length,options);
+            if (bm != null) {
+                // The image tile copies the pixels, so the bitmap can go right back
                 loadReturn.addBitmap(bm);
-            else
+                if (texelFormat != null)
+                    cache.put(image, bm, texelFormat, decodeOptions);
+                if (contentKey != null)
+                    // Other tiles will copy from it, so it can't go back to the pool
+                    contentCache.put(contentKey, bm, (long)bm.getRowBytes() * bm.getHeight());
+                else if (pool != null)
+                    pool.release(bm);
+            } else
                 loadReturn.errorString = "Failed to decode bitmap";
         }
     }
 
+    private static boolean isJpeg(byte[] data)
+    {
+        return data.length > 2 && data[0] == (byte)0xff && data[1] == (byte)0xd8;
+    }
+
+    // Read the size from the header and decode into a pooled bitmap if we have one to fit
+    private static Bitmap decodeWithPool(byte[] image, BitmapFactory.Options options, BitmapPool pool)
+    {
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        options.inJustDecodeBounds = false;
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inMutable = true;
+        options.inBitmap = pool.get(options.outWidth, options.outHeight, options.inPreferredConfig);
+        try {
+            return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        } catch (IllegalArgumentException ex) {
+            // The decoder didn't like the bitmap, so allocate one after all
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        }
+    }
+
 }
@@ -44,6 +44,15 @@ public class ImageTile
 
 	private native void setBitmap(Bitmap bitmap);
 
+	/**
+	 * Map in texels already laid out the way the texture wants them, starting at
+	 * the given offset in a file.  They're read in place and the file stays mapped
+	 * until the texture has been built from them.
+	 *
+	 * @return false if the file couldn't be mapped or is too short.
+	 */
+	native boolean setMappedFile(String path,long offset,int width,int height,int bytesPerPixel);
+
 	/**
 	 * If the image has a border built in, set that here.
 	 */
@@ -31,7 +31,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -248,8 +248,10 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	}
 
 	// Used to shut down cleaning without cutting off outstanding work threads
-	public boolean isShuttingDown = false;
+	public volatile boolean isShuttingDown = false;
 	private final AtomicInteger numActiveWorkers = new AtomicInteger(0);
+	// Signalled when the last worker finishes during shutdown
+	private final Object workersIdle = new Object();
 
 	/**
 	 * Something is requesting a lock on shutting down while working.
@@ -272,28 +274,54 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	// End of an external work block.  Safe to shut down.
 	public void endOfWork()
 	{
-		if (numActiveWorkers.decrementAndGet() < 0) {
+		final int count = numActiveWorkers.decrementAndGet();
+		if (count < 0) {
 			// If you see this, it probably means you called `startOfWork` and didn't check the
 			// result.  If it returns false, you must not do the work and not call `endOfWork`.
 			Log.e("Maply", "Unbalanced endOfWork");
 		}
+		if (count <= 0 && isShuttingDown) {
+			synchronized (workersIdle) {
+				workersIdle.notifyAll();
+			}
+		}
 	}
 
 	@Nullable
 	public WorkWrapper startOfWorkWrapper() {
-		return startOfWork() ? new WorkWrapper() : null;
+		return startOfWorkWrapper(null);
+	}
+
+	/**
+	 * Start a work region tagged with a label for timing and tracing.
+	 *
+	 * @param label Identifies the caller in the work trace.  May be null.
+	 * @return A wrapper to close when the work is done, or null if the work should be skipped.
+	 */
+	@Nullable
+	public WorkWrapper startOfWorkWrapper(@Nullable String label) {
+		return startOfWork() ? new WorkWrapper(label) : null;
 	}
 
 	public class WorkWrapper implements AutoCloseable {
 		public WorkWrapper() {
+			this(null);
+		}
+		public WorkWrapper(@Nullable String label) {
+			this.label = label;
 		}
 		public void close() {
 			LayerThread.this.endOfWork();
-			if (checkWorkTimes) {
-				final double e = elapsed();
-				if (e > warnWorkTimeLimit) {
-					Log.w("Maply", "Work region took " + e +
-							((trackWorkStacks && e > stackWorkTimeLimit) ? ": " + getStackTrace() : ""));
+			if (checkWorkTimes || workTrace != null) {
+				final long t1 = System.nanoTime();
+				final double e = (t1 - t0) / 1.0e9;
+				if (checkWorkTimes && e > warnWorkTimeLimit) {
+					Log.w("Maply", "Work region " + ((label != null) ? label + " " : "") + "took " + e +
+							((throwable != null && e > stackWorkTimeLimit) ? ": " + getStackTrace() : ""));
+				}
+				final WorkTrace trace = workTrace;
+				if (trace != null) {
+					trace.record((label != null) ? label : "work", 0, t0, t1);
 				}
 			}
 		}
@@ -310,22 +338,84 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 			}
 		}
 
+		private final String label;
 		private final long t0 = System.nanoTime();
 		private final Throwable throwable = trackWorkStacks ? new Throwable("for stack") : null;
-		private static final boolean checkWorkTimes = false;
-		private static final boolean trackWorkStacks = false;
-		private static final double warnWorkTimeLimit = 0.5;
-		private static final double stackWorkTimeLimit = 1.0;
 	}
 
+	private static volatile boolean checkWorkTimes = false;
+	private static volatile boolean trackWorkStacks = false;
+	private static volatile WorkTrace workTrace = null;
+	private static final double warnWorkTimeLimit = 0.5;
+	private static final double stackWorkTimeLimit = 1.0;
+
+	/**
+	 * Log a warning for any work region or task that takes longer than half a second.
+	 */
+	public static void setCheckWorkTimes(boolean check) {
+		checkWorkTimes = check;
+	}
+
+	public static boolean getCheckWorkTimes() {
+		return checkWorkTimes;
+	}
+
+	/**
+	 * Capture the stack at the start of each work region, to be logged if the region is very slow.
+	 * This is expensive, turn it on only while debugging.
+	 */
+	public static void setTrackWorkStacks(boolean track) {
+		trackWorkStacks = track;
+	}
+
+	/**
+	 * Turn on timing of every task and work region across all the layer threads.
+	 * <p>
+	 * Each one is recorded, with its label, queue wait and run time, in a ring buffer
+	 * holding the most recent entries.  Pass zero to turn tracing off.
+	 *
+	 * @param capacity Number of entries to keep.  Zero or less turns tracing off.
+	 */
+	public static void setWorkTracing(int capacity) {
+		workTrace = (capacity > 0) ? new WorkTrace(capacity) : null;
+	}
+
+	/**
+	 * Return the work trace, if tracing is on.
+	 * Use {@link WorkTrace#writeChromeTrace} to dump it.
+	 */
+	@Nullable
+	public static WorkTrace getWorkTrace() {
+		return workTrace;
+	}
+
+	/**
+	 * Default limit, in milliseconds, on how long shutdown will wait for workers and layers.
+	 * The controller's limit can be changed with {@link BaseController#setShutdownTimeout}.
+	 */
+	public static final long DefaultShutdownTimeout = 2500;
+
 	// Called on the main thread *after* the thread has quit safely
 	void shutdown()
+	{
+		shutdown(System.nanoTime() + DefaultShutdownTimeout * 1000000L);
+	}
+
+	/**
+	 * Shut down the thread, waiting no later than the given deadline.
+	 * <p>
+	 * This blocks, but it's safe to call for several threads at once from different
+	 * threads, so their waits overlap.
+	 *
+	 * @param deadline Time (System.nanoTime) by which we give up waiting
+	 */
+	void shutdown(long deadline)
 	{
 //		Log.d("Maply", "LayerThread.shutdown()");
 
-		// Create with zero permits, must be released before the first acquire can occur
-		final Semaphore endLock = new Semaphore(0, true);
-		final Semaphore beginLock = new Semaphore(0);
+		// Counted down by the shutdown task on the thread itself
+		final CountDownLatch endLatch = new CountDownLatch(1);
+		final CountDownLatch beginLatch = new CountDownLatch(1);
 		isShuttingDown = true;
 
 		// If we're shut down before a renderer is set, the the lambda in
@@ -348,24 +438,24 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 		// Wait for anything outstanding to finish before we shut down
 		try {
 			final long t0 = System.nanoTime();
-			while (true) {
-				final long t1 = System.nanoTime();
-				final int count = numActiveWorkers.get();
-				if (count <= 0) {
-					break;
-				}
-				if (t1 - t0 > 2L * 1000L * 1000L * 1000L) {
-					Log.w("Maply",
-							String.format("LayerThread timed out waiting for %d workers after %f s",
-										  count, (t1 - t0) / 1.0e9));
-					break;
+			synchronized (workersIdle) {
+				int count;
+				while ((count = numActiveWorkers.get()) > 0) {
+					final long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						Log.w("Maply",
+								String.format("LayerThread timed out waiting for %d workers after %f s",
+											  count, (System.nanoTime() - t0) / 1.0e9));
+						break;
+					}
+					// endOfWork wakes us when the count drops to zero
+					workersIdle.wait(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
 				}
-				//noinspection BusyWait
-				sleep(25);
 			}
-		} catch (InterruptedException ignored) {
+		} catch (InterruptedException ex) {
 			// we took too long
 			Log.w("Maply", "LayerThread interrupted while waiting for workers");
+			Thread.currentThread().interrupt();
 		} catch (Exception exp) {
 			// Not sure why this would ever happen
 			Log.w("Maply", "LayerThread exception while waiting for workers", exp);
@@ -374,7 +464,7 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 		// Run the shutdowns on the thread itself
 		addTask(() -> {
 			try {
-				beginLock.release();
+				beginLatch.countDown();
 
 				final EGL10 egl = (EGL10) EGLContext.getEGL();
 
@@ -409,7 +499,7 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 			} catch (Exception ex) {
 				Log.w("Maply", "LayerThread shutdown error", ex);
 			} finally {
-				endLock.release();
+				endLatch.countDown();
 			}
 
 			try {
@@ -421,23 +511,25 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 		// Block until the queue drains
 		if (renderer != null) {
 			try {
-				// Wait for the shutdown task to start.  If this takes a while, it's not our fault,
-				// something else is going on, so we don't want it to count against our timeout.
-				if (!beginLock.tryAcquire(2000, TimeUnit.MILLISECONDS)) {
-					Log.w("Maply", "LayerThread didn't start stopping within 2s");
+				// Wait for the shutdown task to start, then for it to finish, all within the deadline
+				if (!beginLatch.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+					Log.w("Maply", "LayerThread didn't start stopping before the deadline");
 				}
-				if (!endLock.tryAcquire(500, TimeUnit.MILLISECONDS)) {
-					Log.w("Maply", "LayerThread didn't stop within 500ms");
+				if (!endLatch.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+					Log.w("Maply", "LayerThread didn't stop before the deadline");
 
-					// If the thread is blocked, wake it up and try again
+					// If the thread is blocked, wake it up and give it one more short chance
 					try {
 						interrupt();
 					} catch (SecurityException ignored) {
 					}
-					if (!endLock.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+					if (!endLatch.await(100, TimeUnit.MILLISECONDS)) {
 						Log.w("Maply", "LayerThread didn't stop after interrupt");
 					}
 				}
+			} catch (InterruptedException ex) {
+				Log.w("Maply", "LayerThread interrupted waiting for shutdown");
+				Thread.currentThread().interrupt();
 			} catch (Exception ex) {
 				Log.w("Maply", "LayerThread error waiting for shutdown", ex);
 			}
@@ -491,6 +583,118 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	protected ChangeSet changes = new ChangeSet();
 	private Handler changeHandler = null;
 
+	private int maxChangesPerFlush = 0;
+	private long maxBytesPerFlush = 0;
+	private long changeFlushDelay = 16;
+
+	/**
+	 * Limit the number of change requests handed to the scene in a single flush.
+	 * Anything over the limit is carried over to a later flush.
+	 * <p>
+	 * A burst of tile loads can otherwise land in a single frame and cause a visible hitch.
+	 *
+	 * @param maxChanges Maximum changes per flush.  Zero or less means no limit (the default).
+	 */
+	public void setMaxChangesPerFlush(int maxChanges) {
+		synchronized (this) {
+			maxChangesPerFlush = maxChanges;
+		}
+	}
+
+	public int getMaxChangesPerFlush() {
+		return maxChangesPerFlush;
+	}
+
+	/**
+	 * Limit the estimated bytes uploaded (textures, mostly) in a single flush.
+	 * At least one change is always processed, however large it is.
+	 *
+	 * @param maxBytes Maximum estimated bytes per flush.  Zero or less means no limit (the default).
+	 */
+	public void setMaxBytesPerFlush(long maxBytes) {
+		synchronized (this) {
+			maxBytesPerFlush = maxBytes;
+		}
+	}
+
+	public long getMaxBytesPerFlush() {
+		return maxBytesPerFlush;
+	}
+
+	/**
+	 * When a flush hits one of the limits, wait this long before flushing the rest.
+	 *
+	 * @param delay Delay in milliseconds.  Defaults to roughly one frame.
+	 */
+	public void setChangeFlushDelay(long delay) {
+		synchronized (this) {
+			changeFlushDelay = Math.max(0, delay);
+		}
+	}
+
+	/**
+	 * Stats for the change sets flushed to the scene by this thread.
+	 */
+	public static class ChangeStats {
+		// Change requests waiting for a flush
+		public int pendingChanges;
+
+		// Estimated bytes waiting for a flush
+		public long pendingBytes;
+
+		// The largest backlog of change requests we've seen (since the last reset)
+		public int maxPendingChanges;
+
+		// Number of flushes done
+		public int flushes;
+
+		// Flushes that hit a limit and left changes for later
+		public int deferredFlushes;
+
+		// Total change requests handed to the scene
+		public long processedChanges;
+
+		// Print out the stats
+		public void dump(String name) {
+			Log.v("Maply", String.format("---LayerThread %s Change Stats---",name));
+			Log.v("Maply", String.format("   Pending Changes = %d",pendingChanges));
+			Log.v("Maply", String.format("   Pending Data = %.2fMB",pendingBytes / (1024.0*1024.0)));
+			Log.v("Maply", String.format("   Max Pending Changes = %d",maxPendingChanges));
+			Log.v("Maply", String.format("   Flushes = %d",flushes));
+			Log.v("Maply", String.format("   Deferred Flushes = %d",deferredFlushes));
+			Log.v("Maply", String.format("   Processed Changes = %d",processedChanges));
+		}
+	}
+
+	private ChangeStats changeStats = new ChangeStats();
+
+	/**
+	 * Return a snapshot of the change flush stats, including the current backlog.
+	 */
+	public ChangeStats getChangeStats() {
+		final ChangeStats stats = new ChangeStats();
+		synchronized (this) {
+			if (changes != null) {
+				stats.pendingChanges = changes.count();
+				stats.pendingBytes = changes.estimateBytes();
+			}
+			stats.maxPendingChanges = changeStats.maxPendingChanges;
+			stats.flushes = changeStats.flushes;
+			stats.deferredFlushes = changeStats.deferredFlushes;
+			stats.processedChanges = changeStats.processedChanges;
+		}
+		return stats;
+	}
+
+	/**
+	 * Reset the change flush stats back to zero.
+	 */
+	public void resetChangeStats() {
+		synchronized (this) {
+			changeStats = new ChangeStats();
+		}
+	}
+
 	/**
 	 * Add a set of change requests to the scene.
 	 * 
@@ -504,42 +708,66 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 		if (isShuttingDown)
 			return;
 
-		final LayerThread layerThread = this;
-
 		synchronized(this)
 		{
 			changes.merge(newChanges);
 			newChanges.dispose();
 
+			final int pending = changes.count();
+			if (pending > changeStats.maxPendingChanges) {
+				changeStats.maxPendingChanges = pending;
+			}
+
 			if (changeHandler != null) {
 				// already scheduled
 				return;
 			}
 
 			// Schedule a merge with the scene
-			changeHandler = addTask(() -> {
-				if (isShuttingDown)
-					return;
+			scheduleChangeFlush(0);
+		}
+	}
 
-				// Do a pre-scene flush callback on the layers
-				synchronized (layers) {
-					for (Layer layer : layers) {
-						layer.preSceneFlush(layerThread);
-					}
+	// Schedule a flush of the pending changes.  Call with the lock held.
+	private void scheduleChangeFlush(long delay)
+	{
+		final LayerThread layerThread = this;
+		final Runnable run = () -> {
+			if (isShuttingDown)
+				return;
+
+			// Do a pre-scene flush callback on the layers
+			synchronized (layers) {
+				for (Layer layer : layers) {
+					layer.preSceneFlush(layerThread);
 				}
+			}
 
-				// Now merge in the changes
-				synchronized (this) {
-					changeHandler = null;
-					if (scene != null) {
+			// Now merge in the changes
+			synchronized (this) {
+				changeHandler = null;
+				if (scene != null) {
+					changeStats.flushes++;
+					if (maxChangesPerFlush > 0 || maxBytesPerFlush > 0) {
+						changeStats.processedChanges +=
+								changes.processLimited(renderer, scene, maxChangesPerFlush, maxBytesPerFlush);
+						if (changes.count() > 0) {
+							// Leave the rest for a later frame
+							changeStats.deferredFlushes++;
+							scheduleChangeFlush(changeFlushDelay);
+							return;
+						}
+					} else {
+						changeStats.processedChanges += changes.count();
 						changes.process(renderer, scene);
-						changes.dispose();
-
-						changes = new ChangeSet();
 					}
+					changes.dispose();
+
+					changes = new ChangeSet();
 				}
-			},true);
-		}
+			}
+		};
+		changeHandler = (delay > 0) ? addDelayedTask(run, delay) : addTask(run, true, true, "LayerThread.flushChanges");
 	}
 
 	/**
@@ -551,6 +779,17 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	public Handler addTask(Runnable run) {
 		return addTask(run,false);
 	}
+
+	/**
+	 * Add a Runnable to our queue, tagged with a label for work tracing.
+	 *
+	 * @param run Runnable to run
+	 * @param label Identifies the task in the work trace
+	 * @return The Handler if you want to cancel this at some point in the future.
+	 */
+	public Handler addTask(Runnable run,String label) {
+		return addTask(run,false,true,label);
+	}
 	
 	/**
 	 * Add a Runnable to the queue, but only execute after the given amount of time.
@@ -575,7 +814,8 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	public Handler addDelayedTask(Runnable run,long time,boolean unitOfWork) {
 		if (valid && run != null) {
 			Handler handler = new Handler(getLooper());
-			handler.postDelayed(unitOfWork ? () -> runWorkRunnable(run, true) : run, time);
+			final long queueTime = (workTrace != null) ? System.nanoTime() + time * 1000000L : 0;
+			handler.postDelayed(unitOfWork ? () -> runWorkRunnable(run, true, null, queueTime) : run, time);
 			return handler;
 		}
 		return null;
@@ -607,12 +847,29 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	 * we were on the layer thread and no Handler was needed.
 	 */
 	public Handler addTask(Runnable run,boolean wait,boolean unitOfWork) {
+		return addTask(run,wait,unitOfWork,null);
+	}
+
+	/**
+	 * Add a Runnable to this thread's queue.  It will be executed at some point in the future.
+	 *
+	 * @param run Runnable to run
+	 * @param wait If true we'll always put the Runnable in the queue.  If false we'll see
+	 *             if we're already on the layer thread and just execute the runnable instead.
+	 * @param unitOfWork If true, the runnable will be bracketed with
+	 *                   <c>startOfWork</c> and <c>endOfWork</c> calls
+	 * @param label Identifies the task in the work trace.  If null, the runnable's class is used.
+	 * @return Returns a Handler if you want to cancel the task later.  Returns null if
+	 * we were on the layer thread and no Handler was needed.
+	 */
+	public Handler addTask(Runnable run,boolean wait,boolean unitOfWork,String label) {
 		if (valid && run != null) {
 			if (!wait && Looper.myLooper() == getLooper()) {
-				runWorkRunnable(run, false);
+				runWorkRunnable(run, false, label, 0);
 			} else {
 				Handler handler = new Handler(getLooper());
-				handler.post(unitOfWork ? () -> runWorkRunnable(run, true) : run);
+				final long queueTime = (workTrace != null) ? System.nanoTime() : 0;
+				handler.post(unitOfWork ? () -> runWorkRunnable(run, true, label, queueTime) : run);
 				return handler;
 			}
 		}
@@ -624,11 +881,15 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 	 *
 	 * @param work The work to do
 	 * @param trap Trap any exceptions
+	 * @param label Tag for the work trace, may be null
+	 * @param queueTime When the work was queued, or zero
 	 */
-	private void runWorkRunnable(Runnable work, boolean trap) {
+	private void runWorkRunnable(Runnable work, boolean trap, String label, long queueTime) {
 		if (!startOfWork()) {
 			return;
 		}
+		final boolean timed = checkWorkTimes || workTrace != null;
+		final long t0 = timed ? System.nanoTime() : 0;
 		try {
 			work.run();
 		} catch (Exception ex) {
@@ -639,6 +900,22 @@ public class LayerThread extends HandlerThread implements View.ViewWatcher
 			throw ex;
 		} finally {
 			endOfWork();
+			if (timed) {
+				finishTimedWork(work, label, queueTime, t0);
+			}
+		}
+	}
+
+	// Log and/or trace a task once it's done
+	private static void finishTimedWork(Runnable work, String label, long queueTime, long t0) {
+		final long t1 = System.nanoTime();
+		final String theLabel = (label != null) ? label : work.getClass().getName();
+		if (checkWorkTimes && (t1 - t0) / 1.0e9 > warnWorkTimeLimit) {
+			Log.w("Maply", "Task " + theLabel + " took " + (t1 - t0) / 1.0e9);
+		}
+		final WorkTrace trace = workTrace;
+		if (trace != null) {
+			trace.record(theLabel, (queueTime != 0 && queueTime < t0) ? queueTime : 0, t0, t1);
 		}
 	}
 
@@ -124,7 +124,88 @@ public class LoaderReturn
     /**
      * Return true if the load has been canceled
      */
-    public native boolean isCanceled();
+    public boolean isCanceled()
+    {
+        return isCancelRequested() || isCanceledNative();
+    }
+
+    /**
+     * Return true if the fetch this data came from has been canceled.
+     * <br>
+     * This only checks the Java side token, so it's cheap enough to call between
+     * decode stages.  Use isCanceled() for the full check.
+     */
+    public boolean isCancelRequested()
+    {
+        final CancellationToken token = cancelToken;
+        return token != null && token.isCanceled();
+    }
+
+    /**
+     * The token from the fetch request this data came from.
+     * Set by the loader before the interpreter is called.
+     */
+    public void setCancelToken(CancellationToken token)
+    {
+        cancelToken = token;
+    }
+
+    public CancellationToken getCancelToken()
+    {
+        return cancelToken;
+    }
+
+    private CancellationToken cancelToken = null;
+
+    /**
+     * Identifies the tile data for the loader's content cache.
+     * Set by the loader when it has a cache, null otherwise.
+     */
+    public void setContentKey(TileContentCache.Key key)
+    {
+        contentKey = key;
+    }
+
+    public TileContentCache.Key getContentKey()
+    {
+        return contentKey;
+    }
+
+    private TileContentCache.Key contentKey = null;
+
+    /**
+     * Features parsed for this tile on an earlier load.
+     * Set by the loader when they came from its feature cache, in which case there's no tile data.
+     */
+    public void setCachedFeatures(VectorTileData features)
+    {
+        cachedFeatures = features;
+    }
+
+    public VectorTileData getCachedFeatures()
+    {
+        return cachedFeatures;
+    }
+
+    private VectorTileData cachedFeatures = null;
+
+    /**
+     * The tile the data was fetched for, if it isn't this one.
+     * Set by the loader when a tile past the source's maximum zoom is built from its ancestor.
+     */
+    public void setSourceTileID(TileID tileID)
+    {
+        sourceTileID = tileID;
+    }
+
+    public TileID getSourceTileID()
+    {
+        return sourceTileID;
+    }
+
+    private TileID sourceTileID = null;
+
+    private native boolean isCanceledNative();
 
     /**
      * Merge in the given changes requests to be handled upstream.
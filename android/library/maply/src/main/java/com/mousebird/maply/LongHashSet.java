@@ -0,0 +1,164 @@
+/*
+ *  LongHashSet.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import java.util.Arrays;
+
+/**
+ * A set of longs, such as object IDs, without boxing them.
+ * <br>
+ * Meant to be cleared and reused as scratch space, so clearing
+ * keeps the table around rather than shrinking it.
+ * Not thread safe.
+ */
+final class LongHashSet
+{
+    private static final int MinCapacity = 16;
+
+    // Zero marks an empty slot, so we track a zero value on the side
+    private long[] keys;
+    private boolean hasZero;
+    private int size;
+
+    LongHashSet()
+    {
+        this(MinCapacity);
+    }
+
+    LongHashSet(int expected)
+    {
+        keys = new long[tableSizeFor(expected)];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Make sure we can hold this many values without growing.
+     */
+    void ensureCapacity(int expected)
+    {
+        final int needed = tableSizeFor(expected);
+        if (needed > keys.length) {
+            rehash(needed);
+        }
+    }
+
+    /**
+     * Add a value.
+     *
+     * @return True if it wasn't already there.
+     */
+    boolean add(long value)
+    {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        final int mask = keys.length - 1;
+        int slot = hash(value) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        size++;
+        // Keep the load under a half so probes stay short
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    boolean contains(long value)
+    {
+        if (value == 0) {
+            return hasZero;
+        }
+        final int mask = keys.length - 1;
+        int slot = hash(value) & mask;
+        long key;
+        while ((key = keys[slot]) != 0) {
+            if (key == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Empty the set, keeping the table.
+     */
+    void clear()
+    {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            hasZero = false;
+            size = 0;
+        }
+    }
+
+    private void rehash(int newLength)
+    {
+        final long[] oldKeys = keys;
+        keys = new long[newLength];
+        final int mask = newLength - 1;
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    // IDs tend to be sequential, so mix the bits up before masking
+    private static int hash(long value)
+    {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    // Smallest power of two table holding this many values at half load
+    private static int tableSizeFor(int expected)
+    {
+        int size = MinCapacity;
+        while (size < expected * 2 && size < (1 << 30)) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -25,9 +25,11 @@ import android.os.Looper
 import android.util.DisplayMetrics
 import android.util.Log
 import androidx.core.net.toFile
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import okhttp3.*
 import java.io.*
 import java.lang.ref.WeakReference
+import java.util.zip.CRC32
 import kotlin.collections.ArrayList
 
 /**
@@ -60,14 +62,20 @@ open class MapboxKindaMap(
     constructor(styleJSON: String, localMBTilesFile: File, control: BaseController, styleSettings: VectorStyleSettings = defaultStyle()) :
             this(styleJSON, null, sequenceOf(localMBTilesFile), control, styleSettings)
 
+    /**
+     * The style sheet as first parsed, to find the sources and sprites.
+     * This isn't built when starting from a snapshot, see [useStyleSnapshot].
+     */
     var styleSheet: MapboxVectorStyleSet? = null; private set
     var styleSheetImage: MapboxVectorStyleSet? = null; private set
+    private val imageStyleSheets = ArrayList<MapboxVectorStyleSet>()
     var styleSheetVector: MapboxVectorStyleSet? = null; private set
     var spriteJSON: String? = null; private set
     var spritePNG: Bitmap? = null; private set
     var mapboxInterp: MapboxVectorInterpreter? = null; private set
     var loader: QuadLoaderBase? = null; private set
     var offlineRender: RenderController? = null; private set
+    var offlineRenderPool: TileRenderPool? = null; private set
     var lineScale = 0.0
     var textScale = 0.0
     var markerScale = 0.0
@@ -86,6 +94,41 @@ open class MapboxKindaMap(
      */
     var backgroundAllPolys = false
 
+    /**
+     * Number of offline renderers used to draw the image tiles when [imageVectorHybrid] is set.
+     * Each one has its own image style sheet and can draw a tile at the same time as the others,
+     * at the cost of a 512x512 render target and the style's memory apiece.
+     */
+    var offlineRenderPoolSize = 1
+        set(value) { field = value.coerceAtLeast(1) }
+
+    /**
+     * If non-zero, image tiles drawn from identical vector data at the same level
+     * are kept, up to this many bytes, and reused rather than drawn again.
+     * Only applies when [imageVectorHybrid] is set.
+     */
+    var tileContentCacheSize = 0L
+
+    /**
+     * If set, the parsed features for vector tiles are kept here, so a reload only
+     * has to run the styles over them again.  To restyle, hand the same cache to the
+     * map replacing this one.  Only applies when [imageVectorHybrid] is not set.
+     */
+    var featureCache: VectorFeatureCache? = null
+
+    /**
+     * Load this many levels past the sources' maximum zoom, clipping each tile
+     * out of its ancestor at the maximum zoom rather than scaling up that tile.
+     * Each ancestor is only parsed once.  Only applies when [imageVectorHybrid] is not set.
+     */
+    var overzoomLevels = 0
+
+    /**
+     * How many parsed ancestor tiles to keep for [overzoomLevels].
+     * Each one covers a block of tiles at the levels past the maximum zoom.
+     */
+    var overzoomCacheTiles = 16
+
     /**
      * If set, we'll fetch and use the sources from the style sheet.
      * If not set, the sources have to be provided externally.
@@ -98,10 +141,54 @@ open class MapboxKindaMap(
     var fetchSprites = true
 
     /**
-     * If set, a top level directory where we'll cache everything
+     * If set, a top level directory where we'll cache everything.
+     * The style sheet, TileJSON and sprites go in an HTTP cache under `http/`, which
+     * also lets us start offline with whatever copies it has.
      */
     var cacheDir: File? = null
 
+    /**
+     * Maximum size of the HTTP cache for the style sheet, TileJSON and sprites, in bytes.
+     */
+    var httpCacheSize = BootstrapFetcher.DefaultCacheSize
+
+    /**
+     * Number of style sheet, TileJSON and sprite requests to run at once.
+     * Everything the style sheet refers to is fetched at the same time, up to this limit.
+     */
+    var maxBootstrapFetches = 4
+        set(value) { field = value.coerceAtLeast(1) }
+
+    /**
+     * If set along with [cacheDir], keep a snapshot of the style sheet, sprite JSON
+     * and resolved sources once they're all fetched.
+     *
+     * On the next start, if everything it came from is still fresh in the HTTP cache
+     * and unchanged, we use that instead of fetching each piece in turn and parsing
+     * the style sheet and TileJSON to find out what to fetch.
+     * In that case [styleSheet] isn't set up, but [styleSheetVector] is as usual.
+     */
+    var useStyleSnapshot = false
+
+    /**
+     * True if the last start used a snapshot, see [useStyleSnapshot].
+     */
+    var startedFromSnapshot = false; private set
+
+    /**
+     * Milliseconds from [start] until everything was fetched and we started the loader,
+     * or -1 if we haven't gotten that far.
+     */
+    var setupTimeMillis = -1L; private set
+
+    /**
+     * Milliseconds from [start] until the first tile was built, or -1 if that hasn't happened yet.
+     */
+    val firstTileMillis: Long get() {
+        val tileTime = mapboxInterp?.firstTileTime ?: 0L
+        return if (tileTime != 0L) (tileTime - startTime) / 1000000 else -1L
+    }
+
     /**
      * You can override the file loaded for a particular purpose.
      * This includes: the TileJSON files, sprite sheets, and the style sheet itself
@@ -182,40 +269,38 @@ open class MapboxKindaMap(
     val displayMetrics: DisplayMetrics get() =
         control.get()?.activity?.resources?.displayMetrics ?: Resources.getSystem().displayMetrics
 
-    // Information about the sources as we fetch them
-    private fun addTask(task: Call) {
-        control.get()?.activity?.runOnUiThread {
-            outstandingFetches.add(task)
-        }
-    }
-
-    private fun clearTask(task: Call) {
-        control.get()?.activity?.runOnUiThread {
-            outstandingFetches.remove(task)
-        }
-    }
-
     // Check if we've finished loading stuff
     protected fun checkFinished() {
         // Start the map if no outstanding fetches are running
         control.get()?.activity?.runOnUiThread {
-            if (!finished && outstandingFetches.all { it == null }) {
+            if (!finished && (fetcher?.pendingCount ?: 0) == 0) {
                 finished = true
                 startLoader()
             }
         }
     }
 
+    // Set up the fetcher for the style sheet and what it refers to
+    private fun bootstrapFetcher(): BootstrapFetcher? {
+        fetcher?.let { return it }
+        val theControl = control.get() ?: return null
+        return BootstrapFetcher(theControl.getHttpClient(), cacheDir?.let { File(it, "http") },
+                maxBootstrapFetches, httpCacheSize).also {
+            it.onError = { desc, ex -> reportLoadError(desc, ex) }
+            it.onIdle = { checkFinished() }
+            fetcher = it
+        }
+    }
+
     // If we're using a cache dir, look for the file there
+    @Deprecated("The bootstrap fetcher manages the cache now")
     protected fun cacheResolve(url: Uri) : File? {
-        val fileRef = cacheName(url)
-        if (fileRef != null && fileRef.exists()) {
-            return fileRef
-        }
-        return null
+        @Suppress("DEPRECATION")
+        return cacheName(url)?.takeIf { it.exists() }
     }
 
     // Generate a workable cache file path
+    @Deprecated("The bootstrap fetcher manages the cache now")
     protected fun cacheName(url: Uri) : File? {
         // It's already local
         if (url.scheme == "file" && url.toFile().exists()) {
@@ -233,12 +318,14 @@ open class MapboxKindaMap(
     }
 
     // Write a file to cache if appropriate
+    @Deprecated("The bootstrap fetcher manages the cache now")
     protected fun cacheFile(url: Uri, data: ByteArray) {
         // If there's no cache dir or the file is local, don't cache
         if (cacheDir == null || (url.scheme == "file" && url.toFile().exists()))
             return
 
         try {
+            @Suppress("DEPRECATION")
             cacheName(url)?.let { theCacheName ->
                 FileOutputStream(theCacheName).use { fOut ->
                     fOut.write(data)
@@ -249,14 +336,40 @@ open class MapboxKindaMap(
         }
     }
 
+    // Fetch one of the files the style needs, local or remote
+    private fun fetch(url: Uri, what: String, onData: (ByteArray) -> Unit) {
+        val theFetcher = bootstrapFetcher() ?: return
+        if (url.scheme == "file") {
+            theFetcher.fetchFile(url.toFile(), what, onData)
+        } else {
+            theFetcher.fetch(requestFor(url).build(), what, onData)
+        }
+    }
+
     /**
      * Once you're done messing with the settings, start this puppy up.
      * It'll go fetch whatever it needs to fetch until it gets everything.
      * Then it'll start the actual loader.
      */
     fun start() {
-        val theControl = control.get() ?: return
+        control.get() ?: return
+        startTime = System.nanoTime()
+
+        if (useStyleSnapshot && snapshotKey() != null && cacheDir != null) {
+            // Reading the snapshot and decoding its sprites is too slow for this thread
+            bootstrapFetcher()?.execute("read style snapshot") {
+                if (!startFromSnapshot()) {
+                    startFetching()
+                }
+            }
+            return
+        }
+
+        startFetching()
+    }
 
+    // Fetch the style sheet, if need be, and everything it refers to
+    private fun startFetching() {
         if (styleSheetJSON != null) {
             // Style sheet is already loaded, so skip that part
             processStyleSheet()
@@ -266,60 +379,12 @@ open class MapboxKindaMap(
             // Dev might be overriding the source
             val resolvedURL = mapboxURLFor(theStyleURL)
 
-            // todo: reduce duplication with processStylesheet
-            try {
-                cacheResolve(resolvedURL)?.let { cacheFile ->
-                    val json = readFile(cacheFile)
-                    if (json.isNotEmpty()) {
-                        styleSheetJSON = json
-                        processStyleSheet()
-                        checkFinished()
-                        return
-                    }
-                }
-            } catch (ex: Exception) {
-                reportLoadError("Failed to load cached stylesheet", ex)
+            // Everything else depends on this, so it's fetched from its callback
+            fetch(resolvedURL, "style sheet") { data ->
+                styleSheetJSON = String(data)
+                addSnapshotInput(resolvedURL, data)
+                processStyleSheet()
             }
-
-            // Go get the style sheet (this will also handle local)
-            val client = theControl.getHttpClient()
-            val task = client.newCall(requestFor(resolvedURL).build())
-            addTask(task)
-            task.enqueue(object : Callback {
-                override fun onFailure(call: Call, e: IOException) {
-                    reportLoadError("Error fetching style sheet", e)
-                    stop()
-                }
-                @Throws(IOException::class)
-                override fun onResponse(call: Call, response: Response) {
-                    response.use {
-                        if (finished) return@use    // already done loading, how?
-                        if (!response.isSuccessful) {
-                            reportLoadError("JSON stylesheet request failed: ${response.code} ${response.message}")
-                            return@use
-                        }
-                        response.body?.use {
-                            // Convert to string, treat empty as null
-                            val s = String(it.bytes())
-                            if (s.isNotEmpty()) s else null
-                        }?.let { json ->
-                            styleSheetJSON = json
-
-                            cacheFile(theStyleURL, json.toByteArray())
-
-                            try {
-                                processStyleSheet()
-                            } catch (ex: Exception) {
-                                reportLoadError("Failed to process JSON stylesheet", ex)
-                            }
-                        } ?: run {
-                            reportLoadError("No response for stylesheet JSON request")
-                        }
-                    }
-                    clearTask(task)
-                    checkFinished()
-                }
-            })
         }
 
         checkFinished()
@@ -330,10 +395,9 @@ open class MapboxKindaMap(
         val theControl = control.get()
         if (theControl == null || (styleURL == null && styleSheetJSON == null))
             return
-        val client = theControl.getHttpClient()
         styleSheet = MapboxVectorStyleSet(styleSheetJSON, styleSettings, displayMetrics, theControl)
 
-        // Fetch what we need to for the sources
+        // Fetch what we need to for the sources, all at once
         val sources = if (fetchSources) styleSheet?.sources else null
         sources?.filter{ it.tileSpec == null }?.forEach { source ->
             // If the tile spec isn't embedded, we need to go get it
@@ -343,155 +407,39 @@ open class MapboxKindaMap(
             }
 
             val url = mapboxURLFor(Uri.parse(source.url))
-            try {
-                cacheResolve(url)?.let { cacheFile ->
-                    val json = readFile(cacheFile)
-                    if (json.isNotEmpty()) {
-                        processStylesheetJson(source, json)
-                        return@forEach
-                    }
-                }
-            } catch (ex: Exception) {
-                reportLoadWarning("Failed to load cached stylesheet", ex)
+            fetch(url, "tile JSON for ${source.name}") { data ->
+                processStylesheetJson(source, String(data))
+                addSnapshotInput(url, data)
             }
-
-            // Go fetch the TileJSON
-            val task = client.newCall(requestFor(url).build())
-            addTask(task)
-            task.enqueue(object : Callback {
-                override fun onFailure(call: Call, e: IOException) {
-                    reportLoadError("Error trying to fetch tileJson", e)
-                    clearTask(task)
-                    stop()
-                }
-                override fun onResponse(call: Call, response: Response) {
-                    response.use {
-                        if (!response.isSuccessful) {
-                            reportLoadError("Tile JSON request failed: ${response.code} ${response.message}")
-                            return@use
-                        }
-                        response.body?.use {
-                            // Convert to string, treat empty as null
-                            val s = String(it.bytes())
-                            if (s.isNotEmpty()) s else null
-                        }?.let { json ->
-                            cacheFile(Uri.parse(url.toString()), json.toByteArray())
-                            try {
-                                processStylesheetJson(source, json)
-                            } catch (ex: Exception) {
-                                reportLoadError("Failed to process tile JSON", ex)
-                            }
-                        }
-                    }
-                    clearTask(task)
-                    checkFinished()
-                }
-            })
         }
 
-        // Load the sprite sheets
-        styleSheet?.spriteURL?.let {
-            loadSprites(it, client)
+        // The sprite sheets only depend on the style sheet, so they go at the same time
+        if (fetchSprites) {
+            styleSheet?.spriteURL?.let {
+                loadSprites(it)
+            }
         }
 
         checkFinished()
     }
 
-    private fun loadSprites(spriteURL: String, client: OkHttpClient) {
-
+    private fun loadSprites(spriteURL: String) {
         val res = spriteResFor(spriteURL)
         val resStr = if (res > 1) "@${res}x" else ""
         val spriteJSONUrl = mapboxURLFor(Uri.parse("$spriteURL$resStr.json"))
         val spritePNGUrl = mapboxURLFor(Uri.parse("$spriteURL$resStr.png"))
-        try {
-            cacheResolve(spriteJSONUrl)?.let { cacheFile ->
-                spriteJSON = readFile(cacheFile)
-            }
-        } catch (ex: Exception) {
-            reportLoadWarning("Failed to load cached sprite sheet", ex)
-        }
 
-        if (spriteJSON == null && fetchSprites) {
-            val task1 = client.newCall(requestFor(spriteJSONUrl).build())
-            addTask(task1)
-            task1.enqueue(object : Callback {
-                override fun onFailure(call: Call, e: IOException) {
-                    reportLoadError("Error fetching sprite sheet", e)
-                    stop()
-                }
-                override fun onResponse(call: Call, response: Response) {
-                    response.use {
-                        if (finished) return@use
-                        if (!response.isSuccessful) {
-                            reportLoadError("Sprite sheet request failed: ${response.code} ${response.message}")
-                            return@use
-                        }
-                        response.body?.use {
-                            // Convert to string, treat empty as null
-                            val s = String(it.bytes())
-                            if (s.isNotEmpty()) s else null
-                        }?.let { json ->
-                            // todo: validate that it's not some kind of error message
-                            cacheFile(spriteJSONUrl, json.toByteArray())
-                            spriteJSON = json
-                        }
-                    }
-                    clearTask(task1)
-                    checkFinished()
-                }
-            })
+        fetch(spriteJSONUrl, "sprite sheet") { data ->
+            // todo: validate that it's not some kind of error message
+            spriteJSON = String(data)
+            addSnapshotInput(spriteJSONUrl, data)
         }
 
-        // Look for the PNG in the cache
-        try {
-            cacheResolve(spritePNGUrl)?.let { cacheFile ->
-                FileInputStream(cacheFile).use {
-                    spritePNG = BitmapFactory.decodeStream(it)
-                }
-            }
-        } catch (ex: Exception) {
-            reportLoadWarning("Failed to load cached sprite image", ex)
+        fetch(spritePNGUrl, "sprite image") { data ->
+            spritePNG = BitmapFactory.decodeByteArray(data, 0, data.size)
+                    ?: throw IOException("Invalid sprite image")
+            addSnapshotInput(spritePNGUrl, data, true)
         }
-
-        if (spritePNG == null && fetchSprites) {
-            val task2 = client.newCall(requestFor(spritePNGUrl).build())
-            addTask(task2)
-            task2.enqueue(object : Callback {
-                override fun onFailure(call: Call, e: IOException) {
-                    reportLoadError("Error fetching sprite image", e)
-                    stop()
-                }
-                override fun onResponse(call: Call, response: Response) {
-                    response.use {
-                        if (finished) return@use
-                        if (!response.isSuccessful) {
-                            reportLoadError("Sprite image request failed with ${response.code}: ${response.message}")
-                            return@use
-                        }
-                        spritePNG = response.body?.use { body ->
-                            try {
-                                val bytes = body.bytes()
-                                BitmapFactory.decodeByteArray(bytes, 0, bytes.size)?.also {
-                                    // Parsed as an image, cache it
-                                    cacheFile(spritePNGUrl, bytes)
-                                }
-                            } catch (ex: Exception) {
-                                reportLoadError("Invalid sprite image response")
-                                null
-                            }
-                        } ?: run {
-                            reportLoadError("Empty sprite image response")
-                            null
-                        }
-                    }
-                    clearTask(task2)
-                    checkFinished()
-                }
-            })
-        }
-
-        // Might have loaded from the caches
-        checkFinished()
     }
 
     private fun processStylesheetJson(source: MapboxVectorStyleSet.Source, json: String) {
@@ -514,19 +462,23 @@ open class MapboxKindaMap(
         val tileInfos = ArrayList<TileInfoNew>()
         val localFetchers = ArrayList<MBTileFetcher>()
 
-        styleSheet?.sources?.forEach { source ->
-            source.tileSpec?.forEach { specItem ->
-                specItem.dict?.let {
-                    val itemMinZoom = it.getInt("minzoom")
-                    val itemMaxZoom = it.getInt("maxzoom")
-                    if (fetchSources) {
-                        minZoom = (itemMinZoom ?: minZoom).coerceAtMost(minZoom)
-                        maxZoom = (itemMaxZoom ?: maxZoom).coerceAtLeast(maxZoom)
-                    }
+        // Sources come from the snapshot or what we just fetched
+        val sources = resolvedSources ?: resolveSources().also {
+            resolvedSources = it
+            if (useStyleSnapshot) {
+                fetcher?.execute("write style snapshot") { writeSnapshot(it) }
+            }
+        }
+
+        sources.forEach { source ->
+            source.tileSpecs.forEach { spec ->
+                if (fetchSources) {
+                    minZoom = (spec.minZoom ?: minZoom).coerceAtMost(minZoom)
+                    maxZoom = (spec.maxZoom ?: maxZoom).coerceAtLeast(maxZoom)
                 }
             }
             // Even if fetchSources is off, keep the highest maxZoom value to use in maxReportedZoom.
-            source.maxZoom?.let { z ->
+            source.styleMaxZoom?.let { z ->
                 sourceMaxZoom = sourceMaxZoom?.coerceAtLeast(z) ?: z
             }
         }
@@ -567,7 +519,7 @@ open class MapboxKindaMap(
             it.coverPoles = (theControl is GlobeController)
             it.edgeMatching = (theControl is GlobeController)
             it.minZoom = minZoom
-            it.maxZoom = maxZoom
+            it.maxZoom = if (imageVectorHybrid) maxZoom else maxZoom + overzoomLevels.coerceAtLeast(0)
             // Let the reported zoom go beyond the maximum
             it.reportedMaxZoom = (maxZoom + 1).coerceAtLeast(reportedMaxZoom ?: 0)
                                               .coerceAtLeast(sourceMaxZoom ?: 0)
@@ -584,11 +536,16 @@ open class MapboxKindaMap(
 
         // Image/vector hybrids draw the polygons into a background image
         if (imageVectorHybrid) {
-            startHybridLoader(params, tileInfos, localFetchers)
+            startHybridLoader(params, sources, tileInfos, localFetchers)
         } else {
             startSimpleLoader(params, tileInfos, localFetchers)
         }
 
+        setupTimeMillis = (System.nanoTime() - startTime) / 1000000
+        if (debugMode) {
+            Log.i("MapboxKindaMap", "Set up in $setupTimeMillis ms" + if (startedFromSnapshot) " from snapshot" else "")
+        }
+
         // If the stylesheet has a background layer, use it to set the clear color for flat maps
         styleSheetVector?.let { ss ->
             (control.get() as? MapController)?.let { mc ->
@@ -633,6 +590,10 @@ open class MapboxKindaMap(
                     it.setTileFetcher(localFetchers[0])
                 }
                 it.debugMode = debugMode
+                it.featureCache = featureCache
+                if (overzoomLevels > 0) {
+                    it.overzoomCache = VectorFeatureCache(overzoomCacheTiles)
+                }
             }
         }
 
@@ -650,19 +611,17 @@ open class MapboxKindaMap(
      }
 
     private fun startHybridLoader(sampleParams: SamplingParams,
+                                  sources: List<MapboxStyleSnapshot.Source>,
                                   tileInfos: ArrayList<TileInfoNew>,
                                   localFetchers: ArrayList<MBTileFetcher>) {
         val control = control.get() ?: return
         // Put together the tileInfoNew objects
-        styleSheet?.sources?.mapNotNull { it.tileSpec }?.flatMap { it.asIterable() }
-                           ?.mapNotNull { it.dict }?.forEach { tileSpec ->
-            val minZoom = tileSpec.getInt("minzoom")
-            val maxZoom = tileSpec.getInt("maxzoom")
+        sources.flatMap { it.tileSpecs.asIterable() }.forEach { tileSpec ->
+            val minZoom = tileSpec.minZoom
+            val maxZoom = tileSpec.maxZoom
             if (minZoom != null && maxZoom != null && minZoom < maxZoom) {
                 // A tile source may list multiple URLs, but we only support one.
-                tileSpec.getArray("tiles")
-                        ?.mapNotNull { it.string }
-                        ?.firstOrNull()?.let { tileUrl ->
+                tileSpec.tileURLs.firstOrNull()?.let { tileUrl ->
                     tileInfos.add(RemoteTileInfoNew(tileUrl, minZoom, maxZoom).also { tileSource ->
                        if (cacheDir != null) {
                             val cacheName = cacheNamePattern.replace(tileUrl, "_")
@@ -682,9 +641,8 @@ open class MapboxKindaMap(
                     return
                 }
 
-                // Set up an offline renderer and a Mapbox vector style handler to render to it
+                // Set up the offline renderers and a Mapbox vector style handler for each to render to it
                 val imageSize = 512
-                offlineRender = RenderController(control.renderControl, imageSize, imageSize)
                 val imageStyleSettings = VectorStyleSettings()
                 imageStyleSettings.baseDrawPriority = styleSettings.baseDrawPriority
     
@@ -702,9 +660,18 @@ open class MapboxKindaMap(
                     }
                 }
                 imageStyleDict.setArray("layers", newImageLayers.toTypedArray())
-                styleSheetImage = MapboxVectorStyleSet(imageStyleDict, styleSettings, displayMetrics, offlineRender!!).also {
-                    offlineRender!!.setClearColor(it.backgroundColorForZoom(0.0))
+
+                // The style is tied to the renderer it draws into, so each renderer gets its own
+                val entries = (0 until offlineRenderPoolSize).map {
+                    val render = RenderController(control.renderControl, imageSize, imageSize)
+                    val style = MapboxVectorStyleSet(imageStyleDict, styleSettings, displayMetrics, render)
+                    render.setClearColor(style.backgroundColorForZoom(0.0))
+                    imageStyleSheets.add(style)
+                    TileRenderPool.Entry(render, style)
                 }
+                offlineRender = entries.first().render
+                styleSheetImage = imageStyleSheets.first()
+                offlineRenderPool = TileRenderPool(entries)
             }
         }
 
@@ -727,7 +694,6 @@ open class MapboxKindaMap(
         }
 
         val vecStyle = MapboxVectorStyleSet(vectorStyleDict, styleSettings, displayMetrics, control)
-        val imgStyle = styleSheetImage
         styleSheetVector = vecStyle
 
         // Set up the sprite sheet
@@ -739,8 +705,9 @@ open class MapboxKindaMap(
             if (stopping) {
                 return
             }
-            mapboxInterp = if (offlineRender != null && imgStyle != null) {
-                MapboxVectorInterpreter(imgStyle, offlineRender!!, vecStyle, control)
+            val renderPool = offlineRenderPool
+            mapboxInterp = if (renderPool != null) {
+                MapboxVectorInterpreter(renderPool, vecStyle, control)
             } else {
                 MapboxVectorInterpreter(vecStyle, control)
             }
@@ -764,6 +731,9 @@ open class MapboxKindaMap(
                     debugMode = this@MapboxKindaMap.debugMode
                 })
                 debugMode = this@MapboxKindaMap.debugMode
+                if (tileContentCacheSize > 0) {
+                    setContentCache(TileContentCache(tileContentCacheSize))
+                }
             }
         }
 
@@ -779,10 +749,108 @@ open class MapboxKindaMap(
         }
     }
 
+    // Note a body that went into the style state
+    private fun addSnapshotInput(url: Uri, data: ByteArray, isSpriteSheet: Boolean = false) {
+        val digest = MapboxStyleSnapshot.digest(data)
+        synchronized(snapshotInputs) {
+            snapshotInputs[url.toString()] = digest
+            if (isSpriteSheet) {
+                spriteSheetURL = url.toString()
+            }
+        }
+    }
+
+    // What a snapshot has to have been made for to be used here
+    private fun snapshotKey(): String? {
+        val base = styleURL?.let { mapboxURLFor(it).toString() } ?: styleSheetJSON?.let { json ->
+            val crc = CRC32().apply { update(json.toByteArray()) }
+            "json:${json.length}:${crc.value}"
+        } ?: return null
+        return "$base|sources=$fetchSources|sprites=$fetchSprites"
+    }
+
+    private fun snapshotFile(key: String): File? {
+        val theCacheDir = cacheDir ?: return null
+        if (!theCacheDir.isDirectory && !theCacheDir.mkdirs())
+            return null
+        val crc = CRC32().apply { update(key.toByteArray()) }
+        return File(theCacheDir, "style-%08x.snapshot".format(crc.value))
+    }
+
+    // Pick up everything from a snapshot, if there's a good one.  Runs on a fetch thread.
+    private fun startFromSnapshot(): Boolean {
+        val key = snapshotKey() ?: return false
+        val file = snapshotFile(key) ?: return false
+        val snapshot = MapboxStyleSnapshot.read(file, key) ?: return false
+        val bodies = snapshot.readInputs { currentBody(it) } ?: return false
+
+        var sheet: Bitmap? = null
+        snapshot.spriteSheetURL?.let { sheetURL ->
+            sheet = bodies[sheetURL]?.let { BitmapFactory.decodeByteArray(it, 0, it.size) }
+            // Fall back to the usual path rather than start without sprites
+            if (sheet == null) {
+                reportLoadWarning("Failed to load snapshot sprite image")
+                return false
+            }
+        }
+
+        styleSheetJSON = snapshot.styleJSON
+        spriteJSON = snapshot.spriteJSON
+        spritePNG = sheet
+        resolvedSources = snapshot.sources
+        startedFromSnapshot = true
+        return true
+    }
+
+    // Pull what we need out of the TileJSON we've fetched
+    private fun resolveSources(): List<MapboxStyleSnapshot.Source> =
+        styleSheet?.sources?.map { source ->
+            val specs = source.tileSpec?.mapNotNull { it.dict }?.map { spec ->
+                MapboxStyleSnapshot.TileSpec(spec.getInt("minzoom"), spec.getInt("maxzoom"),
+                        spec.getArray("tiles")?.mapNotNull { it.string }?.toTypedArray())
+            }
+            MapboxStyleSnapshot.Source(source.name, source.maxZoom, specs?.toTypedArray())
+        } ?: emptyList()
+
+    // What we'd get for a URL right now without going to the network, if anything
+    private fun currentBody(url: String): ByteArray? {
+        val uri = Uri.parse(url)
+        return if (uri.scheme == "file") {
+            uri.toFile().takeIf { it.isFile }?.readBytes()
+        } else {
+            url.toHttpUrlOrNull()?.let { fetcher?.cachedBody(it) }
+        }
+    }
+
+    // Save the style state for next time.  Runs on a fetch thread.
+    private fun writeSnapshot(sources: List<MapboxStyleSnapshot.Source>) {
+        val json = styleSheetJSON
+        val key = snapshotKey()
+        val file = key?.let { snapshotFile(it) }
+        if (json == null || key == null || file == null || loadFailed || stopping) {
+            return
+        }
+        val snapshot = synchronized(snapshotInputs) {
+            MapboxStyleSnapshot(key, json, spriteJSON, spriteSheetURL, sources, snapshotInputs)
+        }
+        // Not worth keeping if it can't be used, say if the server said not to cache something
+        if (snapshot.readInputs { currentBody(it) } == null) {
+            return
+        }
+        try {
+            snapshot.write(file)
+        } catch (ex: Exception) {
+            reportLoadWarning("Failed to write style snapshot", ex)
+        }
+    }
+
     private fun reportLoadWarning(desc: String, ex: Exception? = null) = reportLoadError(desc, ex, false)
     private fun reportLoadError(desc: String, ex: Exception? = null) = reportLoadError(desc, ex, true)
     private fun reportLoadError(desc: String, ex: Exception?, fatal: Boolean) {
         Log.e("MapboxKindaMap", desc, ex)
+        if (fatal) {
+            loadFailed = true
+        }
         synchronized(loadErrorRunnables) {
             loadErrorRunnables.toTypedArray()
         }.forEach {
@@ -812,41 +880,53 @@ open class MapboxKindaMap(
             Log.w("Maply", "No activity, shutting down on calling thread")
         }
 
-        outstandingFetches.forEach {
-            it?.cancel()
-        }
-        outstandingFetches.clear()
+        fetcher?.cancel()
 
-        loader?.shutdown()
+        loader?.let {
+            if (debugMode) {
+                it.contentCache?.stats?.dump("MapboxKindaMap")
+                it.featureCache?.stats?.dump("MapboxKindaMap")
+                it.overzoomCache?.stats?.dump("MapboxKindaMap Overzoom")
+            }
+            it.shutdown()
+        }
         loader = null
         mapboxInterp = null
 
-        offlineRender?.shutdown()
+        offlineRenderPool?.let {
+            if (debugMode) {
+                it.stats.dump("MapboxKindaMap")
+            }
+            it.shutdown()
+        }
+        offlineRenderPool = null
         offlineRender = null
     
         styleSheet?.shutdown()
         styleSheetVector?.shutdown()
-        styleSheetImage?.shutdown()
+        imageStyleSheets.forEach { it.shutdown() }
+        imageStyleSheets.clear()
+        styleSheetImage = null
         
         control.clear()
     }
 
-    private fun readFile(fileName: String) = readFile(File(fileName))
-    private fun readFile(file: File) =
-        FileInputStream(file).use { stream->
-            stream.bufferedReader().use { reader ->
-                reader.readText()
-            }
-        }
-
     private val control : WeakReference<BaseController> = WeakReference<BaseController>(inControl)
-    private val outstandingFetches = ArrayList<Call?>()
+    private var fetcher: BootstrapFetcher? = null
 
     private var sourceMaxZoom: Int? = null
 
+    // Style state for a snapshot, see useStyleSnapshot
+    private var resolvedSources: List<MapboxStyleSnapshot.Source>? = null
+    private val snapshotInputs = LinkedHashMap<String, ByteArray>()
+    private var spriteSheetURL: String? = null
+    private var loadFailed = false
+    private var startTime = 0L
+
     // Characters which we don't put in cache filenames.
     // Equals and Ampersand are valid, but get escaped by URI, and so tend to cause trouble.
     private val cacheNamePattern = Regex("[|?*<\":%@>+\\[\\]\\\\/=&]")
+
     private var finished = false
     
     private var stopping = false
@@ -0,0 +1,322 @@
+/*
+ *  MapboxStyleSnapshot.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything MapboxKindaMap worked out before it could start loading tiles, in one file.
+ * <br>
+ * That's the style sheet, the sprite JSON and where the sprite image is, and the zoom range
+ * and tile URLs for each source out of its TileJSON.  Along with those we keep a digest of
+ * each body they came from.  If any of those can't be read back the same, or the snapshot
+ * was made for a different style, it's ignored.
+ * <br>
+ * With a good snapshot and a fresh HTTP cache, a warm start reads its inputs back from
+ * the cache all at once and doesn't parse the style sheet or TileJSON to find them.
+ */
+public class MapboxStyleSnapshot
+{
+    private static final int Magic = 0x4d425353;    // MBSS
+    private static final int Version = 2;
+    private static final int MaxStringLen = 64*1024*1024;
+    private static final int MaxDigestLen = 64;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * One entry out of a source's TileJSON.
+     */
+    public static class TileSpec
+    {
+        /** Minimum zoom level, if given. */
+        public final Integer minZoom;
+        /** Maximum zoom level, if given. */
+        public final Integer maxZoom;
+        /** Tile URL templates. */
+        public final String[] tileURLs;
+
+        public TileSpec(Integer minZoom,Integer maxZoom,String[] tileURLs)
+        {
+            this.minZoom = minZoom;
+            this.maxZoom = maxZoom;
+            this.tileURLs = (tileURLs != null) ? tileURLs : new String[0];
+        }
+    }
+
+    /**
+     * A source from the style sheet with its TileJSON resolved.
+     */
+    public static class Source
+    {
+        /** Name as it appears in the style sheet. */
+        public final String name;
+        /** Maximum zoom given in the style sheet itself, if any. */
+        public final Integer styleMaxZoom;
+        /** Entries from the TileJSON. */
+        public final TileSpec[] tileSpecs;
+
+        public Source(String name,Integer styleMaxZoom,TileSpec[] tileSpecs)
+        {
+            this.name = name;
+            this.styleMaxZoom = styleMaxZoom;
+            this.tileSpecs = (tileSpecs != null) ? tileSpecs : new TileSpec[0];
+        }
+    }
+
+    /**
+     * Reads back the current body for one of a snapshot's inputs.
+     */
+    public interface InputReader
+    {
+        /**
+         * @return The body for the URL, or null if there isn't one we can use without
+         *         going to the network.
+         */
+        byte[] read(String url) throws IOException;
+    }
+
+    private final String key;
+    private final String styleJSON;
+    private final String spriteJSON;
+    private final String spriteSheetURL;
+    private final List<Source> sources;
+    private final Map<String,byte[]> inputs;
+
+    /**
+     * Capture the resolved style state.
+     * @param key What the snapshot is for.  Reading it back with any other key fails.
+     * @param styleJSON The style sheet.
+     * @param spriteJSON The sprite sheet JSON, if there is one.
+     * @param spriteSheetURL Where the sprite sheet image came from, if there is one.
+     *                       It should be one of the inputs.
+     * @param sources The sources with their TileJSON resolved.
+     * @param inputs The URL of everything the state came from, with the {@link #digest} of its body.
+     */
+    public MapboxStyleSnapshot(String key,String styleJSON,String spriteJSON,String spriteSheetURL,
+                               List<Source> sources,Map<String,byte[]> inputs)
+    {
+        this.key = key;
+        this.styleJSON = styleJSON;
+        this.spriteJSON = spriteJSON;
+        this.spriteSheetURL = spriteSheetURL;
+        this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+        this.inputs = Collections.unmodifiableMap(new LinkedHashMap<>(inputs));
+    }
+
+    /**
+     * Digest of an input's body, to tell if it's changed.
+     */
+    public static byte[] digest(byte[] data)
+    {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Android and Java runtime has SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** What the snapshot is for. */
+    public String getKey() { return key; }
+
+    /** The style sheet JSON. */
+    public String getStyleJSON() { return styleJSON; }
+
+    /** The sprite sheet JSON, or null. */
+    public String getSpriteJSON() { return spriteJSON; }
+
+    /** Where the sprite sheet image came from, or null. */
+    public String getSpriteSheetURL() { return spriteSheetURL; }
+
+    /** Sources with their TileJSON resolved. */
+    public List<Source> getSources() { return sources; }
+
+    /**
+     * Read back every input and check it's what the snapshot was built from.
+     * @return The bodies by URL, or null if any are missing or changed.
+     */
+    public Map<String,byte[]> readInputs(InputReader reader)
+    {
+        final HashMap<String,byte[]> bodies = new HashMap<>();
+        for (Map.Entry<String,byte[]> input : inputs.entrySet()) {
+            final byte[] body;
+            try {
+                body = reader.read(input.getKey());
+            } catch (IOException ex) {
+                return null;
+            }
+            if (body == null || !Arrays.equals(digest(body),input.getValue()))
+                return null;
+            bodies.put(input.getKey(),body);
+        }
+        return bodies;
+    }
+
+    /**
+     * Write the snapshot out.  It goes to a temporary file first so a reader
+     * never sees half of one.
+     */
+    public void write(File file) throws IOException
+    {
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(Magic);
+            out.writeInt(Version);
+            writeString(out,key);
+            out.writeInt(inputs.size());
+            for (Map.Entry<String,byte[]> input : inputs.entrySet()) {
+                writeString(out,input.getKey());
+                out.writeInt(input.getValue().length);
+                out.write(input.getValue());
+            }
+            writeString(out,styleJSON);
+            writeString(out,spriteJSON);
+            writeString(out,spriteSheetURL);
+            out.writeInt(sources.size());
+            for (Source source : sources) {
+                writeString(out,source.name);
+                writeInteger(out,source.styleMaxZoom);
+                out.writeInt(source.tileSpecs.length);
+                for (TileSpec spec : source.tileSpecs) {
+                    writeInteger(out,spec.minZoom);
+                    writeInteger(out,spec.maxZoom);
+                    out.writeInt(spec.tileURLs.length);
+                    for (String url : spec.tileURLs)
+                        writeString(out,url);
+                }
+            }
+        }
+        if (!tmpFile.renameTo(file)) {
+            // Some file systems won't rename over an existing file
+            if (!file.delete() || !tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("Failed to move snapshot into place at " + file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Read back a snapshot written for the given key.
+     * Check its inputs with {@link #readInputs} before using it.
+     * @return The snapshot, or null if it's missing, unreadable or for a different key.
+     */
+    public static MapboxStyleSnapshot read(File file,String key)
+    {
+        if (!file.isFile())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != Magic || in.readInt() != Version)
+                return null;
+            final String theKey = readString(in);
+            if (theKey == null || !theKey.equals(key))
+                return null;
+            final int numInputs = in.readInt();
+            final LinkedHashMap<String,byte[]> inputs = new LinkedHashMap<>();
+            for (int ii=0;ii<numInputs;ii++) {
+                final String url = readString(in);
+                final int len = in.readInt();
+                if (url == null || len < 0 || len > MaxDigestLen)
+                    return null;
+                final byte[] digest = new byte[len];
+                in.readFully(digest);
+                inputs.put(url,digest);
+            }
+            final String styleJSON = readString(in);
+            final String spriteJSON = readString(in);
+            final String spriteSheetURL = readString(in);
+            final int numSources = in.readInt();
+            final ArrayList<Source> sources = new ArrayList<>(Math.max(numSources,0));
+            for (int ii=0;ii<numSources;ii++) {
+                final String name = readString(in);
+                final Integer styleMaxZoom = readInteger(in);
+                final TileSpec[] specs = new TileSpec[in.readInt()];
+                for (int jj=0;jj<specs.length;jj++) {
+                    final Integer minZoom = readInteger(in);
+                    final Integer maxZoom = readInteger(in);
+                    final String[] urls = new String[in.readInt()];
+                    for (int kk=0;kk<urls.length;kk++)
+                        urls[kk] = readString(in);
+                    specs[jj] = new TileSpec(minZoom,maxZoom,urls);
+                }
+                sources.add(new Source(name,styleMaxZoom,specs));
+            }
+            if (styleJSON == null)
+                return null;
+            return new MapboxStyleSnapshot(theKey,styleJSON,spriteJSON,spriteSheetURL,sources,inputs);
+        } catch (IOException | RuntimeException ex) {
+            // Truncated or otherwise mangled, so just rebuild it
+            return null;
+        }
+    }
+
+    // Strings can be bigger than writeUTF allows, and may be null
+    private static void writeString(DataOutputStream out,String str) throws IOException
+    {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        final int len = in.readInt();
+        if (len < 0)
+            return null;
+        if (len > MaxStringLen)
+            throw new IOException("Snapshot string too long");
+        final byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes,UTF8);
+    }
+
+    private static void writeInteger(DataOutputStream out,Integer val) throws IOException
+    {
+        out.writeBoolean(val != null);
+        if (val != null)
+            out.writeInt(val);
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
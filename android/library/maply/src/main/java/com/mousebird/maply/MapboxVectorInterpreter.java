@@ -24,16 +24,12 @@ import android.util.Log;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FilterInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The Mapbox Vector (Tile) Interpreter parses raw vector tile data
@@ -41,12 +37,10 @@ import java.util.zip.InflaterInputStream;
  */
 public class MapboxVectorInterpreter implements LoaderInterpreter
 {
-    final VectorStyleInterface imageStyleGen;
     final VectorStyleInterface styleGen;
     final WeakReference<BaseController> vc;
-    final RenderController tileRender;
+    final TileRenderPool renderPool;
     final MapboxVectorTileParser parser;
-    final MapboxVectorTileParser imageParser;
 
     /**
      * This version of the init builds visual features for vector tiles.
@@ -57,11 +51,9 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
     public MapboxVectorInterpreter(@NotNull VectorStyleInterface inStyleInter,
                                    @NotNull BaseController inVC) {
         styleGen = inStyleInter;
-        imageStyleGen = null;
         vc = new WeakReference<>(inVC);
         parser = new MapboxVectorTileParser(inStyleInter,inVC);
-        imageParser = null;
-        tileRender = null;
+        renderPool = null;
     }
 
     /**
@@ -80,21 +72,145 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
                                    @NotNull RenderController inTileRender,
                                    @NotNull VectorStyleInterface inVectorStyle,
                                    @NotNull BaseController inVC) {
-        imageStyleGen = inImageStyle;
+        this(new TileRenderPool(Collections.singletonList(new TileRenderPool.Entry(inTileRender, inImageStyle))),
+             inVectorStyle, inVC);
+    }
+
+    /**
+     * This version of the init draws the image tiles with a pool of offline renderers.
+     * <br>
+     * Each tile checks a renderer out of the pool, so as many image tiles can be
+     * built at once as there are renderers.  The pool belongs to the caller, who
+     * should shut it down when done.
+     *
+     * @param inRenderPool Renderers, and their image styles, used to draw the image tiles
+     * @param inVectorStyle Style used in the main controller (e.g. the overlay)
+     * @param inVC Controller where everything eventually goes
+     */
+    public MapboxVectorInterpreter(@NotNull TileRenderPool inRenderPool,
+                                   @NotNull VectorStyleInterface inVectorStyle,
+                                   @NotNull BaseController inVC) {
         styleGen = inVectorStyle;
-        tileRender = inTileRender;
+        renderPool = inRenderPool;
         vc = new WeakReference<>(inVC);
-        tileRender.clearLights();
-
         parser = new MapboxVectorTileParser(styleGen,inVC);
-        if (inTileRender != null) {
-            imageParser = new MapboxVectorTileParser(imageStyleGen, inTileRender);
-            imageParser.setLocalCoords(true);
-        } else {
-            imageParser = null;
+    }
+
+    /**
+     * Totals for the vector layers skipped, without decoding, because the style doesn't
+     * display them.  Includes the image tile parsers when rendering to images.
+     */
+    public MapboxVectorTileParser.SkipStats getSkipStats() {
+        final MapboxVectorTileParser.SkipStats stats = parser.getSkipStats();
+        if (renderPool != null) {
+            for (TileRenderPool.Entry entry : renderPool.getEntries()) {
+                stats.addStats(entry.parser.getSkipStats());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * The pool of offline renderers used for image tiles, if there is one.
+     */
+    public TileRenderPool getRenderPool() {
+        return renderPool;
+    }
+
+    private MapboxVectorTileParser featureParser;
+
+    // Parser that keeps the vectors for every layer, for filling a feature cache
+    private synchronized MapboxVectorTileParser getFeatureParser(BaseController inVC) {
+        if (featureParser == null) {
+            featureParser = new MapboxVectorTileParser(styleGen, inVC);
+            featureParser.setKeepVectors(true);
+        }
+        return featureParser;
+    }
+
+    private MapboxVectorTileParser ancestorParser;
+
+    // Parser that only keeps the vectors, for tiles we'll clip pieces out of
+    private synchronized MapboxVectorTileParser getAncestorParser(BaseController inVC) {
+        if (ancestorParser == null) {
+            ancestorParser = new MapboxVectorTileParser(styleGen, inVC);
+            ancestorParser.setFeaturesOnly(true);
+        }
+        return ancestorParser;
+    }
+
+    // Ancestors being parsed, so other tiles under them can wait rather than parse them again
+    private final HashMap<TileID,CountDownLatch> ancestorParses = new HashMap<>();
+
+    // Get the parsed ancestor of an overzoomed tile, parsing it if nobody else has or is
+    private VectorTileData parseAncestor(LoaderReturn loadReturn, QuadLoaderBase loader, TileID ancestorID,
+                                         VectorFeatureCache cache, int cacheEpoch, BaseController inVC) {
+        while (true) {
+            final CountDownLatch inProgress;
+            final CountDownLatch ours;
+            synchronized (ancestorParses) {
+                // It may have gone in the cache since our fetch started
+                final VectorTileData cached = (cache != null && cache.contains(ancestorID)) ? cache.get(ancestorID) : null;
+                if (cached != null) {
+                    return cached;
+                }
+                inProgress = ancestorParses.get(ancestorID);
+                ours = (inProgress == null) ? new CountDownLatch(1) : null;
+                if (ours != null) {
+                    ancestorParses.put(ancestorID, ours);
+                }
+            }
+
+            if (ours != null) {
+                try {
+                    return parseAncestorData(loadReturn, loader, ancestorID, cache, cacheEpoch, inVC);
+                } finally {
+                    synchronized (ancestorParses) {
+                        ancestorParses.remove(ancestorID);
+                    }
+                    ours.countDown();
+                }
+            }
+
+            // Wait for the other parse and look again.  If it didn't make it into the cache, we'll parse it.
+            try {
+                while (!inProgress.await(50, TimeUnit.MILLISECONDS)) {
+                    if (loadReturn.isCancelRequested()) {
+                        return null;
+                    }
+                }
+            } catch (InterruptedException ignored) {
+                return null;
+            }
         }
     }
 
+    // Parse the ancestor of an overzoomed tile and keep its features for the other tiles under it
+    private VectorTileData parseAncestorData(LoaderReturn loadReturn, QuadLoaderBase loader, TileID ancestorID,
+                                             VectorFeatureCache cache, int cacheEpoch, BaseController inVC) {
+        final long startTime = System.nanoTime();
+        final Mbr locBounds = loader.geoBoundsForTile(ancestorID);
+        locBounds.ll = toMerc(locBounds.ll);
+        locBounds.ur = toMerc(locBounds.ur);
+        final VectorTileData features = new VectorTileData(ancestorID, locBounds, loader.geoBoundsForTile(ancestorID));
+
+        final MapboxVectorTileParser ancestorParser = getAncestorParser(inVC);
+        for (byte[] data : loadReturn.getTileData()) {
+            data = TileDecompressor.decompress(data, loadReturn.getCancelToken());
+            if (data == null || data.length < 1 || likelyImage(data) ||
+                !ancestorParser.parseData(data, features, loadReturn)) {
+                return null;
+            }
+        }
+        features.keepVectorsOnly();
+
+        if (cache != null && loadReturn.getGeneration() == loader.getGeneration()) {
+            cache.put(ancestorID, features, cacheEpoch);
+            cache.addParseTime(System.nanoTime() - startTime);
+        }
+        return features;
+    }
+
     WeakReference<QuadPagingLoader> objectLoader;
     WeakReference<QuadImageLoaderBase> imageLoader;
 
@@ -118,62 +234,6 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
                 WGS84_a_2 * Math.log((1.0 + Math.sin(pt.getY())) / (1.0 - Math.sin(pt.getY()))));
     }
 
-    private interface StreamMaker {
-        FilterInputStream make(InputStream rawStream, int length) throws IOException;
-    }
-
-    /**
-     * Try decoding the data using the specified filter stream, return it as-is if anything goes wrong
-     */
-    private byte[] decodeStream(byte[] data, LoaderReturn loadReturn, StreamMaker maker) {
-        FilterInputStream in = null;
-        ByteArrayOutputStream bout = null;
-        ByteArrayInputStream bin = null;
-        try {
-            // Unzip if it's compressed
-            bin = new ByteArrayInputStream(data);
-            in = maker.make(bin, data.length);
-            // Bail as soon as possible if there's a problem
-            if (in.available() != 0) {
-                bout = new ByteArrayOutputStream(data.length * 2);
-
-                byte[] buffer = new byte[1024];
-                for (int count; (count = in.read(buffer)) != 0; ) {
-                    if (loadReturn.isCanceled()) {
-                        return null;
-                    }
-                    if (count < 1) {
-                        break;
-                    }
-                    bout.write(buffer, 0, count);
-                }
-                return bout.toByteArray();
-            }
-        } catch (Exception ignored) {
-            // No good, try something else
-        }  finally  {
-            // Clean everything up in the opposite order they were created.
-            if (bout != null) try { bout.close (); } catch (IOException ignore){}
-            if (in != null) try { in.close (); } catch (IOException ignore){}
-            if (bin != null) try { bin.close (); } catch (IOException ignore){}
-        }
-        return data;
-    }
-
-    /**
-     * Decode compressed data, or return it as-is if not decode-able
-     */
-    private byte[] decodeStream(byte[] data, LoaderReturn loadReturn) {
-        if (data.length > 2) {
-            if (data[0] == (byte)0x1F && data[1] == (byte)0x8B) {
-                return decodeStream(data, loadReturn, GZIPInputStream::new);
-            } else if (data[0] == (byte)0x78) {
-                return decodeStream(data, loadReturn, (b,len) -> new InflaterInputStream(b));
-            }
-        }
-        return data;
-    }
-
     // Simple heuristics for detecting image data.  This allows us to call the correct parser most of
     // the time and avoid a lot of warnings in the logs from passing Protobuf data to BitmapFactory.
 
@@ -201,7 +261,27 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
                isLikely(bytes, SMALLEST_POSSIBLE_GIF, GIF_HEADER);
     }
 
+    // System.nanoTime() when the first tile was done, or zero
+    private volatile long firstTileTime = 0;
+
+    /**
+     * When the first tile was built, from System.nanoTime(), or zero if none have been.
+     * Handy for measuring how long a map takes to show up.
+     */
+    public long getFirstTileTime()
+    {
+        return firstTileTime;
+    }
+
     public void dataForTile(LoaderReturn loadReturn,QuadLoaderBase loader)
+    {
+        buildTile(loadReturn,loader);
+        if (firstTileTime == 0 && !loadReturn.isCanceled()) {
+            firstTileTime = System.nanoTime();
+        }
+    }
+
+    private void buildTile(LoaderReturn loadReturn,QuadLoaderBase loader)
     {
         BaseController theVC = vc.get();
         if (theVC == null) {
@@ -209,7 +289,6 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
         }
 
         if (styleGen != null) styleGen.setZoomSlot(loader.getZoomSlot());
-        if (imageStyleGen != null) imageStyleGen.setZoomSlot(loader.getZoomSlot());
 
         TileID tileID = loadReturn.getTileID();
         Mbr locBounds = loader.geoBoundsForTile(tileID);
@@ -218,12 +297,57 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
 
         VectorTileData tileData = new VectorTileData(tileID, locBounds, loader.geoBoundsForTile(tileID));
 
+        // Features kept from an earlier load just need the styles run over them again.
+        // We can't draw image tiles from them, so that case always parses.
+        final TileID ancestorID = (renderPool == null) ? loadReturn.getSourceTileID() : null;
+        final boolean overzoomed = ancestorID != null && !ancestorID.equals(tileID);
+        final VectorFeatureCache featureCache = (renderPool == null) ?
+                (overzoomed ? loader.getOverzoomCache() : loader.getFeatureCache()) : null;
+        VectorTileData cachedFeatures = (renderPool == null) ? loadReturn.getCachedFeatures() : null;
+        // If the tile is reloaded while we're parsing, what we parsed can't go in the cache
+        final int cacheEpoch = (featureCache != null) ? featureCache.getEpoch() : 0;
+
+        // Past the source's max zoom, the data is for an ancestor tile.
+        // Parse that once and clip each tile under it out of the same features.
+        if (overzoomed && cachedFeatures == null) {
+            cachedFeatures = parseAncestor(loadReturn, loader, ancestorID, featureCache, cacheEpoch, theVC);
+            if (cachedFeatures == null) {
+                if (!loadReturn.isCanceled()) {
+                    loadReturn.errorString = "Decode Failed";
+                }
+                return;
+            }
+        }
+
+        if (cachedFeatures != null) {
+            final long startTime = System.nanoTime();
+            final boolean restyled = overzoomed ?
+                    parser.restyleData(cachedFeatures, tileData, loader.geoBoundsForTile(tileID), loadReturn) :
+                    parser.restyleData(cachedFeatures, tileData, loadReturn);
+            if (!restyled) {
+                return;
+            }
+            if (featureCache != null) {
+                featureCache.addRestyleTime(System.nanoTime() - startTime);
+            }
+        }
+
+        // Anything in the tile data has been dealt with if we had features
+        final byte[][] allData = (cachedFeatures != null) ? new byte[0][] : loadReturn.getTileData();
+        final boolean fillCache = featureCache != null && cachedFeatures == null && allData.length == 1;
+        final MapboxVectorTileParser dataParser = fillCache ? getFeatureParser(theVC) : parser;
+        final long parseStart = System.nanoTime();
+
         ArrayList<Bitmap> images = new ArrayList<>();
         ArrayList<byte[]> pbfData = new ArrayList<>();
-        for (byte[] data : loadReturn.getTileData())
+        for (byte[] data : allData)
         {
+            if (loadReturn.isCancelRequested()) {
+                return;
+            }
+
             // If it's compressed, decompress it
-            data = decodeStream(data, loadReturn);
+            data = TileDecompressor.decompress(data, loadReturn.getCancelToken());
             if (data == null || data.length < 1) {
                 if (loadReturn.isCanceled()) {
                     return;
@@ -241,7 +365,7 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
                 }
             }
 
-            if (parser.parseData(data, tileData, loadReturn)) {
+            if (dataParser.parseData(data, tileData, loadReturn)) {
                 pbfData.add(data);
                 continue;
             }
@@ -262,10 +386,11 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
             }
         }
 
-        if (images.isEmpty() && pbfData.isEmpty()) {
+        if (cachedFeatures == null && images.isEmpty() && pbfData.isEmpty()) {
             loadReturn.errorString = "No usable data";
             return;
         }
+        final long parseTime = System.nanoTime() - parseStart;
 
         // Don't let the sampling layer shut down while we're working
         QuadSamplingLayer samplingLayer = loader.samplingLayer.get();
@@ -273,7 +398,7 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
             return;
         }
 
-        try (LayerThread.WorkWrapper wr = samplingLayer.layerThread.startOfWorkWrapper()) {
+        try (LayerThread.WorkWrapper wr = samplingLayer.layerThread.startOfWorkWrapper("MapboxVectorInterpreter.dataForTile")) {
             if (wr == null) {
                 return;
             }
@@ -294,55 +419,83 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
 
             // If we have a tile renderer, draw the data into that
             Bitmap tileBitmap = null;
-            // multiple checks and synchronization are ok, tileRender is never set to null
-            if (tileRender != null && imageStyleGen != null) {
-                synchronized (tileRender) {
-                    // Make sure the renderer doesn't shut down while we're using it
-                    if (!tileRender.isRunning()) {
-                        return;
-                    }
 
-                    tileRender.setClearColor(imageStyleGen.backgroundColorForZoom(tileID.level));
-                    final Mbr imageBounds = new Mbr(new Point2d(0.0, 0.0), tileRender.frameSize);
-                    VectorTileData imageTileData = new VectorTileData(tileID, imageBounds, locBounds);
+            // Tiles with the same data at the same level render the same, so try to reuse one
+            final TileContentCache contentCache = (renderPool != null) ? loader.getContentCache() : null;
+            final TileContentCache.Key contentKey = (contentCache != null) ? loadReturn.getContentKey() : null;
+            if (contentKey != null) {
+                final Object cached = contentCache.get(contentKey);
+                if (cached instanceof Bitmap) {
+                    tileBitmap = (Bitmap)cached;
+                }
+            }
+
+            if (renderPool != null && tileBitmap == null) {
+                final TileRenderPool.Entry renderEntry = renderPool.checkOut();
+                if (renderEntry == null) {
+                    // Pool is shutting down
+                    return;
+                }
+                final RenderController tileRender = renderEntry.render;
+                final VectorStyleInterface imageStyleGen = renderEntry.style;
+                try {
+                    synchronized (tileRender) {
+                        // Make sure the renderer doesn't shut down while we're using it
+                        if (!tileRender.isRunning()) {
+                            return;
+                        }
+
+                        imageStyleGen.setZoomSlot(loader.getZoomSlot());
+                        tileRender.setClearColor(imageStyleGen.backgroundColorForZoom(tileID.level));
+                        final Mbr imageBounds = new Mbr(new Point2d(0.0, 0.0), tileRender.frameSize);
+                        VectorTileData imageTileData = new VectorTileData(tileID, imageBounds, locBounds);
 
-                    // Need to activate the renderer, add the data, enable the objects and then clean it all up
-                    // We need to use a specific context that comes with the tile renderer
-                    RenderControllerInterface.ContextInfo cInfo = RenderController.getEGLContext();
-                    try {
-                        tileRender.setEGLContext(null);
+                        // Need to activate the renderer, add the data, enable the objects and then clean it all up
+                        // We need to use a specific context that comes with the tile renderer
+                        RenderControllerInterface.ContextInfo cInfo = RenderController.getEGLContext();
+                        try {
+                            tileRender.setEGLContext(null);
 
-                        // Copy the zoom slot values from the scene into the renderer's scene,
-                        // adding half a level to each to approximate the half-way point between
-                        // here and the next level where we'll generate a new tile image.
-                        tileRender.getScene().copyZoomSlots(theVC.getScene(), 0.5f);
+                            // Copy the zoom slot values from the scene into the renderer's scene,
+                            // adding half a level to each to approximate the half-way point between
+                            // here and the next level where we'll generate a new tile image.
+                            tileRender.getScene().copyZoomSlots(theVC.getScene(), 0.5f);
 
-                        for (byte[] data : pbfData) {
-                            if (!imageParser.parseData(data, imageTileData, loadReturn) || loadReturn.isCanceled()) {
-                                if (loadReturn.isCanceled()) {
+                            for (byte[] data : pbfData) {
+                                if (loadReturn.isCancelRequested()) {
                                     return;
-                                } else {
-                                    Log.w(getClass().getSimpleName(), "Tile parsing failed for " + tileID);
+                                }
+                                if (!renderEntry.parser.parseData(data, imageTileData, loadReturn) || loadReturn.isCanceled()) {
+                                    if (loadReturn.isCanceled()) {
+                                        return;
+                                    } else {
+                                        Log.w(getClass().getSimpleName(), "Tile parsing failed for " + tileID);
+                                    }
                                 }
                             }
-                        }
 
-                        ChangeSet changes = imageTileData.getChangeSet();
-                        changes.process(tileRender, tileRender.getScene());
-                        changes.dispose();
+                            ChangeSet changes = imageTileData.getChangeSet();
+                            changes.process(tileRender, tileRender.getScene());
+                            changes.dispose();
 
-                        tileRender.enableObjects(imageTileData.getComponentObjects(), RenderControllerInterface.ThreadMode.ThreadCurrent);
+                            tileRender.enableObjects(imageTileData.getComponentObjects(), RenderControllerInterface.ThreadMode.ThreadCurrent);
 
-                        tileBitmap = tileRender.renderToBitmap();
+                            tileBitmap = tileRender.renderToBitmap();
+                            if (contentKey != null && tileBitmap != null) {
+                                contentCache.put(contentKey, tileBitmap, (long)tileBitmap.getRowBytes() * tileBitmap.getHeight());
+                            }
 
-                        tileRender.removeObjects(imageTileData.getComponentObjects(), RenderControllerInterface.ThreadMode.ThreadCurrent);
+                            tileRender.removeObjects(imageTileData.getComponentObjects(), RenderControllerInterface.ThreadMode.ThreadCurrent);
 
-                        imageTileData.dispose();
-                    } finally {
-                        // Reset the OpenGL context back to what it was before
-                        // It would have been set up by our own renderer for us on a specific thread
-                        theVC.renderControl.setEGLContext(cInfo);
+                            imageTileData.dispose();
+                        } finally {
+                            // Reset the OpenGL context back to what it was before
+                            // It would have been set up by our own renderer for us on a specific thread
+                            theVC.renderControl.setEGLContext(cInfo);
+                        }
                     }
+                } finally {
+                    renderPool.checkIn(renderEntry);
                 }
             }
 
@@ -352,24 +505,23 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
 
             // Sort out overlays if they're there
             ComponentObject[] regObjs = tileData.getComponentObjects();
-            if (!ovlObjs.isEmpty()) {
-                // Filter the overlays out of regular objects
-                ArrayList<ComponentObject> minusOvls = new ArrayList<>();
-                for (ComponentObject compObj : regObjs) {
-                    // Look for it in the overlays
-                    boolean found = false;
-                    for (ComponentObject ovlObj : ovlObjs) {
-                        if (ovlObj.getID() == compObj.getID()) {
-                            found = true;
-                            break;
-                        }
-                    }
+            if (!ovlObjs.isEmpty() && regObjs != null) {
+                // Filter the overlays out of regular objects by ID
+                final LongHashSet ovlIDs = overlayIDs.get();
+                ovlIDs.clear();
+                ovlIDs.ensureCapacity(ovlObjs.size());
+                for (ComponentObject ovlObj : ovlObjs) {
+                    ovlIDs.add(ovlObj.getID());
+                }
 
-                    if (!found)
+                ArrayList<ComponentObject> minusOvls = new ArrayList<>(regObjs.length);
+                for (ComponentObject compObj : regObjs) {
+                    if (!ovlIDs.contains(compObj.getID()))
                         minusOvls.add(compObj);
                 }
+                ovlIDs.clear();
 
-                regObjs = minusOvls.toArray(new ComponentObject[1]);
+                regObjs = minusOvls.toArray(new ComponentObject[0]);
             }
 
             // Merge the results into the loadReturn
@@ -382,6 +534,14 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
                 return;
             }
 
+            // Everything's been pulled out of the tile data, so it can go in the cache
+            if (fillCache && images.isEmpty() && !pbfData.isEmpty() &&
+                    loadReturn.getGeneration() == loader.getGeneration()) {
+                tileData.keepVectorsOnly();
+                featureCache.put(tileID, tileData, cacheEpoch);
+                featureCache.addParseTime(parseTime);
+            }
+
             if (loadReturn instanceof ImageLoaderReturn) {
                 ImageLoaderReturn imgLoadReturn = (ImageLoaderReturn)loadReturn;
 
@@ -417,6 +577,13 @@ public class MapboxVectorInterpreter implements LoaderInterpreter
         }
     }
 
+    // Scratch space for sorting out overlays, one per loading thread
+    private static final ThreadLocal<LongHashSet> overlayIDs = new ThreadLocal<LongHashSet>() {
+        @Override protected LongHashSet initialValue() {
+            return new LongHashSet();
+        }
+    };
+
     private Bitmap lastBackground = null;
     private int lastBackgroundColor = -1;
     private final Object backgroundLock = new Object();
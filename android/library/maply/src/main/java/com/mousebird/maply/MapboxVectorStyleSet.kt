@@ -168,14 +168,13 @@ class MapboxVectorStyleSet : VectorStyleInterface {
 
     // Calculate text width based on the typeface
     @Suppress("unused") // called from JNI
-    fun calculateTextWidth(text: String, labelInfo: LabelInfo): Double {
-        val paint = Paint()
-        paint.textSize = labelInfo.fontSize
-        paint.typeface = labelInfo.typeface
-        val bounds = Rect()
-        paint.getTextBounds(text, 0, text.length, bounds)
-        return (bounds.right - bounds.left).toDouble()
-    }
+    fun calculateTextWidth(text: String, labelInfo: LabelInfo): Double =
+        textWidthCache.getWidth(text, labelInfo.typeface, labelInfo.fontSize)
+
+    /**
+     * Widths of label text, which tends to repeat from one tile to the next.
+     */
+    val textWidthCache = TextWidthCache(4096)
 
     @Suppress("unused") // called from JNI
     fun makeCircleTexture(
@@ -187,6 +186,13 @@ class MapboxVectorStyleSet : VectorStyleInterface {
     ): Long /*Identity*/ {
         val control = control?.get() ?: return EmptyIdentity
 
+        // Circles with the same paint share a texture
+        val key = CircleTextureKey(inRadius, fillColor, strokeColor, inStrokeWidth)
+        acquireGeneratedTexture(key)?.let {
+            circleSize?.setValue(it.halfSize, it.halfSize)
+            return it.tex.texID
+        }
+
         // We want the texture a bit bigger than specified
         val scale = (settings?.markerScale ?: 1.0) * 2.0
 
@@ -221,14 +227,20 @@ class MapboxVectorStyleSet : VectorStyleInterface {
             filterType = RenderControllerInterface.TextureSettings.FilterType.FilterLinear
             imageFormat = RenderController.ImageFormat.MaplyImage4Layer8Bit
         }
-        val tex = control.addTexture(bitmap, texSettings, ThreadMode.ThreadCurrent)
-        return tex?.texID ?: EmptyIdentity
+        val tex = control.addTexture(bitmap, texSettings, ThreadMode.ThreadCurrent) ?: return EmptyIdentity
+        return addGeneratedTexture(key, tex, size / 2.0, control)
     }
 
     @Suppress("unused") // called from JNI
     fun makeLineTexture(comp: DoubleArray): Long /*Identity*/ {
         val control = control?.get() ?: return EmptyIdentity
 
+        // As do lines with the same dash pattern
+        val key = DashTextureKey(comp.toList())
+        acquireGeneratedTexture(key)?.let {
+            return it.tex.texID
+        }
+
         // We want the texture a bit bigger than specified
         val scale = (settings?.markerScale ?: 1.0) * 2.0
 
@@ -265,15 +277,62 @@ class MapboxVectorStyleSet : VectorStyleInterface {
             curY += eleLen
         }
 
-        // Create and return a texture
-        // TODO: Are we releasing the texture somewhere?
+        // Create and return a texture, released by the layers or on shutdown
         val texSettings = RenderControllerInterface.TextureSettings().apply {
             filterType = RenderControllerInterface.TextureSettings.FilterType.FilterLinear
             imageFormat = RenderController.ImageFormat.MaplyImage4Layer8Bit
             wrapV = true
         }
-        val tex = control.addTexture(bitmap, texSettings, ThreadMode.ThreadCurrent)
-        return tex?.texID ?: EmptyIdentity
+        val tex = control.addTexture(bitmap, texSettings, ThreadMode.ThreadCurrent) ?: return EmptyIdentity
+        return addGeneratedTexture(key, tex, 0.0, control)
+    }
+
+    /**
+     * A layer is done with a texture from makeCircleTexture or makeLineTexture.
+     * It's removed once nothing is using it.
+     */
+    @Suppress("unused") // called from JNI
+    fun releaseTexture(texID: Long) {
+        val tex = synchronized(generatedTextures) {
+            val key = generatedTextureKeys[texID] ?: return
+            val entry = generatedTextures[key] ?: return
+            entry.refs -= 1
+            if (entry.refs > 0) {
+                return
+            }
+            generatedTextures.remove(key)
+            generatedTextureKeys.remove(texID)
+            entry.tex
+        }
+        control?.get()?.removeTexture(tex, ThreadMode.ThreadAny)
+    }
+
+    /**
+     * Number of distinct circle and dash textures we're holding on to.
+     */
+    val generatedTextureCount: Int
+        get() = synchronized(generatedTextures) { generatedTextures.size }
+
+    // Add a reference to an existing texture with the same settings, if there is one
+    private fun acquireGeneratedTexture(key: Any): GeneratedTexture? =
+        synchronized(generatedTextures) {
+            generatedTextures[key]?.also { it.refs += 1 }
+        }
+
+    // Keep track of a new texture, unless someone else got there first
+    private fun addGeneratedTexture(key: Any, tex: MaplyTexture, halfSize: Double, control: RenderControllerInterface): Long {
+        val existing = synchronized(generatedTextures) {
+            generatedTextures[key]?.also { it.refs += 1 } ?: run {
+                generatedTextures[key] = GeneratedTexture(tex, halfSize)
+                generatedTextureKeys[tex.texID] = key
+                null
+            }
+        }
+        if (existing != null) {
+            control.removeTexture(tex, ThreadMode.ThreadAny)
+            return existing.tex.texID
+        }
+        return tex.texID
     }
 
     @ColorInt var legendBorderColor = Color.BLACK
@@ -425,6 +484,17 @@ class MapboxVectorStyleSet : VectorStyleInterface {
     private var spriteTex: MaplyTexture? = null
     private var spriteSheet: Bitmap? = null
 
+    // Sprites we've already cut out of the sheet, limited by size in bytes
+    private val spriteLock = Any()
+    private var spriteCache = makeSpriteCache(4 * 1024 * 1024)
+
+    private fun makeSpriteCache(maxBytes: Int) = object : LruCache<String, Bitmap>(maxBytes) {
+        override fun sizeOf(key: String, value: Bitmap) = value.byteCount
+    }
+
+    // Sprites kept after the sheet was released, these don't get evicted
+    private var keptSprites: Map<String, Bitmap>? = null
+
     /**
      * Add the sprites
      */
@@ -434,17 +504,64 @@ class MapboxVectorStyleSet : VectorStyleInterface {
         val spriteTex = control.addTexture(spriteSheet, RenderControllerInterface.TextureSettings(),
                 ThreadMode.ThreadCurrent) ?: return
         this.spriteTex = spriteTex
-        this.spriteSheet = spriteSheet
+        synchronized(spriteLock) {
+            this.spriteSheet = spriteSheet
+            keptSprites = null
+            spriteCache.evictAll()
+        }
         addSpritesNative(spriteJSON, spriteTex.texID, spriteSheet.width, spriteSheet.height)
     }
 
+    /**
+     * Return an image of the given sprite, or null if there isn't one.
+     * These are cut out of the sprite sheet when first asked for and cached, so don't modify them.
+     */
     fun getSprite(name: String): Bitmap? {
+        synchronized(spriteLock) {
+            keptSprites?.let { return it[name] }
+            spriteCache.get(name)?.let { return it }
+        }
         val xywh = intArrayOf(0,0,0,0)
-        val src = spriteSheet
+        val src = synchronized(spriteLock) { spriteSheet }
         if (src == null || !getSpriteInfoNative(name, xywh)) {
             return null
         }
-        return Bitmap.createBitmap(src, xywh[0], xywh[1], xywh[2], xywh[3])
+        val sprite = Bitmap.createBitmap(src, xywh[0], xywh[1], xywh[2], xywh[3])
+        synchronized(spriteLock) {
+            // The sheet may have gone away while we were at it
+            if (spriteSheet === src) {
+                spriteCache.put(name, sprite)
+            }
+        }
+        return sprite
+    }
+
+    /**
+     * Limit the memory used for sprite images that have been asked for, in bytes.
+     */
+    fun setSpriteCacheSize(maxBytes: Int) {
+        synchronized(spriteLock) {
+            spriteCache = makeSpriteCache(maxBytes)
+        }
+    }
+
+    /**
+     * Cut out the given sprites and then let go of the sprite sheet bitmap.
+     *
+     * The sheet stays around as a texture for the renderer, so this only affects getSprite().
+     * From here on it will return just these sprites.  The sheet bitmap can be large, so
+     * this is worth doing once you know which sprites the app will ask for.
+     */
+    fun releaseSpriteSheet(keepSprites: Collection<String>) {
+        val kept = HashMap<String, Bitmap>(keepSprites.size)
+        for (name in keepSprites) {
+            getSprite(name)?.let { kept[name] = it }
+        }
+        synchronized(spriteLock) {
+            spriteSheet = null
+            keptSprites = kept
+            spriteCache.evictAll()
+        }
     }
 
     private external fun addSpritesNative(spriteJSON: String, texID: Long, width: Int, height: Int): Boolean
@@ -528,6 +645,20 @@ class MapboxVectorStyleSet : VectorStyleInterface {
             control.removeTexture(it, ThreadMode.ThreadAny)
             null
         }
+
+        // The layers hand back their circle and dash textures
+        cleanupLayersNative()
+
+        // Whatever the layers haven't released yet
+        val texs = synchronized(generatedTextures) {
+            val texs = generatedTextures.values.map { it.tex }
+            generatedTextures.clear()
+            generatedTextureKeys.clear()
+            texs
+        }
+        if (texs.isNotEmpty()) {
+            control.removeTextures(texs, ThreadMode.ThreadAny)
+        }
     }
 
     fun finalize() {
@@ -572,9 +703,21 @@ class MapboxVectorStyleSet : VectorStyleInterface {
     private val labelInfoMap: ConcurrentMap<SizedTypeface, LabelInfo> =
         ConcurrentSkipListMap()
 
+    // Generated textures, by the settings that made them
+    private data class CircleTextureKey(val radius: Double, val fillColor: Int, val strokeColor: Int, val strokeWidth: Float)
+    private data class DashTextureKey(val components: List<Double>)
+
+    private class GeneratedTexture(val tex: MaplyTexture, val halfSize: Double) {
+        var refs = 1
+    }
+
+    private val generatedTextures = HashMap<Any, GeneratedTexture>()
+    private val generatedTextureKeys = HashMap<Long, Any>()
+
     // JNI stuff
 
     private external fun setArealShaderNative(shaderID: Long)
+    private external fun cleanupLayersNative()
     private external fun backgroundColorForZoomNative(zoom: Double): Int
     
     private external fun getStyleInfo(zoom: Float): Array<AttrDictionary>?
@@ -20,6 +20,8 @@
 
 package com.mousebird.maply;
 
+import android.util.Log;
+
 import androidx.annotation.Nullable;
 
 import org.jetbrains.annotations.NotNull;
@@ -87,9 +89,112 @@ public class MapboxVectorTileParser
                                     @NotNull VectorTileData tileData,
                                     @Nullable LoaderReturn loadReturn);
 
+    /**
+     * Run the styles over vectors kept from an earlier parse of the same tile,
+     * rather than parsing the data again.
+     *
+     * @param features Tile data parsed with vectors kept.  Only the vectors are used.
+     * @param tileData A container for what the styles create.
+     * @return Returns false on failure or cancellation.
+     */
+    public boolean restyleData(@NotNull VectorTileData features,
+                               @NotNull VectorTileData tileData,
+                               @Nullable LoaderReturn loadReturn) {
+        return restyleDataNative(features,tileData,null,null,loadReturn);
+    }
+
+    /**
+     * Run the styles over vectors parsed for an ancestor of the tile,
+     * clipped to the tile's bounds.
+     *
+     * @param features Tile data parsed with vectors kept.  Only the vectors are used.
+     * @param tileData A container for what the styles create.
+     * @param clipBounds Bounds of the tile, in the same coordinates as the vectors.
+     * @return Returns false on failure or cancellation.
+     */
+    public boolean restyleData(@NotNull VectorTileData features,
+                               @NotNull VectorTileData tileData,
+                               @NotNull Mbr clipBounds,
+                               @Nullable LoaderReturn loadReturn) {
+        return restyleDataNative(features,tileData,clipBounds.ll,clipBounds.ur,loadReturn);
+    }
+
+    private native boolean restyleDataNative(VectorTileData features,VectorTileData tileData,
+                                             Point2d clipLL,Point2d clipUR,LoaderReturn loadReturn);
+
     /// If set, we'll parse into local coordinates as specified by the bounding box, rather than geo coords
     native void setLocalCoords(boolean localCoords);
 
+    /// If set, we'll keep the vectors for every layer in the tile data, styled or not
+    native void setKeepVectors(boolean keepVectors);
+
+    /// If set, we'll keep the vectors for every layer in the tile data, but not build anything from them
+    native void setFeaturesOnly(boolean featuresOnly);
+
+    /**
+     * Totals for layers the parser skipped without decoding,
+     * because the style doesn't display them at the tile's level.
+     */
+    public static class SkipStats
+    {
+        // Tiles parsed
+        public long tiles;
+
+        // Layers skipped
+        public long layers;
+
+        // Bytes of layer data skipped
+        public long bytes;
+
+        // Features in the skipped layers
+        public long features;
+
+        // Add the given stats to ours
+        public void addStats(SkipStats that)
+        {
+            tiles += that.tiles;
+            layers += that.layers;
+            bytes += that.bytes;
+            features += that.features;
+        }
+
+        // Print out the stats
+        public void dump(String name)
+        {
+            Log.v("Maply", String.format("---MapboxVectorTileParser %s Skip Stats---",name));
+            Log.v("Maply", String.format("   Tiles = %d",tiles));
+            Log.v("Maply", String.format("   Layers Skipped = %d",layers));
+            Log.v("Maply", String.format("   Features Skipped = %d",features));
+            Log.v("Maply", String.format("   Data Skipped = %.2fMB",bytes / (1024.0*1024.0)));
+            if (tiles > 0) {
+                Log.v("Maply", String.format("   Skipped per tile = %.1fKB, %.1f features",
+                        bytes / 1024.0 / tiles, (double)features / tiles));
+            }
+        }
+    }
+
+    /**
+     * Return the skipped layer totals since we were created or last reset.
+     */
+    public SkipStats getSkipStats()
+    {
+        final long[] vals = new long[4];
+        getSkipStatsNative(vals);
+        final SkipStats stats = new SkipStats();
+        stats.tiles = vals[0];
+        stats.layers = vals[1];
+        stats.bytes = vals[2];
+        stats.features = vals[3];
+        return stats;
+    }
+
+    private native void getSkipStatsNative(long[] stats);
+
+    /**
+     * Reset the skipped layer totals.
+     */
+    public native void resetSkipStats();
+
     public void finalize()
     {
         dispose();
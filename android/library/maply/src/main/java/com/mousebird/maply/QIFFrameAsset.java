@@ -34,8 +34,12 @@ class QIFFrameAsset
     // Clear out any active fetches for this frame
     // Called by the C++ side
     public void cancelFetch(QIFBatchOps batchOps) {
-        if (request != null && batchOps != null)
-            batchOps.addToCancel(request);
+        if (request != null) {
+            // Anything still working on this tile can see it's no longer needed
+            request.cancelToken.cancel();
+            if (batchOps != null)
+                batchOps.addToCancel(request);
+        }
         request = null;
     }
 
@@ -27,6 +27,9 @@ import java.util.Calendar;
  * <br>
  * Set this up with a QuadImageFrameLoader and it'll run through the available frames from start
  * to finish.  At the end it will snap back to the beginning.
+ * <br>
+ * While it's running, the animator asks the loader to load the frames it's about to show
+ * ahead of the rest.  How many depends on how fast it's playing.  See prefetchTime.
  */
 public class QuadImageFrameAnimator implements ActiveObject
 {
@@ -59,34 +62,75 @@ public class QuadImageFrameAnimator implements ActiveObject
      */
     public double pauseLength = 0.0;
 
+    /**
+     * Play the frames from finish to start instead.
+     */
+    public boolean reverse = false;
+
+    /**
+     * How many seconds of upcoming frames to load ahead of the rest.
+     * <br>
+     * At the current period that works out to some number of frames (at least one) past the
+     * current one, in the direction we're playing.  Set this to zero to leave the loader's
+     * priorities alone.
+     */
+    public double prefetchTime = 2.0;
+
+    // What we last told the loader to prefetch
+    private int prefetchFrames = 0;
+    private int prefetchDir = 0;
+
     /**
      * Remove the animator and stop animating
      */
     public void shutdown() {
+        if (loader.get() != null && prefetchFrames > 0)
+            loader.get().setPrefetch(0,1,false);
+        prefetchFrames = 0;
+
         if (control.get() == null)
             return;
         control.get().removeActiveObject(this);
     }
 
+    // Work out how many frames we'll get through in the next prefetchTime seconds
+    // and update the loader if that or our direction changed
+    private void updatePrefetch(QuadImageFrameLoader theLoader)
+    {
+        int frames = 0;
+        if (prefetchTime > 0.0 && period > 0.0 && numFrames > 1) {
+            double framesPerSecond = (numFrames-1) / period;
+            frames = Math.min(Math.max((int)Math.ceil(framesPerSecond * prefetchTime),1),numFrames-1);
+        }
+        int dir = reverse ? -1 : 1;
+        if (frames != prefetchFrames || dir != prefetchDir) {
+            prefetchFrames = frames;
+            prefetchDir = dir;
+            // We loop, so the frames after the end are the ones at the start
+            theLoader.setPrefetch(frames,dir,true);
+        }
+    }
+
     /** ----- Active Object methods ------- */
 
     // Have to do the position update in the setCurrentImage so we're
     // not messing with the rendering loop
     public boolean hasChanges()
     {
-        if (loader.get() == null)
+        QuadImageFrameLoader theLoader = loader.get();
+        if (theLoader == null)
             return false;
 
+        updatePrefetch(theLoader);
+
         double now = Calendar.getInstance().getTimeInMillis() / 1000.0;
         double totalPeriod = period + pauseLength;
         double when = (now-startTime) % totalPeriod;
         // Snap it to the end for a while
-        if (when >= period)
-            loader.get().setCurrentImage(numFrames-1);
-        else {
-            double where = when/period * (numFrames-1);
-            loader.get().setCurrentImage(where);
-        }
+        double where = (when >= period) ? (numFrames-1) : when/period * (numFrames-1);
+        if (reverse)
+            where = (numFrames-1) - where;
+        theLoader.setCurrentImage(where);
 
         return false;
     }
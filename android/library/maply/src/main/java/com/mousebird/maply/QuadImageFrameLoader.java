@@ -4,6 +4,8 @@ package com.mousebird.maply;
 
 import android.os.Handler;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * The Maply Quad Image Frame Loader is for paging individual frames of image pyramids.
  * <br>
@@ -48,23 +50,50 @@ public class QuadImageFrameLoader extends QuadImageLoaderBase
      */
     public void setLoadFrameMode(FrameLoadMode mode)
     {
-        if (setLoadFrameModeNative(mode.ordinal()) && samplingLayer != null) {
+        if (setLoadFrameModeNative(mode.ordinal())) {
             // If we changed the frame mode we may need to refresh the priorities
-            QuadSamplingLayer layer = samplingLayer.get();
-            if (layer == null || layer.layerThread == null)
-                return;
-            layer.layerThread.addTask(new Runnable() {
-                @Override
-                public void run() {
-                    updatePriorities();
-                }
-            });
+            queueUpdatePriorities();
         }
     }
 
     protected native boolean setLoadFrameModeNative(int mode);
     protected native void updatePriorities();
 
+    /**
+     * Load the frames coming up during playback ahead of the others.
+     * <br>
+     * The next numFrames frames past the current image, in the given direction, get a
+     * higher priority than everything but the frames around the current image.
+     * The window moves along as the current image changes.
+     * The QuadImageFrameAnimator sets this up based on how fast it's playing.
+     *
+     * @param numFrames How many frames ahead to favor.  Zero turns this off.
+     * @param direction 1 if we're playing forward, -1 if backward.
+     * @param wrap If set, the window continues from the other end of the frames, as for a looping animation.
+     */
+    public void setPrefetch(int numFrames,int direction,boolean wrap)
+    {
+        if (setPrefetchNative(numFrames,direction,wrap)) {
+            queueUpdatePriorities();
+        }
+    }
+
+    protected native boolean setPrefetchNative(int numFrames,int direction,boolean wrap);
+
+    // Recalculate the tile priorities over on the layer thread
+    private void queueUpdatePriorities()
+    {
+        QuadSamplingLayer layer = (samplingLayer != null) ? samplingLayer.get() : null;
+        if (layer == null || layer.layerThread == null)
+            return;
+        layer.layerThread.addTask(new Runnable() {
+            @Override
+            public void run() {
+                updatePriorities();
+            }
+        });
+    }
+
     /**
      *   Add another rendering focus to the frame loader.
      *
@@ -106,18 +135,37 @@ public class QuadImageFrameLoader extends QuadImageLoaderBase
 //        double curFrame = std::min(std::max(where,0.0),(double)([loader->frameInfos count]-1));
         double curFrame = Math.min(Math.max(where,0.0),(double)(tileInfos.length-1));
 
-        if (setCurrentImageNative(focusID,where) && samplingLayer != null) {
+        if (setCurrentImageNative(focusID,where)) {
             // setCurrentImage tells us if we changed the actual image
-            QuadSamplingLayer layer = samplingLayer.get();
-            if (layer == null || layer.layerThread == null)
-                return;
-            layer.layerThread.addTask(new Runnable() {
-                @Override
-                public void run() {
-                    updatePriorities();
-                }
-            });
+            queueUpdatePriorities();
         }
+
+        if (focusID == 0)
+            noteDisplayedFrame((int)Math.round(curFrame));
+    }
+
+    // Last frame we noted as being on screen and how many of those were loaded in time
+    private int lastDisplayedFrame = -1;
+    private final AtomicInteger framesDisplayed = new AtomicInteger();
+    private final AtomicInteger framesReady = new AtomicInteger();
+
+    // Check if a frame that just came on screen was fully loaded
+    private void noteDisplayedFrame(int frame)
+    {
+        if (frame == lastDisplayedFrame)
+            return;
+        lastDisplayedFrame = frame;
+
+        int numFrames = getNumFrames();
+        if (frame < 0 || frame >= numFrames)
+            return;
+        int totalTiles[] = new int[numFrames];
+        int tilesToLoad[] = new int[numFrames];
+        getStatsNative(totalTiles, tilesToLoad);
+
+        framesDisplayed.incrementAndGet();
+        if (totalTiles[frame] > 0 && tilesToLoad[frame] == 0)
+            framesReady.incrementAndGet();
     }
 
     protected native boolean setCurrentImageNative(int focusID,double where);
@@ -229,6 +277,17 @@ public class QuadImageFrameLoader extends QuadImageLoaderBase
          * Per frame stats for current loading state
          */
         public FrameStats[] frameStats = null;
+
+        /**
+         * Number of times a new frame came up on screen via setCurrentImage
+         */
+        public int framesDisplayed = 0;
+
+        /**
+         * How many of those frames were completely loaded by the time they came up.
+         * Compare to framesDisplayed to see if prefetching is keeping up with playback.
+         */
+        public int framesReady = 0;
     }
 
     /**
@@ -254,6 +313,8 @@ public class QuadImageFrameLoader extends QuadImageLoaderBase
             frameStats.totalTiles = totalTiles[ii];
             stats.frameStats[ii] = frameStats;
         }
+        stats.framesDisplayed = framesDisplayed.get();
+        stats.framesReady = framesReady.get();
 
         return stats;
     }
@@ -197,9 +197,19 @@ public class QuadImageLoaderBase extends QuadLoaderBase
      *  Be sure to set this at layer creation, it won't do anything later on.
      */
     public void setImageFormat(RenderController.ImageFormat imageFormat) {
+        this.imageFormat = imageFormat;
         setImageFormatNative(imageFormat.ordinal());
     }
 
+    /**
+     * The image format set for internal imagery storage.
+     */
+    public RenderController.ImageFormat getImageFormat() {
+        return imageFormat;
+    }
+
+    private RenderController.ImageFormat imageFormat = RenderController.ImageFormat.MaplyImageIntRGBA;
+
     protected native void setImageFormatNative(int imageFormat);
 
     /**
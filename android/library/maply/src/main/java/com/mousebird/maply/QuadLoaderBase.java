@@ -25,7 +25,9 @@ import android.util.Log;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 
 /**
  * Base class for the quad loaders.
@@ -161,6 +163,56 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
         tileFetcher = newFetcher;
     }
 
+    protected TileContentCache contentCache = null;
+
+    /**
+     * Share decode results between tiles with identical data at the same level.
+     * <br>
+     * The interpreter is handed a key for each payload and can reuse what it made
+     * last time.  Off by default.  The cache is cleared when the tiles are reloaded.
+     */
+    public void setContentCache(TileContentCache cache) {
+        contentCache = cache;
+    }
+
+    public TileContentCache getContentCache() {
+        return contentCache;
+    }
+
+    protected VectorFeatureCache featureCache = null;
+
+    /**
+     * Keep the parsed features for vector tiles so a restyle only has to run the styles over them.
+     * <br>
+     * Tiles in the cache aren't fetched again, they go straight to the interpreter.
+     * Calling reload() or reloadArea() drops the tiles it covers, so those are fetched again.
+     * Off by default and only used for single source loaders.
+     */
+    public void setFeatureCache(VectorFeatureCache cache) {
+        featureCache = cache;
+    }
+
+    public VectorFeatureCache getFeatureCache() {
+        return featureCache;
+    }
+
+    protected VectorFeatureCache overzoomCache = null;
+
+    /**
+     * Build vector tiles past a source's maximum zoom from their ancestor at that zoom.
+     * <br>
+     * The ancestor is fetched and parsed once, its features kept here, and each tile
+     * gets its own piece clipped out.  Without this, those tiles are left empty.
+     * Only used for single source loaders that aren't drawing image tiles.
+     */
+    public void setOverzoomCache(VectorFeatureCache cache) {
+        overzoomCache = cache;
+    }
+
+    public VectorFeatureCache getOverzoomCache() {
+        return overzoomCache;
+    }
+
     protected LoaderInterpreter loadInterp = null;
 
     /**
@@ -173,6 +225,7 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
 
     /**
      * Change the interpreter for the data coming back.  This will force a reload.
+     * Features in the feature cache are kept, so the new interpreter just restyles those.
      * @param newInterpreter the new instance
      */
     @SuppressWarnings({"unused", "RedundantSuppression"})
@@ -185,6 +238,10 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
 
         // Make this change on the layer thread
         layer.layerThread.addTask(() -> {
+            final TileContentCache theContentCache = contentCache;
+            if (theContentCache != null) {
+                theContentCache.clear();
+            }
             loadInterp = newInterpreter;
             newInterpreter.setLoader(theLoader);
             ChangeSet changes = new ChangeSet();
@@ -310,9 +367,70 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
     @SuppressWarnings({"unused", "RedundantSuppression"})   // Called from C++
     public void processBatchOps(QIFBatchOps batchOps)
     {
+        if (batchOps.toCancel != null && !batchOps.toCancel.isEmpty()) {
+            cancelAncestorFetches(batchOps);
+        }
         batchOps.process(tileFetcher);
     }
 
+    // An ancestor fetch for overzoomed tiles, along with the other tiles waiting on it
+    private static class AncestorFetch {
+        TileFetchRequest leader;
+        final ArrayList<TileFetchRequest> waiters = new ArrayList<>();
+
+        AncestorFetch(TileFetchRequest leader) {
+            this.leader = leader;
+        }
+    }
+
+    // Ancestors being fetched for overzoomed tiles
+    private final HashMap<TileID,AncestorFetch> ancestorFetches = new HashMap<>();
+
+    // If a tile others are waiting on is cancelled, one of them has to do the fetch instead
+    private void cancelAncestorFetches(QIFBatchOps batchOps) {
+        synchronized (ancestorFetches) {
+            if (ancestorFetches.isEmpty()) {
+                return;
+            }
+            final Iterator<AncestorFetch> it = ancestorFetches.values().iterator();
+            while (it.hasNext()) {
+                final AncestorFetch fetch = it.next();
+                fetch.waiters.removeAll(batchOps.toCancel);
+                if (batchOps.toCancel.contains(fetch.leader)) {
+                    if (fetch.waiters.isEmpty()) {
+                        it.remove();
+                    } else {
+                        fetch.leader = fetch.waiters.remove(0);
+                        batchOps.addToStart(fetch.leader);
+                    }
+                }
+            }
+        }
+    }
+
+    // The ancestor fetch is done, so hand the result to anything waiting on it
+    private void finishAncestorFetch(TileID sourceTileID, TileFetchRequest fetchRequest, byte[] data, String errorStr) {
+        final ArrayList<TileFetchRequest> waiters;
+        synchronized (ancestorFetches) {
+            final AncestorFetch fetch = ancestorFetches.get(sourceTileID);
+            if (fetch == null || fetch.leader != fetchRequest) {
+                return;
+            }
+            ancestorFetches.remove(sourceTileID);
+            waiters = fetch.waiters;
+        }
+        for (TileFetchRequest waiter : waiters) {
+            // By now the ancestor has usually been parsed, so these just restyle it
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+                if (errorStr == null) {
+                    waiter.callback.success(waiter, data);
+                } else {
+                    waiter.callback.failure(waiter, errorStr);
+                }
+            });
+        }
+    }
+
     // Frame assets are used C++ side, but we have to hold a reference to them
     //  or they disappear at inopportune times.  We don't look inside them here.
     HashSet<QIFFrameAsset> frameAssets = new HashSet<>();
@@ -333,6 +451,23 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
 
         final TileID tileID = new TileID(tileX,tileY,tileLevel);
 
+        // Past the source's maximum zoom we can build the tile from its ancestor
+        final TileInfoNew firstInfo = tileInfos[0];
+        final VectorFeatureCache theOverzoomCache = overzoomCache;
+        final TileID sourceTileID = (theOverzoomCache != null && tileInfos.length == 1 && firstInfo != null &&
+                                     tileLevel > firstInfo.maxZoom && firstInfo.maxZoom >= firstInfo.minZoom) ?
+                new TileID(tileX >> (tileLevel - firstInfo.maxZoom),
+                           tileY >> (tileLevel - firstInfo.maxZoom),
+                           firstInfo.maxZoom) : null;
+
+        // If we already parsed this one, skip the fetch entirely
+        final VectorFeatureCache theFeatureCache = (sourceTileID != null) ? theOverzoomCache : featureCache;
+        final VectorTileData cachedFeatures = (theFeatureCache != null && tileInfos.length == 1) ?
+                theFeatureCache.get((sourceTileID != null) ? sourceTileID : tileID) : null;
+
+        // Only the first of the tiles sharing an ancestor fetches it, the rest wait for that
+        final boolean ancestorFetch = sourceTileID != null && cachedFeatures == null;
+
         int frame = 0;
         for (TileInfoNew tileInfo : tileInfos) {
             final int fFrame = frame;
@@ -346,11 +481,17 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
             fetchRequest.callback = new TileFetchRequest.Callback() {
                 @Override
                 public void success(TileFetchRequest fetchRequest, byte[] data) {
-                    fetchSuccess(fetchRequest, tileID, fFrame, frameID, data);
+                    fetchSuccess(fetchRequest, tileID, fFrame, frameID, data, cachedFeatures, sourceTileID);
+                    if (ancestorFetch) {
+                        finishAncestorFetch(sourceTileID, fetchRequest, data, null);
+                    }
                 }
                 @Override
                 public void failure(TileFetchRequest fetchRequest, String errorStr) {
                     fetchFailed(fetchRequest, errorStr);
+                    if (ancestorFetch) {
+                        finishAncestorFetch(sourceTileID, fetchRequest, null, errorStr);
+                    }
                 }
             };
 
@@ -360,16 +501,31 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
 
             // If the tile is outside the range of valid zoom levels for this source,
             // produce an empty placeholder tile instead of attempting to load it.
-            final boolean placeholder = tileInfo != null &&
+            final boolean placeholder = tileInfo != null && sourceTileID == null &&
                     (tileID.level < tileInfo.minZoom || tileID.level > tileInfo.maxZoom);
 
-            if (tileInfo != null && !placeholder) {
-                fetchRequest.fetchInfo = tileInfo.fetchInfoForTile(tileID, getFlipY());
+            if (tileInfo != null && !placeholder && cachedFeatures == null) {
+                fetchRequest.fetchInfo = tileInfo.fetchInfoForTile((sourceTileID != null) ? sourceTileID : tileID, getFlipY());
                 fetchRequest.tileSource = tileInfo.uniqueID;
                 frameAsset.request = fetchRequest;
 
+                boolean waiting = false;
+                if (ancestorFetch) {
+                    synchronized (ancestorFetches) {
+                        final AncestorFetch fetch = ancestorFetches.get(sourceTileID);
+                        if (fetch != null) {
+                            fetch.waiters.add(fetchRequest);
+                            waiting = true;
+                        } else {
+                            ancestorFetches.put(sourceTileID, new AncestorFetch(fetchRequest));
+                        }
+                    }
+                }
+
                 // This will start the fetch request in a bit
-                batchOps.addToStart(fetchRequest);
+                if (!waiting) {
+                    batchOps.addToStart(fetchRequest);
+                }
             } else {
                 // There's no fetching to do, so we'll short circuit it
                 new BackgroundFetch(fetchRequest)
@@ -381,7 +537,8 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
         }
     }
 
-    private void fetchSuccess(TileFetchRequest fetchRequest, TileID tileID, int frame, long frameID, byte[] data) {
+    private void fetchSuccess(TileFetchRequest fetchRequest, TileID tileID, int frame, long frameID, byte[] data,
+                              VectorTileData cachedFeatures, TileID sourceTileID) {
         final LoaderInterpreter theLoadInterp = loadInterp;
         final QuadSamplingLayer layer = getSamplingLayer();
 
@@ -410,6 +567,9 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
         final LoaderReturn loadReturn = makeLoaderReturn();
         loadReturn.setTileID(tileID);
         loadReturn.setFrame(frameID,frame);
+        loadReturn.setCancelToken(fetchRequest.cancelToken);
+        loadReturn.setCachedFeatures(cachedFeatures);
+        loadReturn.setSourceTileID(sourceTileID);
 
         // Attach the loader return to the frame, enabling cancellation, etc.
         setLoadReturn(loadReturn);
@@ -422,10 +582,17 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
             loadReturn.addTileData(data);
         }
 
+        // Identical payloads at the same level can share a decode result
+        final TileContentCache theContentCache = contentCache;
+        if (theContentCache != null) {
+            loadReturn.setContentKey(TileContentCache.keyFor(loadReturn.getTileData(), tileID.level));
+        }
+
         // We're on an AsyncTask in the background here, so do the loading
         if (loadInterp != null) {
-            try (LayerThread.WorkWrapper wr = layer.layerThread.startOfWorkWrapper()) {
-                if (wr != null) {
+            try (LayerThread.WorkWrapper wr = layer.layerThread.startOfWorkWrapper("QuadLoaderBase.dataForTile")) {
+                // Don't bother decoding a tile that's already gone
+                if (wr != null && !loadReturn.isCancelRequested()) {
                     theLoadInterp.dataForTile(loadReturn, this);
                 }
             }
@@ -438,7 +605,7 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
             layer.layerThread.addTask(() -> {
                 final BaseController control = getController();
                 if (control != null) {
-                    try (LayerThread.WorkWrapper wr = layer.layerThread.startOfWorkWrapper()) {
+                    try (LayerThread.WorkWrapper wr = layer.layerThread.startOfWorkWrapper("QuadLoaderBase.mergeLoaderReturn")) {
                         if (wr != null) {
                             if (loadInterp != null && !isShuttingDown) {
                                 ChangeSet changes = new ChangeSet();
@@ -532,6 +699,11 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
     protected native void reloadNative(ChangeSet changes);
 
     public void reloadArea(Mbr[] areas) {
+        // Whatever changed probably changes the results too
+        final TileContentCache theContentCache = contentCache;
+        if (theContentCache != null) {
+            theContentCache.clear();
+        }
         QuadSamplingLayer layer = getSamplingLayer();
         if (layer != null) {
             layer.layerThread.addTask(() -> {
@@ -539,9 +711,35 @@ public class QuadLoaderBase implements QuadSamplingLayer.ClientInterface
                 if (layerInner != null) {
                     ChangeSet changes = new ChangeSet();
                     reloadAreaNative(changes,areas);
+                    // After the generation changes, so parses of the old one can't refill them
+                    invalidateFeatures(areas);
                     layerInner.layerThread.addChanges(changes);
                 }
             });
+        } else {
+            invalidateFeatures(areas);
+        }
+    }
+
+    // Parsed features for reloaded tiles may be out of date, so they have to be fetched again
+    private void invalidateFeatures(Mbr[] areas) {
+        for (VectorFeatureCache cache : new VectorFeatureCache[] { featureCache, overzoomCache }) {
+            if (cache == null) {
+                continue;
+            }
+            if (areas == null || areas.length == 0) {
+                cache.clear();
+            } else {
+                cache.remove(tileID -> {
+                    final Mbr bounds = geoBoundsForTile(tileID);
+                    for (Mbr area : areas) {
+                        if (area != null && bounds.overlaps(area)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+            }
         }
     }
 
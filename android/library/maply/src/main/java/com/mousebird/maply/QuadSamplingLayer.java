@@ -135,7 +135,7 @@ public class QuadSamplingLayer extends Layer implements LayerThread.ViewWatcherI
         final int thisGeneration = ++generation;
 
 //        Log.d("Maply", "QuadSamplingLayer: pre-viewUpdatedNative + " + ident);
-        try (LayerThread.WorkWrapper wr = layerThread.startOfWorkWrapper()) {
+        try (LayerThread.WorkWrapper wr = layerThread.startOfWorkWrapper("QuadSamplingLayer.viewUpdated")) {
             if (wr == null) {
                 return;
             }
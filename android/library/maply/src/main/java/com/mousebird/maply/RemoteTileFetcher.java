@@ -236,6 +236,33 @@ public class RemoteTileFetcher extends HandlerThread implements TileFetcher
      */
     public void resetStats() {
         recentStats = new Stats();
+        final TexelCache cache = texelCache;
+        if (cache != null)
+            cache.resetStats();
+    }
+
+    protected TexelCache texelCache;
+
+    /**
+     * Optional cache of decoded texels for the tiles we fetch.
+     * <br>
+     * Image interpreters loading from this fetcher will check it before decoding
+     * and fill it in afterwards, so hot tiles skip the decode entirely.
+     */
+    public void setTexelCache(TexelCache cache) {
+        texelCache = cache;
+    }
+
+    public TexelCache getTexelCache() {
+        return texelCache;
+    }
+
+    /**
+     * Return the texel cache stats (recent or for all time), or null if there's no texel cache
+     */
+    public TexelCache.Stats getTexelCacheStats(boolean allTime) {
+        final TexelCache cache = texelCache;
+        return (cache != null) ? cache.getStats(allTime) : null;
     }
 
     /**
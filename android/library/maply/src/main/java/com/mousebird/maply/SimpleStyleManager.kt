@@ -27,6 +27,8 @@ import androidx.core.graphics.*
 import java.io.*
 import java.lang.ref.WeakReference
 import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.math.ceil
 import kotlin.math.min
 
@@ -46,9 +48,89 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
     var markerScale = 1.0
     var markerBackgroundScale = 1.0
 
+    /**
+     * Bytes of source and icon images to keep around, shared by all style managers.
+     */
     var sharedCacheSize: Int
         get() { return Shared.cacheSize }
         set(value) { Shared.cacheSize = value }
+
+    /**
+     * Bytes of generated marker textures to keep for reuse.
+     *
+     * A texture pushed out of the cache may still be used by markers on the map,
+     * so it's kept aside until the objects using it go through [removeFeatures].
+     * Styles from [makeStyle] don't hold on to their texture, so use them right away.
+     */
+    var textureCacheSize: Int
+        get() { return textureCache.maxSize() }
+        set(value) { textureCache.resize(value.coerceAtLeast(1)) }
+
+    /**
+     * If set, features added together that will look the same go in with one add call,
+     * rather than one call per feature.  That's one call for all the markers, and one
+     * per label font and color, line width and color or fill color.
+     *
+     * What's on top is decided by draw priority, which each kind of feature gets from
+     * its info, so grouping doesn't change how they stack.
+     * Feature types with an onAdd callback set are still added one at a time,
+     * since the callback may change the info for just that feature.
+     */
+    var batchFeatures = true
+
+    /**
+     * Counts for the caches and the add calls.
+     */
+    class Stats {
+        // Features added and the add calls they went in with
+        var features = 0L
+        var batches = 0L
+
+        // Generated marker textures
+        var textureHits = 0
+        var textureMisses = 0
+        var textureEvictions = 0
+        var textureBytes = 0
+        var textureMaxBytes = 0
+        var texturesEvictedInUse = 0
+
+        // Source and icon images, shared by all the style managers
+        var imageHits = 0
+        var imageMisses = 0
+        var imageEvictions = 0
+        var imageBytes = 0
+        var imageMaxBytes = 0
+
+        // Print out the stats
+        fun dump(name: String) {
+            Log.v("Maply", String.format("---SimpleStyleManager %s Stats---", name))
+            Log.v("Maply", String.format("   Features = %d in %d add calls", features, batches))
+            Log.v("Maply", String.format("   Textures: hits = %d, misses = %d, evicted = %d, held = %d/%d bytes, awaiting release = %d",
+                    textureHits, textureMisses, textureEvictions, textureBytes, textureMaxBytes, texturesEvictedInUse))
+            Log.v("Maply", String.format("   Images: hits = %d, misses = %d, evicted = %d, held = %d/%d bytes",
+                    imageHits, imageMisses, imageEvictions, imageBytes, imageMaxBytes))
+        }
+    }
+
+    /**
+     * Current counts for the caches and the add calls.
+     */
+    val stats: Stats get() = Stats().also {
+        it.features = featureCount.get()
+        it.batches = batchCount.get()
+        it.textureHits = textureCache.hitCount()
+        it.textureMisses = textureCache.missCount()
+        it.textureEvictions = textureCache.evictionCount()
+        it.textureBytes = textureCache.size()
+        it.textureMaxBytes = textureCache.maxSize()
+        it.texturesEvictedInUse = synchronized(textureLock) { evictedTextures.size }
+        val images = Shared.imageCache
+        it.imageHits = images.hitCount()
+        it.imageMisses = images.missCount()
+        it.imageEvictions = images.evictionCount()
+        it.imageBytes = images.size()
+        it.imageMaxBytes = images.maxSize()
+    }
     
     interface StyleObjectLocator {
         fun locate(name: String): Collection<String>
@@ -75,6 +157,7 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
     
     /**
      * Add a collection of styled objects, splitting each if necessary.
+     * Remove what comes back with [removeFeatures], so the marker textures it uses can go too.
      */
     fun addFeatures(objs: Collection<VectorObject>, mode: ThreadMode = threadCurrent): Sequence<ComponentObject> {
         return addFeatures(objs, null, mode)
@@ -91,15 +174,20 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
      * Add objects with a specific style, ignoring its attributes, splitting it if necessary
      */
     fun addFeatures(objs: Collection<VectorObject>, style: SimpleStyle? = null, mode: ThreadMode = threadCurrent): Sequence<ComponentObject> {
+        if (batchFeatures) {
+            return sequence {
+                yieldAll(adding(mode) { addFeaturesBatched(objs, style, mode) })
+            }
+        }
         return sequence {
             for (obj in objs) {
                 val split = obj.splitVectors()
                 if (split != null) {
                     for (vec: VectorObject in split) {
-                        yieldAll(addFeaturesInternal(vec, style, mode))
+                        yieldAll(adding(mode) { addFeaturesInternal(vec, style, mode) })
                     }
                 } else {
-                    yieldAll(addFeaturesInternal(obj, style, mode))
+                    yieldAll(adding(mode) { addFeaturesInternal(obj, style, mode) })
                 }
             }
         }
@@ -118,10 +206,8 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
                 marker.offset = it
             }
         }
-        val info = inInfo ?: MarkerInfo().apply {
-            enable = true
-        }
-        return vc.addScreenMarkers(markers.toList(), info, mode)
+        val info = inInfo ?: markerInfo()
+        return adding(mode) { addMarkers(vc, markers.toList(), info, mode) }
     }
     
     fun addFeatures(labels: Sequence<ScreenLabel>, attrs: AttrDictionary, info: LabelInfo? = null, mode: ThreadMode = threadCurrent): ComponentObject? =
@@ -149,7 +235,13 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
         return null
     }
     
-    fun makeStyle(dict: AttrDictionary): SimpleStyle {
+    fun makeStyle(dict: AttrDictionary): SimpleStyle = makeStyle(dict.snapshot(styleAttrKeys))
+
+    /**
+     * Make a style from attributes already copied out of a dictionary.
+     * The snapshot should include all the style attribute names.
+     */
+    fun makeStyle(dict: AttrSnapshot): SimpleStyle {
         val style = SimpleStyle()
         
         style.title = dict.getString("title")
@@ -230,63 +322,280 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
      * Call when done with all the generated objects.
      */
     fun shutdown() {
-        synchronized(textureCache) {
-            vc.get()?.removeTextures(textureCache.elements().toList(), threadCurrent)
-            textureCache.clear()
+        textureCache.evictAll()
+        releaseEvictedTextures()
+        synchronized(textureLock) {
+            objectTextures.clear()
+            textureRefs.clear()
+        }
+    }
+
+    /**
+     * Remove objects returned by [addFeatures], then any generated textures that
+     * were pushed out of the texture cache and aren't used by anything else.
+     * The textures go after the objects, so nothing on the map still refers to them.
+     * Objects removed any other way keep their textures counted as in use,
+     * until [releaseEvictedTextures] or [shutdown].
+     */
+    fun removeFeatures(objs: Collection<ComponentObject>, mode: ThreadMode = threadCurrent) {
+        val vc = this.vc.get() ?: return
+        vc.removeObjects(objs, mode)
+        synchronized(textureLock) {
+            for (obj in objs) {
+                objectTextures.remove(obj)?.forEach { tex ->
+                    val refs = (textureRefs[tex] ?: 1) - 1
+                    if (refs > 0) {
+                        textureRefs[tex] = refs
+                    } else {
+                        textureRefs.remove(tex)
+                    }
+                }
+            }
+        }
+        releaseUnusedTextures(mode)
+    }
+
+    /**
+     * Remove all the textures pushed out of the texture cache from the renderer,
+     * whether or not markers still use them.
+     * Only needed if the objects using them were removed some other way than [removeFeatures].
+     */
+    fun releaseEvictedTextures() {
+        val texs = synchronized(textureLock) {
+            evictedTextures.values.map { it.tex }.also { evictedTextures.clear() }
+        }
+        if (texs.isNotEmpty()) {
+            vc.get()?.removeTextures(texs, threadCurrent)
+        }
+    }
+
+    // Remove textures that are out of the cache and that no markers use
+    private fun releaseUnusedTextures(mode: ThreadMode) {
+        val texs = synchronized(textureLock) {
+            // Styles made for an add in progress may still be about to use them
+            if (activeAdds.get() > 0) {
+                return
+            }
+            val unused = evictedTextures.filterValues { !textureRefs.containsKey(it.tex) }
+            unused.keys.forEach { evictedTextures.remove(it) }
+            unused.values.map { it.tex }
+        }
+        if (texs.isNotEmpty()) {
+            vc.get()?.removeTextures(texs, mode)
+        }
+    }
+
+    // Keep unused textures around until the add is done with the styles it made
+    private inline fun <R> adding(mode: ThreadMode, block: () -> R): R {
+        activeAdds.incrementAndGet()
+        try {
+            return block()
+        } finally {
+            if (activeAdds.decrementAndGet() == 0) {
+                releaseUnusedTextures(mode)
+            }
+        }
+    }
+
+    // Add markers, noting which textures the new object uses
+    private fun addMarkers(vc: RenderControllerInterface, markers: List<ScreenMarker>, info: MarkerInfo, mode: ThreadMode): ComponentObject? {
+        val obj = vc.addScreenMarkers(markers, info, mode) ?: return null
+        val texs = markers.mapNotNullTo(HashSet()) { it.tex }
+        if (texs.isNotEmpty()) {
+            synchronized(textureLock) {
+                objectTextures[obj] = texs
+                texs.forEach { textureRefs[it] = (textureRefs[it] ?: 0) + 1 }
+            }
+        }
+        return obj
+    }
+
+    // A feature waiting to go in, along with anything made for it
+    private class Feature(val obj: VectorObject, val marker: ScreenMarker? = null, val label: ScreenLabel? = null)
+
+    // What a feature goes in with, label or line size and color, if anything.
+    // Markers have neither, so they all go in together.
+    private data class BatchKey(val type: VectorObject.MaplyVectorObjectType, val size: Float?, @ColorInt val color: Int?) {
+        // Each kind of feature is drawn at the default for its info
+        val drawPriority: Int get() = when (type) {
+            VectorObject.MaplyVectorObjectType.MaplyVectorPointType ->
+                if (size != null) LabelInfo.LabelPriorityDefault else MarkerInfo.ScreenMarkerPriorityDefault
+            VectorObject.MaplyVectorObjectType.MaplyVectorLinearType -> WideVectorInfo.WideVectorPriorityDefault
+            else -> VectorInfo.VectorPriorityDefault
+        }
+    }
+
+    private fun addFeaturesBatched(objs: Collection<VectorObject>, optStyle: SimpleStyle?, mode: ThreadMode): List<ComponentObject> {
+        val vc = this.vc.get() ?: return emptyList()
+        val results = ArrayList<ComponentObject>()
+        val batcher = StyleBatcher<BatchKey, Feature> { key, group -> addGroup(vc, key, group, mode, results) }
+        for (obj in objs) {
+            val split = obj.splitVectors()
+            if (split != null) {
+                for (vec: VectorObject in split) {
+                    batchFeature(vec, optStyle, mode, batcher, results)
+                }
+            } else {
+                batchFeature(obj, optStyle, mode, batcher, results)
+            }
+        }
+        batcher.finish()
+        return results
+    }
+
+    // Add a group of features that look the same
+    private fun addGroup(vc: RenderControllerInterface, key: BatchKey, group: List<Feature>, mode: ThreadMode,
+                         results: ArrayList<ComponentObject>) {
+        when (key.type) {
+            VectorObject.MaplyVectorObjectType.MaplyVectorPointType -> {
+                val markers = group.mapNotNull { it.marker }
+                if (markers.isNotEmpty()) {
+                    addBatch(addMarkers(vc, markers, markerInfo(), mode), results)
+                }
+                val labels = group.mapNotNull { it.label }
+                if (labels.isNotEmpty()) {
+                    val info = LabelInfo().apply {
+                        fontSize = key.size ?: 10f
+                        textColor = key.color ?: defaultColor
+                    }
+                    addBatch(vc.addScreenLabels(labels, info, mode), results)
+                }
+            }
+            VectorObject.MaplyVectorObjectType.MaplyVectorLinearType -> {
+                val info = WideVectorInfo().apply {
+                    setLineWidth(key.size ?: 2f)
+                    setColor(key.color ?: defaultColor)
+                }
+                addBatch(vc.addWideVectors(group.map { it.obj }, info, threadCurrent), results)
+            }
+            VectorObject.MaplyVectorObjectType.MaplyVectorArealType -> {
+                addBatch(vc.addVectors(group.map { it.obj }, areaInfo(key.color ?: defaultColor), mode), results)
+            }
+            else -> { }
+        }
+    }
+
+    private fun addBatch(obj: ComponentObject?, results: ArrayList<ComponentObject>) {
+        batchCount.incrementAndGet()
+        obj?.let { results.add(it) }
+    }
+
+    // Style the feature and add it to its group, or add it now if there's a callback
+    private fun batchFeature(obj: VectorObject, optStyle: SimpleStyle?, mode: ThreadMode,
+                             batcher: StyleBatcher<BatchKey, Feature>, results: ArrayList<ComponentObject>) {
+        val type = obj.vectorType
+        val hasCallback = when (type) {
+            VectorObject.MaplyVectorObjectType.MaplyVectorPointType -> onAddMarker != null || onAddLabel != null
+            VectorObject.MaplyVectorObjectType.MaplyVectorLinearType -> onAddLine != null
+            VectorObject.MaplyVectorObjectType.MaplyVectorArealType -> onAddArea != null
+            else -> false
         }
+        if (hasCallback) {
+            results.addAll(addFeaturesInternal(obj, optStyle, mode))
+            return
+        }
+
+        val style = optStyle ?: makeStyle(obj.attributes)
+        featureCount.incrementAndGet()
+        when (type) {
+            VectorObject.MaplyVectorObjectType.MaplyVectorPointType -> {
+                val marker = if (style.markerTexture != null) makeMarker(obj, style) else null
+                val label = if (hasLabel(style)) makeLabel(obj, style) else null
+                if (marker != null) {
+                    add(batcher, BatchKey(type, null, null), Feature(obj, marker))
+                }
+                if (label != null) {
+                    add(batcher, BatchKey(type, style.labelSize ?: 10f, style.labelColor ?: defaultColor), Feature(obj, label = label))
+                }
+            }
+            VectorObject.MaplyVectorObjectType.MaplyVectorLinearType -> {
+                val color = resolveColor(style.strokeColor, style.strokeOpacity)
+                add(batcher, BatchKey(type, style.strokeWidth ?: 2f, color), Feature(obj))
+            }
+            VectorObject.MaplyVectorObjectType.MaplyVectorArealType -> {
+                val color = resolveColor(style.fillColor, style.fillOpacity)
+                add(batcher, BatchKey(type, null, color), Feature(obj))
+            }
+            else -> { }
+        }
+    }
+
+    private fun add(batcher: StyleBatcher<BatchKey, Feature>, key: BatchKey, feature: Feature) =
+            batcher.add(key.drawPriority, key, feature)
+
+    private fun hasLabel(style: SimpleStyle) =
+            style.labelColor != null && style.labelSize != null && (style.title ?: "").isNotEmpty()
+
+    private fun makeMarker(obj: VectorObject, style: SimpleStyle) = ScreenMarker().apply {
+        loc = obj.center()
+        tex = style.markerTexture
+        size = style.markerSize
+        offset = style.markerOffset ?: Point2d(0.0, 0.0)
+    }
+
+    private fun makeLabel(obj: VectorObject, style: SimpleStyle) = ScreenLabel().apply {
+        text = style.title
+        loc = obj.center()
+        offset = style.labelOffset ?: Point2d(0.0, 0.0)
+        layoutImportance = Float.MAX_VALUE
+    }
+
+    private fun markerInfo() = MarkerInfo().apply {
+        enable = true
+    }
+
+    private fun labelInfo(style: SimpleStyle) = LabelInfo().apply {
+        fontSize = style.labelSize ?: 10f
+        textColor = style.labelColor ?: defaultColor
+    }
+
+    private fun lineInfo(style: SimpleStyle) = WideVectorInfo().apply {
+        setLineWidth(style.strokeWidth ?: 2f)
+        setColor(resolveColor(style.strokeColor, style.strokeOpacity))
+    }
+
+    private fun areaInfo(@ColorInt color: Int) = VectorInfo().apply {
+        setColor(color)
+        setFilled(true)
     }
     
     private fun addFeaturesInternal(obj: VectorObject, optStyle: SimpleStyle? = null, mode: ThreadMode = threadCurrent): Sequence<ComponentObject> {
         val vc = this.vc.get() ?: return sequenceOf()
         val style = optStyle ?: makeStyle(obj.attributes)
+        featureCount.incrementAndGet()
         when (obj.vectorType) {
             VectorObject.MaplyVectorObjectType.MaplyVectorPointType -> {
                 var markerObj: ComponentObject? = null
                 var labelObj: ComponentObject? = null
                 if (style.markerTexture != null) {
-                    val marker = ScreenMarker().apply {
-                        loc = obj.center()
-                        tex = style.markerTexture
-                        size = style.markerSize
-                        offset = style.markerOffset ?: Point2d(0.0, 0.0)
-                    }
-                    val info = MarkerInfo().apply {
-                        enable = true
-                    }
+                    val marker = makeMarker(obj, style)
+                    val info = markerInfo()
                     if (onAddMarker?.invoke(obj,marker,info,style) != false) {
-                        markerObj = vc.addScreenMarkers(listOf(marker), info, mode)
+                        markerObj = addMarkers(vc, listOf(marker), info, mode)
+                        batchCount.incrementAndGet()
                     }
                 }
-                if (style.labelColor != null && style.labelSize != null && (style.title ?: "").isNotEmpty()) {
-                    val label = ScreenLabel().apply {
-                        text = style.title
-                        loc = obj.center()
-                        offset = style.labelOffset ?: Point2d(0.0, 0.0)
-                        layoutImportance = Float.MAX_VALUE
-                    }
-                    val info = LabelInfo().apply {
-                        fontSize = style.labelSize ?: 10f
-                        textColor = style.labelColor ?: defaultColor
-                    }
+                if (hasLabel(style)) {
+                    val label = makeLabel(obj, style)
+                    val info = labelInfo(style)
                     if (onAddLabel?.invoke(obj,label,info,style) != false) {
                         labelObj = vc.addScreenLabels(listOf(label), info, mode)
+                        batchCount.incrementAndGet()
                     }
                 }
                 return sequenceOf(markerObj, labelObj).filterNotNull()
             }
             VectorObject.MaplyVectorObjectType.MaplyVectorLinearType -> {
-                val info = WideVectorInfo()
-                info.setLineWidth(style.strokeWidth ?: 2f)
-                info.setColor(resolveColor(style.strokeColor, style.strokeOpacity))
+                val info = lineInfo(style)
                 if (onAddLine?.invoke(obj,info,style) != false) {
+                    batchCount.incrementAndGet()
                     return sequenceOf(vc.addWideVectors(listOf(obj), info, threadCurrent))
                 }
             }
             VectorObject.MaplyVectorObjectType.MaplyVectorArealType -> {
-                val info = VectorInfo()
-                info.setColor(resolveColor(style.fillColor, style.fillOpacity))
-                info.setFilled(true)
+                val info = areaInfo(resolveColor(style.fillColor, style.fillOpacity))
                 if (onAddArea?.invoke(obj,info,style) != false) {
+                    batchCount.incrementAndGet()
                     return sequenceOf(vc.addVectors(listOf(obj), info, mode))
                 }
             }
@@ -399,8 +708,13 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
 
         val cacheKey = styleCacheKey(style)
 
-        synchronized(textureCache) {
-            textureCache[cacheKey]?.let { return it }
+        synchronized(textureLock) {
+            textureCache[cacheKey]?.let { return it.tex }
+            // Pushed out but not released yet, so put it back rather than make another
+            evictedTextures.remove(cacheKey)?.let {
+                textureCache.put(cacheKey, it)
+                return it.tex
+            }
         }
         
         val mainImage = loadImageCached(style.markerSymbol)
@@ -488,11 +802,22 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
             imageFormat = RenderController.ImageFormat.MaplyImageIntRGBA    // Bitmap.Config.ARGB_8888
             filterType = RenderControllerInterface.TextureSettings.FilterType.FilterLinear
         }
-        return vc.addTexture(bitmap, settings, threadCurrent).also {
-            synchronized(textureCache) {
-                textureCache[cacheKey] = it
+        val tex = vc.addTexture(bitmap, settings, threadCurrent) ?: return null
+        val existing = synchronized(textureLock) {
+            // Another thread may have made the same one in the meantime
+            val other = textureCache[cacheKey] ?: evictedTextures.remove(cacheKey)?.also {
+                textureCache.put(cacheKey, it)
+            }
+            if (other == null) {
+                textureCache.put(cacheKey, CachedTexture(tex, bitmap.byteCount))
             }
+            other
         }
+        if (existing != null) {
+            vc.removeTextures(listOf(tex), threadCurrent)
+            return existing.tex
+        }
+        return tex
     }
     
     @ColorInt private fun resolveColor(@ColorInt color: Int?, alpha: Float?): Int {
@@ -510,6 +835,15 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
     }
     
     companion object {
+        // Everything makeStyle looks at
+        private val styleAttrKeys = arrayOf(
+                "title", "description", "marker-size", "marker-symbol", "marker-background-symbol",
+                "marker-opacity", "marker-color", "stroke", "stroke-width", "stroke-opacity",
+                "fill", "fill-opacity", "marker-center-x", "marker-center-y",
+                "marker-background-center-x", "marker-background-center-y",
+                "marker-offset-x", "marker-offset-y", "marker-scale", "marker-background-scale",
+                "label", "label-size", "label-offset-x", "label-offset-y", "marker-circle")
+
         @ColorInt
         fun parseColor(s: String?, a: Int = 255): Int? {
             if (s == null || s.isEmpty()) return null
@@ -538,7 +872,42 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
     
     private val vc = WeakReference(vc)
     private val assets = assetManager ?: context.assets
-    private val textureCache = Hashtable<String, MaplyTexture>()
+    // Generated textures and how big they are
+    private class CachedTexture(val tex: MaplyTexture, val bytes: Int)
+
+    // Guards the texture cache along with everything below that tracks texture use
+    private val textureLock = Any()
+
+    // Textures out of the cache that markers may still be using, by cache key
+    private val evictedTextures = HashMap<String, CachedTexture>()
+
+    // Generated textures used by the markers in each object we've added.
+    // Objects removed some other way than removeFeatures drop out once they're
+    // collected, but their textures still count as used.  Counting them as unused
+    // then would be wrong for an object dropped while it's still on the map, so it's
+    // up to the caller to use removeFeatures, or releaseEvictedTextures to clear out.
+    private val objectTextures = WeakHashMap<ComponentObject, Set<MaplyTexture>>()
+
+    // Number of those objects using each texture
+    private val textureRefs = HashMap<MaplyTexture, Int>()
+
+    // Add calls in progress
+    private val activeAdds = AtomicInteger()
+
+    private val textureCache = object : LruCache<String, CachedTexture>(8 * 1024 * 1024) {
+        override fun sizeOf(key: String, value: CachedTexture) = value.bytes.coerceAtLeast(1)
+
+        override fun entryRemoved(evicted: Boolean, key: String, oldValue: CachedTexture, newValue: CachedTexture?) {
+            if (newValue?.tex != oldValue.tex) {
+                synchronized(textureLock) {
+                    evictedTextures[key] = oldValue
+                }
+            }
+        }
+    }
+
+    private val featureCount = AtomicLong()
+    private val batchCount = AtomicLong()
     private val threadCurrent = ThreadMode.ThreadCurrent
     private val logTag = javaClass.name
 
@@ -548,7 +917,11 @@ class SimpleStyleManager(context: Context, vc: RenderControllerInterface, assetM
             field = value
             imageCache.resize(value)
         }
-        val imageCache: LruCache<String, Bitmap> by lazy { LruCache<String, Bitmap>(cacheSize) }
+        val imageCache: LruCache<String, Bitmap> by lazy {
+            object : LruCache<String, Bitmap>(cacheSize) {
+                override fun sizeOf(key: String, value: Bitmap) = value.byteCount.coerceAtLeast(1)
+            }
+        }
     }
 }
 
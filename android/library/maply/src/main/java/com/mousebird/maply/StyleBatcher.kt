@@ -0,0 +1,53 @@
+/*  StyleBatcher.kt
+ *  WhirlyGlobe-MaplyComponent
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.mousebird.maply
+
+import java.util.*
+
+/**
+ * Gathers items by draw priority, then by key within each priority,
+ * and passes each group to [flush] once they're all in.
+ *
+ * The renderer stacks things by draw priority, not by the order they were added,
+ * so items can be grouped however they're mixed together.  That's one [flush]
+ * per key and priority.  Groups go out lowest priority first and, within a
+ * priority, in the order their keys first came in.  The items in a group stay
+ * in the order they came in.
+ */
+internal class StyleBatcher<K, T>(private val flush: (K, List<T>) -> Unit) {
+    private val levels = TreeMap<Int, LinkedHashMap<K, ArrayList<T>>>()
+
+    /**
+     * Add an item to the group for its key at the given draw priority.
+     */
+    fun add(priority: Int, key: K, item: T) {
+        levels.getOrPut(priority) { LinkedHashMap() }.getOrPut(key) { ArrayList() }.add(item)
+    }
+
+    /**
+     * Flush everything gathered so far.
+     */
+    fun finish() {
+        val groups = levels.values.toList()
+        levels.clear()
+        for (level in groups) {
+            for ((key, items) in level) {
+                flush(key, items)
+            }
+        }
+    }
+}
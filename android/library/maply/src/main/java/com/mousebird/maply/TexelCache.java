@@ -0,0 +1,539 @@
+/*
+ *  TexelCache.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * A disk cache of decoded image tiles.
+ * <br>
+ * Cached tile data still has to be run through the PNG or JPEG decoder every time
+ * it's loaded.  This cache sits behind that, holding the decoded texels in the
+ * layout the ImageTile wants.  A hit maps the file and the texture is built
+ * straight from the mapping, so there's no decode and no copy on our side.
+ * <br>
+ * Entries are keyed by the contents of the encoded tile and the options it was
+ * decoded with, so a refreshed tile just misses.  Texels can be stored already
+ * converted to the 16 bit format the loader uses, which halves the space and
+ * skips the conversion later.
+ * <br>
+ * Writes happen on a background thread so they don't hold up tile loading.
+ * <br>
+ * Hook it up through RemoteTileFetcher.setTexelCache() or ImageLoaderInterpreter.texelCache.
+ */
+public class TexelCache
+{
+    /**
+     * The layout texels are stored in.
+     */
+    public enum Format {
+        RGBA8888(4),
+        RGB565(2),
+        RGBA4444(2);
+
+        public final int bytesPerPixel;
+
+        Format(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    /**
+     * The format to cache in for a loader's image format, or null if we can't handle it.
+     */
+    public static Format formatFor(RenderController.ImageFormat imageFormat)
+    {
+        if (imageFormat == null) {
+            return Format.RGBA8888;
+        }
+        switch (imageFormat) {
+            case MaplyImageIntRGBA:
+                return Format.RGBA8888;
+            case MaplyImageUShort565:
+                return Format.RGB565;
+            case MaplyImageUShort4444:
+                return Format.RGBA4444;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decode option for the key: the tile was decoded without premultiplied alpha.
+     */
+    public static final int DecodeUnpremultiplied = 1;
+
+    /**
+     * Decode option for the key: the tile was decoded straight to RGB_565.
+     */
+    public static final int Decode565 = 2;
+
+    /**
+     * Stats collected by the cache, laid out like those of the RemoteTileFetcher
+     */
+    public static class Stats {
+        // Start of stats collection
+        public Date startDate = new Date();
+
+        // Lookups that found decoded texels
+        public int hits;
+
+        // Lookups that had to decode
+        public int misses;
+
+        // Entries written
+        public int writes;
+
+        // Entries deleted to stay under the size limit
+        public int evictions;
+
+        // Reads or writes that failed
+        public int failures;
+
+        // Writes skipped because too many were already waiting
+        public int dropped;
+
+        // Bytes of texels mapped in
+        public long bytesRead;
+
+        // Bytes of texels written out
+        public long bytesWritten;
+
+        // Current size of the cache on disk
+        public long cacheSize;
+
+        // Add the given stats to ours
+        public void addStats(Stats that) {
+            hits += that.hits;
+            misses += that.misses;
+            writes += that.writes;
+            evictions += that.evictions;
+            failures += that.failures;
+            dropped += that.dropped;
+            bytesRead += that.bytesRead;
+            bytesWritten += that.bytesWritten;
+        }
+
+        // Print out the stats
+        public void dump(String name) {
+            String date = new SimpleDateFormat("c",Locale.getDefault()).format(startDate);
+            Log.v("Maply", String.format("---TexelCache %s Stats since %s---",name,date));
+            Log.v("Maply", String.format("   Hits = %d",hits) );
+            Log.v("Maply", String.format("   Misses = %d",misses) );
+            if (hits + misses > 0) {
+                Log.v("Maply", String.format("   Hit rate = %.1f%%",100.0 * hits / (hits + misses)) );
+            }
+            Log.v("Maply", String.format("   Writes = %d",writes) );
+            Log.v("Maply", String.format("   Evictions = %d",evictions) );
+            Log.v("Maply", String.format("   Failures = %d",failures) );
+            Log.v("Maply", String.format("   Dropped Writes = %d",dropped) );
+            Log.v("Maply", String.format("   Texels Read = %.2fMB",bytesRead / (1024.0*1024.0)) );
+            Log.v("Maply", String.format("   Texels Written = %.2fMB",bytesWritten / (1024.0*1024.0)) );
+            Log.v("Maply", String.format("   Cache Size = %.2fMB",cacheSize / (1024.0*1024.0)) );
+        }
+    }
+
+    // 'WGTX', then width, height and format
+    private static final int Magic = 0x57475458;
+    private static final int HeaderSize = 16;
+
+    private final File cacheDir;
+    private long maxBytes;
+    private long cacheSize = -1;
+    protected Stats allStats = new Stats();
+    protected Stats recentStats = new Stats();
+
+    /**
+     * Writes that haven't made it to disk yet can hold this many bytes of texels.
+     * Past that, new entries are dropped rather than queued.
+     */
+    public long maxPendingBytes = 16 * 1024 * 1024;
+
+    // Entries queued to be written and how many bytes they're holding
+    private final HashSet<String> pendingWrites = new HashSet<>();
+    private long pendingBytes = 0;
+    private ExecutorService writer;
+
+    /**
+     * Construct with the directory to keep the texels in and how big it can get.
+     */
+    public TexelCache(File cacheDir, long maxBytes)
+    {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+    }
+
+    public File getCacheDir()
+    {
+        return cacheDir;
+    }
+
+    /**
+     * Change the size limit, trimming the cache if need be.
+     */
+    public void setMaxBytes(long maxBytes)
+    {
+        synchronized (this) {
+            this.maxBytes = maxBytes;
+        }
+        trim();
+    }
+
+    public synchronized long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * Return a copy of the stats (recent or for all time)
+     */
+    public synchronized Stats getStats(boolean allTime)
+    {
+        final Stats stats = allTime ? allStats : recentStats;
+        final Stats ret = new Stats();
+        ret.startDate = stats.startDate;
+        ret.addStats(stats);
+        ret.cacheSize = Math.max(cacheSize, 0);
+        return ret;
+    }
+
+    /**
+     * Reset the recent stats back to zero
+     */
+    public synchronized void resetStats()
+    {
+        recentStats = new Stats();
+    }
+
+    /**
+     * Look up the decoded version of the given tile data.
+     *
+     * @param decodeOptions How the tile was decoded, from DecodeUnpremultiplied and Decode565.
+     * @return An image tile with the texels in the given format, or null if we don't have it.
+     */
+    public ImageTile get(byte[] tileData, Format format, int decodeOptions)
+    {
+        final File file = fileFor(tileData, format, decodeOptions);
+        if (!file.exists()) {
+            synchronized (this) {
+                allStats.misses++;
+                recentStats.misses++;
+            }
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.readInt() != Magic) {
+                throw new IOException("Bad texel cache header");
+            }
+            final int w = raf.readInt();
+            final int h = raf.readInt();
+            final int which = raf.readInt();
+            final long len = (long)w * h * format.bytesPerPixel;
+            if (which != format.ordinal() || w <= 0 || h <= 0 || HeaderSize + len != raf.length()) {
+                throw new IOException("Bad texel cache header");
+            }
+
+            // The texture reads the texels out of the mapping, so nothing is copied here
+            final ImageTile tile = new ImageTile();
+            if (!tile.setMappedFile(file.getPath(), HeaderSize, w, h, format.bytesPerPixel)) {
+                throw new IOException("Failed to map texels");
+            }
+
+            // Keep recently used entries from being trimmed
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                allStats.hits++;
+                recentStats.hits++;
+                allStats.bytesRead += len;
+                recentStats.bytesRead += len;
+            }
+            return tile;
+        } catch (Exception ex) {
+            Log.w("Maply", "Failed to read texel cache entry " + file.getName() + ": " + ex.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            synchronized (this) {
+                allStats.failures++;
+                recentStats.failures++;
+                allStats.misses++;
+                recentStats.misses++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Save the decoded version of the given tile data.
+     * Only ARGB_8888 and RGB_565 bitmaps are handled, others are ignored.
+     * <br>
+     * The texels are copied out of the bitmap before this returns, so it can be reused,
+     * but they're written out on a background thread.
+     *
+     * @param decodeOptions How the tile was decoded, from DecodeUnpremultiplied and Decode565.
+     */
+    public void put(byte[] tileData, Bitmap bitmap, Format format, int decodeOptions)
+    {
+        final File file = fileFor(tileData, format, decodeOptions);
+        final int width = bitmap.getWidth(), height = bitmap.getHeight();
+        final long size = HeaderSize + (long)width * height * format.bytesPerPixel;
+        synchronized (this) {
+            if (pendingWrites.contains(file.getName())) {
+                return;
+            }
+            if (pendingBytes + size > maxPendingBytes) {
+                allStats.dropped++;
+                recentStats.dropped++;
+                return;
+            }
+        }
+
+        final ByteBuffer texels = texelsFor(bitmap, format);
+        if (texels == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!pendingWrites.add(file.getName())) {
+                return;
+            }
+            pendingBytes += size;
+            if (writer == null) {
+                // One low priority thread is plenty, and it goes away when idle
+                final ThreadPoolExecutor exec = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), run -> {
+                            final Thread thread = new Thread(run, "Maply TexelCache");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        });
+                exec.allowCoreThreadTimeOut(true);
+                writer = exec;
+            }
+            writer.execute(() -> {
+                try {
+                    write(file, width, height, format, texels);
+                } finally {
+                    synchronized (TexelCache.this) {
+                        pendingWrites.remove(file.getName());
+                        pendingBytes -= size;
+                    }
+                }
+            });
+        }
+    }
+
+    // Runs on the writer thread
+    private void write(File file, int width, int height, Format format, ByteBuffer texels)
+    {
+        final File temp = new File(cacheDir, file.getName() + ".tmp");
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            cacheDir.mkdirs();
+            try (FileOutputStream out = new FileOutputStream(temp);
+                 FileChannel channel = out.getChannel()) {
+                final ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+                header.putInt(Magic).putInt(width).putInt(height).putInt(format.ordinal());
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (texels.hasRemaining()) {
+                    channel.write(texels);
+                }
+            }
+            final long oldSize = file.exists() ? file.length() : 0;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Rename failed");
+            }
+            final long size = HeaderSize + (long)texels.capacity();
+            synchronized (this) {
+                allStats.writes++;
+                recentStats.writes++;
+                allStats.bytesWritten += size;
+                recentStats.bytesWritten += size;
+                if (cacheSize >= 0) {
+                    cacheSize += size - oldSize;
+                }
+            }
+        } catch (Exception ex) {
+            Log.w("Maply", "Failed to write texel cache entry " + file.getName() + ": " + ex.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            synchronized (this) {
+                allStats.failures++;
+                recentStats.failures++;
+            }
+            return;
+        }
+        trim();
+    }
+
+    /**
+     * Delete everything in the cache.
+     */
+    public synchronized void clear()
+    {
+        final File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        cacheSize = 0;
+    }
+
+    // Delete the least recently used entries until we're back under the limit
+    private void trim()
+    {
+        final File[] files;
+        synchronized (this) {
+            if (cacheSize < 0) {
+                cacheSize = 0;
+                final File[] all = cacheDir.listFiles();
+                if (all != null) {
+                    for (File file : all) {
+                        cacheSize += file.length();
+                    }
+                }
+            }
+            if (cacheSize <= maxBytes) {
+                return;
+            }
+            files = cacheDir.listFiles();
+        }
+        if (files == null) {
+            return;
+        }
+
+        final long[] modified = new long[files.length];
+        final Integer[] order = new Integer[files.length];
+        for (int ii = 0; ii < files.length; ii++) {
+            modified[ii] = files[ii].lastModified();
+            order[ii] = ii;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+
+        // Go a bit under so we're not doing this on every write
+        synchronized (this) {
+            final long target = maxBytes - maxBytes / 10;
+            for (int ii = 0; ii < order.length && cacheSize > target; ii++) {
+                final File file = files[order[ii]];
+                final long len = file.length();
+                if (file.delete()) {
+                    cacheSize -= len;
+                    allStats.evictions++;
+                    recentStats.evictions++;
+                }
+            }
+        }
+    }
+
+    // Name the entry after the encoded tile contents, the decode options and the texel format
+    private File fileFor(byte[] tileData, Format format, int decodeOptions)
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(tileData, 0, tileData.length);
+        final Adler32 adler = new Adler32();
+        adler.update(tileData, 0, tileData.length);
+        final String name = String.format(Locale.US, "%08x%08x-%x-%x.%s",
+                crc.getValue(), adler.getValue(), tileData.length, decodeOptions,
+                format.name().toLowerCase(Locale.US));
+        return new File(cacheDir, name);
+    }
+
+    // Pull the texels out of the bitmap in the layout the ImageTile would have built
+    static ByteBuffer texelsFor(Bitmap bitmap, Format format)
+    {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return null;
+        }
+        final Bitmap.Config config = bitmap.getConfig();
+        final int numPixels = bitmap.getWidth() * bitmap.getHeight();
+        if (config == Bitmap.Config.RGB_565 && format == Format.RGB565) {
+            final ByteBuffer raw = ByteBuffer.allocateDirect(numPixels * 2).order(ByteOrder.nativeOrder());
+            bitmap.copyPixelsToBuffer(raw);
+            raw.flip();
+            return raw;
+        }
+
+        // Get to RGBA bytes first, as the native side would
+        final ByteBuffer rgba;
+        if (config == Bitmap.Config.ARGB_8888) {
+            rgba = ByteBuffer.allocateDirect(numPixels * 4).order(ByteOrder.nativeOrder());
+            bitmap.copyPixelsToBuffer(rgba);
+            rgba.flip();
+        } else if (config == Bitmap.Config.RGB_565) {
+            final ByteBuffer raw = ByteBuffer.allocate(numPixels * 2).order(ByteOrder.nativeOrder());
+            bitmap.copyPixelsToBuffer(raw);
+            raw.flip();
+            rgba = ByteBuffer.allocateDirect(numPixels * 4).order(ByteOrder.nativeOrder());
+            for (int ii = 0; ii < numPixels; ii++) {
+                final int pix = raw.getShort(ii * 2) & 0xffff;
+                final int r = (pix >> 11) & 0x1f, g = (pix >> 5) & 0x3f, b = pix & 0x1f;
+                rgba.put((byte)((r << 3) | (r >> 2)));
+                rgba.put((byte)((g << 2) | (g >> 4)));
+                rgba.put((byte)((b << 3) | (b >> 2)));
+                rgba.put((byte)255);
+            }
+            rgba.flip();
+        } else {
+            return null;
+        }
+        if (format == Format.RGBA8888) {
+            return rgba;
+        }
+
+        // Same packing as the conversions in Texture.cpp
+        final ByteBuffer out = ByteBuffer.allocateDirect(numPixels * 2).order(ByteOrder.nativeOrder());
+        for (int ii = 0; ii < numPixels; ii++) {
+            final int r = rgba.get(ii * 4) & 0xff, g = rgba.get(ii * 4 + 1) & 0xff;
+            final int b = rgba.get(ii * 4 + 2) & 0xff, a = rgba.get(ii * 4 + 3) & 0xff;
+            final int pix = (format == Format.RGB565) ?
+                    ((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3) :
+                    ((r >> 4) << 12) | ((g >> 4) << 8) | ((b >> 4) << 4) | (a >> 4);
+            out.putShort((short)pix);
+        }
+        out.flip();
+        return out;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  TextWidthCache.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers how wide strings are in a given typeface and size.
+ * <br>
+ * Label layout measures every candidate and the same street names turn up over and over
+ * in neighboring tiles.  This keeps the most recently used widths and only measures the rest.
+ * Safe to use from multiple threads.
+ */
+public class TextWidthCache
+{
+    /**
+     * Does the actual measuring.
+     */
+    public interface Measurer
+    {
+        /**
+         * Width of the text in pixels.
+         */
+        double measureWidth(String text,Typeface typeface,float fontSize);
+    }
+
+    /**
+     * Measures with a Paint, one per thread so we're not making a new one each time.
+     */
+    public static class PaintMeasurer implements Measurer
+    {
+        private static class Tools
+        {
+            final Paint paint = new Paint();
+            final Rect bounds = new Rect();
+        }
+
+        private final ThreadLocal<Tools> tools = new ThreadLocal<Tools>() {
+            @Override
+            protected Tools initialValue() {
+                return new Tools();
+            }
+        };
+
+        @Override
+        public double measureWidth(String text,Typeface typeface,float fontSize)
+        {
+            final Tools t = tools.get();
+            t.paint.setTextSize(fontSize);
+            t.paint.setTypeface(typeface);
+            t.paint.getTextBounds(text, 0, text.length(), t.bounds);
+            return t.bounds.right - t.bounds.left;
+        }
+    }
+
+    private static final class Key
+    {
+        final String text;
+        final Typeface typeface;
+        final float fontSize;
+        final int hash;
+
+        Key(String text,Typeface typeface,float fontSize)
+        {
+            this.text = text;
+            this.typeface = typeface;
+            this.fontSize = fontSize;
+            hash = 31 * (31 * text.hashCode() + ((typeface != null) ? typeface.hashCode() : 0)) + Float.floatToIntBits(fontSize);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key)obj;
+            return hash == other.hash &&
+                    Float.floatToIntBits(fontSize) == Float.floatToIntBits(other.fontSize) &&
+                    text.equals(other.text) &&
+                    ((typeface == null) ? other.typeface == null : typeface.equals(other.typeface));
+        }
+    }
+
+    private final Measurer measurer;
+    private final Map<Key,Double> widths;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Measure with a Paint, remembering up to the given number of strings.
+     */
+    public TextWidthCache(int maxEntries)
+    {
+        this(new PaintMeasurer(),maxEntries);
+    }
+
+    /**
+     * Measure with the given measurer, remembering up to the given number of strings.
+     */
+    public TextWidthCache(Measurer measurer,final int maxEntries)
+    {
+        this.measurer = measurer;
+        widths = new LinkedHashMap<Key,Double>(Math.min(maxEntries,1024),0.75f,true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key,Double> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Width of the given text in pixels, measured if we haven't seen it lately.
+     */
+    public double getWidth(String text,Typeface typeface,float fontSize)
+    {
+        if (text == null)
+            return 0.0;
+
+        final Key key = new Key(text,typeface,fontSize);
+        Double width;
+        synchronized (widths) {
+            width = widths.get(key);
+        }
+        if (width != null) {
+            hits.incrementAndGet();
+            return width;
+        }
+
+        misses.incrementAndGet();
+        width = measurer.measureWidth(text,typeface,fontSize);
+        synchronized (widths) {
+            widths.put(key,width);
+        }
+        return width;
+    }
+
+    /**
+     * Number of strings we're remembering.
+     */
+    public int size()
+    {
+        synchronized (widths) {
+            return widths.size();
+        }
+    }
+
+    /**
+     * Number of widths that came from the cache.
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Number of widths we had to measure.
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Forget everything, if the fonts change for instance.
+     */
+    public void clear()
+    {
+        synchronized (widths) {
+            widths.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+}
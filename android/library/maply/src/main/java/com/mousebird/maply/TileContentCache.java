@@ -0,0 +1,244 @@
+/*
+ *  TileContentCache.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import android.util.Log;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decode results for tile payloads, keyed by a SHA-256 digest of the payload and the tile level.
+ * <br>
+ * Big chunks of a basemap (open ocean, empty land) are byte-for-byte identical
+ * across thousands of tiles.  If a loader has one of these, interpreters can look
+ * up what they made from the same bytes at the same level last time and skip the decode.
+ * <br>
+ * Values must be safe to share between tiles, e.g. a Bitmap that's only ever copied
+ * from.  The cache holds at most maxBytes worth of values, as estimated by the caller,
+ * dropping the least recently used first.
+ */
+public class TileContentCache
+{
+    /**
+     * Stats on how the cache is being used.
+     */
+    public static class Stats
+    {
+        // Lookups that found something
+        public int hits;
+
+        // Lookups that didn't
+        public int misses;
+
+        // Values added
+        public int adds;
+
+        // Values we let go of because we were full
+        public int evicted;
+
+        // Estimated bytes currently held
+        public long bytes;
+
+        // Print out the stats
+        public void dump(String name)
+        {
+            Log.v("Maply", String.format("---TileContentCache %s Stats---",name));
+            Log.v("Maply", String.format("   Hits = %d",hits));
+            Log.v("Maply", String.format("   Misses = %d",misses));
+            Log.v("Maply", String.format("   Adds = %d",adds));
+            Log.v("Maply", String.format("   Evicted = %d",evicted));
+            Log.v("Maply", String.format("   Held = %dk",bytes / 1024));
+        }
+    }
+
+    /**
+     * Identifies a payload at a given level.
+     * A hit doesn't compare the payloads, so this is a cryptographic digest
+     * rather than a checksum.  A collision would put the wrong tile on screen.
+     */
+    public static class Key
+    {
+        final byte[] digest;
+        final int level;
+
+        Key(byte[] digest, int level)
+        {
+            this.digest = digest;
+            this.level = level;
+        }
+
+        @Override public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)o;
+            return level == other.level && Arrays.equals(digest, other.digest);
+        }
+
+        @Override public int hashCode()
+        {
+            return Arrays.hashCode(digest) * 31 + level;
+        }
+    }
+
+    /**
+     * Build the key for one or more payloads making up a tile at the given level.
+     *
+     * @return The key, or null if there's nothing to key on.
+     */
+    public static Key keyFor(byte[][] data, int level)
+    {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        for (byte[] chunk : data) {
+            if (chunk == null) {
+                return null;
+            }
+            digest.update(chunk);
+            // Keep chunk boundaries, so [ab][c] and [a][bc] differ
+            digest.update(new byte[] {
+                    (byte)(chunk.length >>> 24), (byte)(chunk.length >>> 16),
+                    (byte)(chunk.length >>> 8), (byte)chunk.length });
+        }
+        return new Key(digest.digest(), level);
+    }
+
+    private static class Entry
+    {
+        final Object value;
+        final long size;
+
+        Entry(Object value, long size)
+        {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    // Access ordered, so the first entry is the least recently used
+    private final LinkedHashMap<Key,Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Stats stats = new Stats();
+    private long maxBytes;
+
+    /**
+     * Construct with the most bytes worth of results to hold on to.
+     */
+    public TileContentCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Change the most bytes worth of results held, letting some go if need be.
+     */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    public synchronized long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    /**
+     * Look up the result for the given key.
+     *
+     * @return The value added for the same payload and level, or null.
+     */
+    public synchronized Object get(Key key)
+    {
+        final Entry entry = (key != null) ? entries.get(key) : null;
+        if (entry == null) {
+            stats.misses++;
+            return null;
+        }
+        stats.hits++;
+        return entry.value;
+    }
+
+    /**
+     * Save a decode result.
+     *
+     * @param size Roughly how many bytes the value holds on to.
+     */
+    public synchronized void put(Key key, Object value, long size)
+    {
+        if (key == null || value == null || size > maxBytes) {
+            return;
+        }
+        final Entry old = entries.put(key, new Entry(value, size));
+        if (old != null) {
+            stats.bytes -= old.size;
+        }
+        stats.adds++;
+        stats.bytes += size;
+        trim();
+    }
+
+    /**
+     * Let go of everything.  Do this when the results would come out differently,
+     * e.g. after a style change.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        stats.bytes = 0;
+    }
+
+    /**
+     * Return a copy of the current stats.
+     */
+    public synchronized Stats getStats()
+    {
+        final Stats ret = new Stats();
+        ret.hits = stats.hits;
+        ret.misses = stats.misses;
+        ret.adds = stats.adds;
+        ret.evicted = stats.evicted;
+        ret.bytes = stats.bytes;
+        return ret;
+    }
+
+    // Drop the least recently used results until we fit
+    private void trim()
+    {
+        final Iterator<Map.Entry<Key,Entry>> it = entries.entrySet().iterator();
+        while (stats.bytes > maxBytes && it.hasNext()) {
+            stats.bytes -= it.next().getValue().size;
+            stats.evicted++;
+            it.remove();
+        }
+    }
+}
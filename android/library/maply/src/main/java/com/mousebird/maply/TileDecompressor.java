@@ -0,0 +1,221 @@
+/*
+ *  TileDecompressor.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses gzip and zlib wrapped tile data.
+ * <br>
+ * Vector tiles usually show up gzipped.  Rather than building a new stream stack
+ * per tile, this inflates straight out of the source array with an Inflater that's
+ * kept around for each thread.  For gzip the output buffer is sized from the ISIZE
+ * trailer, so the common case is a single allocation handed back as-is.
+ */
+public class TileDecompressor
+{
+    // Inflate this much at a time so we can notice cancellation
+    private static final int ChunkSize = 64 * 1024;
+
+    // Don't believe a gzip trailer claiming more than this
+    private static final int MaxTrustedSize = 64 * 1024 * 1024;
+
+    // Raw deflate, used for gzip after we've read the header ourselves
+    private static final ThreadLocal<Inflater> rawInflater = new ThreadLocal<Inflater>() {
+        @Override protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    // Deflate with the zlib wrapper
+    private static final ThreadLocal<Inflater> zlibInflater = new ThreadLocal<Inflater>() {
+        @Override protected Inflater initialValue() {
+            return new Inflater(false);
+        }
+    };
+
+    private TileDecompressor()
+    {
+    }
+
+    /**
+     * True if the data looks like gzip.
+     */
+    public static boolean isGzip(byte[] data)
+    {
+        return data != null && data.length > 2 && data[0] == (byte)0x1F && data[1] == (byte)0x8B;
+    }
+
+    /**
+     * True if the data looks like zlib wrapped deflate.
+     */
+    public static boolean isZlib(byte[] data)
+    {
+        return data != null && data.length > 2 && data[0] == (byte)0x78 &&
+                (((data[0] & 0xff) << 8) | (data[1] & 0xff)) % 31 == 0;
+    }
+
+    /**
+     * Decompress gzip or zlib data, returning anything else as-is.
+     * <br>
+     * Data that looks compressed but won't decode is also returned as-is.
+     *
+     * @param data The raw data, which is not modified
+     * @param cancel Checked between chunks, may be null
+     * @return The decompressed data, the original data, or null if canceled
+     */
+    public static byte[] decompress(byte[] data, CancellationToken cancel)
+    {
+        try {
+            if (isGzip(data)) {
+                return gunzip(data, cancel);
+            } else if (isZlib(data)) {
+                final Inflater inflater = zlibInflater.get();
+                inflater.reset();
+                inflater.setInput(data, 0, data.length);
+                final byte[] out = inflate(inflater, data.length * 4, cancel);
+                if (out != null && !inflater.finished()) {
+                    return data;
+                }
+                return out;
+            }
+        } catch (DataFormatException | IOException ignored) {
+            // No good, hand it back as-is
+        }
+        return data;
+    }
+
+    // Read the gzip header and trailer ourselves and inflate the body directly
+    private static byte[] gunzip(byte[] data, CancellationToken cancel) throws DataFormatException, IOException
+    {
+        final int start = gzipHeaderLength(data);
+        if (start < 0 || data.length - start < 8) {
+            return data;
+        }
+
+        // ISIZE is the uncompressed length mod 2^32, little endian, in the last four bytes
+        final int n = data.length;
+        final long isize = (data[n-4] & 0xffL) | (data[n-3] & 0xffL) << 8 |
+                           (data[n-2] & 0xffL) << 16 | (data[n-1] & 0xffL) << 24;
+        final int expected = (isize > 0 && isize <= MaxTrustedSize) ? (int)isize : data.length * 4;
+
+        final Inflater inflater = rawInflater.get();
+        inflater.reset();
+        inflater.setInput(data, start, n - start);
+        final byte[] out = inflate(inflater, expected, cancel);
+        if (out == null) {
+            return null;
+        }
+        if (!inflater.finished()) {
+            return data;
+        }
+        if (inflater.getRemaining() != 8) {
+            // Multiple members or trailing junk, let the stream sort it out
+            return gunzipStream(data, cancel);
+        }
+
+        final int trailer = n - 8;
+        final long crc = (data[trailer] & 0xffL) | (data[trailer+1] & 0xffL) << 8 |
+                         (data[trailer+2] & 0xffL) << 16 | (data[trailer+3] & 0xffL) << 24;
+        final CRC32 check = new CRC32();
+        check.update(out, 0, out.length);
+        if (check.getValue() != crc || (out.length & 0xffffffffL) != isize) {
+            return data;
+        }
+        return out;
+    }
+
+    // Inflate everything available, growing the buffer if the estimate was short
+    private static byte[] inflate(Inflater inflater, int expected, CancellationToken cancel) throws DataFormatException
+    {
+        byte[] out = new byte[Math.max(expected, 64)];
+        int len = 0;
+        while (!inflater.finished()) {
+            if (cancel != null && cancel.isCanceled()) {
+                return null;
+            }
+            if (len == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            final int count = inflater.inflate(out, len, Math.min(ChunkSize, out.length - len));
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            len += count;
+        }
+        return (len == out.length) ? out : Arrays.copyOf(out, len);
+    }
+
+    // Length of the gzip header, or -1 if it's not one we understand
+    private static int gzipHeaderLength(byte[] data)
+    {
+        if (data.length < 10 || data[2] != 8) {
+            return -1;
+        }
+        final int flags = data[3] & 0xff;
+        int pos = 10;
+        if ((flags & 0x04) != 0) {
+            // FEXTRA
+            if (pos + 2 > data.length) {
+                return -1;
+            }
+            pos += 2 + ((data[pos] & 0xff) | (data[pos+1] & 0xff) << 8);
+        }
+        if ((flags & 0x08) != 0) {
+            // FNAME
+            while (pos < data.length && data[pos] != 0) pos++;
+            pos++;
+        }
+        if ((flags & 0x10) != 0) {
+            // FCOMMENT
+            while (pos < data.length && data[pos] != 0) pos++;
+            pos++;
+        }
+        if ((flags & 0x02) != 0) {
+            // FHCRC
+            pos += 2;
+        }
+        return (pos <= data.length) ? pos : -1;
+    }
+
+    // The old fashioned way, for anything odd
+    private static byte[] gunzipStream(byte[] data, CancellationToken cancel) throws IOException
+    {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            final ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length * 4);
+            final byte[] buffer = new byte[16 * 1024];
+            for (int count; (count = in.read(buffer)) > 0; ) {
+                if (cancel != null && cancel.isCanceled()) {
+                    return null;
+                }
+                bout.write(buffer, 0, count);
+            }
+            return bout.toByteArray();
+        }
+    }
+}
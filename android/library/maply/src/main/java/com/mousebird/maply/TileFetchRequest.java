@@ -83,6 +83,19 @@ public class TileFetchRequest implements Comparable<TileFetchRequest>
      */
     public Callback callback = null;
 
+    /**
+     * Set when the loader cancels this request.  Fetchers and interpreters can check
+     * it to skip work on a tile that's no longer wanted.
+     */
+    public final CancellationToken cancelToken = new CancellationToken();
+
+    /**
+     * True if the loader has canceled this request.
+     */
+    public boolean isCanceled() {
+        return cancelToken.isCanceled();
+    }
+
     /**
      * Convenience helper for calling the success callback
      */
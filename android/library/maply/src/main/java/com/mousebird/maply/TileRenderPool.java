@@ -0,0 +1,214 @@
+/*
+ *  TileRenderPool.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of offscreen renderers used to draw vector data into image tiles.
+ * <br>
+ * Each entry is an offline RenderController along with the style and parser that
+ * were built for it.  Worker threads check an entry out, render with it and check it
+ * back in, so several tiles can be rasterized at once rather than lining up on a
+ * single renderer.
+ */
+public class TileRenderPool
+{
+    /**
+     * One offscreen renderer and the objects tied to it.
+     */
+    public static class Entry
+    {
+        public final RenderController render;
+        public final VectorStyleInterface style;
+        public final MapboxVectorTileParser parser;
+
+        /**
+         * The style must have been set up with the renderer as its controller.
+         */
+        public Entry(@NotNull RenderController render,@NotNull VectorStyleInterface style)
+        {
+            this.render = render;
+            this.style = style;
+            parser = new MapboxVectorTileParser(style, render);
+            parser.setLocalCoords(true);
+            render.clearLights();
+        }
+
+        private long checkOutTime;
+    }
+
+    /**
+     * Stats on how the pool is being used.
+     */
+    public static class Stats
+    {
+        // Number of tiles rendered
+        public int renders;
+
+        // Total time spent with a renderer checked out, in seconds
+        public double totalRenderTime;
+
+        // Total time spent waiting for a renderer to free up, in seconds
+        public double totalWaitTime;
+
+        // Most renderers we've seen checked out at once
+        public int maxInUse;
+
+        // Print out the stats
+        public void dump(String name)
+        {
+            Log.v("Maply", String.format("---TileRenderPool %s Stats---",name));
+            Log.v("Maply", String.format("   Renders = %d",renders));
+            Log.v("Maply", String.format("   Max In Use = %d",maxInUse));
+            if (renders > 0) {
+                Log.v("Maply", String.format("   Render time per tile = %.2fms",totalRenderTime / renders * 1000.0));
+                Log.v("Maply", String.format("   Wait time per tile = %.2fms",totalWaitTime / renders * 1000.0));
+            }
+        }
+    }
+
+    private final ArrayList<Entry> entries;
+    private final ArrayBlockingQueue<Entry> available;
+    private volatile boolean valid = true;
+    private Stats stats = new Stats();
+    private int inUse = 0;
+
+    /**
+     * Build the pool from renderers set up by the caller.
+     */
+    public TileRenderPool(@NotNull Collection<Entry> inEntries)
+    {
+        if (inEntries.isEmpty()) {
+            throw new IllegalArgumentException("TileRenderPool needs at least one renderer");
+        }
+        entries = new ArrayList<>(inEntries);
+        available = new ArrayBlockingQueue<>(entries.size(), false, entries);
+    }
+
+    /**
+     * Number of renderers in the pool.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * All the entries in the pool, whether checked out or not.
+     */
+    public Collection<Entry> getEntries()
+    {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Take a renderer out of the pool, waiting for one to free up if need be.
+     *
+     * @return The entry to use, or null if the pool shut down or we were interrupted.
+     *         Non-null entries must be handed back with checkIn().
+     */
+    public Entry checkOut()
+    {
+        if (!valid) {
+            return null;
+        }
+        final long t0 = System.nanoTime();
+        Entry entry = null;
+        try {
+            while (valid && entry == null) {
+                entry = available.poll(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ignored) {
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (!valid || !entry.render.isRunning()) {
+            available.offer(entry);
+            return null;
+        }
+        synchronized (this) {
+            inUse++;
+            stats.maxInUse = Math.max(stats.maxInUse, inUse);
+            stats.totalWaitTime += (System.nanoTime() - t0) / 1.0e9;
+        }
+        entry.checkOutTime = System.nanoTime();
+        return entry;
+    }
+
+    /**
+     * Hand a renderer back to the pool.
+     */
+    public void checkIn(Entry entry)
+    {
+        if (entry == null) {
+            return;
+        }
+        synchronized (this) {
+            inUse--;
+            stats.renders++;
+            stats.totalRenderTime += (System.nanoTime() - entry.checkOutTime) / 1.0e9;
+        }
+        available.offer(entry);
+    }
+
+    /**
+     * Return a copy of the current stats.
+     */
+    public synchronized Stats getStats()
+    {
+        final Stats ret = new Stats();
+        ret.renders = stats.renders;
+        ret.totalRenderTime = stats.totalRenderTime;
+        ret.totalWaitTime = stats.totalWaitTime;
+        ret.maxInUse = stats.maxInUse;
+        return ret;
+    }
+
+    /**
+     * Reset the stats back to zero.
+     */
+    public synchronized void resetStats()
+    {
+        stats = new Stats();
+    }
+
+    /**
+     * Stop handing out renderers and shut them all down.
+     * Users hold the renderer's lock while drawing, so one in use finishes its tile first.
+     */
+    public void shutdown()
+    {
+        valid = false;
+        for (Entry entry : entries) {
+            synchronized (entry.render) {
+                entry.render.shutdown();
+            }
+        }
+    }
+}
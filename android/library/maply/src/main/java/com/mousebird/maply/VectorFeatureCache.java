@@ -0,0 +1,298 @@
+/*
+ *  VectorFeatureCache.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed vector tile features, geometry and attributes, kept per tile.
+ * <br>
+ * When a loader has one of these, a reload (e.g. after a style change) doesn't
+ * fetch, decompress or parse tiles we still have.  The features go straight
+ * back through the styles instead.
+ * <br>
+ * Features are kept for every layer, not just the ones the current style displays,
+ * so parsing a tile that goes into the cache costs a bit more.
+ * The cache holds the most recently used maxTiles tiles.
+ * The loader drops the tiles in the area being reloaded when reload() or reloadArea()
+ * is called.  Clear it yourself if the underlying data changes some other way.
+ */
+public class VectorFeatureCache
+{
+    /**
+     * Picks out tiles to remove.
+     */
+    public interface TileFilter
+    {
+        boolean matches(TileID tileID);
+    }
+
+    /**
+     * Stats on how the cache is being used.
+     * Compare the average parse and restyle times to see what a restyle saves.
+     */
+    public static class Stats
+    {
+        // Tiles found in the cache
+        public int hits;
+
+        // Tiles we had to fetch and parse
+        public int misses;
+
+        // Tiles we let go of because we were full
+        public int evicted;
+
+        // Tiles dropped by remove() or clear(), usually for a reload
+        public int invalidated;
+
+        // Tiles currently held
+        public int tiles;
+
+        // Features currently held
+        public long features;
+
+        // Full parses done while filling the cache and the time they took
+        public int parses;
+        public long totalParseTime;
+
+        // Restyles done from the cache and the time they took
+        public int restyles;
+        public long totalRestyleTime;
+
+        // Print out the stats
+        public void dump(String name)
+        {
+            Log.v("Maply", String.format("---VectorFeatureCache %s Stats---",name));
+            Log.v("Maply", String.format("   Hits = %d",hits));
+            Log.v("Maply", String.format("   Misses = %d",misses));
+            Log.v("Maply", String.format("   Evicted = %d",evicted));
+            Log.v("Maply", String.format("   Invalidated = %d",invalidated));
+            Log.v("Maply", String.format("   Held = %d tiles, %d features",tiles,features));
+            if (parses > 0) {
+                Log.v("Maply", String.format("   Avg parse time = %.2fms",totalParseTime / 1.0e6 / parses));
+            }
+            if (restyles > 0) {
+                Log.v("Maply", String.format("   Avg restyle time = %.2fms",totalRestyleTime / 1.0e6 / restyles));
+            }
+        }
+    }
+
+    private static class Entry
+    {
+        final VectorTileData tileData;
+        final int features;
+
+        Entry(VectorTileData tileData, int features)
+        {
+            this.tileData = tileData;
+            this.features = features;
+        }
+    }
+
+    // Access ordered, so the first entry is the least recently used
+    private final LinkedHashMap<TileID,Entry> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private final Stats stats = new Stats();
+    private int maxTiles;
+    // Bumped whenever tiles are dropped, so parses started before that can be ignored
+    private int epoch = 0;
+
+    /**
+     * Construct with the most tiles to hold on to.
+     */
+    public VectorFeatureCache(int maxTiles)
+    {
+        this.maxTiles = maxTiles;
+    }
+
+    /**
+     * Change the most tiles held, letting some go if need be.
+     */
+    public synchronized void setMaxTiles(int maxTiles)
+    {
+        this.maxTiles = maxTiles;
+        trim();
+    }
+
+    public synchronized int getMaxTiles()
+    {
+        return maxTiles;
+    }
+
+    /**
+     * True if we've got the features for the given tile.
+     * Doesn't count as a use.
+     */
+    public synchronized boolean contains(TileID tileID)
+    {
+        return tiles.containsKey(tileID);
+    }
+
+    /**
+     * Look up the features for the given tile.
+     *
+     * @return Tile data holding only the parsed vectors, or null.
+     */
+    public synchronized VectorTileData get(TileID tileID)
+    {
+        final Entry entry = tiles.get(tileID);
+        if (entry == null) {
+            stats.misses++;
+        } else {
+            stats.hits++;
+        }
+        return (entry != null) ? entry.tileData : null;
+    }
+
+    /**
+     * Save the features for a tile.
+     * The tile data should have been parsed with vectors kept and then had
+     * everything else dropped with keepVectorsOnly().
+     */
+    public void put(TileID tileID, VectorTileData tileData)
+    {
+        put(tileID, tileData, getEpoch());
+    }
+
+    /**
+     * Save the features for a tile, unless tiles have been removed since
+     * {@link #getEpoch()} returned the given value.
+     * <br>
+     * Get the epoch before fetching or parsing so that a tile reloaded in the
+     * mean time doesn't have its old features put back.
+     */
+    public void put(TileID tileID, VectorTileData tileData, int epoch)
+    {
+        if (tileData != null) {
+            putFeatures(tileID, tileData, tileData.getVectorCount(), epoch);
+        }
+    }
+
+    // Does the work of put(), without touching the tile data
+    synchronized boolean putFeatures(TileID tileID, VectorTileData tileData, int features, int epoch)
+    {
+        if (tileID == null || maxTiles <= 0 || epoch != this.epoch) {
+            return false;
+        }
+        final Entry old = tiles.put(tileID, new Entry(tileData, features));
+        if (old != null) {
+            stats.features -= old.features;
+        }
+        stats.features += features;
+        stats.tiles = tiles.size();
+        trim();
+        return true;
+    }
+
+    /**
+     * Changes every time tiles are removed or the cache is cleared.
+     */
+    public synchronized int getEpoch()
+    {
+        return epoch;
+    }
+
+    /**
+     * Drop the tiles the filter picks out.
+     *
+     * @return The number of tiles dropped.
+     */
+    public synchronized int remove(TileFilter filter)
+    {
+        epoch++;
+        int count = 0;
+        final Iterator<Map.Entry<TileID,Entry>> it = tiles.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<TileID,Entry> entry = it.next();
+            if (filter.matches(entry.getKey())) {
+                stats.features -= entry.getValue().features;
+                it.remove();
+                count++;
+            }
+        }
+        stats.invalidated += count;
+        stats.tiles = tiles.size();
+        return count;
+    }
+
+    /**
+     * Let go of everything.
+     */
+    public synchronized void clear()
+    {
+        epoch++;
+        stats.invalidated += tiles.size();
+        tiles.clear();
+        stats.tiles = 0;
+        stats.features = 0;
+    }
+
+    /**
+     * Note a full parse done to fill the cache.
+     */
+    public synchronized void addParseTime(long nanos)
+    {
+        stats.parses++;
+        stats.totalParseTime += nanos;
+    }
+
+    /**
+     * Note a restyle done from the cache.
+     */
+    public synchronized void addRestyleTime(long nanos)
+    {
+        stats.restyles++;
+        stats.totalRestyleTime += nanos;
+    }
+
+    /**
+     * Return a copy of the current stats.
+     */
+    public synchronized Stats getStats()
+    {
+        final Stats ret = new Stats();
+        ret.hits = stats.hits;
+        ret.misses = stats.misses;
+        ret.evicted = stats.evicted;
+        ret.invalidated = stats.invalidated;
+        ret.tiles = stats.tiles;
+        ret.features = stats.features;
+        ret.parses = stats.parses;
+        ret.totalParseTime = stats.totalParseTime;
+        ret.restyles = stats.restyles;
+        ret.totalRestyleTime = stats.totalRestyleTime;
+        return ret;
+    }
+
+    // Drop the least recently used tiles until we fit
+    private void trim()
+    {
+        final Iterator<Map.Entry<TileID,Entry>> it = tiles.entrySet().iterator();
+        while (tiles.size() > maxTiles && it.hasNext()) {
+            stats.features -= it.next().getValue().features;
+            stats.evicted++;
+            it.remove();
+        }
+        stats.tiles = tiles.size();
+    }
+}
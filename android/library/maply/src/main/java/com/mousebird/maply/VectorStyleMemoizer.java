@@ -0,0 +1,269 @@
+/*
+ *  VectorStyleMemoizer.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.mousebird.maply;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a vector style set and remembers the styles it picked for each distinct set of
+ * attribute values.
+ * <br>
+ * Most data sets have thousands of features that share a handful of combinations of the
+ * attributes a style actually looks at.  If the style set can tell us which attributes those
+ * are, we copy just those out of each feature and look the combination up.  Only the first
+ * feature with a given combination (and layer, and level if it matters) runs through the
+ * style logic.
+ * <br>
+ * This is opt-in.  Wrap a style set that implements AttributeKeys and hand the memoizer to
+ * the loader in its place.  Style sets that can't say what they read are passed straight through.
+ */
+public class VectorStyleMemoizer implements VectorStyleInterface
+{
+    /**
+     * Implemented by style sets that know which attributes they look at.
+     */
+    public interface AttributeKeys
+    {
+        /**
+         * Names of every attribute stylesForFeature() reads, or null if that can't be known.
+         * The styles picked for a feature must depend only on these, the layer name and,
+         * if stylesDependOnLevel() says so, the tile level.
+         */
+        String[] getStyleAttributeKeys();
+
+        /**
+         * True if the styles picked depend on the tile level.
+         */
+        boolean stylesDependOnLevel();
+    }
+
+    /**
+     * How well the memoizer is doing.
+     */
+    public static class Stats
+    {
+        // Features whose styles came from the cache
+        public long hits;
+
+        // Features we had to ask the style set about
+        public long misses;
+
+        // Combinations currently remembered
+        public int entries;
+
+        // Print out the stats
+        public void dump(String name)
+        {
+            Log.v("Maply", String.format("---VectorStyleMemoizer %s Stats---",name));
+            Log.v("Maply", String.format("   Hits = %d",hits));
+            Log.v("Maply", String.format("   Misses = %d",misses));
+            Log.v("Maply", String.format("   Entries = %d",entries));
+            if (hits + misses > 0) {
+                Log.v("Maply", String.format("   Hit rate = %.1f%%",100.0 * hits / (hits + misses)));
+            }
+        }
+    }
+
+    // Everything the styles for a feature depend on
+    private static final class Key
+    {
+        final String layerName;
+        final int level;
+        final Object[] values;
+        final int hash;
+
+        Key(String layerName,int level,Object[] values)
+        {
+            this.layerName = layerName;
+            this.level = level;
+            this.values = values;
+            hash = 31 * (31 * Arrays.hashCode(values) + level) + ((layerName != null) ? layerName.hashCode() : 0);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key)obj;
+            return hash == other.hash && level == other.level &&
+                    ((layerName == null) ? other.layerName == null : layerName.equals(other.layerName)) &&
+                    Arrays.equals(values, other.values);
+        }
+    }
+
+    private final VectorStyleInterface styleSet;
+    private volatile String[] keys;
+    private volatile boolean useLevel;
+    private final Map<Key,VectorStyle[]> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Wrap the given style set, remembering up to 4096 combinations.
+     */
+    public VectorStyleMemoizer(VectorStyleInterface styleSet)
+    {
+        this(styleSet,4096);
+    }
+
+    /**
+     * Wrap the given style set.
+     * @param styleSet Style set to pick the styles.  Should implement AttributeKeys.
+     * @param maxEntries Combinations to remember before dropping the least recently used.
+     */
+    public VectorStyleMemoizer(VectorStyleInterface styleSet,final int maxEntries)
+    {
+        this.styleSet = styleSet;
+        cache = new LinkedHashMap<Key,VectorStyle[]>(Math.min(maxEntries,1024),0.75f,true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key,VectorStyle[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        reset();
+    }
+
+    /**
+     * The style set we're wrapping.
+     */
+    public VectorStyleInterface getStyleSet()
+    {
+        return styleSet;
+    }
+
+    /**
+     * Forget everything and ask the style set for its attributes again.
+     * Call this if you change the style set in a way that could change what it picks.
+     */
+    public void reset()
+    {
+        synchronized (cache) {
+            if (styleSet instanceof AttributeKeys) {
+                AttributeKeys attrKeys = (AttributeKeys)styleSet;
+                keys = attrKeys.getStyleAttributeKeys();
+                useLevel = attrKeys.stylesDependOnLevel();
+            } else {
+                keys = null;
+            }
+            cache.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Return a copy of the hit and miss counts since the last reset().
+     */
+    public Stats getStats()
+    {
+        final Stats ret = new Stats();
+        ret.hits = hits.get();
+        ret.misses = misses.get();
+        synchronized (cache) {
+            ret.entries = cache.size();
+        }
+        return ret;
+    }
+
+    @Override
+    public VectorStyle[] stylesForFeature(AttrDictionary attrs,TileID tileID,String layerName,RenderControllerInterface controller)
+    {
+        final String[] theKeys = keys;
+        if (theKeys == null || attrs == null)
+            return styleSet.stylesForFeature(attrs,tileID,layerName,controller);
+
+        // Just the values the style set looks at, in one go
+        return stylesForSnapshot(attrs.snapshot(theKeys),attrs,tileID,layerName,controller);
+    }
+
+    // Look up the styles for the values in the snapshot, going to the style set with the full attributes if we have to
+    VectorStyle[] stylesForSnapshot(AttrSnapshot snapshot,AttrDictionary attrs,TileID tileID,String layerName,RenderControllerInterface controller)
+    {
+        final Object[] values = new Object[snapshot.size()];
+        for (int ii=0;ii<values.length;ii++)
+            values[ii] = snapshot.get(ii);
+        final int level = (useLevel && tileID != null) ? tileID.level : -1;
+        final Key key = new Key(layerName,level,values);
+
+        VectorStyle[] styles;
+        synchronized (cache) {
+            styles = cache.get(key);
+        }
+        if (styles != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            styles = styleSet.stylesForFeature(attrs,tileID,layerName,controller);
+            if (styles == null)
+                styles = new VectorStyle[0];
+            synchronized (cache) {
+                cache.put(key,styles);
+            }
+        }
+
+        // The cached array is shared, so don't hand it out
+        return styles.clone();
+    }
+
+    @Override
+    public VectorStyle[] allStyles()
+    {
+        return styleSet.allStyles();
+    }
+
+    @Override
+    public boolean layerShouldDisplay(String layerName,TileID tileID)
+    {
+        return styleSet.layerShouldDisplay(layerName,tileID);
+    }
+
+    @Override
+    public VectorStyle styleForUUID(long uuid,RenderControllerInterface controller)
+    {
+        return styleSet.styleForUUID(uuid,controller);
+    }
+
+    @Override
+    public int backgroundColorForZoom(double zoom)
+    {
+        return styleSet.backgroundColorForZoom(zoom);
+    }
+
+    @Override
+    public int getZoomSlot()
+    {
+        return styleSet.getZoomSlot();
+    }
+
+    @Override
+    public void setZoomSlot(int inZoomSlot)
+    {
+        styleSet.setZoomSlot(inZoomSlot);
+    }
+}
@@ -11,7 +11,7 @@ import java.util.HashMap;
 /**
  * Created by sjg on 6/2/16.
  */
-public class VectorStyleSimpleGenerator implements VectorStyleInterface
+public class VectorStyleSimpleGenerator implements VectorStyleInterface, VectorStyleMemoizer.AttributeKeys
 {
     /**
      * Base class for our vector style implementations.
@@ -211,6 +211,21 @@ public class VectorStyleSimpleGenerator implements VectorStyleInterface
         return new VectorStyle[]{style};
     }
 
+    /**
+     * We only look at the geometry type
+     */
+    @Override
+    public String[] getStyleAttributeKeys()
+    {
+        return new String[]{"geometry_type"};
+    }
+
+    @Override
+    public boolean stylesDependOnLevel()
+    {
+        return false;
+    }
+
     /**
      * We'll display all layers
      */
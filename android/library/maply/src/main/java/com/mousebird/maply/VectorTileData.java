@@ -109,6 +109,17 @@ public class VectorTileData
      */
     public native VectorObject[] getVectors();
 
+    /**
+     * Number of vector objects preserved for this tile.
+     */
+    public native int getVectorCount();
+
+    /**
+     * Drop the component objects, images and changes, keeping only the preserved vectors.
+     * Call this once everything else has been pulled out.
+     */
+    public native void keepVectorsOnly();
+
     static {
         nativeInit();
     }
@@ -0,0 +1,221 @@
+/*
+ *  WorkTrace.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mousebird.maply;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A fixed size ring buffer of timed work regions.
+ * <p>
+ * The layer threads record their tasks in here when work tracing is turned on.
+ * Once full, the oldest entries are overwritten.  The contents can be written out
+ * in the Chrome trace-event JSON format and loaded into chrome://tracing or Perfetto.
+ */
+public class WorkTrace
+{
+    private final String[] labels;
+    private final String[] threadNames;
+    private final long[] threadIDs;
+    private final long[] queueTimes;
+    private final long[] startTimes;
+    private final long[] endTimes;
+    private int next = 0;
+    private int count = 0;
+
+    /**
+     * Construct with the number of entries to keep.
+     */
+    public WorkTrace(int capacity)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("WorkTrace capacity must be positive");
+        }
+        labels = new String[capacity];
+        threadNames = new String[capacity];
+        threadIDs = new long[capacity];
+        queueTimes = new long[capacity];
+        startTimes = new long[capacity];
+        endTimes = new long[capacity];
+    }
+
+    /**
+     * Record a completed unit of work on the current thread.
+     *
+     * @param label Caller supplied tag for the work
+     * @param queueTime When the work was queued (System.nanoTime), or zero if unknown
+     * @param startTime When the work started (System.nanoTime)
+     * @param endTime When the work finished (System.nanoTime)
+     */
+    public void record(String label,long queueTime,long startTime,long endTime)
+    {
+        final Thread thread = Thread.currentThread();
+        record(label,thread.getName(),thread.getId(),queueTime,startTime,endTime);
+    }
+
+    /**
+     * Record a completed unit of work on the given thread.
+     */
+    public synchronized void record(String label,String threadName,long threadID,long queueTime,long startTime,long endTime)
+    {
+        labels[next] = label;
+        threadNames[next] = threadName;
+        threadIDs[next] = threadID;
+        queueTimes[next] = queueTime;
+        startTimes[next] = startTime;
+        endTimes[next] = endTime;
+        next = (next + 1) % labels.length;
+        if (count < labels.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Number of entries currently held.
+     */
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * Maximum number of entries held before old ones are overwritten.
+     */
+    public int getCapacity()
+    {
+        return labels.length;
+    }
+
+    /**
+     * Throw away all the entries.
+     */
+    public synchronized void clear()
+    {
+        for (int ii = 0; ii < labels.length; ii++) {
+            labels[ii] = null;
+            threadNames[ii] = null;
+        }
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * Write the entries, oldest first, as Chrome trace-event JSON.
+     * <p>
+     * Each task is a complete ("X") event with its run time.  If the queue time is known,
+     * the wait is written as a separate event on the same thread and in the event args.
+     */
+    public synchronized void writeChromeTrace(Writer out) throws IOException
+    {
+        final int start = (next - count + labels.length) % labels.length;
+        long base = Long.MAX_VALUE;
+        for (int ii = 0; ii < count; ii++) {
+            final int which = (start + ii) % labels.length;
+            final long t = (queueTimes[which] != 0) ? queueTimes[which] : startTimes[which];
+            base = Math.min(base, t);
+        }
+
+        out.write("{\"traceEvents\":[");
+        boolean first = true;
+        final Map<Long,String> threads = new HashMap<>();
+        for (int ii = 0; ii < count; ii++) {
+            final int which = (start + ii) % labels.length;
+            final String label = (labels[which] != null) ? labels[which] : "work";
+            final long tid = threadIDs[which];
+            threads.put(tid, threadNames[which]);
+
+            final long wait = (queueTimes[which] != 0) ? startTimes[which] - queueTimes[which] : 0;
+            if (wait > 0) {
+                first = writeEvent(out, first, label, "queue", tid,
+                        queueTimes[which] - base, wait, wait);
+            }
+            first = writeEvent(out, first, label, "work", tid,
+                    startTimes[which] - base, endTimes[which] - startTimes[which], wait);
+        }
+        for (Map.Entry<Long,String> thread : threads.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write(String.format(Locale.US,
+                    "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":",
+                    thread.getKey()));
+            writeString(out, thread.getValue());
+            out.write("}}");
+        }
+        out.write("]}");
+    }
+
+    /**
+     * Return the entries as a Chrome trace-event JSON string.
+     */
+    public String toChromeTrace()
+    {
+        final StringWriter writer = new StringWriter();
+        try {
+            writeChromeTrace(writer);
+        } catch (IOException ignored) {
+            // Not from a StringWriter
+        }
+        return writer.toString();
+    }
+
+    private static boolean writeEvent(Writer out,boolean first,String label,String category,long tid,
+                                      long ts,long dur,long wait) throws IOException
+    {
+        if (!first) {
+            out.write(',');
+        }
+        out.write("{\"name\":");
+        writeString(out, label);
+        out.write(String.format(Locale.US,
+                ",\"cat\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f,\"args\":{\"wait_ms\":%.3f}}",
+                category, tid, ts / 1000.0, dur / 1000.0, wait / 1.0e6));
+        return false;
+    }
+
+    private static void writeString(Writer out,String str) throws IOException
+    {
+        out.write('"');
+        if (str != null) {
+            for (int ii = 0; ii < str.length(); ii++) {
+                final char c = str.charAt(ii);
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format(Locale.US, "\\u%04x", (int)c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -21,6 +21,8 @@ package com.mousebird.maply.sld.sldexpressions;
 
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterProgram;
 import com.mousebird.maply.sld.sldstyleset.SLDParseHelper;
 
 import org.xmlpull.v1.XmlPullParser;
@@ -105,6 +107,15 @@ public class SLDBinaryOperatorExpression extends SLDExpression {
         return null;
     }
 
+    @Override
+    public SLDFilterProgram.Operand compile(SLDFilterCompiler compiler) {
+        if (leftExpression == null || rightExpression == null)
+            return null;
+        // ExpressionType is in the same order as the compiler's arithmetic types
+        return compiler.arithmeticOperand(expressionType.ordinal(),
+                leftExpression.compile(compiler), rightExpression.compile(compiler));
+    }
+
     public static boolean matchesElementNamed(String elementName) {
         if (elementName.equals("Add"))
             return true;
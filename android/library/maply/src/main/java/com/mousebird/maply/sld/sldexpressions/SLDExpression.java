@@ -20,6 +20,8 @@
 package com.mousebird.maply.sld.sldexpressions;
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterProgram;
 
 import android.util.Log;
 
@@ -32,4 +34,12 @@ import android.util.Log;
 public abstract class SLDExpression {
 
     public abstract Object evaluateWithAttrs(AttrDictionary attrs);
+
+    /**
+     * Make the operand a compiled filter uses for this expression.
+     * @details Subclasses that don't know how fall back to evaluateWithAttrs().
+     */
+    public SLDFilterProgram.Operand compile(SLDFilterCompiler compiler) {
+        return compiler.interpretedOperand(this);
+    }
 }
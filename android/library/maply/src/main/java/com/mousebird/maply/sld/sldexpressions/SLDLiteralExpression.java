@@ -21,6 +21,8 @@ package com.mousebird.maply.sld.sldexpressions;
 
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterProgram;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -58,6 +60,11 @@ public class SLDLiteralExpression extends SLDExpression {
         return literal;
     }
 
+    @Override
+    public SLDFilterProgram.Operand compile(SLDFilterCompiler compiler) {
+        return compiler.literalOperand(literal);
+    }
+
     public static boolean matchesElementNamed(String elementName) {
         if (elementName.equals("Literal"))
             return true;
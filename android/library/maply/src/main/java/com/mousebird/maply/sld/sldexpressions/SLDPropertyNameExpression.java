@@ -21,6 +21,8 @@ package com.mousebird.maply.sld.sldexpressions;
 
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterProgram;
 import com.mousebird.maply.sld.sldstyleset.SLDParseHelper;
 
 import org.xmlpull.v1.XmlPullParser;
@@ -55,6 +57,11 @@ public class SLDPropertyNameExpression extends SLDExpression {
         return attrs.get(propertyName);
     }
 
+    @Override
+    public SLDFilterProgram.Operand compile(SLDFilterCompiler compiler) {
+        return compiler.propertyOperand(propertyName);
+    }
+
     public static boolean matchesElementNamed(String elementName) {
         if (elementName.equals("PropertyName"))
             return true;
@@ -174,5 +174,14 @@ public class SLDBinaryComparisonOperator extends SLDOperator {
         return false;
     }
 
-
+    @Override
+    public void compile(SLDFilterCompiler compiler) {
+        if (leftExpression == null || rightExpression == null) {
+            compiler.emitOperator(null);
+            return;
+        }
+        // ComparisonType is in the same order as the compiler's comparison types
+        compiler.emitCompare(comparisonType.ordinal(), matchCase,
+                leftExpression.compile(compiler), rightExpression.compile(compiler));
+    }
 }
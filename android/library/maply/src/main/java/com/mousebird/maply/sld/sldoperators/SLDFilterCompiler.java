@@ -0,0 +1,303 @@
+/*
+ *  SLDFilterCompiler.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.mousebird.maply.sld.sldoperators;
+
+import com.mousebird.maply.sld.sldexpressions.SLDExpression;
+import com.mousebird.maply.sld.sldstyleset.SLDParseHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * Turns filter operators into SLDFilterPrograms.
+ * @details Operators and expressions emit their own instructions through the methods here.
+ * All the programs made by one compiler share the same attribute slots, so use one compiler
+ * for a whole style set and evaluate its programs with a context from newContext().
+ */
+public class SLDFilterCompiler {
+
+    // Comparison types
+    public static final int EqualTo = 0;
+    public static final int NotEqualTo = 1;
+    public static final int LessThan = 2;
+    public static final int GreaterThan = 3;
+    public static final int LessThanOrEqualTo = 4;
+    public static final int GreaterThanOrEqualTo = 5;
+
+    // Arithmetic types
+    public static final int Add = 0;
+    public static final int Sub = 1;
+    public static final int Mul = 2;
+    public static final int Div = 3;
+
+    private final HashMap<String, Integer> slots = new HashMap<String, Integer>();
+    private final ArrayList<String> slotNames = new ArrayList<String>();
+
+    // Set if anything had to fall back to the operators or expressions
+    private boolean interpreted = false;
+
+    // Program under construction
+    private final ArrayList<Byte> ops = new ArrayList<Byte>();
+    private final ArrayList<Integer> args = new ArrayList<Integer>();
+    private final ArrayList<Integer> flags = new ArrayList<Integer>();
+    private final ArrayList<Double> numbers = new ArrayList<Double>();
+    private final ArrayList<Object> objects = new ArrayList<Object>();
+
+    /**
+     * Compile a list of operators, any of which may match.
+     * @details An empty list always matches.  A missing operator never does.
+     */
+    public SLDFilterProgram compile(List<SLDOperator> operators) {
+        clear();
+        if (operators.isEmpty())
+            emit(SLDFilterProgram.OpTrue, 0, 0, 0.0, null);
+        else
+            emitLogical(false, operators);
+        return build();
+    }
+
+    /**
+     * Context to run the programs from this compiler with.
+     * @details Make these after compiling so they know about all the slots.
+     */
+    public SLDFilterContext newContext() {
+        return new SLDFilterContext(getSlotNames());
+    }
+
+    /**
+     * Number of distinct attributes the programs look at.
+     */
+    public int getNumSlots() {
+        return slotNames.size();
+    }
+
+    /**
+     * Names of the attributes the programs look at, in slot order.
+     */
+    public String[] getSlotNames() {
+        return slotNames.toArray(new String[0]);
+    }
+
+    /**
+     * True if every program only looks at the slots, with nothing left to the operators.
+     * @details If so, getSlotNames() is everything the programs can depend on.
+     */
+    public boolean isFullyCompiled() {
+        return !interpreted;
+    }
+
+    /**
+     * Compile a single operator, which sets the result.
+     */
+    public void emitOperator(SLDOperator operator) {
+        if (operator == null)
+            emit(SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+        else
+            operator.compile(this);
+    }
+
+    /**
+     * Compile a list of operators that must all (and) or any (or) be true.
+     * @details Stops at the first one that settles it.
+     */
+    public void emitLogical(boolean and, List<SLDOperator> operators) {
+        if (operators.isEmpty()) {
+            emit(and ? SLDFilterProgram.OpTrue : SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+            return;
+        }
+
+        ArrayList<Integer> jumps = new ArrayList<Integer>();
+        for (int ii=0;ii<operators.size();ii++) {
+            emitOperator(operators.get(ii));
+            if (ii < operators.size()-1)
+                jumps.add(emit(and ? SLDFilterProgram.OpJumpIfFalse : SLDFilterProgram.OpJumpIfTrue, 0, 0, 0.0, null));
+        }
+        // Jumps land just past the last operator
+        for (int jump : jumps)
+            args.set(jump, ops.size());
+    }
+
+    public void emitNot(SLDOperator operator) {
+        if (operator == null) {
+            emit(SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+            return;
+        }
+        emitOperator(operator);
+        emit(SLDFilterProgram.OpNot, 0, 0, 0.0, null);
+    }
+
+    public void emitCompare(int compareType, boolean matchCase, SLDFilterProgram.Operand left, SLDFilterProgram.Operand right) {
+        if (left == null || right == null) {
+            emit(SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+            return;
+        }
+
+        // Put the attribute on the left so we only need the one instruction
+        if (left.kind == SLDFilterProgram.Operand.Literal && right.kind == SLDFilterProgram.Operand.Slot) {
+            SLDFilterProgram.Operand temp = left;
+            left = right;
+            right = temp;
+            compareType = flip(compareType);
+        }
+
+        int flagBits = compareType | (matchCase ? SLDFilterProgram.MatchCaseFlag : 0);
+        if (left.kind == SLDFilterProgram.Operand.Slot && right.kind == SLDFilterProgram.Operand.Literal &&
+                right.literal instanceof String) {
+            if (right.numeric)
+                flagBits |= SLDFilterProgram.NumericFlag;
+            emit(SLDFilterProgram.OpCompareSlot, left.slot, flagBits, right.number, right.literal);
+        } else {
+            emit(SLDFilterProgram.OpCompare, 0, flagBits, 0.0, new SLDFilterProgram.Operand[] {left, right});
+        }
+    }
+
+    public void emitIsNull(SLDFilterProgram.Operand operand) {
+        if (operand == null)
+            emit(SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+        else if (operand.kind == SLDFilterProgram.Operand.Slot)
+            emit(SLDFilterProgram.OpIsNullSlot, operand.slot, 0, 0.0, null);
+        else
+            emit(SLDFilterProgram.OpIsNull, 0, 0, 0.0, operand);
+    }
+
+    public void emitLike(SLDFilterProgram.Operand operand, Pattern pattern) {
+        if (operand == null || pattern == null)
+            emit(SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+        else
+            emit(SLDFilterProgram.OpLike, 0, 0, 0.0, new Object[] {operand, pattern});
+    }
+
+    public void emitBetween(SLDFilterProgram.Operand operand, SLDFilterProgram.Operand lower, SLDFilterProgram.Operand upper) {
+        if (operand == null || lower == null || upper == null)
+            emit(SLDFilterProgram.OpFalse, 0, 0, 0.0, null);
+        else
+            emit(SLDFilterProgram.OpBetween, 0, 0, 0.0, new SLDFilterProgram.Operand[] {operand, lower, upper});
+    }
+
+    /**
+     * Fall back to evaluating the operator the slow way.
+     */
+    public void emitInterpreted(SLDOperator operator) {
+        interpreted = true;
+        emit(SLDFilterProgram.OpOperator, 0, 0, 0.0, operator);
+    }
+
+    /**
+     * The value of the named attribute.
+     */
+    public SLDFilterProgram.Operand propertyOperand(String name) {
+        if (name == null)
+            return null;
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = slotNames.size();
+            slots.put(name, slot);
+            slotNames.add(name);
+        }
+        SLDFilterProgram.Operand operand = new SLDFilterProgram.Operand(SLDFilterProgram.Operand.Slot);
+        operand.slot = slot;
+        return operand;
+    }
+
+    /**
+     * A literal value, parsed as a number now if it looks like one.
+     */
+    public SLDFilterProgram.Operand literalOperand(Object literal) {
+        SLDFilterProgram.Operand operand = new SLDFilterProgram.Operand(SLDFilterProgram.Operand.Literal);
+        operand.literal = literal;
+        if (literal instanceof String && SLDParseHelper.isStringNumeric((String)literal)) {
+            operand.numeric = true;
+            operand.number = Double.valueOf((String)literal);
+        }
+        return operand;
+    }
+
+    public SLDFilterProgram.Operand arithmeticOperand(int arithmeticType, SLDFilterProgram.Operand left, SLDFilterProgram.Operand right) {
+        if (left == null || right == null)
+            return null;
+        SLDFilterProgram.Operand operand = new SLDFilterProgram.Operand(SLDFilterProgram.Operand.Arithmetic);
+        operand.arithmeticType = arithmeticType;
+        operand.left = left;
+        operand.right = right;
+        return operand;
+    }
+
+    /**
+     * Fall back to evaluating the expression the slow way.
+     */
+    public SLDFilterProgram.Operand interpretedOperand(SLDExpression expression) {
+        interpreted = true;
+        SLDFilterProgram.Operand operand = new SLDFilterProgram.Operand(SLDFilterProgram.Operand.Expression);
+        operand.expression = expression;
+        return operand;
+    }
+
+    // Same test with the sides swapped
+    private static int flip(int compareType) {
+        switch (compareType) {
+            case LessThan:
+                return GreaterThan;
+            case GreaterThan:
+                return LessThan;
+            case LessThanOrEqualTo:
+                return GreaterThanOrEqualTo;
+            case GreaterThanOrEqualTo:
+                return LessThanOrEqualTo;
+        }
+        return compareType;
+    }
+
+    private int emit(byte op, int arg, int flagBits, double number, Object object) {
+        ops.add(op);
+        args.add(arg);
+        flags.add(flagBits);
+        numbers.add(number);
+        objects.add(object);
+        return ops.size()-1;
+    }
+
+    private void clear() {
+        ops.clear();
+        args.clear();
+        flags.clear();
+        numbers.clear();
+        objects.clear();
+    }
+
+    private SLDFilterProgram build() {
+        final int count = ops.size();
+        byte[] opArr = new byte[count];
+        int[] argArr = new int[count];
+        int[] flagArr = new int[count];
+        double[] numberArr = new double[count];
+        Object[] objectArr = new Object[count];
+        for (int ii=0;ii<count;ii++) {
+            opArr[ii] = ops.get(ii);
+            argArr[ii] = args.get(ii);
+            flagArr[ii] = flags.get(ii);
+            numberArr[ii] = numbers.get(ii);
+            objectArr[ii] = objects.get(ii);
+        }
+        clear();
+        return new SLDFilterProgram(opArr, argArr, flagArr, numberArr, objectArr);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  SLDFilterContext.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.mousebird.maply.sld.sldoperators;
+
+import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.AttrSnapshot;
+
+import java.util.Arrays;
+
+/**
+ *
+ * The attributes of the feature being run through compiled filter programs.
+ * @details Each attribute the programs refer to has a slot.  The first time a program needs
+ * a slot, the values for every slot are copied out of the feature's attributes in one native
+ * call.  Every other program run against the same feature reuses them.  Get one of these from
+ * SLDFilterCompiler.newContext() and don't share it between threads.
+ */
+public class SLDFilterContext {
+
+    static final byte KindNull = 0;
+    static final byte KindNumber = 1;
+    static final byte KindString = 2;
+    static final byte KindOther = 3;
+
+    private final String[] names;
+    private final Object[] values;
+    private final byte[] kinds;
+    private final double[] numbers;
+
+    // A slot is good for the current feature if its stamp matches
+    private final int[] stamps;
+    private int stamp = 1;
+
+    private AttrDictionary attrs;
+    private AttrSnapshot snapshot;
+
+    public SLDFilterContext(String[] names) {
+        this.names = names;
+        values = new Object[names.length];
+        kinds = new byte[names.length];
+        numbers = new double[names.length];
+        stamps = new int[names.length];
+    }
+
+    /**
+     * Move on to a new feature.
+     */
+    public void reset(AttrDictionary attrs) {
+        this.attrs = attrs;
+        nextFeature();
+    }
+
+    public AttrDictionary getAttrs() {
+        return attrs;
+    }
+
+    /**
+     * Forget the attributes looked up for the last feature.
+     */
+    protected void nextFeature() {
+        snapshot = null;
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Fetch the value of an attribute for the current feature.
+     * Only used when there's no AttrDictionary, for subclasses that keep attributes elsewhere.
+     */
+    protected Object lookup(String name) {
+        return null;
+    }
+
+    final byte kind(int slot) {
+        resolve(slot);
+        return kinds[slot];
+    }
+
+    final Object value(int slot) {
+        resolve(slot);
+        return values[slot];
+    }
+
+    // Only meaningful if the kind is KindNumber
+    final double number(int slot) {
+        return numbers[slot];
+    }
+
+    private void resolve(int slot) {
+        if (stamps[slot] == stamp)
+            return;
+        stamps[slot] = stamp;
+
+        final Object value;
+        if (attrs != null) {
+            if (snapshot == null)
+                snapshot = attrs.snapshot(names);
+            value = snapshot.get(slot);
+        } else {
+            value = lookup(names[slot]);
+        }
+        values[slot] = value;
+        if (value == null) {
+            kinds[slot] = KindNull;
+        } else if (value instanceof Number) {
+            kinds[slot] = KindNumber;
+            numbers[slot] = ((Number)value).doubleValue();
+        } else if (value instanceof String) {
+            kinds[slot] = KindString;
+        } else {
+            kinds[slot] = KindOther;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ *  SLDFilterProgram.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.mousebird.maply.sld.sldoperators;
+
+import com.mousebird.maply.sld.sldexpressions.SLDExpression;
+import com.mousebird.maply.sld.sldstyleset.SLDParseHelper;
+
+import java.util.regex.Pattern;
+
+/**
+ *
+ * A filter compiled down to a flat list of instructions.
+ * @details Each instruction sets a single boolean result.  And, Or and Not are done with
+ * conditional jumps and a negation rather than by walking the operator tree.  Comparisons
+ * between an attribute and a literal, the usual case, have their own instructions with the
+ * literal already parsed.  Anything else falls back to evaluating operands as objects,
+ * with the same results as the interpreted operators.
+ * @see SLDFilterCompiler
+ */
+public class SLDFilterProgram {
+
+    /**
+     * One side of a comparison: an attribute, a literal or some arithmetic on those.
+     */
+    public static final class Operand {
+        static final int Slot = 0;
+        static final int Literal = 1;
+        static final int Arithmetic = 2;
+        static final int Expression = 3;
+
+        final int kind;
+
+        // Attribute slot
+        int slot;
+
+        // Literal value, along with the number it parses to
+        Object literal;
+        boolean numeric;
+        double number;
+
+        // Arithmetic on two other operands
+        int arithmeticType;
+        Operand left, right;
+
+        // Something we don't know how to compile
+        SLDExpression expression;
+
+        Operand(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    static final byte OpTrue = 0;
+    static final byte OpFalse = 1;
+    static final byte OpNot = 2;
+    static final byte OpJumpIfFalse = 3;
+    static final byte OpJumpIfTrue = 4;
+    static final byte OpCompareSlot = 5;
+    static final byte OpCompare = 6;
+    static final byte OpIsNullSlot = 7;
+    static final byte OpIsNull = 8;
+    static final byte OpLike = 9;
+    static final byte OpBetween = 10;
+    static final byte OpOperator = 11;
+
+    // Comparison type plus these flags go in the flags for comparisons
+    static final int CompareMask = 0x7;
+    static final int MatchCaseFlag = 0x8;
+    static final int NumericFlag = 0x10;
+
+    private final byte[] ops;
+    private final int[] args;
+    private final int[] flags;
+    private final double[] numbers;
+    private final Object[] objects;
+
+    SLDFilterProgram(byte[] ops, int[] args, int[] flags, double[] numbers, Object[] objects) {
+        this.ops = ops;
+        this.args = args;
+        this.flags = flags;
+        this.numbers = numbers;
+        this.objects = objects;
+    }
+
+    /**
+     * Number of instructions.
+     */
+    public int size() {
+        return ops.length;
+    }
+
+    /**
+     * Run the program against the feature in the context.
+     */
+    public boolean evaluate(SLDFilterContext context) {
+        boolean result = false;
+        final int count = ops.length;
+        int pc = 0;
+        while (pc < count) {
+            switch (ops[pc]) {
+                case OpTrue:
+                    result = true;
+                    break;
+                case OpFalse:
+                    result = false;
+                    break;
+                case OpNot:
+                    result = !result;
+                    break;
+                case OpJumpIfFalse:
+                    if (!result) {
+                        pc = args[pc];
+                        continue;
+                    }
+                    break;
+                case OpJumpIfTrue:
+                    if (result) {
+                        pc = args[pc];
+                        continue;
+                    }
+                    break;
+                case OpCompareSlot:
+                    result = compareSlot(context, args[pc], flags[pc], numbers[pc], (String)objects[pc]);
+                    break;
+                case OpCompare: {
+                    final Operand[] operands = (Operand[])objects[pc];
+                    result = compare(context, flags[pc], operands[0], operands[1]);
+                    break;
+                }
+                case OpIsNullSlot:
+                    result = context.kind(args[pc]) == SLDFilterContext.KindNull;
+                    break;
+                case OpIsNull:
+                    result = valueOf(context, (Operand)objects[pc]) == null;
+                    break;
+                case OpLike: {
+                    // Property and the pattern to match it against
+                    final Object[] like = (Object[])objects[pc];
+                    final Object value = valueOf(context, (Operand)like[0]);
+                    result = (value instanceof String) && ((Pattern)like[1]).matcher((String)value).matches();
+                    break;
+                }
+                case OpBetween: {
+                    final Operand[] operands = (Operand[])objects[pc];
+                    result = between(context, operands[0], operands[1], operands[2]);
+                    break;
+                }
+                case OpOperator:
+                    result = ((SLDOperator)objects[pc]).evaluateWithAttrs(context.getAttrs());
+                    break;
+            }
+            pc++;
+        }
+        return result;
+    }
+
+    // Test a comparison result (left vs right) against the comparison type
+    private static boolean test(int compareType, int order) {
+        switch (compareType) {
+            case SLDFilterCompiler.EqualTo:
+                return order == 0;
+            case SLDFilterCompiler.NotEqualTo:
+                return order != 0;
+            case SLDFilterCompiler.LessThan:
+                return order < 0;
+            case SLDFilterCompiler.GreaterThan:
+                return order > 0;
+            case SLDFilterCompiler.LessThanOrEqualTo:
+                return order <= 0;
+            case SLDFilterCompiler.GreaterThanOrEqualTo:
+                return order >= 0;
+        }
+        return false;
+    }
+
+    // Same for numbers, compared directly so NaN never matches, as before
+    private static boolean test(int compareType, double left, double right) {
+        switch (compareType) {
+            case SLDFilterCompiler.EqualTo:
+                return left == right;
+            case SLDFilterCompiler.NotEqualTo:
+                return left != right;
+            case SLDFilterCompiler.LessThan:
+                return left < right;
+            case SLDFilterCompiler.GreaterThan:
+                return left > right;
+            case SLDFilterCompiler.LessThanOrEqualTo:
+                return left <= right;
+            case SLDFilterCompiler.GreaterThanOrEqualTo:
+                return left >= right;
+        }
+        return false;
+    }
+
+    // Attribute on the left, literal on the right
+    private static boolean compareSlot(SLDFilterContext context, int slot, int flags, double number, String literal) {
+        switch (context.kind(slot)) {
+            case SLDFilterContext.KindNumber:
+                return (flags & NumericFlag) != 0 && test(flags & CompareMask, context.number(slot), number);
+            case SLDFilterContext.KindString: {
+                final String value = (String)context.value(slot);
+                final int order = ((flags & MatchCaseFlag) != 0) ? value.compareTo(literal) : value.compareToIgnoreCase(literal);
+                return test(flags & CompareMask, order);
+            }
+        }
+        return false;
+    }
+
+    private static boolean compare(SLDFilterContext context, int flags, Operand left, Operand right) {
+        final Object leftValue = valueOf(context, left);
+        final Object rightValue = valueOf(context, right);
+
+        if ((leftValue instanceof Number) || (rightValue instanceof Number)) {
+            if (!isNumeric(leftValue, left) || !isNumeric(rightValue, right))
+                return false;
+            return test(flags & CompareMask, numberOf(leftValue, left), numberOf(rightValue, right));
+        } else if ((leftValue instanceof String) && (rightValue instanceof String)) {
+            final String leftString = (String)leftValue;
+            final String rightString = (String)rightValue;
+            final int order = ((flags & MatchCaseFlag) != 0) ? leftString.compareTo(rightString) : leftString.compareToIgnoreCase(rightString);
+            return test(flags & CompareMask, order);
+        }
+        return false;
+    }
+
+    private static boolean between(SLDFilterContext context, Operand sub, Operand lower, Operand upper) {
+        final Object subValue = valueOf(context, sub);
+        final Object lowerValue = valueOf(context, lower);
+        final Object upperValue = valueOf(context, upper);
+
+        if (subValue instanceof Number) {
+            if (!isNumeric(lowerValue, lower) || !isNumeric(upperValue, upper))
+                return false;
+            final double subNumber = ((Number)subValue).doubleValue();
+            return numberOf(lowerValue, lower) <= subNumber && subNumber <= numberOf(upperValue, upper);
+        } else if ((subValue instanceof String) && (lowerValue instanceof String) && (upperValue instanceof String)) {
+            final String subString = (String)subValue;
+            return ((String)lowerValue).compareTo(subString) <= 0 && subString.compareTo((String)upperValue) <= 0;
+        }
+        return false;
+    }
+
+    // Literals were parsed when we compiled, anything else we have to check
+    private static boolean isNumeric(Object value, Operand operand) {
+        if (value instanceof Number)
+            return true;
+        if (!(value instanceof String))
+            return false;
+        if (operand.kind == Operand.Literal)
+            return operand.numeric;
+        return SLDParseHelper.isStringNumeric((String)value);
+    }
+
+    // Call isNumeric first
+    private static double numberOf(Object value, Operand operand) {
+        if (value instanceof Number)
+            return ((Number)value).doubleValue();
+        if (operand.kind == Operand.Literal)
+            return operand.number;
+        return Double.valueOf((String)value);
+    }
+
+    private static Object valueOf(SLDFilterContext context, Operand operand) {
+        switch (operand.kind) {
+            case Operand.Slot:
+                return context.value(operand.slot);
+            case Operand.Literal:
+                return operand.literal;
+            case Operand.Arithmetic: {
+                final Object left = valueOf(context, operand.left);
+                final Object right = valueOf(context, operand.right);
+                if (!(left instanceof Number) || !(right instanceof Number))
+                    return null;
+                final double leftNumber = ((Number)left).doubleValue();
+                final double rightNumber = ((Number)right).doubleValue();
+                switch (operand.arithmeticType) {
+                    case SLDFilterCompiler.Add:
+                        return leftNumber + rightNumber;
+                    case SLDFilterCompiler.Sub:
+                        return leftNumber - rightNumber;
+                    case SLDFilterCompiler.Mul:
+                        return leftNumber * rightNumber;
+                    case SLDFilterCompiler.Div:
+                        return leftNumber / rightNumber;
+                }
+                return null;
+            }
+            case Operand.Expression:
+                return operand.expression.evaluateWithAttrs(context.getAttrs());
+        }
+        return null;
+    }
+}
@@ -48,9 +48,9 @@ public class SLDIsBetweenOperator extends SLDOperator {
             SLDExpression expression = SLDExpressionFactory.expressionForNode(xpp);
             if (expression != null) {
                 this.subExpression = expression;
-            } else if (xpp.getName() == "LowerBoundary") {
+            } else if ("LowerBoundary".equals(xpp.getName())) {
                 this.lowerBoundaryExpression = getBoundaryExpression(xpp);
-            } else if (xpp.getName() == "UpperBoundary") {
+            } else if ("UpperBoundary".equals(xpp.getName())) {
                 this.upperBoundaryExpression = getBoundaryExpression(xpp);
             } else {
                 SLDParseHelper.skip(xpp);
@@ -126,4 +126,13 @@ public class SLDIsBetweenOperator extends SLDOperator {
         return false;
     }
 
+    @Override
+    public void compile(SLDFilterCompiler compiler) {
+        if (subExpression == null || lowerBoundaryExpression == null || upperBoundaryExpression == null) {
+            compiler.emitOperator(null);
+            return;
+        }
+        compiler.emitBetween(subExpression.compile(compiler),
+                lowerBoundaryExpression.compile(compiler), upperBoundaryExpression.compile(compiler));
+    }
 }
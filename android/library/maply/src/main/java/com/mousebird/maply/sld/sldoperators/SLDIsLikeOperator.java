@@ -142,4 +142,9 @@ public class SLDIsLikeOperator extends SLDOperator {
         return m.matches();
     }
 
+    @Override
+    public void compile(SLDFilterCompiler compiler) {
+        compiler.emitLike((propertyExpression != null) ? propertyExpression.compile(compiler) : null, pattern);
+    }
+
 }
@@ -71,4 +71,9 @@ public class SLDIsNullOperator extends SLDOperator {
         return false;
     }
 
+    @Override
+    public void compile(SLDFilterCompiler compiler) {
+        compiler.emitIsNull((subExpression != null) ? subExpression.compile(compiler) : null);
+    }
+
 }
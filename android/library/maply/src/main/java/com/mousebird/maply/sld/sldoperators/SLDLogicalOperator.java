@@ -91,4 +91,9 @@ public class SLDLogicalOperator extends SLDOperator {
         return result;
     }
 
+    @Override
+    public void compile(SLDFilterCompiler compiler) {
+        compiler.emitLogical(logicType == LogicType.LogicTypeAnd, subOperators);
+    }
+
 }
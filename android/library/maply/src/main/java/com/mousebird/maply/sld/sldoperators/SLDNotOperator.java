@@ -69,4 +69,9 @@ public class SLDNotOperator extends SLDOperator {
         return false;
     }
 
+    @Override
+    public void compile(SLDFilterCompiler compiler) {
+        compiler.emitNot(subOperator);
+    }
+
 }
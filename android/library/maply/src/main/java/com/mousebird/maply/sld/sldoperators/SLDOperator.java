@@ -40,4 +40,12 @@ abstract public class SLDOperator
 {
     public abstract boolean evaluateWithAttrs(AttrDictionary attrs);
 
+    /**
+     * Emit the instructions for this operator.
+     * @details Subclasses that don't know how fall back to evaluateWithAttrs().
+     */
+    public void compile(SLDFilterCompiler compiler) {
+        compiler.emitInterpreted(this);
+    }
+
 }
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.ArrayList;
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
 import com.mousebird.maply.VectorStyleSettings;
 import com.mousebird.maply.VectorTileStyle;
 import com.mousebird.maply.sld.sldstyleset.SLDRule;
@@ -75,4 +76,14 @@ public class SLDFeatureTypeStyle {
         }
         return styles;
     }
+
+    public void compile(SLDFilterCompiler compiler) {
+        for (SLDRule rule : rules) {
+            rule.compile(compiler);
+        }
+    }
+
+    public List<SLDRule> getRules() {
+        return rules;
+    }
 }
@@ -31,6 +31,7 @@ import android.util.Log;
 
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
 import com.mousebird.maply.VectorStyleSettings;
 import com.mousebird.maply.VectorTileStyle;
 import com.mousebird.maply.sld.sldstyleset.SLDUserStyle;
@@ -86,4 +87,17 @@ public class SLDNamedLayer {
         return styles;
     }
 
+    public void compile(SLDFilterCompiler compiler) {
+        for (SLDUserStyle userStyle : userStyles) {
+            userStyle.compile(compiler);
+        }
+    }
+
+    public List<SLDRule> getRules() {
+        List<SLDRule> rules = new ArrayList<SLDRule>();
+        for (SLDUserStyle userStyle : userStyles) {
+            rules.addAll(userStyle.getRules());
+        }
+        return rules;
+    }
 }
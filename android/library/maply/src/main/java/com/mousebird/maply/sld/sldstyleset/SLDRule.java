@@ -29,6 +29,10 @@ import java.util.List;
 import java.util.ArrayList;
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterContext;
+import com.mousebird.maply.sld.sldoperators.SLDFilterProgram;
+import com.mousebird.maply.sld.sldoperators.SLDOperator;
 import com.mousebird.maply.sld.sldstyleset.SLDFilter;
 import com.mousebird.maply.sld.sldstyleset.SLDParseHelper;
 import com.mousebird.maply.sld.sldsymbolizers.SLDSymbolizer;
@@ -49,6 +53,8 @@ public class SLDRule {
 
     private List<SLDFilter> filters = new ArrayList<SLDFilter>();
     private List<SLDFilter> elseFilters = new ArrayList<SLDFilter>();
+    private Double minScaleDenominator, maxScaleDenominator;
+    private SLDFilterProgram program;
 
     public List<VectorTileStyle> getStyles() {
         return styles;
@@ -70,12 +76,16 @@ public class SLDRule {
                 elseFilters.add(new SLDFilter(xpp));
             } else if (xpp.getName().equals("MinScaleDenominator")) {
                 String value = SLDParseHelper.nodeTextValue(xpp);
-                if (SLDParseHelper.isStringNumeric(value))
-                    symbolizerParams.setMinScaleDenominator(Double.valueOf(value));
+                if (SLDParseHelper.isStringNumeric(value)) {
+                    minScaleDenominator = Double.valueOf(value);
+                    symbolizerParams.setMinScaleDenominator(minScaleDenominator);
+                }
             } else if (xpp.getName().equals("MaxScaleDenominator")) {
                 String value = SLDParseHelper.nodeTextValue(xpp);
-                if (SLDParseHelper.isStringNumeric(value))
-                    symbolizerParams.setMaxScaleDenominator(Double.valueOf(value));
+                if (SLDParseHelper.isStringNumeric(value)) {
+                    maxScaleDenominator = Double.valueOf(value);
+                    symbolizerParams.setMaxScaleDenominator(maxScaleDenominator);
+                }
             } else if (xpp.getName().equals("VendorOption")) {
                 String optionName = xpp.getAttributeValue(null, "name");
                 if (optionName != null && optionName.equals("relativeDrawPriority")) {
@@ -97,7 +107,64 @@ public class SLDRule {
     }
 
 
+    public Double getMinScaleDenominator() {
+        return minScaleDenominator;
+    }
+
+    public Double getMaxScaleDenominator() {
+        return maxScaleDenominator;
+    }
+
+    /**
+     * True if the rule is in effect at the given scale denominator.
+     * @details Like SLD, the minimum is inclusive and the maximum exclusive.
+     */
+    public boolean appliesAtScale(double scaleDenominator) {
+        if (minScaleDenominator != null && scaleDenominator < minScaleDenominator)
+            return false;
+        if (maxScaleDenominator != null && scaleDenominator >= maxScaleDenominator)
+            return false;
+        return true;
+    }
+
+    /**
+     * Compile the filters and else filters down to a single program.
+     * @details The rule matches if there are no filters at all or if any of them do.
+     */
+    public void compile(SLDFilterCompiler compiler) {
+        List<SLDOperator> operators = new ArrayList<SLDOperator>();
+        for (SLDFilter filter : filters)
+            operators.add(filter.getOperator());
+        for (SLDFilter filter : elseFilters)
+            operators.add(filter.getOperator());
+        program = compiler.compile(operators);
+    }
+
+    /**
+     * True if the feature in the context passes the filters.
+     */
+    public boolean matches(SLDFilterContext context) {
+        if (program != null)
+            return program.evaluate(context);
+        return matchesAttrs(context.getAttrs());
+    }
+
+    /**
+     * Add our styles to the list if the feature in the context passes the filters.
+     */
+    public void addStylesForFeature(SLDFilterContext context, List<VectorTileStyle> styles) {
+        if (matches(context))
+            styles.addAll(this.styles);
+    }
+
     public List<VectorTileStyle> stylesForFeatureAttributes(AttrDictionary attrs) {
+        if (matchesAttrs(attrs))
+            return styles;
+        return new ArrayList<VectorTileStyle>();
+    }
+
+    // Walk the filters directly
+    private boolean matchesAttrs(AttrDictionary attrs) {
         boolean matched = false;
         if (filters.size() == 0 && elseFilters.size() == 0)
             matched = true;
@@ -115,9 +182,7 @@ public class SLDRule {
                 }
             }
         }
-        if (matched)
-            return styles;
-        return new ArrayList<VectorTileStyle>();
+        return matched;
     }
 
 }
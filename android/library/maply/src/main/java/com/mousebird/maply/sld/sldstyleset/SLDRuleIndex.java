@@ -0,0 +1,145 @@
+/*
+ *  SLDRuleIndex.java
+ *  WhirlyGlobeLib
+ *
+ *  Copyright 2011-2021 mousebird consulting
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.mousebird.maply.sld.sldstyleset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ *
+ * Rules sorted out by named layer and tile level ahead of time.
+ * @details A tile at a given level is shown over a band of map scales.  Rules whose scale
+ * denominators don't overlap that band can't produce anything visible for the tile, so
+ * they're left out of the list for that level.  The band is padded a level on either side
+ * to allow for the loader showing tiles a bit early or late.  Add everything, then build().
+ */
+class SLDRuleIndex<R> {
+
+    // Deepest level we keep separate lists for, anything past this uses the last one
+    static final int MaxLevel = 30;
+
+    // Scale denominator at level zero for 256 pixel Spherical Mercator tiles, per OGC
+    static final double LevelZeroScale = 559082264.0287178;
+
+    private static class Entry<R> {
+        final R rule;
+        final Double minScale, maxScale;
+
+        Entry(R rule, Double minScale, Double maxScale) {
+            this.rule = rule;
+            this.minScale = minScale;
+            this.maxScale = maxScale;
+        }
+    }
+
+    private final HashMap<String, List<Entry<R>>> entriesByLayer = new HashMap<String, List<Entry<R>>>();
+    private final List<Entry<R>> allEntries = new ArrayList<Entry<R>>();
+
+    // Built lists, by layer and then level
+    private final HashMap<String, List<List<R>>> rulesByLayer = new HashMap<String, List<List<R>>>();
+    private final HashMap<String, List<R>> unbandedRulesByLayer = new HashMap<String, List<R>>();
+    private List<List<R>> allRules = Collections.emptyList();
+    private List<R> allUnbandedRules = Collections.emptyList();
+
+    /**
+     * Add a rule for the given layer, along with its scale denominators (or null).
+     */
+    void add(String layerName, R rule, Double minScale, Double maxScale) {
+        Entry<R> entry = new Entry<R>(rule, minScale, maxScale);
+        List<Entry<R>> entries = entriesByLayer.get(layerName);
+        if (entries == null) {
+            entries = new ArrayList<Entry<R>>();
+            entriesByLayer.put(layerName, entries);
+        }
+        entries.add(entry);
+        allEntries.add(entry);
+    }
+
+    /**
+     * Sort the rules out into per-level lists.
+     * @param maxTileLevel Deepest level the tiles go.  Past that they're scaled up, so
+     *                     rules for any closer scale apply.  Use MaxLevel if you don't know.
+     */
+    void build(int maxTileLevel) {
+        rulesByLayer.clear();
+        unbandedRulesByLayer.clear();
+        for (String layerName : entriesByLayer.keySet()) {
+            List<Entry<R>> entries = entriesByLayer.get(layerName);
+            rulesByLayer.put(layerName, byLevel(entries, maxTileLevel));
+            unbandedRulesByLayer.put(layerName, rulesOf(entries));
+        }
+        allRules = byLevel(allEntries, maxTileLevel);
+        allUnbandedRules = rulesOf(allEntries);
+    }
+
+    /**
+     * Rules that might apply to a feature in the given layer at the given level.
+     * @param layerName Named layer, or null for all of them.
+     * @param level Tile level, or -1 to skip the scale check.
+     */
+    List<R> rules(String layerName, int level) {
+        if (layerName == null) {
+            if (level < 0)
+                return allUnbandedRules;
+            return allRules.get(Math.min(level, MaxLevel));
+        }
+        if (level < 0) {
+            List<R> rules = unbandedRulesByLayer.get(layerName);
+            return (rules != null) ? rules : Collections.<R>emptyList();
+        }
+        List<List<R>> levels = rulesByLayer.get(layerName);
+        return (levels != null) ? levels.get(Math.min(level, MaxLevel)) : Collections.<R>emptyList();
+    }
+
+    /**
+     * Scale denominator a tile at this level is drawn at when shown at its native resolution.
+     */
+    static double scaleForLevel(int level) {
+        return LevelZeroScale / Math.pow(2.0, level);
+    }
+
+    private static <R> List<R> rulesOf(List<Entry<R>> entries) {
+        List<R> rules = new ArrayList<R>(entries.size());
+        for (Entry<R> entry : entries)
+            rules.add(entry.rule);
+        return rules;
+    }
+
+    private static <R> List<List<R>> byLevel(List<Entry<R>> entries, int maxTileLevel) {
+        List<List<R>> levels = new ArrayList<List<R>>(MaxLevel+1);
+        for (int level=0;level<=MaxLevel;level++) {
+            // From a level deeper than the tile (exclusive) to a level shallower (inclusive)
+            double minScale = (level >= maxTileLevel) ? 0.0 : scaleForLevel(level+2);
+            double maxScale = scaleForLevel(level-1);
+            List<R> rules = new ArrayList<R>();
+            for (Entry<R> entry : entries) {
+                // Rules apply from their min scale (inclusive) to their max (exclusive)
+                if (entry.minScale != null && entry.minScale > maxScale)
+                    continue;
+                if (entry.maxScale != null && entry.maxScale <= minScale)
+                    continue;
+                rules.add(entry.rule);
+            }
+            levels.add(rules.isEmpty() ? Collections.<R>emptyList() : rules);
+        }
+        return levels;
+    }
+}
@@ -42,7 +42,10 @@ import com.mousebird.maply.TileID;
 import com.mousebird.maply.VectorStyle;
 import com.mousebird.maply.VectorTileStyle;
 import com.mousebird.maply.VectorStyleInterface;
+import com.mousebird.maply.VectorStyleMemoizer;
 import com.mousebird.maply.VectorStyleSettings;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
+import com.mousebird.maply.sld.sldoperators.SLDFilterContext;
 import com.mousebird.maply.sld.sldsymbolizers.SLDSymbolizerParams;
 
 import android.app.Activity;
@@ -61,7 +64,7 @@ import android.util.Log;
  * @see http://schemas.opengis.net/sld/1.0.0/StyledLayerDescriptor.xsd for SLD v1.0.0
  * @see VectorStyleInterface
  */
-public class SLDStyleSet implements VectorStyleInterface {
+public class SLDStyleSet implements VectorStyleInterface, VectorStyleMemoizer.AttributeKeys {
 
     private boolean useLayerNames;
     private int relativeDrawPriority;
@@ -73,6 +76,27 @@ public class SLDStyleSet implements VectorStyleInterface {
 
     private InputStream inputStream;
 
+    // Rules that might apply by layer and tile level, built once the document is loaded
+    private boolean useTileScale = false;
+    private int maxTileLevel = SLDRuleIndex.MaxLevel;
+    private volatile SLDRuleIndex<SLDRule> ruleIndex;
+
+    // Attributes the filters look at, if they were all compiled
+    private volatile String[] filterAttributeKeys;
+
+    // Per thread state for matching features
+    private static class MatchState {
+        final SLDFilterContext context;
+        final ArrayList<VectorTileStyle> styles = new ArrayList<VectorTileStyle>();
+
+        MatchState(SLDFilterContext context) {
+            this.context = context;
+        }
+    }
+
+    // Filters are compiled once the document is loaded and each thread gets a context to run them with
+    private volatile ThreadLocal<MatchState> matchStates;
+
     /**
      *
      * Constructs a SLDStyleSet object.  This does not load the data in the SLD file.  Use
@@ -136,6 +160,65 @@ public class SLDStyleSet implements VectorStyleInterface {
                 this.loadStyledLayerDescriptorNode(xpp);
             }
         }
+
+        compileFilters();
+    }
+
+    /**
+     *
+     * Skip rules whose scale denominators rule out the tile level.
+     *
+     * @details Off by default, since not every caller passes a real tile (GeoJSON doesn't).
+     * Turn this on for tiled sources and rules that couldn't show up at a tile's level
+     * won't have their filters run.
+     * @param useTileScale Whether to check rule scales against the tile level.
+     * @param maxTileLevel Deepest level of the source.  Tiles from there get scaled up for closer zoom levels, so they keep rules for any closer scale.
+     */
+    public void setUseTileScale(boolean useTileScale, int maxTileLevel)
+    {
+        this.useTileScale = useTileScale;
+        this.maxTileLevel = maxTileLevel;
+        if (ruleIndex != null)
+            buildRuleIndex();
+    }
+
+    /**
+     * Compile the filters of every rule so we don't have to walk the operators for each feature.
+     */
+    private void compileFilters()
+    {
+        final SLDFilterCompiler compiler = new SLDFilterCompiler();
+        for (SLDNamedLayer namedLayer : namedLayers.values()) {
+            namedLayer.compile(compiler);
+        }
+        buildRuleIndex();
+        filterAttributeKeys = compiler.isFullyCompiled() ? compiler.getSlotNames() : null;
+        matchStates = new ThreadLocal<MatchState>() {
+            @Override
+            protected MatchState initialValue() {
+                return new MatchState(compiler.newContext());
+            }
+        };
+    }
+
+    // Sort out which rules apply to which layers and levels
+    private void buildRuleIndex()
+    {
+        SLDRuleIndex<SLDRule> index = new SLDRuleIndex<SLDRule>();
+        for (SLDNamedLayer namedLayer : namedLayers.values()) {
+            for (SLDRule rule : namedLayer.getRules()) {
+                index.add(namedLayer.getName(), rule, rule.getMinScaleDenominator(), rule.getMaxScaleDenominator());
+            }
+        }
+        index.build(maxTileLevel);
+        ruleIndex = index;
+    }
+
+    // Rules that might apply to the given layer and tile
+    private List<SLDRule> rulesFor(SLDRuleIndex<SLDRule> index, String layerName, TileID tileID)
+    {
+        int level = (useTileScale && tileID != null) ? tileID.level : -1;
+        return index.rules(useLayerNames ? layerName : null, level);
     }
 
 
@@ -161,18 +244,58 @@ public class SLDStyleSet implements VectorStyleInterface {
     @Override
     public VectorStyle[] stylesForFeature(AttrDictionary attrs, TileID tileID, String layerName, RenderControllerInterface controller)
     {
-        List<VectorTileStyle> vectorTileStyles = new ArrayList<VectorTileStyle>();
-        boolean matched;
-        for (SLDNamedLayer namedLayer : namedLayers.values()) {
-            vectorTileStyles.addAll(namedLayer.stylesForFeatureAttributes(attrs));
+        final SLDRuleIndex<SLDRule> index = ruleIndex;
+        final ThreadLocal<MatchState> states = matchStates;
+        if (index == null || states == null) {
+            List<VectorTileStyle> vectorTileStyles = new ArrayList<VectorTileStyle>();
+            for (SLDNamedLayer namedLayer : namedLayers.values()) {
+                vectorTileStyles.addAll(namedLayer.stylesForFeatureAttributes(attrs));
+            }
+            return vectorTileStyles.toArray(new VectorStyle[0]);
+        }
+
+        final List<SLDRule> candidates = rulesFor(index, layerName, tileID);
+        if (candidates.isEmpty())
+            return new VectorStyle[0];
+
+        // Attributes are looked up once for this feature, however many rules use them
+        final MatchState state = states.get();
+        state.context.reset(attrs);
+        for (int ii=0;ii<candidates.size();ii++) {
+            candidates.get(ii).addStylesForFeature(state.context, state.styles);
         }
-        return vectorTileStyles.toArray(new VectorStyle[0]);
+        state.context.reset(null);
+
+        VectorStyle[] ret = state.styles.toArray(new VectorStyle[state.styles.size()]);
+        state.styles.clear();
+        return ret;
+    }
+
+    /**
+     * The attributes the rule filters look at.
+     * @details Null if the document isn't loaded or some filter couldn't be compiled.
+     * @see VectorStyleMemoizer
+     */
+    @Override
+    public String[] getStyleAttributeKeys()
+    {
+        return filterAttributeKeys;
+    }
+
+    @Override
+    public boolean stylesDependOnLevel()
+    {
+        return useTileScale;
     }
 
     @Override
     public boolean layerShouldDisplay(String layerName,TileID tileID)
     {
-        return true;
+        // If we match on layer names, there's no point in building features nothing will style
+        final SLDRuleIndex<SLDRule> index = ruleIndex;
+        if (!useLayerNames || index == null)
+            return true;
+        return !rulesFor(index, layerName, tileID).isEmpty();
     }
 
     @Override
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import android.util.Log;
 
 import com.mousebird.maply.AttrDictionary;
+import com.mousebird.maply.sld.sldoperators.SLDFilterCompiler;
 import com.mousebird.maply.VectorTileStyle;
 import com.mousebird.maply.sld.sldsymbolizers.SLDSymbolizerParams;
 
@@ -72,4 +73,17 @@ public class SLDUserStyle {
         return styles;
     }
 
+    public void compile(SLDFilterCompiler compiler) {
+        for (SLDFeatureTypeStyle featureTypeStyle : featureTypeStyles) {
+            featureTypeStyle.compile(compiler);
+        }
+    }
+
+    public List<SLDRule> getRules() {
+        List<SLDRule> rules = new ArrayList<SLDRule>();
+        for (SLDFeatureTypeStyle featureTypeStyle : featureTypeStyles) {
+            rules.addAll(featureTypeStyle.getRules());
+        }
+        return rules;
+    }
 }
@@ -0,0 +1,87 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the snapshot getters give back what the dictionary's would
+ */
+public class AttrSnapshotTest {
+
+    // Type codes as the native side fills them in
+    private static final byte None = 0, Str = 1, Int = 2, Ident = 3, Dbl = 4, Dict = 6;
+
+    // What the native side would hand back for these values
+    private static AttrSnapshot makeSnapshot(int numKeys) {
+        final String[] keys = new String[numKeys];
+        final byte[] types = new byte[numKeys];
+        final long[] longs = new long[numKeys];
+        final double[] doubles = new double[numKeys];
+        final String[] strings = new String[numKeys];
+        keys[0] = "name";    types[0] = Str;   strings[0] = "Main Street";
+        keys[1] = "lanes";   types[1] = Int;   longs[1] = 4;  doubles[1] = 4.0;
+        keys[2] = "width";   types[2] = Dbl;   longs[2] = 12; doubles[2] = 12.5;
+        keys[3] = "osm_id";  types[3] = Ident; longs[3] = 1234567890123L; doubles[3] = 1234567890123.0;
+        keys[4] = "empty";   types[4] = Str;
+        keys[5] = "tags";    types[5] = Dict;
+        keys[6] = "missing"; types[6] = None;
+        for (int ii = 7; ii < numKeys; ii++) {
+            keys[ii] = "extra" + ii;
+            types[ii] = Int;
+            longs[ii] = ii;
+            doubles[ii] = ii;
+        }
+        return new AttrSnapshot(keys, types, longs, doubles, strings);
+    }
+
+    @Test
+    public void testGetters() {
+        // Small enough to scan and big enough to need the map
+        for (int numKeys : new int[] {7, 20}) {
+            final AttrSnapshot snap = makeSnapshot(numKeys);
+
+            assertEquals("Main Street", snap.get("name"));
+            assertEquals(4, snap.get("lanes"));
+            assertEquals(12.5, snap.get("width"));
+            // Same as the dictionary, which only hands back strings, ints and doubles
+            assertNull(snap.get("osm_id"));
+            assertNull(snap.get("empty"));
+            assertNull(snap.get("tags"));
+            assertNull(snap.get("nope"));
+
+            assertEquals("4", snap.getString("lanes"));
+            assertEquals("12.500000", snap.getString("width"));
+            assertNull(snap.getString("empty"));
+            assertNull(snap.getString("missing"));
+
+            assertEquals(Integer.valueOf(12), snap.getInt("width"));
+            assertEquals(Double.valueOf(4.0), snap.getDouble("lanes"));
+            assertEquals(Long.valueOf(1234567890123L), snap.getIdentity("osm_id"));
+            // Non-numeric values come back as zero rather than null
+            assertEquals(Integer.valueOf(0), snap.getInt("name"));
+            assertNull(snap.getInt("missing"));
+            assertNull(snap.getDouble("nope"));
+
+            assertEquals(-1.0, snap.getDouble(0, -1.0), 0.0);
+            assertEquals(12.5, snap.getDouble(2, -1.0), 0.0);
+        }
+    }
+
+    @Test
+    public void testKeys() {
+        final AttrSnapshot snap = makeSnapshot(10);
+        assertEquals(10, snap.size());
+        assertEquals("width", snap.getKey(2));
+        assertEquals(2, snap.indexOf("width"));
+        assertEquals(9, snap.indexOf("extra9"));
+        assertEquals(-1, snap.indexOf("nope"));
+
+        // Keys that were asked for but not there aren't fields
+        assertTrue(snap.hasField("tags"));
+        assertFalse(snap.hasField("missing"));
+        assertEquals(AttrDictionaryEntry.Type.DictTypeNone, snap.getType("missing"));
+        assertEquals(AttrDictionaryEntry.Type.DictTypeDictionary, snap.getType("tags"));
+        assertEquals(9, snap.getKeys().length);
+    }
+}
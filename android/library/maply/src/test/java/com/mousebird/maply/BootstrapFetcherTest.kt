@@ -0,0 +1,234 @@
+package com.mousebird.maply
+
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Test the bootstrap fetcher's dependency handling, concurrency limit and cache
+ */
+class BootstrapFetcherTest {
+
+    @get:Rule val folder = TemporaryFolder()
+
+    private lateinit var server: MockWebServer
+    private val client = OkHttpClient()
+    private val inFlight = AtomicInteger(0)
+    private val maxInFlight = AtomicInteger(0)
+    private val flakyCount = AtomicInteger(0)
+
+    @Before fun setUp() {
+        server = MockWebServer()
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val now = inFlight.incrementAndGet()
+                maxInFlight.accumulateAndGet(now) { a, b -> a.coerceAtLeast(b) }
+                try {
+                    // Hold on a bit so requests overlap
+                    Thread.sleep(50)
+                } finally {
+                    inFlight.decrementAndGet()
+                }
+                val path = request.path ?: ""
+                return when {
+                    path == "/style.json" -> MockResponse().setBody((0 until 6).joinToString(",") { "/source$it.json" })
+                            .addHeader("Cache-Control", "max-age=3600")
+                    path.startsWith("/source") -> MockResponse().setBody("{\"tiles\":[\"$path\"]}")
+                            .addHeader("Cache-Control", "max-age=3600")
+                    path == "/empty.json" -> MockResponse()
+                    path == "/nostore.json" -> MockResponse().setBody("fresh").addHeader("Cache-Control", "no-store")
+                    path == "/stale.json" -> MockResponse().setBody("stale").addHeader("Cache-Control", "max-age=0")
+                    // Works once, then the server's in trouble
+                    path == "/flaky.json" ->
+                        if (flakyCount.getAndIncrement() == 0)
+                            MockResponse().setBody("flaky").addHeader("Cache-Control", "max-age=0")
+                        else
+                            MockResponse().setResponseCode(503)
+                    else -> MockResponse().setResponseCode(404)
+                }
+            }
+        }
+        server.start()
+    }
+
+    @After fun tearDown() {
+        server.shutdown()
+    }
+
+    // Style sheet first, then everything it lists
+    private fun runGraph(fetcher: BootstrapFetcher): List<String> {
+        val results = ArrayList<String>()
+        val idle = CountDownLatch(1)
+        fetcher.onIdle = { idle.countDown() }
+        fetcher.fetch(server.url("/style.json").toString(), "style") { data ->
+            String(data).split(",").forEach { path ->
+                fetcher.fetch(server.url(path).toString(), path) {
+                    synchronized(results) { results.add(String(it)) }
+                }
+            }
+        }
+        assertTrue(idle.await(10, TimeUnit.SECONDS))
+        return synchronized(results) { results.sorted() }
+    }
+
+    private fun BootstrapFetcher.fetch(url: String, what: String, onData: (ByteArray) -> Unit) =
+            fetch(okhttp3.Request.Builder().url(url).build(), what, onData)
+
+    // Fetch one URL, returning the body and any errors
+    private fun fetchOnce(fetcher: BootstrapFetcher, path: String): Pair<String?, List<String>> {
+        val idle = CountDownLatch(1)
+        var result: String? = null
+        val errors = ArrayList<String>()
+        fetcher.onError = { desc, _ -> synchronized(errors) { errors.add(desc) } }
+        fetcher.onIdle = { idle.countDown() }
+        fetcher.fetch(server.url(path).toString(), path) { result = String(it) }
+        assertTrue(idle.await(10, TimeUnit.SECONDS))
+        return Pair(result, synchronized(errors) { errors.toList() })
+    }
+
+    @Test fun fetchesChildrenConcurrently() {
+        val fetcher = BootstrapFetcher(client, null, 3)
+        val results = runGraph(fetcher)
+        assertEquals(6, results.size)
+        assertEquals(0, fetcher.pendingCount)
+        assertEquals(7, fetcher.networkFetches)
+        // All six children were ready at once, but only three were allowed
+        assertEquals(3, maxInFlight.get())
+    }
+
+    @Test fun usesCacheOnSecondRun() {
+        val cacheDir = folder.newFolder("http")
+        val first = BootstrapFetcher(client, cacheDir)
+        val firstResults = runGraph(first)
+        assertEquals(7, first.networkFetches)
+        assertEquals(7, server.requestCount)
+
+        // A new fetcher on the same directory shares the cache and doesn't go to the server
+        val second = BootstrapFetcher(client, cacheDir)
+        assertSame(first.cache, second.cache)
+        assertEquals(firstResults, runGraph(second))
+        assertEquals(7, second.cacheHits)
+        assertEquals(0, second.networkFetches)
+        assertEquals(7, server.requestCount)
+    }
+
+    @Test fun revalidatesStaleCopies() {
+        val cacheDir = folder.newFolder("http")
+        assertEquals(Pair("stale", emptyList<String>()), fetchOnce(BootstrapFetcher(client, cacheDir), "/stale.json"))
+
+        // Out of date, so it goes back to the server
+        val second = BootstrapFetcher(client, cacheDir)
+        assertEquals(Pair("stale", emptyList<String>()), fetchOnce(second, "/stale.json"))
+        assertEquals(1, second.networkFetches)
+        assertEquals(2, server.requestCount)
+
+        // As does one the server said not to keep
+        fetchOnce(second, "/nostore.json")
+        assertEquals(Pair("fresh", emptyList<String>()), fetchOnce(second, "/nostore.json"))
+        assertEquals(4, server.requestCount)
+    }
+
+    @Test fun fallsBackToCacheOffline() {
+        val cacheDir = folder.newFolder("http")
+        val first = BootstrapFetcher(client, cacheDir)
+        fetchOnce(first, "/stale.json")
+        fetchOnce(first, "/nostore.json")
+        fetchOnce(first, "/flaky.json")
+
+        // A server error gets the old copy
+        val second = BootstrapFetcher(client, cacheDir)
+        assertEquals(Pair("flaky", emptyList<String>()), fetchOnce(second, "/flaky.json"))
+        assertEquals(1, second.cacheHits)
+
+        // As does not getting to the server at all, however stale it is
+        server.shutdown()
+        val offline = BootstrapFetcher(client, cacheDir)
+        assertEquals(Pair("stale", emptyList<String>()), fetchOnce(offline, "/stale.json"))
+        assertEquals(1, offline.cacheHits)
+
+        // Without a copy, it's the original error that's reported
+        val (result, errors) = fetchOnce(offline, "/nostore.json")
+        assertNull(result)
+        assertEquals(listOf("Error fetching /nostore.json"), errors)
+        assertEquals(0, offline.pendingCount)
+    }
+
+    @Test fun findsFreshCachedBodies() {
+        val cacheDir = folder.newFolder("http")
+        val fetcher = BootstrapFetcher(client, cacheDir)
+        runGraph(fetcher)
+        fetchOnce(fetcher, "/stale.json")
+        fetchOnce(fetcher, "/nostore.json")
+        val requests = server.requestCount
+
+        assertEquals("{\"tiles\":[\"/source2.json\"]}", fetcher.cachedBody(server.url("/source2.json"))?.let { String(it) })
+        // Out of date, never kept or never fetched
+        assertNull(fetcher.cachedBody(server.url("/stale.json")))
+        assertNull(fetcher.cachedBody(server.url("/nostore.json")))
+        assertNull(fetcher.cachedBody(server.url("/missing.json")))
+        assertNull(BootstrapFetcher(client, null).cachedBody(server.url("/source2.json")))
+        assertEquals(requests, server.requestCount)
+    }
+
+    @Test fun reportsErrors() {
+        val fetcher = BootstrapFetcher(client, null)
+        val errors = ArrayList<String>()
+        val idle = CountDownLatch(1)
+        fetcher.onError = { desc, _ -> synchronized(errors) { errors.add(desc) } }
+        fetcher.onIdle = { idle.countDown() }
+        fetcher.fetch(server.url("/missing.json").toString(), "missing") { fail() }
+        fetcher.fetch(server.url("/empty.json").toString(), "empty") { fail() }
+        fetcher.fetch(server.url("/source0.json").toString(), "broken") { throw IllegalStateException() }
+        fetcher.fetchFile(folder.root.resolve("nope"), "nope") { fail() }
+        assertTrue(idle.await(10, TimeUnit.SECONDS))
+        assertEquals(listOf("Empty response for empty", "Failed to process broken",
+                "Failed to read nope", "Request for missing failed: 404 Client Error"), errors.sorted())
+    }
+
+    @Test fun readsLocalFiles() {
+        val file = folder.newFile("style.json").apply { writeText("local") }
+        val fetcher = BootstrapFetcher(client, null)
+        val idle = CountDownLatch(1)
+        var result: String? = null
+        fetcher.onIdle = { idle.countDown() }
+        fetcher.fetchFile(file, "style") { result = String(it) }
+        assertTrue(idle.await(10, TimeUnit.SECONDS))
+        assertEquals("local", result)
+        assertEquals(1, fetcher.cacheHits)
+    }
+
+    @Test fun countsOtherWork() {
+        val fetcher = BootstrapFetcher(client, null)
+        val errors = ArrayList<String>()
+        val idle = CountDownLatch(1)
+        var result: String? = null
+        fetcher.onError = { desc, _ -> synchronized(errors) { errors.add(desc) } }
+        fetcher.onIdle = { idle.countDown() }
+
+        // Fetches started from the task keep it from going idle
+        val caller = Thread.currentThread()
+        var taskThread: Thread? = null
+        fetcher.execute("read snapshot") {
+            taskThread = Thread.currentThread()
+            fetcher.fetch(server.url("/source1.json").toString(), "source") { result = String(it) }
+        }
+        fetcher.execute("write snapshot") { throw IOException() }
+        assertTrue(idle.await(10, TimeUnit.SECONDS))
+        assertEquals("{\"tiles\":[\"/source1.json\"]}", result)
+        assertEquals(listOf("Failed to write snapshot"), errors)
+        assertEquals(0, fetcher.pendingCount)
+        assertNotSame(caller, taskThread)
+    }
+}
@@ -0,0 +1,123 @@
+package com.mousebird.maply
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Test the coroutine tile fetcher's scheduling and cancellation
+ */
+@ExperimentalCoroutinesApi
+class CoroutineTileFetcherTest {
+
+    private class Results : TileFetchRequest.Callback {
+        val succeeded = ArrayList<TileFetchRequest>()
+        val failed = ArrayList<TileFetchRequest>()
+        override fun success(fetchRequest: TileFetchRequest, data: ByteArray?) {
+            succeeded.add(fetchRequest)
+        }
+        override fun failure(fetchRequest: TileFetchRequest, errorStr: String?) {
+            failed.add(fetchRequest)
+        }
+    }
+
+    // Fetcher whose tiles finish only when the test says so
+    private class GatedFetcher(maxConcurrent: Int, dispatcher: TestCoroutineDispatcher) :
+            CoroutineTileFetcher("gated", maxConcurrent, dispatcher) {
+        val gates = HashMap<TileID, CompletableDeferred<ByteArray?>>()
+        val started = ArrayList<TileID>()
+        val cancelled = ArrayList<TileID>()
+
+        override suspend fun dataForTile(fetchInfo: Any, tileID: TileID): ByteArray? {
+            started.add(tileID)
+            val gate = CompletableDeferred<ByteArray?>()
+            gates[tileID] = gate
+            try {
+                return gate.await()
+            } catch (e: CancellationException) {
+                cancelled.add(tileID)
+                throw e
+            }
+        }
+    }
+
+    private fun request(tileID: TileID, priority: Int, callback: TileFetchRequest.Callback) =
+            TileFetchRequest().apply {
+                this.priority = priority
+                fetchInfo = CoroutineTileFetcher.CoroutineTileFetchInfo(tileID)
+                this.callback = callback
+            }
+
+    @Test fun respectsConcurrencyLimitAndPriority() {
+        val dispatcher = TestCoroutineDispatcher()
+        val fetcher = GatedFetcher(2, dispatcher)
+        val results = Results()
+        val tiles = (0 until 4).map { TileID(it, 0, 1) }
+        // Lower priority values go first
+        fetcher.startTileFetches(tiles.mapIndexed { i, t -> request(t, 10 - i, results) }.toTypedArray())
+
+        assertEquals(listOf(tiles[3], tiles[2]), fetcher.started)
+        assertEquals(2, fetcher.numActive)
+        assertEquals(2, fetcher.numPending)
+
+        fetcher.gates[tiles[3]]!!.complete(ByteArray(1))
+        assertEquals(listOf(tiles[3], tiles[2], tiles[1]), fetcher.started)
+        assertEquals(1, results.succeeded.size)
+
+        fetcher.gates[tiles[2]]!!.complete(null)
+        assertEquals(1, results.failed.size)
+        assertEquals(4, fetcher.started.size)
+
+        fetcher.shutdown()
+    }
+
+    @Test fun cancelStopsRunningCoroutine() {
+        val dispatcher = TestCoroutineDispatcher()
+        val fetcher = GatedFetcher(1, dispatcher)
+        val results = Results()
+        val first = request(TileID(0, 0, 0), 0, results)
+        val second = request(TileID(1, 0, 1), 1, results)
+        fetcher.startTileFetches(arrayOf(first, second))
+
+        fetcher.cancelTileFetches(arrayOf(first))
+        assertEquals(listOf(TileID(0, 0, 0)), fetcher.cancelled)
+        // The slot is handed to the next request
+        assertEquals(listOf(TileID(0, 0, 0), TileID(1, 0, 1)), fetcher.started)
+
+        fetcher.shutdown()
+        assertEquals(2, fetcher.cancelled.size)
+        assertTrue(results.succeeded.isEmpty())
+        assertTrue(results.failed.isEmpty())
+    }
+
+    @Test fun zeroConcurrencyStillFetches() {
+        val dispatcher = TestCoroutineDispatcher()
+        val fetcher = GatedFetcher(0, dispatcher)
+        assertEquals(1, fetcher.maxConcurrentFetches)
+        val results = Results()
+        fetcher.startTileFetches(arrayOf(request(TileID(0, 0, 0), 0, results), request(TileID(1, 0, 1), 0, results)))
+        assertEquals(listOf(TileID(0, 0, 0)), fetcher.started)
+
+        fetcher.maxConcurrentFetches = -3
+        assertEquals(1, fetcher.maxConcurrentFetches)
+        fetcher.gates[TileID(0, 0, 0)]!!.complete(ByteArray(1))
+        assertEquals(2, fetcher.started.size)
+
+        fetcher.shutdown()
+    }
+
+    @Test fun flowAdapterUsesFirstValue() {
+        val dispatcher = TestCoroutineDispatcher()
+        val fetcher = CoroutineTileFetcher.fromFlow("flow", 4, dispatcher) { tileID ->
+            flowOf(byteArrayOf(tileID.level.toByte()), null)
+        }
+        val results = Results()
+        fetcher.startTileFetches(arrayOf(request(TileID(0, 0, 3), 0, results)))
+        assertEquals(1, results.succeeded.size)
+        fetcher.shutdown()
+    }
+}
@@ -0,0 +1,68 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the ID set used to filter overlays against a regular HashSet
+ */
+public class LongHashSetTest {
+
+    @Test
+    public void testAddContains() {
+        final LongHashSet set = new LongHashSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(5));
+        assertFalse(set.add(5));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-7));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(5));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-7));
+        assertFalse(set.contains(6));
+    }
+
+    @Test
+    public void testMatchesHashSet() {
+        final Random rand = new Random(1234);
+        final LongHashSet set = new LongHashSet();
+        final Set<Long> expected = new HashSet<>();
+        for (int ii = 0; ii < 20000; ii++) {
+            final long val = (ii % 3 == 0) ? rand.nextLong() : rand.nextInt(5000);
+            assertEquals(expected.add(val), set.add(val));
+        }
+        assertEquals(expected.size(), set.size());
+        for (int ii = -100; ii < 6000; ii++) {
+            assertEquals(expected.contains((long)ii), set.contains(ii));
+        }
+        for (Long val : expected) {
+            assertTrue(set.contains(val));
+        }
+    }
+
+    @Test
+    public void testClearAndReuse() {
+        final LongHashSet set = new LongHashSet();
+        for (int pass = 0; pass < 3; pass++) {
+            set.clear();
+            assertTrue(set.isEmpty());
+            set.ensureCapacity(1000);
+            for (long ii = pass * 1000; ii < (pass + 1) * 1000; ii++) {
+                assertTrue(set.add(ii));
+            }
+            assertEquals(1000, set.size());
+            assertFalse(set.contains(pass * 1000 - 1));
+            assertTrue(set.contains(pass * 1000));
+        }
+        set.clear();
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(2500));
+    }
+}
@@ -0,0 +1,147 @@
+package com.mousebird.maply;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check style snapshots come back as written and only used while their inputs are unchanged
+ */
+public class MapboxStyleSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Current bodies by URL, standing in for the HTTP cache
+    private final Map<String,byte[]> bodies = new HashMap<>();
+    private final MapboxStyleSnapshot.InputReader reader = bodies::get;
+
+    private Map<String,byte[]> inputs(String ... urls) {
+        final Map<String,byte[]> inputs = new LinkedHashMap<>();
+        for (String url : urls)
+            inputs.put(url, MapboxStyleSnapshot.digest(bodies.get(url)));
+        return inputs;
+    }
+
+    static void writeFile(File file, String contents) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(contents.getBytes("UTF-8"));
+        }
+    }
+
+    static List<MapboxStyleSnapshot.Source> sampleSources() {
+        return Arrays.asList(
+                new MapboxStyleSnapshot.Source("openmaptiles", 14, new MapboxStyleSnapshot.TileSpec[] {
+                        new MapboxStyleSnapshot.TileSpec(0, 14, new String[] {
+                                "https://example.com/tiles/{z}/{x}/{y}.pbf" })
+                }),
+                new MapboxStyleSnapshot.Source("hills", null, new MapboxStyleSnapshot.TileSpec[] {
+                        new MapboxStyleSnapshot.TileSpec(null, 12, null)
+                }));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        bodies.put("https://example.com/style.json", "{\"version\":8}".getBytes());
+        bodies.put("https://example.com/sprite@2x.png", "not really a png".getBytes());
+        // Bigger than writeUTF could handle
+        final char[] bigStyle = new char[100000];
+        Arrays.fill(bigStyle, 'x');
+        final String styleJSON = "{\"name\":\"été" + new String(bigStyle) + "\"}";
+
+        final File snapFile = new File(folder.getRoot(), "style.snapshot");
+        new MapboxStyleSnapshot("style-key", styleJSON, "{\"icon\":{}}", "https://example.com/sprite@2x.png",
+                sampleSources(), inputs("https://example.com/style.json", "https://example.com/sprite@2x.png")).write(snapFile);
+        assertFalse(new File(snapFile.getPath() + ".tmp").exists());
+
+        final MapboxStyleSnapshot snap = MapboxStyleSnapshot.read(snapFile, "style-key");
+        assertNotNull(snap);
+        assertEquals(styleJSON, snap.getStyleJSON());
+        assertEquals("{\"icon\":{}}", snap.getSpriteJSON());
+        assertEquals("https://example.com/sprite@2x.png", snap.getSpriteSheetURL());
+        assertEquals(2, snap.getSources().size());
+
+        // Reading the inputs back hands over their bodies
+        final Map<String,byte[]> read = snap.readInputs(reader);
+        assertNotNull(read);
+        assertEquals(2, read.size());
+        assertArrayEquals("not really a png".getBytes(), read.get("https://example.com/sprite@2x.png"));
+
+        final MapboxStyleSnapshot.Source first = snap.getSources().get(0);
+        assertEquals("openmaptiles", first.name);
+        assertEquals(Integer.valueOf(14), first.styleMaxZoom);
+        assertEquals(Integer.valueOf(0), first.tileSpecs[0].minZoom);
+        assertArrayEquals(new String[] { "https://example.com/tiles/{z}/{x}/{y}.pbf" }, first.tileSpecs[0].tileURLs);
+
+        final MapboxStyleSnapshot.Source second = snap.getSources().get(1);
+        assertNull(second.styleMaxZoom);
+        assertNull(second.tileSpecs[0].minZoom);
+        assertEquals(Integer.valueOf(12), second.tileSpecs[0].maxZoom);
+        assertEquals(0, second.tileSpecs[0].tileURLs.length);
+
+        // Overwriting an existing one works too
+        new MapboxStyleSnapshot("style-key", "{}", null, null,
+                Collections.<MapboxStyleSnapshot.Source>emptyList(),
+                Collections.<String,byte[]>emptyMap()).write(snapFile);
+        final MapboxStyleSnapshot snap2 = MapboxStyleSnapshot.read(snapFile, "style-key");
+        assertNotNull(snap2);
+        assertNull(snap2.getSpriteJSON());
+        assertNull(snap2.getSpriteSheetURL());
+        assertTrue(snap2.readInputs(reader).isEmpty());
+    }
+
+    @Test
+    public void testStale() throws IOException {
+        bodies.put("https://example.com/style.json", "{\"version\":8}".getBytes());
+        bodies.put("https://example.com/sprite.png", "png".getBytes());
+        final File snapFile = new File(folder.getRoot(), "style.snapshot");
+        new MapboxStyleSnapshot("style-key", "{\"version\":8}", "{}", "https://example.com/sprite.png",
+                sampleSources(), inputs("https://example.com/style.json", "https://example.com/sprite.png")).write(snapFile);
+
+        final MapboxStyleSnapshot snap = MapboxStyleSnapshot.read(snapFile, "style-key");
+        assertNotNull(snap);
+        assertNotNull(snap.readInputs(reader));
+        assertNull(MapboxStyleSnapshot.read(snapFile, "other-key"));
+        assertNull(MapboxStyleSnapshot.read(new File(folder.getRoot(), "missing"), "style-key"));
+
+        // Changed, even at the same size
+        bodies.put("https://example.com/sprite.png", "PNG".getBytes());
+        assertNull(snap.readInputs(reader));
+        bodies.put("https://example.com/sprite.png", "png".getBytes());
+        assertNotNull(snap.readInputs(reader));
+
+        // Gone, or not readable
+        bodies.remove("https://example.com/style.json");
+        assertNull(snap.readInputs(reader));
+        assertNull(snap.readInputs(url -> { throw new IOException(); }));
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        final File snapFile = new File(folder.getRoot(), "style.snapshot");
+        new MapboxStyleSnapshot("style-key", "{\"version\":8}", null, null,
+                sampleSources(), Collections.<String,byte[]>emptyMap()).write(snapFile);
+
+        // Chop it off partway
+        try (RandomAccessFile raf = new RandomAccessFile(snapFile, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        assertNull(MapboxStyleSnapshot.read(snapFile, "style-key"));
+
+        writeFile(snapFile, "this is not a snapshot at all");
+        assertNull(MapboxStyleSnapshot.read(snapFile, "style-key"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.mousebird.maply
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Test that batched features go in with one call per style and draw priority
+ */
+class StyleBatcherTest {
+
+    private fun batch(items: List<Pair<Int, String>>): List<Pair<String, List<Int>>> {
+        val groups = ArrayList<Pair<String, List<Int>>>()
+        val batcher = StyleBatcher<String, Int> { key, group -> groups.add(Pair(key, group)) }
+        items.forEachIndexed { ii, (priority, key) -> batcher.add(priority, key, ii) }
+        assertTrue(groups.isEmpty())
+        batcher.finish()
+        return groups
+    }
+
+    @Test fun groupsInterleaved() {
+        // Alternating styles still go in with one call each
+        val groups = batch(listOf(1 to "red", 1 to "blue", 1 to "red", 1 to "blue", 1 to "red"))
+        assertEquals(listOf(Pair("red", listOf(0, 2, 4)), Pair("blue", listOf(1, 3))), groups)
+    }
+
+    @Test fun ordersByPriority() {
+        // Labels over lines over areas, however they came in
+        val groups = batch(listOf(3 to "label", 1 to "area", 2 to "line", 1 to "water", 3 to "label", 1 to "area"))
+        assertEquals(listOf(Pair("area", listOf(1, 5)), Pair("water", listOf(3)),
+                Pair("line", listOf(2)), Pair("label", listOf(0, 4))), groups)
+    }
+
+    @Test fun separatesPriorities() {
+        // The same key at different priorities doesn't go in together
+        val groups = batch(listOf(2 to "red", 1 to "red", 2 to "red"))
+        assertEquals(listOf(Pair("red", listOf(1)), Pair("red", listOf(0, 2))), groups)
+    }
+
+    @Test fun finishBetween() {
+        val groups = ArrayList<Pair<String?, List<Int>>>()
+        val batcher = StyleBatcher<String?, Int> { key, group -> groups.add(Pair(key, group)) }
+
+        // Nothing to flush yet
+        batcher.finish()
+        assertTrue(groups.isEmpty())
+
+        // Each finish only flushes what came in since the last
+        batcher.add(0, null, 0)
+        batcher.finish()
+        batcher.add(0, null, 1)
+        batcher.finish()
+        batcher.finish()
+
+        assertEquals(listOf(Pair(null, listOf(0)), Pair(null, listOf(1))), groups)
+    }
+}
@@ -0,0 +1,85 @@
+package com.mousebird.maply;
+
+import android.graphics.Typeface;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the text width cache only measures what it hasn't seen
+ */
+public class TextWidthCacheTest {
+
+    // Ten pixels per character per point, and counts how often it's asked
+    private static class CountingMeasurer implements TextWidthCache.Measurer {
+        int calls = 0;
+
+        @Override
+        public double measureWidth(String text, Typeface typeface, float fontSize) {
+            calls++;
+            return text.length() * fontSize * 10.0;
+        }
+    }
+
+    @Test
+    public void testHits() {
+        final CountingMeasurer measurer = new CountingMeasurer();
+        final TextWidthCache cache = new TextWidthCache(measurer, 100);
+
+        assertEquals(120.0, cache.getWidth("Main", null, 3.0f), 0.0);
+        assertEquals(120.0, cache.getWidth("Main", null, 3.0f), 0.0);
+        assertEquals(1, measurer.calls);
+
+        // Different size is a different entry
+        assertEquals(160.0, cache.getWidth("Main", null, 4.0f), 0.0);
+        assertEquals(2, measurer.calls);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.0, cache.getWidth(null, null, 4.0f), 0.0);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.getWidth("Main", null, 3.0f);
+        assertEquals(3, measurer.calls);
+    }
+
+    @Test
+    public void testEviction() {
+        final CountingMeasurer measurer = new CountingMeasurer();
+        final TextWidthCache cache = new TextWidthCache(measurer, 3);
+
+        cache.getWidth("a", null, 1.0f);
+        cache.getWidth("b", null, 1.0f);
+        cache.getWidth("c", null, 1.0f);
+        // Touch "a" so "b" is the oldest
+        cache.getWidth("a", null, 1.0f);
+        cache.getWidth("d", null, 1.0f);
+        assertEquals(3, cache.size());
+        assertEquals(4, measurer.calls);
+
+        cache.getWidth("a", null, 1.0f);
+        assertEquals(4, measurer.calls);
+        cache.getWidth("b", null, 1.0f);
+        assertEquals(5, measurer.calls);
+    }
+
+    @Test
+    public void testRepeatedNames() {
+        // Street names repeat a lot from tile to tile
+        final String[] names = new String[200];
+        for (int ii = 0; ii < names.length; ii++)
+            names[ii] = "Street " + ii;
+
+        final CountingMeasurer measurer = new CountingMeasurer();
+        final TextWidthCache cache = new TextWidthCache(measurer, 256);
+        final Random rand = new Random(7);
+        for (int ii = 0; ii < 10000; ii++)
+            cache.getWidth(names[rand.nextInt(names.length)], null, 12.0f);
+
+        assertEquals(names.length, measurer.calls);
+        assertEquals(10000 - names.length, cache.getHitCount());
+    }
+}
@@ -0,0 +1,92 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the content cache keys and that it lets go of the least recently used results.
+ */
+public class TileContentCacheTest {
+
+    private static TileContentCache.Key key(String data, int level) {
+        return TileContentCache.keyFor(new byte[][] { data.getBytes() }, level);
+    }
+
+    @Test
+    public void testKeys() {
+        // Same bytes at the same level match, even from different arrays
+        assertEquals(key("ocean", 5), key("ocean", 5));
+        assertEquals(key("ocean", 5).hashCode(), key("ocean", 5).hashCode());
+
+        // Same length, different bytes
+        assertNotEquals(key("ocean", 5), key("land!", 5));
+        // Results may depend on the level
+        assertNotEquals(key("ocean", 5), key("ocean", 6));
+
+        // Where one payload ends and the next starts matters
+        final TileContentCache.Key ab_c = TileContentCache.keyFor(new byte[][] { "ab".getBytes(), "c".getBytes() }, 1);
+        final TileContentCache.Key a_bc = TileContentCache.keyFor(new byte[][] { "a".getBytes(), "bc".getBytes() }, 1);
+        assertNotEquals(ab_c, a_bc);
+
+        // Nothing to key on
+        assertNull(TileContentCache.keyFor(null, 1));
+        assertNull(TileContentCache.keyFor(new byte[0][], 1));
+        assertNull(TileContentCache.keyFor(new byte[][] { null }, 1));
+    }
+
+    @Test
+    public void testGet() {
+        final TileContentCache cache = new TileContentCache(100);
+        final Object value = new Object();
+        cache.put(key("ocean", 5), value, 10);
+
+        assertSame(value, cache.get(key("ocean", 5)));
+        assertNull(cache.get(key("ocean", 6)));
+        assertNull(cache.get(null));
+
+        final TileContentCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(1, stats.adds);
+        assertEquals(10, stats.bytes);
+    }
+
+    @Test
+    public void testEviction() {
+        final TileContentCache cache = new TileContentCache(30);
+        cache.put(key("a", 1), "a", 10);
+        cache.put(key("b", 1), "b", 10);
+        cache.put(key("c", 1), "c", 10);
+
+        // Touch the oldest so the next one in line goes instead
+        assertEquals("a", cache.get(key("a", 1)));
+        cache.put(key("d", 1), "d", 10);
+        assertEquals("a", cache.get(key("a", 1)));
+        assertNull(cache.get(key("b", 1)));
+        assertEquals("c", cache.get(key("c", 1)));
+        assertEquals("d", cache.get(key("d", 1)));
+
+        // Replacing a value doesn't count it twice
+        cache.put(key("d", 1), "d2", 5);
+        assertEquals(25, cache.getStats().bytes);
+
+        // Too big to hold at all
+        cache.put(key("e", 1), "e", 31);
+        assertNull(cache.get(key("e", 1)));
+
+        // Shrinking lets the least recently used go, here a then c
+        cache.setMaxBytes(5);
+        assertEquals("d2", cache.get(key("d", 1)));
+        assertNull(cache.get(key("a", 1)));
+        assertNull(cache.get(key("c", 1)));
+
+        TileContentCache.Stats stats = cache.getStats();
+        assertEquals(3, stats.evicted);
+        assertEquals(5, stats.bytes);
+
+        cache.clear();
+        assertNull(cache.get(key("d", 1)));
+        assertEquals(0, cache.getStats().bytes);
+    }
+}
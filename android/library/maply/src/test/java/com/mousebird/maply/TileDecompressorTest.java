@@ -0,0 +1,97 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the pooled tile decompression against the JDK streams
+ */
+public class TileDecompressorTest {
+
+    // Something vaguely like a vector tile, compressible but not trivially so
+    static byte[] samplePayload(int size, long seed) {
+        final Random rand = new Random(seed);
+        final byte[] data = new byte[size];
+        for (int ii = 0; ii < size; ii++) {
+            data[ii] = (byte)((ii % 7 == 0) ? rand.nextInt(256) : (ii / 13) & 0x3f);
+        }
+        return data;
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bout)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    static byte[] zlib(byte[] data) throws IOException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bout)) {
+            out.write(data);
+        }
+        return bout.toByteArray();
+    }
+
+    @Test public void gzipRoundTrip() throws IOException {
+        for (int size : new int[] { 1, 100, 70000, 300000 }) {
+            final byte[] raw = samplePayload(size, size);
+            assertArrayEquals(raw, TileDecompressor.decompress(gzip(raw), null));
+        }
+    }
+
+    @Test public void zlibRoundTrip() throws IOException {
+        final byte[] raw = samplePayload(200000, 1);
+        assertArrayEquals(raw, TileDecompressor.decompress(zlib(raw), null));
+    }
+
+    @Test public void reusedAcrossCalls() throws IOException {
+        final byte[] a = samplePayload(5000, 2);
+        final byte[] b = samplePayload(9000, 3);
+        assertArrayEquals(a, TileDecompressor.decompress(gzip(a), null));
+        assertArrayEquals(b, TileDecompressor.decompress(zlib(b), null));
+        assertArrayEquals(b, TileDecompressor.decompress(gzip(b), null));
+    }
+
+    @Test public void multipleMembers() throws IOException {
+        final byte[] a = samplePayload(3000, 4);
+        final byte[] b = samplePayload(4000, 5);
+        final byte[] ga = gzip(a), gb = gzip(b);
+        final byte[] both = new byte[ga.length + gb.length];
+        System.arraycopy(ga, 0, both, 0, ga.length);
+        System.arraycopy(gb, 0, both, ga.length, gb.length);
+
+        final byte[] expected = new byte[a.length + b.length];
+        System.arraycopy(a, 0, expected, 0, a.length);
+        System.arraycopy(b, 0, expected, a.length, b.length);
+        assertArrayEquals(expected, TileDecompressor.decompress(both, null));
+    }
+
+    @Test public void uncompressedPassesThrough() {
+        final byte[] raw = { 0x1a, 0x05, 0x01, 0x02 };
+        assertSame(raw, TileDecompressor.decompress(raw, null));
+    }
+
+    @Test public void corruptReturnedAsIs() throws IOException {
+        final byte[] bad = gzip(samplePayload(10000, 6));
+        bad[bad.length / 2] ^= 0x55;
+        assertSame(bad, TileDecompressor.decompress(bad, null));
+
+        final byte[] truncated = java.util.Arrays.copyOf(gzip(samplePayload(10000, 7)), 100);
+        assertSame(truncated, TileDecompressor.decompress(truncated, null));
+    }
+
+    @Test public void canceledReturnsNull() throws IOException {
+        final CancellationToken token = new CancellationToken();
+        token.cancel();
+        assertNull(TileDecompressor.decompress(gzip(samplePayload(1000, 8)), token));
+    }
+}
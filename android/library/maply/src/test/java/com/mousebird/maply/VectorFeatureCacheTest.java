@@ -0,0 +1,94 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that reloads drop cached features and keep old parses from putting them back.
+ * The tile data is native, so these only track feature counts.
+ */
+public class VectorFeatureCacheTest {
+
+    private static void put(VectorFeatureCache cache, int x, int y, int level) {
+        assertTrue(cache.putFeatures(new TileID(x, y, level), null, 10, cache.getEpoch()));
+    }
+
+    @Test
+    public void testReloadArea() {
+        final VectorFeatureCache cache = new VectorFeatureCache(16);
+        put(cache, 0, 0, 2);
+        put(cache, 1, 0, 2);
+        put(cache, 2, 0, 2);
+        put(cache, 3, 0, 2);
+
+        // Stand in for the tiles overlapping the reloaded area
+        assertEquals(2, cache.remove(tileID -> tileID.x < 2));
+        assertFalse(cache.contains(new TileID(0, 0, 2)));
+        assertFalse(cache.contains(new TileID(1, 0, 2)));
+        assertTrue(cache.contains(new TileID(2, 0, 2)));
+        assertTrue(cache.contains(new TileID(3, 0, 2)));
+
+        final VectorFeatureCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.tiles);
+        assertEquals(20, stats.features);
+        assertEquals(2, stats.invalidated);
+    }
+
+    @Test
+    public void testReloadAll() {
+        final VectorFeatureCache cache = new VectorFeatureCache(16);
+        put(cache, 0, 0, 1);
+        put(cache, 1, 1, 1);
+
+        cache.clear();
+        assertFalse(cache.contains(new TileID(0, 0, 1)));
+        assertFalse(cache.contains(new TileID(1, 1, 1)));
+        assertNull(cache.get(new TileID(0, 0, 1)));
+
+        final VectorFeatureCache.Stats stats = cache.getStats();
+        assertEquals(0, stats.tiles);
+        assertEquals(0, stats.features);
+        assertEquals(2, stats.invalidated);
+        assertEquals(1, stats.misses);
+    }
+
+    @Test
+    public void testParseAcrossReload() {
+        final VectorFeatureCache cache = new VectorFeatureCache(16);
+        final TileID tileID = new TileID(5, 6, 4);
+
+        // A parse starts, then the tile is reloaded before it finishes
+        final int epoch = cache.getEpoch();
+        cache.remove(id -> id.equals(tileID));
+        assertFalse(cache.putFeatures(tileID, null, 10, epoch));
+        assertFalse(cache.contains(tileID));
+
+        // The parse for the reload goes in
+        assertTrue(cache.putFeatures(tileID, null, 10, cache.getEpoch()));
+        assertTrue(cache.contains(tileID));
+
+        // Same after clearing everything
+        final int epoch2 = cache.getEpoch();
+        cache.clear();
+        assertFalse(cache.putFeatures(tileID, null, 10, epoch2));
+        assertEquals(0, cache.getStats().tiles);
+    }
+
+    @Test
+    public void testEviction() {
+        final VectorFeatureCache cache = new VectorFeatureCache(2);
+        put(cache, 0, 0, 3);
+        put(cache, 1, 0, 3);
+        // Touch the first so the second is the oldest
+        assertTrue(cache.contains(new TileID(0, 0, 3)));
+        cache.get(new TileID(0, 0, 3));
+        put(cache, 2, 0, 3);
+
+        assertTrue(cache.contains(new TileID(0, 0, 3)));
+        assertFalse(cache.contains(new TileID(1, 0, 3)));
+        assertTrue(cache.contains(new TileID(2, 0, 3)));
+        assertEquals(1, cache.getStats().evicted);
+        assertEquals(20, cache.getStats().features);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that features with the same values for the style's attributes share a lookup
+ * and anything that differs goes back to the style set.
+ * The attributes are native, so these pass snapshots in directly.
+ */
+public class VectorStyleMemoizerTest {
+
+    private static final byte Str = 1, Int = 2;
+
+    // Counts how many times it's asked for styles
+    private static class CountingStyleSet implements VectorStyleInterface, VectorStyleMemoizer.AttributeKeys {
+        int calls = 0;
+        boolean useLevel = false;
+
+        @Override
+        public String[] getStyleAttributeKeys() { return new String[] {"class", "lanes"}; }
+
+        @Override
+        public boolean stylesDependOnLevel() { return useLevel; }
+
+        @Override
+        public VectorStyle[] stylesForFeature(AttrDictionary attrs, TileID tileID, String layerName, RenderControllerInterface controller) {
+            calls++;
+            return new VectorStyle[0];
+        }
+
+        @Override
+        public VectorStyle[] allStyles() { return new VectorStyle[0]; }
+
+        @Override
+        public boolean layerShouldDisplay(String layerName, TileID tileID) { return true; }
+
+        @Override
+        public VectorStyle styleForUUID(long uuid, RenderControllerInterface controller) { return null; }
+
+        @Override
+        public int backgroundColorForZoom(double zoom) { return 0; }
+
+        @Override
+        public int getZoomSlot() { return -1; }
+
+        @Override
+        public void setZoomSlot(int inZoomSlot) { }
+    }
+
+    // What the native side would hand back for the style set's keys
+    private static AttrSnapshot snapshot(String roadClass, int lanes) {
+        return new AttrSnapshot(new String[] {"class", "lanes"}, new byte[] {Str, Int},
+                                new long[] {0, lanes}, new double[] {0.0, lanes},
+                                new String[] {roadClass, null});
+    }
+
+    @Test
+    public void testSameValuesHit() {
+        final CountingStyleSet styleSet = new CountingStyleSet();
+        final VectorStyleMemoizer memo = new VectorStyleMemoizer(styleSet);
+        final TileID tileID = new TileID(1, 2, 3);
+
+        // Separate snapshots with the same values
+        for (int ii = 0; ii < 5; ii++)
+            assertNotNull(memo.stylesForSnapshot(snapshot("primary", 2), null, tileID, "road", null));
+        assertEquals(1, styleSet.calls);
+
+        final VectorStyleMemoizer.Stats stats = memo.getStats();
+        assertEquals(4, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.entries);
+    }
+
+    @Test
+    public void testDifferentValuesMiss() {
+        final CountingStyleSet styleSet = new CountingStyleSet();
+        final VectorStyleMemoizer memo = new VectorStyleMemoizer(styleSet);
+        final TileID tileID = new TileID(1, 2, 3);
+
+        memo.stylesForSnapshot(snapshot("primary", 2), null, tileID, "road", null);
+        memo.stylesForSnapshot(snapshot("primary", 4), null, tileID, "road", null);
+        memo.stylesForSnapshot(snapshot("secondary", 2), null, tileID, "road", null);
+        // Same values in another layer
+        memo.stylesForSnapshot(snapshot("primary", 2), null, tileID, "bridge", null);
+        // Level doesn't matter to this style set
+        memo.stylesForSnapshot(snapshot("primary", 2), null, new TileID(0, 0, 7), "road", null);
+        assertEquals(4, styleSet.calls);
+
+        final VectorStyleMemoizer.Stats stats = memo.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(4, stats.misses);
+        assertEquals(4, stats.entries);
+    }
+
+    @Test
+    public void testLevelAndReset() {
+        final CountingStyleSet styleSet = new CountingStyleSet();
+        styleSet.useLevel = true;
+        final VectorStyleMemoizer memo = new VectorStyleMemoizer(styleSet);
+
+        memo.stylesForSnapshot(snapshot("primary", 2), null, new TileID(0, 0, 5), "road", null);
+        memo.stylesForSnapshot(snapshot("primary", 2), null, new TileID(1, 1, 5), "road", null);
+        memo.stylesForSnapshot(snapshot("primary", 2), null, new TileID(0, 0, 6), "road", null);
+        assertEquals(2, styleSet.calls);
+
+        // The stats are a copy
+        final VectorStyleMemoizer.Stats stats = memo.getStats();
+        memo.reset();
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+
+        memo.stylesForSnapshot(snapshot("primary", 2), null, new TileID(0, 0, 5), "road", null);
+        assertEquals(3, styleSet.calls);
+        assertEquals(0, memo.getStats().hits);
+        assertEquals(1, memo.getStats().misses);
+    }
+}
@@ -0,0 +1,128 @@
+package com.mousebird.maply;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check the work trace ring buffer and the Chrome trace it writes out.
+ */
+public class WorkTraceTest {
+
+    private static final long MS = 1000000L;
+
+    private static final Pattern eventPattern = Pattern.compile(
+            "\\{\"name\":\"([^\"]*)\",\"cat\":\"(\\w+)\",\"ph\":\"X\",\"pid\":1,\"tid\":(\\d+)," +
+            "\"ts\":([\\d.]+),\"dur\":([\\d.]+),\"args\":\\{\"wait_ms\":([\\d.]+)\\}\\}");
+
+    // One complete event out of the trace, times in microseconds
+    private static class Event {
+        String name, category;
+        long tid;
+        double ts, dur, waitMS;
+    }
+
+    private static List<Event> events(String json) {
+        final List<Event> events = new ArrayList<>();
+        final Matcher matcher = eventPattern.matcher(json);
+        while (matcher.find()) {
+            final Event event = new Event();
+            event.name = matcher.group(1);
+            event.category = matcher.group(2);
+            event.tid = Long.parseLong(matcher.group(3));
+            event.ts = Double.parseDouble(matcher.group(4));
+            event.dur = Double.parseDouble(matcher.group(5));
+            event.waitMS = Double.parseDouble(matcher.group(6));
+            events.add(event);
+        }
+        return events;
+    }
+
+    @Test
+    public void testNesting() {
+        final WorkTrace trace = new WorkTrace(10);
+
+        // A work region inside a task ends first, so it's recorded first
+        final long base = 1000 * MS;
+        trace.record("inner", "layer", 7, 0, base + 10 * MS, base + 40 * MS);
+        trace.record("outer", "layer", 7, base, base + 5 * MS, base + 50 * MS);
+        assertEquals(2, trace.size());
+
+        final List<Event> events = events(trace.toChromeTrace());
+        assertEquals(3, events.size());
+
+        final Event inner = events.get(0);
+        assertEquals("inner", inner.name);
+        assertEquals("work", inner.category);
+        assertEquals(0.0, inner.waitMS, 0.0);
+
+        // The outer task waited in the queue first
+        final Event queue = events.get(1);
+        assertEquals("outer", queue.name);
+        assertEquals("queue", queue.category);
+        assertEquals(0.0, queue.ts, 0.001);
+        assertEquals(5000.0, queue.dur, 0.001);
+
+        final Event outer = events.get(2);
+        assertEquals("work", outer.category);
+        assertEquals(5.0, outer.waitMS, 0.001);
+
+        // Same thread and the inner one is inside the outer, so they show up nested
+        assertEquals(outer.tid, inner.tid);
+        assertTrue(inner.ts >= outer.ts);
+        assertTrue(inner.ts + inner.dur <= outer.ts + outer.dur);
+        assertEquals(10000.0, inner.ts, 0.001);
+        assertEquals(30000.0, inner.dur, 0.001);
+    }
+
+    @Test
+    public void testSummary() {
+        final WorkTrace trace = new WorkTrace(3);
+        assertEquals(3, trace.getCapacity());
+        assertEquals("{\"traceEvents\":[]}", trace.toChromeTrace());
+
+        // Overflow the ring so the oldest two go
+        for (int ii = 0; ii < 5; ii++) {
+            trace.record("task" + ii, "thread" + (ii % 2), ii % 2, 0, ii * MS, ii * MS + 100);
+        }
+        assertEquals(3, trace.size());
+
+        final String json = trace.toChromeTrace();
+        final List<Event> events = events(json);
+        assertEquals(3, events.size());
+        assertEquals("task2", events.get(0).name);
+        assertEquals("task3", events.get(1).name);
+        assertEquals("task4", events.get(2).name);
+        // Times are relative to the oldest entry kept
+        assertEquals(0.0, events.get(0).ts, 0.001);
+        assertEquals(2000.0, events.get(2).ts, 0.001);
+        assertEquals(0.1, events.get(2).dur, 0.001);
+
+        // Each thread is named once
+        assertTrue(json.contains("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"thread0\"}}"));
+        assertTrue(json.contains("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":1,\"args\":{\"name\":\"thread1\"}}"));
+
+        trace.clear();
+        assertEquals(0, trace.size());
+        assertEquals("{\"traceEvents\":[]}", trace.toChromeTrace());
+    }
+
+    @Test
+    public void testEscaping() {
+        final WorkTrace trace = new WorkTrace(1);
+        trace.record("say \"hi\"\n", "t\\1", 1, 0, 0, 10);
+        final String json = trace.toChromeTrace();
+        assertTrue(json.contains("\"name\":\"say \\\"hi\\\"\\n\""));
+        assertTrue(json.contains("\"name\":\"t\\\\1\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCapacity() {
+        new WorkTrace(0);
+    }
+}
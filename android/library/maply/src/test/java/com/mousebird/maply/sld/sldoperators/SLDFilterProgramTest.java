@@ -0,0 +1,168 @@
+package com.mousebird.maply.sld.sldoperators;
+
+import com.mousebird.maply.AttrDictionary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check compiled filter programs give the same answers the operators do
+ */
+public class SLDFilterProgramTest {
+
+    // Looks up attributes in a map rather than an AttrDictionary
+    private static class MapContext extends SLDFilterContext {
+        Map<String,Object> attrs = new HashMap<>();
+        int lookups = 0;
+
+        MapContext(SLDFilterCompiler compiler) {
+            super(compiler.getSlotNames());
+        }
+
+        void reset(Map<String,Object> attrs) {
+            this.attrs = attrs;
+            nextFeature();
+        }
+
+        @Override
+        protected Object lookup(String name) {
+            lookups++;
+            return attrs.get(name);
+        }
+    }
+
+    // An operator that just emits what we tell it to
+    private static abstract class Emitter extends SLDOperator {
+        @Override
+        public boolean evaluateWithAttrs(AttrDictionary attrs) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static SLDOperator compare(final String name, final int type, final String literal, final boolean literalFirst) {
+        return new Emitter() {
+            @Override
+            public void compile(SLDFilterCompiler compiler) {
+                SLDFilterProgram.Operand prop = compiler.propertyOperand(name);
+                SLDFilterProgram.Operand lit = compiler.literalOperand(literal);
+                if (literalFirst)
+                    compiler.emitCompare(type, true, lit, prop);
+                else
+                    compiler.emitCompare(type, true, prop, lit);
+            }
+        };
+    }
+
+    private static Map<String,Object> attrs(Object... keyValues) {
+        Map<String,Object> attrs = new HashMap<>();
+        for (int ii = 0; ii < keyValues.length; ii += 2)
+            attrs.put((String)keyValues[ii], keyValues[ii+1]);
+        return attrs;
+    }
+
+    @Test
+    public void testCompare() {
+        SLDFilterCompiler compiler = new SLDFilterCompiler();
+        SLDFilterProgram lessThan = compiler.compile(Collections.singletonList(compare("lanes", SLDFilterCompiler.LessThan, "3", false)));
+        // 3 > lanes is the same test as lanes < 3
+        SLDFilterProgram flipped = compiler.compile(Collections.singletonList(compare("lanes", SLDFilterCompiler.GreaterThan, "3", true)));
+        SLDFilterProgram text = compiler.compile(Collections.singletonList(compare("class", SLDFilterCompiler.EqualTo, "primary", false)));
+        MapContext context = new MapContext(compiler);
+
+        // Numbers compare as numbers
+        context.reset(attrs("lanes", 2, "class", "primary"));
+        assertTrue(lessThan.evaluate(context));
+        assertTrue(flipped.evaluate(context));
+        assertTrue(text.evaluate(context));
+
+        // Strings compare as strings, even if they look like numbers
+        context.reset(attrs("lanes", "10", "class", "secondary"));
+        assertTrue(lessThan.evaluate(context));
+        assertTrue(flipped.evaluate(context));
+        assertFalse(text.evaluate(context));
+
+        // Missing attributes never match
+        context.reset(attrs());
+        assertFalse(lessThan.evaluate(context));
+        assertFalse(text.evaluate(context));
+    }
+
+    @Test
+    public void testNonNumericLiteral() {
+        SLDFilterCompiler compiler = new SLDFilterCompiler();
+        SLDFilterProgram program = compiler.compile(Collections.singletonList(compare("lanes", SLDFilterCompiler.NotEqualTo, "many", false)));
+        MapContext context = new MapContext(compiler);
+
+        // A number can't be compared to a literal that isn't one
+        context.reset(attrs("lanes", 2));
+        assertFalse(program.evaluate(context));
+    }
+
+    @Test
+    public void testLogic() {
+        SLDFilterCompiler compiler = new SLDFilterCompiler();
+        final SLDOperator isPrimary = compare("class", SLDFilterCompiler.EqualTo, "primary", false);
+        final SLDOperator wide = compare("lanes", SLDFilterCompiler.GreaterThanOrEqualTo, "4", false);
+        final SLDOperator notWide = new Emitter() {
+            @Override
+            public void compile(SLDFilterCompiler compiler) {
+                compiler.emitNot(wide);
+            }
+        };
+        final SLDOperator named = new Emitter() {
+            @Override
+            public void compile(SLDFilterCompiler compiler) {
+                compiler.emitLike(compiler.propertyOperand("name"), Pattern.compile(".*Street"));
+            }
+        };
+        SLDOperator and = new Emitter() {
+            @Override
+            public void compile(SLDFilterCompiler compiler) {
+                compiler.emitLogical(true, Arrays.asList(isPrimary, notWide));
+            }
+        };
+        // Rules match if any filter does
+        SLDFilterProgram program = compiler.compile(Arrays.asList(and, named));
+        MapContext context = new MapContext(compiler);
+
+        context.reset(attrs("class", "primary", "lanes", 2));
+        assertTrue(program.evaluate(context));
+        context.reset(attrs("class", "primary", "lanes", 6));
+        assertFalse(program.evaluate(context));
+        context.reset(attrs("class", "primary", "lanes", 6, "name", "Main Street"));
+        assertTrue(program.evaluate(context));
+        context.reset(attrs("class", "track", "name", "Mill Lane"));
+        assertFalse(program.evaluate(context));
+
+        // No filters at all always matches
+        assertTrue(compiler.compile(Collections.<SLDOperator>emptyList()).evaluate(context));
+        // A missing filter never does
+        assertFalse(compiler.compile(Collections.<SLDOperator>singletonList(null)).evaluate(context));
+    }
+
+    @Test
+    public void testLookupOncePerFeature() {
+        SLDFilterCompiler compiler = new SLDFilterCompiler();
+        SLDFilterProgram first = compiler.compile(Collections.singletonList(compare("class", SLDFilterCompiler.EqualTo, "primary", false)));
+        SLDFilterProgram second = compiler.compile(Collections.singletonList(compare("class", SLDFilterCompiler.NotEqualTo, "track", true)));
+        assertEquals(1, compiler.getNumSlots());
+        MapContext context = new MapContext(compiler);
+
+        context.reset(attrs("class", "primary"));
+        assertTrue(first.evaluate(context));
+        assertTrue(second.evaluate(context));
+        assertEquals(1, context.lookups);
+
+        context.reset(attrs("class", "track"));
+        assertFalse(first.evaluate(context));
+        assertFalse(second.evaluate(context));
+        assertEquals(2, context.lookups);
+    }
+}
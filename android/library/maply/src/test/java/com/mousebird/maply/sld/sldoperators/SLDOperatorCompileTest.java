@@ -0,0 +1,186 @@
+package com.mousebird.maply.sld.sldoperators;
+
+import com.mousebird.maply.AttrDictionary;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kxml2.io.KXmlParser;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Check that the real operators, parsed from SLD, compile to programs that give
+ * the same answers as evaluating the operators directly.
+ * <br>
+ * AttrDictionary is native, so it's mocked up to answer from the same map the
+ * compiled side looks attributes up in.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(AttrDictionary.class)
+@SuppressStaticInitializationFor("com.mousebird.maply.AttrDictionary")
+@PowerMockIgnore({"org.xmlpull.*", "org.kxml2.*"})
+public class SLDOperatorCompileTest {
+
+    // Looks up attributes in a map rather than an AttrDictionary
+    private static class MapContext extends SLDFilterContext {
+        Map<String,Object> attrs = new HashMap<>();
+
+        MapContext(SLDFilterCompiler compiler) {
+            super(compiler.getSlotNames());
+        }
+
+        void reset(Map<String,Object> attrs) {
+            this.attrs = attrs;
+            nextFeature();
+        }
+
+        @Override
+        protected Object lookup(String name) {
+            return attrs.get(name);
+        }
+    }
+
+    // Features with the kinds of values the native side hands back
+    private static final List<Map<String,Object>> features = new ArrayList<>();
+    static {
+        final Object[] lanes = { null, 1, 2, 4, 2.5, "2", "10", "many" };
+        final Object[] classes = { null, "primary", "Primary", "secondary", "track", 3 };
+        final Object[] names = { null, "Main Street", "Mill Lane", "primary" };
+        for (Object lane : lanes) {
+            for (Object cls : classes) {
+                for (Object name : names) {
+                    final Map<String,Object> attrs = new HashMap<>();
+                    if (lane != null)
+                        attrs.put("lanes", lane);
+                    if (cls != null)
+                        attrs.put("class", cls);
+                    if (name != null)
+                        attrs.put("name", name);
+                    features.add(attrs);
+                }
+            }
+        }
+    }
+
+    private Map<String,Object> current = Collections.emptyMap();
+    private AttrDictionary dict;
+
+    @Before
+    public void setUp() {
+        dict = PowerMockito.mock(AttrDictionary.class);
+        PowerMockito.when(dict.get(anyString())).thenAnswer(inv -> current.get((String)inv.getArgument(0)));
+    }
+
+    private static SLDOperator parse(String xml) throws Exception {
+        final XmlPullParser xpp = new KXmlParser();
+        xpp.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        xpp.setInput(new StringReader("<ogc:Filter xmlns:ogc=\"http://www.opengis.net/ogc\">" + xml + "</ogc:Filter>"));
+        while (xpp.next() != XmlPullParser.START_TAG || !xpp.getName().equals("Filter")) {
+        }
+        while (xpp.next() != XmlPullParser.START_TAG) {
+        }
+        final SLDOperator operator = SLDOperatorFactory.operatorForNode(xpp);
+        assertNotNull(xml, operator);
+        return operator;
+    }
+
+    private static String property(String name) {
+        return "<ogc:PropertyName>" + name + "</ogc:PropertyName>";
+    }
+
+    private static String literal(String value) {
+        return "<ogc:Literal>" + value + "</ogc:Literal>";
+    }
+
+    private static String compare(String element, String left, String right) {
+        return "<ogc:" + element + ">" + left + right + "</ogc:" + element + ">";
+    }
+
+    // Compile the filter and check it against the operator on every feature, returning how many matched
+    private int check(String xml) throws Exception {
+        final SLDOperator operator = parse(xml);
+        final SLDFilterCompiler compiler = new SLDFilterCompiler();
+        final SLDFilterProgram program = compiler.compile(Collections.singletonList(operator));
+        assertTrue(xml, compiler.isFullyCompiled());
+        final MapContext context = new MapContext(compiler);
+
+        int matches = 0;
+        for (Map<String,Object> attrs : features) {
+            current = attrs;
+            context.reset(attrs);
+            final boolean expected = operator.evaluateWithAttrs(dict);
+            assertEquals(xml + " on " + attrs, expected, program.evaluate(context));
+            if (expected)
+                matches++;
+        }
+        return matches;
+    }
+
+    // Check a filter that should pick out some of the features, but not all
+    private void checkSome(String xml) throws Exception {
+        final int matches = check(xml);
+        assertTrue(xml, matches > 0 && matches < features.size());
+    }
+
+    @Test
+    public void testComparison() throws Exception {
+        final String[] elements = { "PropertyIsEqualTo", "PropertyIsNotEqualTo",
+                "PropertyIsLessThan", "PropertyIsGreaterThan",
+                "PropertyIsLessThanOrEqualTo", "PropertyIsGreaterThanOrEqualTo" };
+        for (String element : elements) {
+            // Numbers, strings that look like numbers and ones that don't
+            checkSome(compare(element, property("lanes"), literal("2")));
+            checkSome(compare(element, literal("2"), property("lanes")));
+            checkSome(compare(element, property("class"), literal("primary")));
+            checkSome(compare(element, literal("primary"), property("class")));
+            check(compare(element, property("lanes"), literal("many")));
+            // Two properties
+            check(compare(element, property("name"), property("class")));
+        }
+    }
+
+    @Test
+    public void testMatchCase() throws Exception {
+        checkSome("<ogc:PropertyIsEqualTo matchCase=\"false\">" + property("class") + literal("PRIMARY") + "</ogc:PropertyIsEqualTo>");
+        checkSome("<ogc:PropertyIsLessThan matchCase=\"0\">" + property("class") + literal("Secondary") + "</ogc:PropertyIsLessThan>");
+        checkSome("<ogc:PropertyIsEqualTo matchCase=\"true\">" + property("class") + literal("Primary") + "</ogc:PropertyIsEqualTo>");
+    }
+
+    @Test
+    public void testBetween() throws Exception {
+        checkSome("<ogc:PropertyIsBetween>" + property("lanes") +
+                "<ogc:LowerBoundary>" + literal("2") + "</ogc:LowerBoundary>" +
+                "<ogc:UpperBoundary>" + literal("4") + "</ogc:UpperBoundary></ogc:PropertyIsBetween>");
+        checkSome("<ogc:PropertyIsBetween>" + property("class") +
+                "<ogc:LowerBoundary>" + literal("p") + "</ogc:LowerBoundary>" +
+                "<ogc:UpperBoundary>" + literal("t") + "</ogc:UpperBoundary></ogc:PropertyIsBetween>");
+    }
+
+    @Test
+    public void testLogical() throws Exception {
+        final String isPrimary = compare("PropertyIsEqualTo", property("class"), literal("primary"));
+        final String wide = compare("PropertyIsGreaterThanOrEqualTo", property("lanes"), literal("4"));
+        final String narrow = compare("PropertyIsLessThan", property("lanes"), literal("2"));
+        final String named = compare("PropertyIsNotEqualTo", property("name"), literal("Mill Lane"));
+
+        checkSome("<ogc:And>" + isPrimary + wide + "</ogc:And>");
+        checkSome("<ogc:Or>" + wide + narrow + "</ogc:Or>");
+        checkSome("<ogc:And>" + named + "<ogc:Or>" + isPrimary + wide + "</ogc:Or></ogc:And>");
+        checkSome("<ogc:Or>" + "<ogc:And>" + isPrimary + narrow + "</ogc:And>" + "<ogc:And>" + named + wide + "</ogc:And></ogc:Or>");
+    }
+}
@@ -0,0 +1,111 @@
+package com.mousebird.maply.sld.sldstyleset;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check which rules the index hands back for a layer and level.
+ */
+public class SLDRuleIndexTest {
+
+    private static double scale(int level) {
+        return SLDRuleIndex.scaleForLevel(level);
+    }
+
+    @Test
+    public void testScaleForLevel() {
+        assertEquals(SLDRuleIndex.LevelZeroScale, scale(0), 0.0);
+        assertEquals(SLDRuleIndex.LevelZeroScale / 1024.0, scale(10), 1e-6);
+        // A level up from zero is still a sensible scale
+        assertEquals(SLDRuleIndex.LevelZeroScale * 2.0, scale(-1), 0.0);
+    }
+
+    @Test
+    public void testLevelBand() {
+        final SLDRuleIndex<String> index = new SLDRuleIndex<String>();
+        // Rules only shown from level 10 in
+        index.add("roads", "min", null, scale(10));
+        // Rules only shown out to level 10
+        index.add("roads", "max", scale(10), null);
+        index.add("roads", "any", null, null);
+        index.build(SLDRuleIndex.MaxLevel);
+
+        // A tile at a level covers scales from two levels deeper (exclusive) to one shallower (inclusive)
+        assertEquals(Arrays.asList("max", "any"), index.rules("roads", 8));
+        assertEquals(Arrays.asList("min", "max", "any"), index.rules("roads", 9));
+        assertEquals(Arrays.asList("min", "max", "any"), index.rules("roads", 11));
+        assertEquals(Arrays.asList("min", "any"), index.rules("roads", 12));
+
+        // Past the last level we keep, the last one applies
+        assertEquals(index.rules("roads", SLDRuleIndex.MaxLevel), index.rules("roads", SLDRuleIndex.MaxLevel + 5));
+
+        // No level means no scale check
+        assertEquals(Arrays.asList("min", "max", "any"), index.rules("roads", -1));
+    }
+
+    @Test
+    public void testBandEdges() {
+        final SLDRuleIndex<String> index = new SLDRuleIndex<String>();
+        // Max scale is exclusive, so this stops right where level 7's band starts
+        index.add("roads", "closer", null, scale(9));
+        // Min scale is inclusive, so this starts right where level 7's band ends
+        index.add("roads", "farther", scale(6), null);
+        index.build(SLDRuleIndex.MaxLevel);
+
+        assertEquals(Collections.singletonList("farther"), index.rules("roads", 7));
+        assertEquals(Collections.singletonList("closer"), index.rules("roads", 8));
+    }
+
+    @Test
+    public void testMaxTileLevel() {
+        final SLDRuleIndex<String> index = new SLDRuleIndex<String>();
+        index.add("roads", "close", null, scale(18));
+        index.build(14);
+
+        // Tiles from level 14 get scaled up for closer zooms, so they keep rules for any closer scale
+        assertTrue(index.rules("roads", 13).isEmpty());
+        assertEquals(Collections.singletonList("close"), index.rules("roads", 14));
+        assertEquals(Collections.singletonList("close"), index.rules("roads", 20));
+    }
+
+    @Test
+    public void testLayerNames() {
+        final SLDRuleIndex<String> index = new SLDRuleIndex<String>();
+        index.add("roads", "road", null, null);
+        index.add("water", "water", null, null);
+        index.add("roads", "highway", null, scale(12));
+        index.build(SLDRuleIndex.MaxLevel);
+
+        // With layer names, only that layer's rules
+        assertEquals(Arrays.asList("road", "highway"), index.rules("roads", 12));
+        assertEquals(Collections.singletonList("water"), index.rules("water", 12));
+        assertTrue(index.rules("buildings", 12).isEmpty());
+        assertTrue(index.rules("buildings", -1).isEmpty());
+
+        // Without them, every layer's rules in the order they were added
+        assertEquals(Arrays.asList("road", "water", "highway"), index.rules(null, 12));
+        assertEquals(Arrays.asList("road", "water"), index.rules(null, 5));
+        assertEquals(Arrays.asList("road", "water", "highway"), index.rules(null, -1));
+    }
+
+    @Test
+    public void testRebuild() {
+        final SLDRuleIndex<String> index = new SLDRuleIndex<String>();
+        // Nothing until it's built
+        index.add("roads", "close", null, scale(18));
+        assertTrue(index.rules(null, -1).isEmpty());
+        assertTrue(index.rules("roads", 14).isEmpty());
+
+        index.build(SLDRuleIndex.MaxLevel);
+        assertTrue(index.rules("roads", 14).isEmpty());
+        assertEquals(Collections.singletonList("close"), index.rules("roads", 17));
+
+        // Building again with a shallower source changes the lists
+        index.build(14);
+        assertEquals(Collections.singletonList("close"), index.rules("roads", 14));
+    }
+}
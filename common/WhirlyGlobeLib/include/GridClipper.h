@@ -33,5 +33,9 @@ bool ClipLoopToGrid(const VectorRing &ring,Point2f org,Point2f spacing,std::vect
 bool ClipLoopsToGrid(const std::vector<VectorRing> &rings,Point2f org,Point2f spacing,std::vector<VectorRing> &rets);
 bool ClipLoopToMbr(const VectorRing &ring,const Mbr &mbr, bool closed,std::vector<VectorRing> &rets,double polyScale = 0.0);
 bool ClipLoopsToMbr(const std::vector<VectorRing> &rings,const Mbr &mbr, bool closed,std::vector<VectorRing> &rets,double polyScale = 0.0);
+/** Clip an areal's loops to the MBR, the first being the outer and the rest holes.
+    Each polygon in the result is an outer loop followed by its holes.
+  */
+bool ClipLoopsToMbr(const std::vector<VectorRing> &rings,const Mbr &mbr,std::vector<std::vector<VectorRing> > &rets,double polyScale = 0.0);
 
 }
@@ -324,6 +324,14 @@ public:
     
     /// Local platform implementation for generating a repeating line texture
     virtual SimpleIdentity makeLineTexture(PlatformThreadInfo *inst,const std::vector<double> &dashComponents) = 0;
+
+    /// Done with a texture from makeCircleTexture or makeLineTexture.
+    /// Removes it by default, platforms that share them between layers or own them some other way override this.
+    virtual void releaseTexture(PlatformThreadInfo *inst,SimpleIdentity texID,ChangeSet &changes);
+
+    /// Let the layers release what they're holding on to, such as generated textures.
+    /// Call this once the style set is shut down or replaced.
+    virtual void cleanupLayers(PlatformThreadInfo *inst,ChangeSet &changes);
     
     /// Create a local platform LabelInfo (since fonts are local)
     virtual LabelInfoRef makeLabelInfo(PlatformThreadInfo *inst,const std::vector<std::string> &fontName,float fontSize) = 0;
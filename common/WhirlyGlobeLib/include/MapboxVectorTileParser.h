@@ -21,6 +21,7 @@
 #import "QuadTreeNew.h"
 #import "ImageTile.h"
 #import "ComponentManager.h"
+#import <atomic>
 
 namespace WhirlyKit
 {
@@ -113,6 +114,10 @@ public:
     /// Parse everything, even if there's no style for it
     void setParseAll(bool b = true) { parseAll = b; }
 
+    /// If cleared, parsing stops once the features are sorted and doesn't run the styles.
+    /// Used with setKeepVectors to parse features to be restyled later.
+    void setStyleFeatures(bool b = true) { styleFeatures = b; }
+
     /// Add a category for a particulary style ID
     /// These are used for sorting later on
     void addCategory(const std::string &category,long long styleID);
@@ -130,6 +135,17 @@ public:
                        VectorTileData *tileData,
                        const CancelFunction &cancelFn);
 
+    /// Run the current styles over features kept from an earlier parse of the same tile
+    ///  (see setKeepVectors), rather than decoding the tile again.
+    /// If clipBounds is given, the features are clipped to it first, for building
+    ///  a tile from one of its ancestors.
+    /// Returns false on cancellation.
+    virtual bool restyle(PlatformThreadInfo *styleInst,
+                         const std::vector<VectorObjectRef> &features,
+                         VectorTileData *tileData,
+                         const CancelFunction &cancelFn,
+                         const MbrD *clipBounds = nullptr);
+
     /// The subclass calls the appropriate style to build component objects
     ///  which are then returned in the VectorTileData
     virtual void buildForStyle(PlatformThreadInfo *styleInst,
@@ -153,7 +169,22 @@ public:
     void setDebugOutline(bool b = true) { debugOutline = b; }
 
     const VectorStyleDelegateImplRef &getStyleDelegate() const { return styleDelegate; }
+
+    /// Running totals for layers skipped, without decoding, because the style doesn't display them
+    struct SkipStats
+    {
+        uint64_t tiles = 0;
+        uint64_t layers = 0;
+        uint64_t bytes = 0;
+        uint64_t features = 0;
+    };
+    SkipStats getSkipStats() const;
+    void resetSkipStats();
+
 protected:
+    /// Run the styles over the features sorted into the tile data and merge in the results
+    bool buildStyles(PlatformThreadInfo *styleInst, VectorTileData *tileData, const CancelFunction &cancelFn);
+
     /// If set, we'll parse into local coordinates as specified by the bounding box, rather than geo coords
     bool localCoords;
 
@@ -163,6 +194,9 @@ protected:
     /// Parse everything, even if there's no style for it
     bool parseAll;
 
+    /// Run the styles over what we parse
+    bool styleFeatures;
+
     /// If set, we'll tack a debug label in the middle of the tile
     bool debugLabel;
 
@@ -171,6 +205,12 @@ protected:
 
     std::string uuidName;
 
+    // Parsing happens on several threads at once
+    std::atomic<uint64_t> skipTiles { 0 };
+    std::atomic<uint64_t> skipLayers { 0 };
+    std::atomic<uint64_t> skipBytes { 0 };
+    std::atomic<uint64_t> skipFeatures { 0 };
+
     // Used for feature inclusion.  Only keep the features that have this attribute and one of the values.
     std::string filterName;
     std::set<std::string> filterValues;
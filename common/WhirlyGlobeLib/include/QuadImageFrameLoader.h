@@ -357,6 +357,18 @@ public:
     void setLoadMode(LoadMode newMode);
     LoadMode getLoadMode() const { return loadMode; }
     
+    /** Raise the load priority of the frames coming up during playback.
+        The next numFrames frames past the current position, in the given direction (1 or -1),
+        load ahead of everything but the current frames.  With wrap set, the window
+        continues from the other end of the frames, as when an animation loops.
+        Zero frames turns this off.
+      */
+    void setPrefetch(int numFrames,int direction,bool wrap);
+    int getPrefetchFrames() const { return prefetchFrames; }
+    
+    /// True if the given frame is in the prefetch window ahead of any focus
+    bool isPrefetchFrame(int frame) const;
+    
     /// True if there's loading going on, false if it's settled
     bool getLoadingStatus() const { return loadingStatus; }
     
@@ -577,6 +589,11 @@ protected:
     Mode mode;
     LoadMode loadMode;
     
+    // Frames ahead of the current one to favor and which way we're playing
+    int prefetchFrames;
+    int prefetchDir;
+    bool prefetchWrap;
+    
     bool masterEnable;
     bool debugMode;
     
@@ -639,6 +656,7 @@ protected:
     // Default load priority values.  Used to assign loading priorities
     int topPriority;        // Top nodes, if they're special.  -1 if not
     int nearFramePriority;  // Frames next to the current one, -1 if not
+    int prefetchPriority;   // Frames coming up during playback, -1 if not
     int restPriority;       // Everything else
     
     // Information about each frame.  Subclasses do more interesting things with this
@@ -64,6 +64,10 @@ public:
     
     unsigned getSkippedLayerCount() const { return _skippedLayerCount; }
     unsigned getSkippedFeatureCount() const { return _skippedFeatureCount; }
+
+    /// Bytes and features in layers we skipped because the style doesn't display them
+    uint64_t getSkippedLayerBytes() const { return _skippedLayerBytes; }
+    unsigned getSkippedLayerFeatureCount() const { return _skippedLayerFeatureCount; }
     
     unsigned getParseErrorCount() const { return _parseErrors; }
     unsigned getBadAttributeCount() const { return _badAttributes; }
@@ -149,6 +153,9 @@ private:
 
     // Parsing methods
     inline bool processTags(const MutableDictionaryCRef &attributes, size_t tagIdx, size_t geomIdx, const Feature &feature);
+    inline bool layerShouldDisplay(std::string &layerName);
+    static bool peekLayerName(const pb_istream_t &layerStream, std::string &name);
+    static unsigned countLayerFeatures(const pb_istream_t &layerStream);
     inline bool checkStyles(SimpleIDUSet& styleIDs, const MutableDictionaryCRef &attributes, const std::string &layerName);
     inline void parseLineString(const uint32_t *geometry, size_t geomCount, ShapeSet& shapes) const;
     inline bool parsePolygon(const uint32_t *geometry, size_t geomCount, VectorAreal& shape);
@@ -213,6 +220,8 @@ private:
     unsigned _featureCount = 0;
     unsigned _skippedFeatureCount = 0;
     unsigned _skippedLayerCount = 0;
+    unsigned _skippedLayerFeatureCount = 0;
+    uint64_t _skippedLayerBytes = 0;
     unsigned _unknownValueTypes = 0;
     unsigned _badAttributes = 0;
     unsigned _unknownCommands = 0;
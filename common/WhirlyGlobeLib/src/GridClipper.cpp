@@ -213,6 +213,72 @@ bool ClipLoopsToMbr(const std::vector<VectorRing> &rings,const Mbr &mbr, bool cl
     return true;
 }
 
+// Convert a Clipper path back to a ring, dropping anything degenerate
+static bool PathToRing(const Path &path,double polyScale,VectorRing &ring)
+{
+    ring.clear();
+    ring.reserve(path.size());
+    for (const IntPoint &outPt : path)
+        ring.push_back(Point2f(outPt.X/polyScale,outPt.Y/polyScale));
+    return ring.size() > 2;
+}
+
+// Gather an outer loop with its holes, then any islands within those holes
+static void PolyNodeToPolys(const PolyNode *node,double polyScale,std::vector<std::vector<VectorRing> > &rets)
+{
+    std::vector<VectorRing> poly(1);
+    if (!PathToRing(node->Contour,polyScale,poly[0]))
+        return;
+    for (const PolyNode *hole : node->Childs)
+    {
+        VectorRing holeRing;
+        if (PathToRing(hole->Contour,polyScale,holeRing))
+            poly.push_back(std::move(holeRing));
+    }
+    rets.push_back(std::move(poly));
+
+    for (const PolyNode *hole : node->Childs)
+        for (const PolyNode *island : hole->Childs)
+            PolyNodeToPolys(island,polyScale,rets);
+}
+
+// Clip an outer loop and its holes to the given MBR together
+bool ClipLoopsToMbr(const std::vector<VectorRing> &rings,const Mbr &mbr,std::vector<std::vector<VectorRing> > &rets,double polyScale)
+{
+    if (polyScale == 0.0)
+        polyScale = PolyScale;
+
+    Clipper c;
+    for (const auto &ring: rings)
+    {
+        Path subject(ring.size());
+        for (unsigned int ii=0;ii<ring.size();ii++)
+        {
+            const Point2f &pt = ring[ii];
+            subject[ii] = IntPoint(pt.x()*polyScale,pt.y()*polyScale);
+        }
+        c.AddPath(subject, ptSubject, true);
+    }
+
+    Path clip(4);
+    clip[0] = IntPoint(mbr.ll().x()*polyScale,mbr.ll().y()*polyScale);
+    clip[1] = IntPoint(mbr.ur().x()*polyScale,mbr.ll().y()*polyScale);
+    clip[2] = IntPoint(mbr.ur().x()*polyScale,mbr.ur().y()*polyScale);
+    clip[3] = IntPoint(mbr.ll().x()*polyScale,mbr.ur().y()*polyScale);
+    c.AddPath(clip, ptClip, true);
+
+    PolyTree solution;
+    if (!c.Execute(ctIntersection, solution))
+    {
+        return false;
+    }
+
+    for (const PolyNode *outer : solution.Childs)
+        PolyNodeToPolys(outer,polyScale,rets);
+
+    return true;
+}
+
 // Clip the given loop to the given grid (org and spacing)
 // Return true on success and the new polygons in the rets
 bool ClipLoopToGrid(const VectorRing &ring,Point2f org,Point2f spacing,std::vector<VectorRing> &rets)
@@ -76,10 +76,9 @@ bool MapboxVectorLayerCircle::parse(PlatformThreadInfo *inst,
 
 void MapboxVectorLayerCircle::cleanup(PlatformThreadInfo *inst,ChangeSet &changes)
 {
-    if (circleTexID != EmptyIdentity)
-    {
-        changes.push_back(new RemTextureReq(circleTexID));
-    }
+    // Other layers may be using the same texture, let the style set sort it out
+    styleSet->releaseTexture(inst,circleTexID,changes);
+    circleTexID = EmptyIdentity;
 }
 
 void MapboxVectorLayerCircle::buildObjects(PlatformThreadInfo *inst,
@@ -118,6 +118,8 @@ bool MapboxVectorLayerLine::parse(PlatformThreadInfo *inst,
 
 void MapboxVectorLayerLine::cleanup(PlatformThreadInfo *inst,ChangeSet &changes)
 {
+    styleSet->releaseTexture(inst,filledLineTexID,changes);
+    filledLineTexID = EmptyIdentity;
 }
 
 void MapboxVectorLayerLine::buildObjects(PlatformThreadInfo *inst,
@@ -1028,6 +1028,22 @@ void MapboxVectorStyleSetImpl::addSprites(MapboxVectorStyleSpritesRef newSprites
     sprites = std::move(newSprites);
 }
 
+void MapboxVectorStyleSetImpl::releaseTexture(PlatformThreadInfo *inst,SimpleIdentity texID,ChangeSet &changes)
+{
+    if (texID != EmptyIdentity)
+    {
+        changes.push_back(new RemTextureReq(texID));
+    }
+}
+
+void MapboxVectorStyleSetImpl::cleanupLayers(PlatformThreadInfo *inst,ChangeSet &changes)
+{
+    for (const auto &layer : layers)
+    {
+        layer->cleanup(inst,changes);
+    }
+}
+
 //#define LOW_LEVEL_UNIT_TESTS
 #if defined(LOW_LEVEL_UNIT_TESTS)
 static struct UnitTests {
@@ -23,6 +23,9 @@
 #import "DictionaryC.h"
 #import "VectorTilePBFParser.h"
 
+#include <algorithm>
+#include <unordered_map>
+#include <unordered_set>
 #include <utility>
 #import <vector>
 
@@ -84,7 +87,7 @@ void VectorTileData::clear()
 }
 
 MapboxVectorTileParser::MapboxVectorTileParser(PlatformThreadInfo *inst,VectorStyleDelegateImplRef styleDelegate)
-    : localCoords(false), keepVectors(false), parseAll(false), styleDelegate(styleDelegate)
+    : localCoords(false), keepVectors(false), parseAll(false), styleFeatures(true), styleDelegate(styleDelegate)
 {
     // Index all the categories ahead of time.  Once.
     std::vector<VectorStyleImplRef> allStyles = styleDelegate->allStyles(inst);
@@ -118,6 +121,24 @@ void MapboxVectorTileParser::setAttributeFilter(const std::string &name,std::set
     filterValues = std::move(values);
 }
 
+MapboxVectorTileParser::SkipStats MapboxVectorTileParser::getSkipStats() const
+{
+    SkipStats stats;
+    stats.tiles = skipTiles;
+    stats.layers = skipLayers;
+    stats.bytes = skipBytes;
+    stats.features = skipFeatures;
+    return stats;
+}
+
+void MapboxVectorTileParser::resetSkipStats()
+{
+    skipTiles = 0;
+    skipLayers = 0;
+    skipBytes = 0;
+    skipFeatures = 0;
+}
+
 void MapboxVectorTileParser::addCategory(const std::string &category,long long styleID)
 {
     styleCategories[styleID] = category;
@@ -184,58 +205,28 @@ bool MapboxVectorTileParser::parse(PlatformThreadInfo *styleInst,
         return false;
     }
 
+    skipTiles += 1;
+    skipLayers += parser.getSkippedLayerCount();
+    skipBytes += parser.getSkippedLayerBytes();
+    skipFeatures += parser.getSkippedLayerFeatureCount();
+
 #if DEBUG
     const auto duration = std::max(1e-9, secondsSince(t0));
-    wkLogLevel(Verbose, "MapboxVectorTileParser: Finished [%d/%d/%d] - %.2f MiB - %.4f s - %.4f MiB/s - %.1f features/s",
+    wkLogLevel(Verbose, "MapboxVectorTileParser: Finished [%d/%d/%d] - %.2f MiB - %.4f s - %.4f MiB/s - %.1f features/s"
+                        " - skipped %u layers, %.1f KiB, %u features",
                tileData->ident.level, tileData->ident.x, tileData->ident.y,
                rawData->getLen() / 1024.0 / 1024,
                duration, rawData->getLen() / duration / 1024 / 1024,
-               parser.getFeatureCount() / duration);
+               parser.getFeatureCount() / duration,
+               parser.getSkippedLayerCount(), parser.getSkippedLayerBytes() / 1024.0,
+               parser.getSkippedLayerFeatureCount());
 #endif
 
-    // TODO: Switch to stencils and get this working again
-    // Call background
-//    if (const auto backgroundStyle = styleDelegate->backgroundStyle(styleInst)) {
-//        auto styleData = std::make_shared<VectorTileData>(*tileData);
-//        std::vector<VectorObjectRef> objs;
-//        backgroundStyle->buildObjects(styleInst, objs, styleData);
-//
-//        tileData->mergeFrom(styleData.get());
-//    }
-    
-    // Run the styles over their assembled data
-    for (const auto &it : tileData->vecObjsByStyle)
+    if (styleFeatures && !buildStyles(styleInst, tileData, cancelFn))
     {
-        std::vector<VectorObjectRef> &vecs = *it.second;
-
-        auto styleData = std::make_shared<VectorTileData>(*tileData);
-
-        // Ask the subclass to run the style and fill in the VectorTileData
-        buildForStyle(styleInst,it.first,vecs,styleData,cancelFn);
-
-        if (cancelFn(styleInst))
-        {
-            return false;
-        }
-
-        // Sort the results into categories if needed
-        auto catIt = styleCategories.find(it.first);
-        if (catIt != styleCategories.end() && !styleData->compObjs.empty())
-        {
-            const std::string &category = catIt->second;
-            auto compObjs = styleData->compObjs;
-            auto categoryIt = tileData->categories.find(category);
-            if (categoryIt != tileData->categories.end())
-            {
-                compObjs.insert(compObjs.end(), categoryIt->second.begin(), categoryIt->second.end());
-            }
-            tileData->categories[category] = compObjs;
-        }
-        
-        // Merge this into the general return data
-        tileData->mergeFrom(styleData.get());
+        return false;
     }
-    
+
     // These are layered on top for debugging
 //    if(debugLabel || debugOutline) {
 //        QuadTreeNew::Node tileID = tileData->ident;
@@ -283,6 +274,149 @@ bool MapboxVectorTileParser::parse(PlatformThreadInfo *styleInst,
     return true;
 }
 
+bool MapboxVectorTileParser::restyle(PlatformThreadInfo *styleInst,
+                                     const std::vector<VectorObjectRef> &features,
+                                     VectorTileData *tileData,
+                                     const CancelFunction &cancelFn,
+                                     const MbrD *clipBounds)
+{
+    static const std::string layerNameKey("layer_name");
+
+    // Most features share a handful of layers, so only ask about each one once
+    std::unordered_map<std::string,std::string> displayNames;
+    std::unordered_set<std::string> hiddenLayers;
+
+    for (const auto &vecObj : features)
+    {
+        if (cancelFn(styleInst))
+        {
+            return false;
+        }
+        if (!vecObj || vecObj->shapes.empty())
+        {
+            continue;
+        }
+        const auto attrs = (*vecObj->shapes.begin())->getAttrDict();
+        if (!attrs)
+        {
+            continue;
+        }
+
+        const auto layerName = attrs->getString(layerNameKey);
+        if (hiddenLayers.find(layerName) != hiddenLayers.end())
+        {
+            continue;
+        }
+        auto nameIt = displayNames.find(layerName);
+        if (nameIt == displayNames.end())
+        {
+            std::string displayName = layerName;
+            if (!styleDelegate->layerShouldDisplay(styleInst, displayName, tileData->ident))
+            {
+                std::transform(displayName.begin(), displayName.end(), displayName.begin(),
+                               [](unsigned char c){ return std::tolower(c); });
+                if (displayName == layerName ||
+                    !styleDelegate->layerShouldDisplay(styleInst, displayName, tileData->ident))
+                {
+                    hiddenLayers.insert(layerName);
+                    continue;
+                }
+            }
+            nameIt = displayNames.insert(std::make_pair(layerName, displayName)).first;
+        }
+
+        if (!filterName.empty() && filterValues.find(attrs->getString(filterName)) == filterValues.end())
+        {
+            continue;
+        }
+
+        const auto styles = styleDelegate->stylesForFeature(styleInst, *attrs, tileData->ident, nameIt->second);
+        if (styles.empty() && !keepVectors)
+        {
+            continue;
+        }
+
+        // Only the part within the tile, if it's from a bigger one
+        VectorObjectRef tileVecObj = vecObj;
+        if (clipBounds)
+        {
+            tileVecObj = vecObj->clipToMbr(clipBounds->ll(), clipBounds->ur());
+            if (!tileVecObj || tileVecObj->shapes.empty())
+            {
+                continue;
+            }
+        }
+
+        if (keepVectors)
+        {
+            tileData->vecObjs.push_back(tileVecObj);
+        }
+
+        // Sort it into the styles that will process it, as the parser would have
+        for (const auto &style : styles)
+        {
+            auto *&vecs = tileData->vecObjsByStyle[style->getUuid(styleInst)];
+            if (!vecs)
+            {
+                vecs = new std::vector<VectorObjectRef>();
+            }
+            vecs->push_back(tileVecObj);
+        }
+    }
+
+    return buildStyles(styleInst, tileData, cancelFn);
+}
+
+bool MapboxVectorTileParser::buildStyles(PlatformThreadInfo *styleInst,
+                                         VectorTileData *tileData,
+                                         const CancelFunction &cancelFn)
+{
+    // TODO: Switch to stencils and get this working again
+    // Call background
+//    if (const auto backgroundStyle = styleDelegate->backgroundStyle(styleInst)) {
+//        auto styleData = std::make_shared<VectorTileData>(*tileData);
+//        std::vector<VectorObjectRef> objs;
+//        backgroundStyle->buildObjects(styleInst, objs, styleData);
+//
+//        tileData->mergeFrom(styleData.get());
+//    }
+    
+    // Run the styles over their assembled data
+    for (const auto &it : tileData->vecObjsByStyle)
+    {
+        std::vector<VectorObjectRef> &vecs = *it.second;
+
+        auto styleData = std::make_shared<VectorTileData>(*tileData);
+
+        // Ask the subclass to run the style and fill in the VectorTileData
+        buildForStyle(styleInst,it.first,vecs,styleData,cancelFn);
+
+        if (cancelFn(styleInst))
+        {
+            return false;
+        }
+
+        // Sort the results into categories if needed
+        auto catIt = styleCategories.find(it.first);
+        if (catIt != styleCategories.end() && !styleData->compObjs.empty())
+        {
+            const std::string &category = catIt->second;
+            auto compObjs = styleData->compObjs;
+            auto categoryIt = tileData->categories.find(category);
+            if (categoryIt != tileData->categories.end())
+            {
+                compObjs.insert(compObjs.end(), categoryIt->second.begin(), categoryIt->second.end());
+            }
+            tileData->categories[category] = compObjs;
+        }
+        
+        // Merge this into the general return data
+        tileData->mergeFrom(styleData.get());
+    }
+    
+    return true;
+}
+
 void MapboxVectorTileParser::buildForStyle(PlatformThreadInfo *styleInst,
                                            long long styleID,
                                            const std::vector<VectorObjectRef> &vecObjs,
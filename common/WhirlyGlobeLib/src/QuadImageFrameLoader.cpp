@@ -707,7 +707,8 @@ QuadImageFrameLoader::QuadImageFrameLoader(const SamplingParams &params,Mode mod
     compManager(nullptr),
     generation(0), numFocus(1),
     targetLevel(-1), curOvlLevel(-1), loadingStatus(true),
-    topPriority(-1), nearFramePriority(-1), restPriority(-1)
+    prefetchFrames(0), prefetchDir(1), prefetchWrap(false),
+    topPriority(-1), nearFramePriority(-1), prefetchPriority(-1), restPriority(-1)
 {
     lastRunReqFlag = std::make_shared<bool>(true);
     renderTargetIDs.push_back(EmptyIdentity);
@@ -740,19 +741,50 @@ void QuadImageFrameLoader::setLoadMode(LoadMode newMode)
     updatePriorityDefaults();
 }
 
+void QuadImageFrameLoader::setPrefetch(int numFrames,int direction,bool wrap)
+{
+    prefetchFrames = std::max(numFrames,0);
+    prefetchDir = (direction < 0) ? -1 : 1;
+    prefetchWrap = wrap;
+    updatePriorityDefaults();
+}
+
 void QuadImageFrameLoader::updatePriorityDefaults()
 {
+    // Frames coming up slot in just behind the ones we're showing
+    const bool prefetch = prefetchFrames > 0;
     if (loadMode == Broad) {
         topPriority = 0;
-        nearFramePriority = -1;
-        restPriority = 1;
+        // When prefetching, the frames on screen still have to go ahead of the upcoming ones
+        nearFramePriority = prefetch ? 1 : -1;
+        prefetchPriority = prefetch ? 2 : -1;
+        restPriority = prefetch ? 3 : 1;
     } else {
         // Focus on the current frame
         topPriority = -1;
         nearFramePriority = 1;
-        restPriority = 2;
+        prefetchPriority = prefetch ? 2 : -1;
+        restPriority = prefetch ? 3 : 2;
     }
 }
+
+bool QuadImageFrameLoader::isPrefetchFrame(int frame) const
+{
+    if (prefetchFrames <= 0)
+        return false;
+    
+    const int numFrames = getNumFrames();
+    for (auto focusFrame : curFrames) {
+        // How far past the current position this frame is, in the direction we're going
+        double dist = (frame - focusFrame) * prefetchDir;
+        if (prefetchWrap && dist <= 0.0)
+            dist += numFrames;
+        if (dist > 0.0 && dist <= prefetchFrames)
+            return true;
+    }
+    
+    return false;
+}
     
 int QuadImageFrameLoader::calcLoadPriority(const QuadTreeNew::ImportantNode &ident,int frame)
 {
@@ -780,6 +812,10 @@ int QuadImageFrameLoader::calcLoadPriority(const QuadTreeNew::ImportantNode &ide
         }
     }
     
+    // Frames we're about to play come next
+    if (prefetchPriority > -1 && isPrefetchFrame(frame))
+        return prefetchPriority;
+    
     return restPriority;
 }
     
@@ -285,6 +285,13 @@ RawDataRef Texture::processData()
 	{
         return texData;
 	} else {
+        // 16 bit data may have been converted ahead of time, e.g. from a cache
+        const bool is16Bit = (format == TexTypeShort565 || format == TexTypeShort4444 || format == TexTypeShort5551);
+        if (is16Bit && width > 0 && height > 0 && texData->getLen() == (unsigned long)width * height * 2)
+        {
+            return texData;
+        }
+
         // Depending on the format, we may need to mess around with the bytes
         switch (format)
         {
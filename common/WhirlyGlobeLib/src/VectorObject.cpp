@@ -1428,22 +1428,22 @@ VectorObjectRef VectorObject::clipToMbr(const Point2d &ll,const Point2d &ur)
                 const auto newLinear = VectorLinear::createLinear();
                 newLinear->setAttrDict(linear->getAttrDict());
                 newLinear->pts = loop;
+                newLinear->initGeoMbr();
                 newVec->shapes.insert(newLinear);
             }
         } else if(dynamic_cast<VectorLinear3d*>(shape)) {
             wkLogLevel(Error, "Don't know how to clip linear3d objects");
         } else if (const auto ar = dynamic_cast<VectorAreal*>(shape)) {
-            for (int ii=0;ii<ar->loops.size();ii++) {
-                std::vector<VectorRing> newLoops;
-                newLoops.reserve(ar->loops.size());
-                ClipLoopToMbr(ar->loops[ii], mbr, true, newLoops);
-                for (unsigned int jj=0;jj<newLoops.size();jj++)
-                {
-                    const auto newAr = VectorAreal::createAreal();
-                    newAr->setAttrDict(ar->getAttrDict());
-                    newAr->loops.push_back(newLoops[jj]);
-                    newVec->shapes.insert(newAr);
-                }
+            // Clip the holes along with the outer loop so they stay holes
+            std::vector<std::vector<VectorRing>> newPolys;
+            ClipLoopsToMbr(ar->loops, mbr, newPolys);
+            for (auto &poly : newPolys)
+            {
+                const auto newAr = VectorAreal::createAreal();
+                newAr->setAttrDict(ar->getAttrDict());
+                newAr->loops = std::move(poly);
+                newAr->initGeoMbr();
+                newVec->shapes.insert(newAr);
             }
         } else if(const auto points = dynamic_cast<VectorPoints*>(shape)) {
             const auto newPoints = VectorPoints::createPoints();
@@ -1458,6 +1458,12 @@ VectorObjectRef VectorObject::clipToMbr(const Point2d &ll,const Point2d &ur)
                     newPoints->pts.push_back(pt);
                 }
             }
+            if (!newPoints->pts.empty())
+            {
+                newPoints->setAttrDict(points->getAttrDict());
+                newPoints->initGeoMbr();
+                newVec->shapes.insert(newPoints);
+            }
         }
     }
 
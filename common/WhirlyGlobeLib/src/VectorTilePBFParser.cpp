@@ -140,6 +140,22 @@ bool VectorTilePBFParser::layerDecode(pb_istream_t *stream, const pb_field_iter_
         return false;
     }
 
+    const auto layerBytes = (uint32_t)stream->bytes_left;
+
+    // Look for the layer name up front so a layer that isn't displayed
+    // can be skipped without decoding any of its features or geometry.
+    // Unless we're keeping everything, in which case hidden layers are parsed too.
+    std::string peekedName;
+    const bool peeked = peekLayerName(*stream, peekedName);
+    bool layerHidden = peeked && !layerShouldDisplay(peekedName);
+    if (layerHidden && !_parseAll)
+    {
+        _skippedLayerCount += 1;
+        _skippedLayerBytes += layerBytes;
+        _skippedLayerFeatureCount += countLayerFeatures(*stream);
+        return pb_read(stream, nullptr, stream->bytes_left);
+    }
+
     vector_tile_Tile_Layer layer = _defaultLayer;
     std::string_view layerNameView;
 
@@ -148,7 +164,6 @@ bool VectorTilePBFParser::layerDecode(pb_istream_t *stream, const pb_field_iter_
     layer.keys.arg = &_layerKeys;
     layer.values.arg = &_layerValues;
 
-    const auto layerBytes = (uint32_t)stream->bytes_left;
     _layerKeys.clear();
     _layerKeys.reserve(layerKeyHeuristic(layerBytes));
     _layerValues.clear();
@@ -165,7 +180,8 @@ bool VectorTilePBFParser::layerDecode(pb_istream_t *stream, const pb_field_iter_
         return false;
     }
 
-    auto layerName = std::string(layerNameView);
+    // The peeked name may have been adjusted to match the style
+    auto layerName = peeked ? peekedName : std::string(layerNameView);
 
     // When `has_extent` is false, nanopb sets the default in `extent`
     _layerScale = (double)layer.extent / TileSize;
@@ -180,25 +196,13 @@ bool VectorTilePBFParser::layerDecode(pb_istream_t *stream, const pb_field_iter_
     }
 
     // if we don't have any styles for a layer, don't bother parsing the features
-    bool found = false;
-    if (_styleDelegate->layerShouldDisplay(_styleInst, layerName, _tileData->ident))
-        found = true;
-    else {
-        // Try a lowercase version
-        // TODO: This doesn't handle non-ASCII well
-        std::string lowerLayerName = layerName;
-        std::transform(lowerLayerName.begin(), lowerLayerName.end(), lowerLayerName.begin(),
-                                   [](unsigned char c){ return std::tolower(c); });
-        
-        if (lowerLayerName != layerName)
-            if (_styleDelegate->layerShouldDisplay(_styleInst, lowerLayerName, _tileData->ident)) {
-                found = true;
-                layerName = lowerLayerName;
-            }
+    if (!peeked && !layerShouldDisplay(layerName)) {
+        layerHidden = true;
     }
-    
-    if (!found) {
+    if (layerHidden && !_parseAll) {
         _skippedLayerCount += 1;
+        _skippedLayerBytes += layerBytes;
+        _skippedLayerFeatureCount += (unsigned)_features.size();
         return true;
     }
 
@@ -230,8 +234,9 @@ bool VectorTilePBFParser::layerDecode(pb_istream_t *stream, const pb_field_iter_
             continue;
         }
 
+        // Features in hidden layers are only here to be kept, they don't get styled
         SimpleIDUSet styleIDs(featureStyleHeuristic());
-        if (!checkStyles(styleIDs, attributes, layerName))
+        if (layerHidden ? !_parseAll : !checkStyles(styleIDs, attributes, layerName))
         {
             // Skip this feature
             _skippedFeatureCount += 1;
@@ -385,6 +390,74 @@ bool VectorTilePBFParser::processTags(const MutableDictionaryCRef &attributes, s
     return true;
 }
 
+bool VectorTilePBFParser::layerShouldDisplay(std::string &layerName)
+{
+    if (_styleDelegate->layerShouldDisplay(_styleInst, layerName, _tileData->ident))
+        return true;
+
+    // Try a lowercase version
+    // TODO: This doesn't handle non-ASCII well
+    std::string lowerLayerName = layerName;
+    std::transform(lowerLayerName.begin(), lowerLayerName.end(), lowerLayerName.begin(),
+                               [](unsigned char c){ return std::tolower(c); });
+
+    if (lowerLayerName != layerName &&
+        _styleDelegate->layerShouldDisplay(_styleInst, lowerLayerName, _tileData->ident))
+    {
+        layerName = lowerLayerName;
+        return true;
+    }
+    return false;
+}
+
+// These scan a copy of the stream, leaving the caller's position alone
+bool VectorTilePBFParser::peekLayerName(const pb_istream_t &layerStream, std::string &name)
+{
+    pb_istream_t stream = layerStream;
+    pb_wire_type_t wireType;
+    uint32_t tag;
+    bool eof;
+    while (pb_decode_tag(&stream, &wireType, &tag, &eof))
+    {
+        if (tag == vector_tile_Tile_Layer_name_tag && wireType == PB_WT_STRING)
+        {
+            uint32_t len;
+            if (!pb_decode_varint32(&stream, &len) || len > stream.bytes_left)
+            {
+                return false;
+            }
+            name.resize(len);
+            return pb_read(&stream, (pb_byte_t *)&name[0], len);
+        }
+        if (!pb_skip_field(&stream, wireType))
+        {
+            return false;
+        }
+    }
+    return false;
+}
+
+unsigned VectorTilePBFParser::countLayerFeatures(const pb_istream_t &layerStream)
+{
+    pb_istream_t stream = layerStream;
+    unsigned count = 0;
+    pb_wire_type_t wireType;
+    uint32_t tag;
+    bool eof;
+    while (pb_decode_tag(&stream, &wireType, &tag, &eof))
+    {
+        if (tag == vector_tile_Tile_Layer_features_tag)
+        {
+            count += 1;
+        }
+        if (!pb_skip_field(&stream, wireType))
+        {
+            break;
+        }
+    }
+    return count;
+}
+
 bool VectorTilePBFParser::checkStyles(SimpleIDUSet& styleIDs, const MutableDictionaryCRef &attributes, const std::string &layerName)
 {
     // Ask for the styles that correspond to this feature
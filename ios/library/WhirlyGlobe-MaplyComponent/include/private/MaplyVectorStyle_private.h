@@ -95,6 +95,11 @@ public:
     /// Local platform implementation for generating a repeating line texture
     virtual SimpleIdentity makeLineTexture(PlatformThreadInfo *_Nullable inst,
                                            const std::vector<double> &dashComponents) override;
+
+    /// Let go of a generated texture.  The MaplyTexture removes it once released.
+    virtual void releaseTexture(PlatformThreadInfo *_Nullable inst,
+                                SimpleIdentity texID,
+                                ChangeSet &changes) override;
     
     /// Make platform specific label info object (ideally we're caching these)
     virtual LabelInfoRef makeLabelInfo(PlatformThreadInfo *_Nullable inst,
@@ -515,6 +515,19 @@ SimpleIdentity MapboxVectorStyleSetImpl_iOS::makeLineTexture(PlatformThreadInfo
     return tex.texID;
 }
 
+void MapboxVectorStyleSetImpl_iOS::releaseTexture(PlatformThreadInfo *inst,SimpleIdentity texID,ChangeSet &changes)
+{
+    // We hold these as MaplyTextures, which remove themselves, so don't remove it here too
+    for (auto it = textures.begin(); it != textures.end(); ++it)
+    {
+        if ((*it).texID == texID)
+        {
+            textures.erase(it);
+            break;
+        }
+    }
+}
+
 LabelInfoRef MapboxVectorStyleSetImpl_iOS::makeLabelInfo(PlatformThreadInfo *inst,const std::vector<std::string> &fontNames,float fontSize)
 {
     UIFont *font = nil;